@@ -4,11 +4,16 @@ import com.example.documentsigner.api.dto.CertificateInfo;
 import com.example.documentsigner.exception.ExpiredCertificateException;
 import com.example.documentsigner.exception.InvalidCertificateException;
 import com.example.documentsigner.exception.InvalidPasswordException;
+import com.example.documentsigner.exception.RevokedCertificateException;
+import com.example.documentsigner.revocation.OcspClient;
+import com.example.documentsigner.revocation.RevocationIndex;
+import com.example.documentsigner.revocation.RevocationStatus;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
@@ -238,6 +243,51 @@ public class CertificateValidator {
         checkExpiry(certBytes, password);
     }
 
+    /**
+     * Full validation from bytes, including a revocation check against the
+     * loaded CRLs and, when they do not cover the certificate, OCSP.
+     *
+     * @throws RevokedCertificateException if the certificate is revoked
+     */
+    public static void validateCertificate(byte[] certBytes, String password, RevocationIndex revocationIndex,
+                                           OcspClient ocspClient) {
+        validateCertificate(certBytes, password);
+        try {
+            KeyStore keystore = KeyStore.getInstance("PKCS12");
+            keystore.load(new ByteArrayInputStream(certBytes), password.toCharArray());
+            String alias = keystore.aliases().nextElement();
+            checkRevocation(keystore.getCertificateChain(alias), revocationIndex, ocspClient);
+        } catch (RevokedCertificateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvalidCertificateException("Error loading certificate: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rejects a signing certificate that is revoked according to the loaded
+     * CRLs or, when no current CRL covers it, its OCSP responder. OCSP needs the
+     * issuer, so it is only asked when the chain includes it. A certificate
+     * whose status is unknown is accepted.
+     *
+     * @param chain The signing certificate first, then its issuer if known
+     * @throws RevokedCertificateException if the certificate is revoked
+     */
+    public static void checkRevocation(Certificate[] chain, RevocationIndex revocationIndex,
+                                       OcspClient ocspClient) {
+        X509Certificate cert = (X509Certificate) chain[0];
+        RevocationStatus status = revocationIndex.check(cert, new Date());
+        if (status.getStatus() == RevocationStatus.Status.UNKNOWN && chain.length > 1) {
+            status = ocspClient.check(cert, (X509Certificate) chain[1]);
+        }
+        if (status.isRevoked()) {
+            throw new RevokedCertificateException(
+                "Certificate revoked on " + status.getRevocationDate(),
+                status.getRevocationDate()
+            );
+        }
+    }
+
     /**
      * Extract Common Name (CN) from X.500 distinguished name.
      */
@@ -1,5 +1,23 @@
 package com.example.documentsigner;
 
+import com.example.documentsigner.exception.InvalidDocumentException;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.pades.PadesSignatureInterface;
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.tsa.TsaClient;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.BEROctetStringGenerator;
+import org.bouncycastle.asn1.BERSequenceGenerator;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
@@ -7,18 +25,25 @@ import org.bouncycastle.cms.*;
 import org.bouncycastle.cms.jcajce.*;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.ContentVerifier;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.CollectionStore;
 import org.bouncycastle.util.Store;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Hashtable;
 import java.util.List;
 
 public class DocumentSigner {
@@ -26,15 +51,112 @@ public class DocumentSigner {
         Security.addProvider(new BouncyCastleProvider());
     }
 
+    private TsaClient tsaClient = TsaClient.disabled();
+
+    /**
+     * Set the TSA client used for signature timestamps (CAdES-T).
+     */
+    public void setTsaClient(TsaClient tsaClient) {
+        this.tsaClient = tsaClient != null ? tsaClient : TsaClient.disabled();
+    }
+
     public byte[] signDocument(byte[] document, String pfxPath, String pfxPassword) throws Exception {
-        return signDocumentWithStream(document, new FileInputStream(pfxPath), pfxPassword);
+        return signDocumentWithStream(new CMSProcessableByteArray(document), true, new FileInputStream(pfxPath),
+            pfxPassword, null, false).getEncoded();
     }
 
     public byte[] signDocumentWithCertBytes(byte[] document, byte[] certBytes, String pfxPassword) throws Exception {
-        return signDocumentWithStream(document, new ByteArrayInputStream(certBytes), pfxPassword);
+        return signDocumentWithStream(new CMSProcessableByteArray(document), true,
+            new ByteArrayInputStream(certBytes), pfxPassword, null, false).getEncoded();
+    }
+
+    /**
+     * Sign encapsulated content of the given eContentType rather than id-data.
+     * The signed content-type attribute carries the type, so the signature
+     * says what kind of content it is over.
+     */
+    public byte[] signDocumentWithCertBytes(byte[] document, ASN1ObjectIdentifier contentType, byte[] certBytes,
+                                            String pfxPassword) throws Exception {
+        return signDocumentWithStream(new CMSProcessableByteArray(contentType, document), true,
+            new ByteArrayInputStream(certBytes), pfxPassword, null, false).getEncoded();
+    }
+
+    /**
+     * Sign under a signature policy (e.g. ICP-Brasil AD-RB). The signed attributes
+     * then also carry signing-certificate-v2 and the signature-policy-identifier,
+     * as the ICP-Brasil policies require.
+     *
+     * A signature timestamp is added as an unsigned attribute when requested or
+     * when the policy requires one (AD-RT).
+     */
+    public byte[] signDocumentWithCertBytes(byte[] document, byte[] certBytes, String pfxPassword,
+                                            SignaturePolicy signaturePolicy, boolean timestamp) throws Exception {
+        return signDocumentWithPolicy(new CMSProcessableByteArray(document), true, certBytes, pfxPassword,
+            signaturePolicy, timestamp).getEncoded();
+    }
+
+    /**
+     * Same as signDocumentWithCertBytes, for a document in a file. The signature
+     * is first computed over the file as a detached one, then encoded into
+     * output with the file copied into its encapsulated content, so the
+     * document is never held in memory. Nothing is written if signing fails.
+     */
+    public void signDocumentWithCertBytes(Path document, byte[] certBytes, String pfxPassword,
+                                          SignaturePolicy signaturePolicy, boolean timestamp,
+                                          OutputStream output) throws Exception {
+        CMSSignedData detached = signDocumentWithPolicy(new CMSProcessableFile(document.toFile()), false,
+            certBytes, pfxPassword, signaturePolicy, timestamp);
+        writeEncapsulated(SignedData.getInstance(detached.toASN1Structure().getContent()), document, output);
+    }
+
+    /**
+     * Encodes a ContentInfo holding the signed data with the file as its
+     * encapsulated id-data content, streaming the file into a BER constructed
+     * OCTET STRING. The signer infos sign the content's digest, so they are
+     * the same whether the content is encapsulated or not.
+     */
+    private static void writeEncapsulated(SignedData signedData, Path document, OutputStream output)
+            throws IOException {
+        BERSequenceGenerator contentInfo = new BERSequenceGenerator(output);
+        contentInfo.addObject(CMSObjectIdentifiers.signedData);
+
+        BERSequenceGenerator signed = new BERSequenceGenerator(contentInfo.getRawOutputStream(), 0, true);
+        signed.addObject(signedData.getVersion());
+        signed.addObject(signedData.getDigestAlgorithms());
+
+        BERSequenceGenerator encapsulated = new BERSequenceGenerator(signed.getRawOutputStream());
+        encapsulated.addObject(CMSObjectIdentifiers.data);
+        BEROctetStringGenerator content = new BEROctetStringGenerator(encapsulated.getRawOutputStream(), 0, true);
+        try (OutputStream octets = content.getOctetOutputStream(new byte[64 * 1024])) {
+            Files.copy(document, octets);
+        }
+        encapsulated.close();
+
+        if (signedData.getCertificates() != null) {
+            signed.addObject(new DERTaggedObject(false, 0, signedData.getCertificates()));
+        }
+        if (signedData.getCRLs() != null) {
+            signed.addObject(new DERTaggedObject(false, 1, signedData.getCRLs()));
+        }
+        signed.addObject(signedData.getSignerInfos());
+        signed.close();
+        contentInfo.close();
+    }
+
+    private CMSSignedData signDocumentWithPolicy(CMSTypedData document, boolean encapsulate, byte[] certBytes,
+                                                 String pfxPassword, SignaturePolicy signaturePolicy,
+                                                 boolean timestamp) throws Exception {
+        boolean addTimestamp = timestamp || (signaturePolicy != null && signaturePolicy.isTimestampRequired());
+        if (addTimestamp && !tsaClient.isEnabled()) {
+            throw new TimestampException("A signature timestamp was requested but no timestamp authority is configured");
+        }
+        return signDocumentWithStream(document, encapsulate, new ByteArrayInputStream(certBytes), pfxPassword,
+            signaturePolicy, addTimestamp);
     }
 
-    private byte[] signDocumentWithStream(byte[] document, InputStream certStream, String pfxPassword) throws Exception {
+    private CMSSignedData signDocumentWithStream(CMSTypedData document, boolean encapsulate, InputStream certStream,
+                                                 String pfxPassword, SignaturePolicy signaturePolicy,
+                                                 boolean timestamp) throws Exception {
         // Load the PFX/PKCS12 keystore
         KeyStore keystore = KeyStore.getInstance("PKCS12");
         keystore.load(certStream, pfxPassword.toCharArray());
@@ -60,22 +182,152 @@ public class DocumentSigner {
             .setProvider("BC")
             .build(privateKey);
 
+        JcaSignerInfoGeneratorBuilder signerInfoBuilder = new JcaSignerInfoGeneratorBuilder(
+            new JcaDigestCalculatorProviderBuilder()
+                .setProvider("BC")
+                .build());
+
+        if (signaturePolicy != null) {
+            Hashtable<ASN1ObjectIdentifier, Attribute> signedAttrs = new Hashtable<>();
+            Attribute signingCertAttr = PadesSignatureInterface.createSigningCertificateAttribute(signingCert);
+            Attribute policyAttr = signaturePolicy.toAttribute();
+            signedAttrs.put(signingCertAttr.getAttrType(), signingCertAttr);
+            signedAttrs.put(policyAttr.getAttrType(), policyAttr);
+            signerInfoBuilder.setSignedAttributeGenerator(
+                new DefaultSignedAttributeTableGenerator(new AttributeTable(signedAttrs)));
+        }
+
+        CMSSignedDataGenerator cmsGenerator = new CMSSignedDataGenerator();
+        cmsGenerator.addSignerInfoGenerator(signerInfoBuilder.build(contentSigner, signingCert));
+
+        // Add certificates to the signature
+        cmsGenerator.addCertificates(certStore);
+
+        // Create signed data
+        CMSSignedData signedData = cmsGenerator.generate(document, encapsulate);
+
+        if (timestamp) {
+            signedData = tsaClient.addSignatureTimestamps(signedData);
+        }
+
+        return signedData;
+    }
+
+    /**
+     * Add a co-signature (a parallel SignerInfo over the same content) to an existing
+     * CMS signature.
+     *
+     * When an existing signer already used SHA-256, its signed messageDigest is reused
+     * as-is (after checking that signer's signature over its signed attributes), so the
+     * document is not hashed again. Otherwise the content is hashed: the encapsulated
+     * content if present, or the supplied detached document. That content must then
+     * match the messageDigest of every existing signer, or the co-signature would
+     * cover a different document than the signatures it sits next to.
+     *
+     * @param existingSignature The existing .p7s bytes
+     * @param document The signed document, only needed when no SHA-256 digest can be reused
+     *                 and the content is not encapsulated (may be null)
+     * @param certBytes The co-signer's PFX/PKCS12 certificate bytes
+     * @param pfxPassword The certificate password
+     * @return The .p7s bytes with one more SignerInfo
+     * @throws InvalidDocumentException if the content does not match the existing signers' digests
+     */
+    public byte[] coSign(byte[] existingSignature, byte[] document, byte[] certBytes, String pfxPassword) throws Exception {
+        CMSSignedData existing = new CMSSignedData(existingSignature);
+
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        keystore.load(new ByteArrayInputStream(certBytes), pfxPassword.toCharArray());
+        String alias = keystore.aliases().nextElement();
+        PrivateKey privateKey = (PrivateKey) keystore.getKey(alias, pfxPassword.toCharArray());
+        Certificate[] certificateChain = keystore.getCertificateChain(alias);
+        X509Certificate signingCert = (X509Certificate) certificateChain[0];
+
+        byte[] messageDigest = findReusableDigest(existing);
+        if (messageDigest == null) {
+            byte[] content = existing.getSignedContent() != null
+                ? (byte[]) existing.getSignedContent().getContent()
+                : document;
+            if (content == null) {
+                throw new CMSException("Signature has no SHA-256 digest to reuse and no content; the document is required");
+            }
+            messageDigest = MessageDigest.getInstance("SHA-256").digest(content);
+            checkSignedDigests(existing, content, messageDigest);
+        }
+
+        // Pin the messageDigest attribute so the generator does not need the content
+        Hashtable<ASN1ObjectIdentifier, Attribute> signedAttrs = new Hashtable<>();
+        signedAttrs.put(CMSAttributes.messageDigest, new Attribute(
+            CMSAttributes.messageDigest, new DERSet(new DEROctetString(messageDigest))));
+
+        ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256withRSA")
+            .setProvider("BC")
+            .build(privateKey);
+
         CMSSignedDataGenerator cmsGenerator = new CMSSignedDataGenerator();
         cmsGenerator.addSignerInfoGenerator(
             new JcaSignerInfoGeneratorBuilder(
                 new JcaDigestCalculatorProviderBuilder()
                     .setProvider("BC")
                     .build())
+            .setSignedAttributeGenerator(new DefaultSignedAttributeTableGenerator(new AttributeTable(signedAttrs)))
             .build(contentSigner, signingCert));
 
-        // Add certificates to the signature
-        cmsGenerator.addCertificates(certStore);
+        ASN1ObjectIdentifier contentType = new ASN1ObjectIdentifier(existing.getSignedContentTypeOID());
+        CMSSignedData generated = cmsGenerator.generate(new CMSAbsentContent(contentType), false);
 
-        // Create signed data
-        CMSTypedData cmsData = new CMSProcessableByteArray(document);
-        CMSSignedData signedData = cmsGenerator.generate(cmsData, true);
+        List<SignerInformation> signers = new ArrayList<>(existing.getSignerInfos().getSigners());
+        signers.addAll(generated.getSignerInfos().getSigners());
 
-        return signedData.getEncoded();
+        CMSSignedData merged = CMSSignedData.replaceSigners(existing, new SignerInformationStore(signers));
+        return withCertificates(merged, certificateChain).getEncoded();
+    }
+
+    /**
+     * Add a counter-signature to one SignerInfo of an existing CMS signature.
+     * The counter-signature signs that signer's signature value, so the document
+     * itself is never read or hashed.
+     *
+     * @param existingSignature The existing .p7s bytes
+     * @param signerIndex Index of the SignerInfo to counter-sign, or -1 for the last one
+     * @param certBytes The counter-signer's PFX/PKCS12 certificate bytes
+     * @param pfxPassword The certificate password
+     * @return The .p7s bytes with the countersignature unsigned attribute added
+     */
+    public byte[] counterSign(byte[] existingSignature, int signerIndex, byte[] certBytes, String pfxPassword) throws Exception {
+        CMSSignedData existing = new CMSSignedData(existingSignature);
+        List<SignerInformation> signers = new ArrayList<>(existing.getSignerInfos().getSigners());
+
+        int target = signerIndex < 0 ? signers.size() - 1 : signerIndex;
+        if (target < 0 || target >= signers.size()) {
+            throw new CMSException("Signer index " + signerIndex + " out of range; signature has "
+                + signers.size() + " signer(s)");
+        }
+
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        keystore.load(new ByteArrayInputStream(certBytes), pfxPassword.toCharArray());
+        String alias = keystore.aliases().nextElement();
+        PrivateKey privateKey = (PrivateKey) keystore.getKey(alias, pfxPassword.toCharArray());
+        Certificate[] certificateChain = keystore.getCertificateChain(alias);
+        X509Certificate signingCert = (X509Certificate) certificateChain[0];
+
+        ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256withRSA")
+            .setProvider("BC")
+            .build(privateKey);
+
+        CMSSignedDataGenerator cmsGenerator = new CMSSignedDataGenerator();
+        cmsGenerator.addSignerInfoGenerator(
+            new JcaSignerInfoGeneratorBuilder(
+                new JcaDigestCalculatorProviderBuilder()
+                    .setProvider("BC")
+                    .build())
+            .build(contentSigner, signingCert));
+
+        SignerInformation targetSigner = signers.get(target);
+        SignerInformationStore counterSigners = cmsGenerator.generateCounterSigners(targetSigner);
+        signers.set(target, SignerInformation.addCounterSigners(targetSigner, counterSigners));
+
+        CMSSignedData merged = CMSSignedData.replaceSigners(existing, new SignerInformationStore(signers));
+        return withCertificates(merged, certificateChain).getEncoded();
     }
 
     public boolean verifySignature(byte[] signedData, byte[] originalData) throws Exception {
@@ -84,15 +336,100 @@ public class DocumentSigner {
         SignerInformationStore signers = cms.getSignerInfos();
         
         for (SignerInformation signer : signers.getSigners()) {
-            Collection<X509CertificateHolder> certCollection = certStore.getMatches(signer.getSID());
-            X509CertificateHolder cert = certCollection.iterator().next();
-            
-            if (!signer.verify(new JcaSimpleSignerInfoVerifierBuilder()
-                    .setProvider("BC")
-                    .build(new JcaX509CertificateConverter().getCertificate(cert)))) {
+            if (!verifySigner(signer, certStore)) {
                 return false;
             }
+            // Counter-signatures cover the signer's signature value, not the document
+            for (SignerInformation counterSigner : signer.getCounterSignatures().getSigners()) {
+                if (!verifySigner(counterSigner, certStore)) {
+                    return false;
+                }
+            }
         }
         return true;
     }
+
+    private boolean verifySigner(SignerInformation signer, Store<X509CertificateHolder> certStore) throws Exception {
+        Collection<X509CertificateHolder> certCollection = certStore.getMatches(signer.getSID());
+        X509CertificateHolder cert = certCollection.iterator().next();
+
+        return signer.verify(new JcaSimpleSignerInfoVerifierBuilder()
+                .setProvider("BC")
+                .build(new JcaX509CertificateConverter().getCertificate(cert)));
+    }
+
+    /**
+     * Returns the SHA-256 messageDigest of an existing signer whose signature over its
+     * signed attributes checks out, or null if there is none to reuse.
+     */
+    private byte[] findReusableDigest(CMSSignedData cms) throws Exception {
+        Store<X509CertificateHolder> certStore = cms.getCertificates();
+
+        for (SignerInformation signer : cms.getSignerInfos().getSigners()) {
+            if (!NISTObjectIdentifiers.id_sha256.getId().equals(signer.getDigestAlgOID())
+                    || signer.getSignedAttributes() == null) {
+                continue;
+            }
+            Attribute digestAttr = signer.getSignedAttributes().get(CMSAttributes.messageDigest);
+            Collection<X509CertificateHolder> certCollection = certStore.getMatches(signer.getSID());
+            if (digestAttr == null || certCollection.isEmpty()) {
+                continue;
+            }
+
+            // Only trust the digest if its signer really signed it
+            SignerInformationVerifier verifier = new JcaSimpleSignerInfoVerifierBuilder()
+                .setProvider("BC")
+                .build(certCollection.iterator().next());
+            ContentVerifier contentVerifier = verifier.getContentVerifier(
+                signer.toASN1Structure().getDigestEncryptionAlgorithm(), signer.getDigestAlgorithmID());
+            OutputStream out = contentVerifier.getOutputStream();
+            out.write(signer.getEncodedSignedAttributes());
+            out.close();
+
+            if (contentVerifier.verify(signer.getSignature())) {
+                return ASN1OctetString.getInstance(digestAttr.getAttrValues().getObjectAt(0)).getOctets();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the content against the messageDigest each existing signer signed,
+     * hashed with that signer's digest algorithm.
+     *
+     * @param sha256 The content's SHA-256, already computed
+     * @throws InvalidDocumentException if a signer's messageDigest does not match the content
+     */
+    private static void checkSignedDigests(CMSSignedData cms, byte[] content, byte[] sha256) throws Exception {
+        for (SignerInformation signer : cms.getSignerInfos().getSigners()) {
+            Attribute digestAttr = signer.getSignedAttributes() != null
+                ? signer.getSignedAttributes().get(CMSAttributes.messageDigest) : null;
+            if (digestAttr == null) {
+                continue;
+            }
+            byte[] digest = NISTObjectIdentifiers.id_sha256.getId().equals(signer.getDigestAlgOID())
+                ? sha256
+                : MessageDigest.getInstance(signer.getDigestAlgOID(), "BC").digest(content);
+            byte[] signed = ASN1OctetString.getInstance(digestAttr.getAttrValues().getObjectAt(0)).getOctets();
+            if (!MessageDigest.isEqual(digest, signed)) {
+                throw new InvalidDocumentException("Document does not match the existing signature");
+            }
+        }
+    }
+
+    /**
+     * Adds any certificates of the given chain that the signature does not carry yet.
+     */
+    private CMSSignedData withCertificates(CMSSignedData cms, Certificate[] certificateChain) throws Exception {
+        Collection<X509CertificateHolder> existing = cms.getCertificates().getMatches(null);
+        List<X509CertificateHolder> certs = new ArrayList<>(existing);
+        for (Certificate cert : certificateChain) {
+            X509CertificateHolder holder = new X509CertificateHolder(cert.getEncoded());
+            if (!certs.contains(holder)) {
+                certs.add(holder);
+            }
+        }
+        return CMSSignedData.replaceCertificatesAndCRLs(
+            cms, new CollectionStore<>(certs), cms.getAttributeCertificates(), cms.getCRLs());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,459 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of ITI Verificador reports, in front of ItiVerificador.
+ *
+ * - Reports are keyed by the SHA-256 of the environment and the submitted
+ *   files, so the same signature and document sent again to the same
+ *   environment are answered without a round trip to the ITI.
+ * - Only successful (2xx) reports are cached: throttling and server errors are
+ *   transient. Entries expire after ttlMillis, in memory and on disk.
+ * - The memory tier holds at most maxEntries reports, least recently used
+ *   first out. The optional disk tier keeps one file per report in a
+ *   directory, survives restarts and is consulted on a memory miss; expired
+ *   files are removed as they are found and swept periodically, and the
+ *   least recently used files go once the tier exceeds maxDiskBytes. A file
+ *   whose recorded body length does not fit the file is a miss and is deleted.
+ * - Concurrent requests for the same key are single-flighted: one caller asks
+ *   the ITI and the others wait for its report (or its failure).
+ *
+ * Instances are thread-safe.
+ */
+public class ItiResultCache {
+
+    private static final int DISK_FORMAT = 1;
+    private static final int SWEEP_EVERY_WRITES = 256;
+    // Format, expiry, HTTP status and body length
+    private static final int DISK_HEADER_BYTES = 4 + 8 + 4 + 4;
+
+    /**
+     * Asks the ITI Verificador on a cache miss.
+     */
+    public interface Loader {
+        ItiVerificationResult load() throws IOException;
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Map<String, CachedReport> reports;
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private final ConcurrentHashMap<String, CompletableFuture<ItiVerificationResult>> inFlight =
+        new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskWrites = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * @param maxEntries Maximum reports kept in memory; 0 disables the cache
+     * @param ttlMillis Longest a report is reused
+     * @param directory Directory for the disk tier, or null for memory only
+     * @param maxDiskBytes Total size of the disk tier's files, in bytes
+     */
+    public ItiResultCache(final int maxEntries, long ttlMillis, Path directory, long maxDiskBytes)
+            throws IOException {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.directory = maxEntries > 0 ? directory : null;
+        this.maxDiskBytes = maxDiskBytes;
+        this.reports = new LinkedHashMap<String, CachedReport>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedReport> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (this.directory != null) {
+            Files.createDirectories(this.directory);
+            sweepDisk();
+            indexDisk();
+        }
+    }
+
+    /**
+     * A cache that stores nothing; every call goes to the ITI.
+     */
+    public static ItiResultCache disabled() {
+        try {
+            return new ItiResultCache(0, 0, null, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cache key for a submission: SHA-256 over the environment and each file,
+     * every file prefixed with its length so different splits never collide.
+     *
+     * @param environment ITI environment and request kind, e.g. "production/detached"
+     * @param files Submitted files, in request order
+     */
+    public static String key(String environment, byte[]... files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(environment.getBytes(StandardCharsets.UTF_8));
+            for (byte[] file : files) {
+                long length = file.length;
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    digest.update((byte) (length >>> shift));
+                }
+                digest.update(file);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The cached report for the key, or the loader's report, which is cached
+     * if successful. Concurrent calls for the same key share one load.
+     *
+     * @throws IOException if the load fails (for every caller waiting on it)
+     */
+    public ItiVerificationResult get(String key, Loader loader) throws IOException {
+        if (maxEntries <= 0) {
+            return loader.load();
+        }
+        ItiVerificationResult cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<ItiVerificationResult> flight = new CompletableFuture<>();
+        CompletableFuture<ItiVerificationResult> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            // A load that finished between the lookup and putIfAbsent has already stored its report
+            ItiVerificationResult result = lookup(key);
+            if (result == null) {
+                misses.incrementAndGet();
+                result = loader.load();
+                if (result.isSuccess()) {
+                    store(key, result);
+                }
+            }
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static ItiVerificationResult await(CompletableFuture<ItiVerificationResult> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for an ITI report", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private ItiVerificationResult lookup(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (reports) {
+            CachedReport cached = reports.get(key);
+            if (cached != null && cached.expiresAt > now) {
+                hits.incrementAndGet();
+                return cached.result;
+            }
+            if (cached != null) {
+                reports.remove(key);
+            }
+        }
+
+        CachedReport fromDisk = readDisk(key, now);
+        if (fromDisk == null) {
+            return null;
+        }
+        diskHits.incrementAndGet();
+        synchronized (reports) {
+            reports.put(key, fromDisk);
+        }
+        return fromDisk.result;
+    }
+
+    private void store(String key, ItiVerificationResult result) {
+        CachedReport cached = new CachedReport(result, System.currentTimeMillis() + ttlMillis);
+        synchronized (reports) {
+            reports.put(key, cached);
+        }
+        writeDisk(key, cached);
+    }
+
+    // ==================== Disk tier ====================
+
+    private CachedReport readDisk(String key, long now) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key);
+        CachedReport cached = null;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(stream)) {
+            long fileSize = Files.size(file);
+            if (in.readInt() == DISK_FORMAT) {
+                long expiresAt = in.readLong();
+                int status = in.readInt();
+                int length = in.readInt();
+                // Never trust the recorded length beyond what the file holds
+                if (length >= 0 && length == fileSize - DISK_HEADER_BYTES) {
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    cached = new CachedReport(ItiVerificationResult.parse(status, body), expiresAt);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            forgetDisk(key);
+            return null;
+        } catch (IOException e) {
+            // A truncated or unreadable entry is just a miss
+            cached = null;
+        }
+
+        if (cached == null || cached.expiresAt <= now) {
+            deleteDisk(key, file);
+            return null;
+        }
+        synchronized (diskEntries) {
+            // Marks the entry as recently used
+            diskEntries.get(key);
+        }
+        return cached;
+    }
+
+    /**
+     * Writes to a temporary file and renames it, so readers never see a partial entry.
+     */
+    private void writeDisk(String key, CachedReport cached) {
+        if (directory == null) {
+            return;
+        }
+        Path target = directory.resolve(key);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, key, ".tmp");
+            byte[] body = cached.result.getBody();
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(file)) {
+                out.writeInt(DISK_FORMAT);
+                out.writeLong(cached.expiresAt);
+                out.writeInt(cached.result.getHttpStatus());
+                out.writeInt(body.length);
+                out.write(body);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            addDisk(key, DISK_HEADER_BYTES + (long) body.length);
+        } catch (IOException e) {
+            // The disk tier is best effort; the memory tier still has the report
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Left for the next sweep
+                }
+            }
+        }
+        if (diskWrites.incrementAndGet() % SWEEP_EVERY_WRITES == 0) {
+            sweepDisk();
+        }
+    }
+
+    /**
+     * Deletes expired entries and leftover temporary files.
+     */
+    private void sweepDisk() {
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    if (file.getFileName().toString().endsWith(".tmp")) {
+                        if (Files.getLastModifiedTime(file).toMillis() < now - 60000) {
+                            Files.deleteIfExists(file);
+                        }
+                        continue;
+                    }
+                    boolean expired;
+                    try (InputStream stream = Files.newInputStream(file);
+                         DataInputStream in = new DataInputStream(stream)) {
+                        expired = in.readInt() != DISK_FORMAT || in.readLong() <= now;
+                    }
+                    if (expired) {
+                        deleteDisk(file.getFileName().toString(), file);
+                    }
+                } catch (IOException e) {
+                    // Skip entries that vanish or cannot be read
+                }
+            }
+        } catch (IOException e) {
+            // Retried on a later sweep
+        }
+    }
+
+    /**
+     * Rebuilds the disk tier's index at startup, least recently written first,
+     * and trims it to maxDiskBytes.
+     */
+    private void indexDisk() throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().endsWith(".tmp")) {
+                    found.add(file);
+                }
+            }
+        }
+        found.sort(Comparator.comparing(ItiResultCache::lastModified));
+        for (Path file : found) {
+            try {
+                addDisk(file.getFileName().toString(), Files.size(file));
+            } catch (IOException e) {
+                // Vanished meanwhile
+            }
+        }
+    }
+
+    /**
+     * Records a written entry and drops least recently used entries until the
+     * disk tier fits in maxDiskBytes.
+     */
+    private void addDisk(String key, long size) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (diskEntries) {
+            Long previous = diskEntries.put(key, size);
+            diskBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> it = diskEntries.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                it.remove();
+                diskBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+            }
+        }
+        for (String victim : evicted) {
+            diskEvictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(directory.resolve(victim));
+            } catch (IOException ignored) {
+                // Not in the index any more; swept or reindexed later
+            }
+        }
+    }
+
+    private void forgetDisk(String key) {
+        synchronized (diskEntries) {
+            Long size = diskEntries.remove(key);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+    }
+
+    private void deleteDisk(String key, Path file) {
+        forgetDisk(key);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Left for the next sweep
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Hits (memory and disk), misses, coalesced waits, evictions, size and capacity.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        synchronized (reports) {
+            stats.put("size", (long) reports.size());
+        }
+        stats.put("maxEntries", (long) maxEntries);
+        stats.put("diskEvictions", diskEvictions.get());
+        synchronized (diskEntries) {
+            stats.put("diskEntries", (long) diskEntries.size());
+            stats.put("diskBytes", diskBytes);
+        }
+        stats.put("maxDiskBytes", maxDiskBytes);
+        return stats;
+    }
+
+    private static final class CachedReport {
+        private final ItiVerificationResult result;
+        private final long expiresAt;
+
+        private CachedReport(ItiVerificationResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
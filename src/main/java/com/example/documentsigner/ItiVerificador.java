@@ -1,9 +1,20 @@
 package com.example.documentsigner;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -13,14 +24,30 @@ import java.util.UUID;
  * Staging: https://verificador.staging.iti.br
  *
  * Documentation: https://validar.iti.gov.br/guia-desenvolvedor.html
+ *
+ * - The multipart body is written straight to the connection in fixed-length
+ *   streaming mode: part headers, then each document from its source (byte
+ *   array or file), with no intermediate copy of the request.
+ * - Connections are kept alive: responses are always read to the end and the
+ *   streams closed without disconnecting, so HttpURLConnection hands the socket
+ *   back to the JDK keep-alive cache (http.maxConnections idle sockets per host)
+ *   for the next request.
+ * - The JSON report is read with a streaming parser into an ItiVerificationResult;
+ *   the raw report is kept for callers that pass it on.
+ *
+ * Instances are thread-safe and meant to be shared, one per environment.
  */
 public class ItiVerificador {
 
     private static final String PRODUCTION_URL = "https://verificador.iti.gov.br/report";
     private static final String STAGING_URL = "https://verificador.staging.iti.br/report";
 
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final JsonFactory JSON = new JsonFactory();
+
     private final String baseUrl;
-    private final int timeoutMs;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
 
     /**
      * Create a new ITI Verificador client using the production endpoint.
@@ -42,11 +69,64 @@ public class ItiVerificador {
      * Create a new ITI Verificador client with custom URL and timeout.
      *
      * @param baseUrl The API base URL
-     * @param timeoutMs Connection timeout in milliseconds
+     * @param timeoutMs Connection and read timeout in milliseconds
      */
     public ItiVerificador(String baseUrl, int timeoutMs) {
+        this(baseUrl, timeoutMs, timeoutMs);
+    }
+
+    /**
+     * Create a new ITI Verificador client with custom URL and timeouts.
+     *
+     * @param baseUrl The API base URL
+     * @param connectTimeoutMs Connection timeout in milliseconds
+     * @param readTimeoutMs Timeout waiting for the report, in milliseconds
+     */
+    public ItiVerificador(String baseUrl, int connectTimeoutMs, int readTimeoutMs) {
         this.baseUrl = baseUrl;
-        this.timeoutMs = timeoutMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Bytes of one uploaded file, written to the request as it is sent.
+     */
+    public interface Content {
+        long length();
+
+        void writeTo(OutputStream out) throws IOException;
+
+        static Content of(byte[] data) {
+            return new Content() {
+                @Override
+                public long length() {
+                    return data.length;
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(data);
+                }
+            };
+        }
+
+        /**
+         * A file, read while the request is sent. Its size must not change meanwhile.
+         */
+        static Content of(Path file) throws IOException {
+            long size = Files.size(file);
+            return new Content() {
+                @Override
+                public long length() {
+                    return size;
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    Files.copy(file, out);
+                }
+            };
+        }
     }
 
     /**
@@ -64,84 +144,31 @@ public class ItiVerificador {
             byte[] documentBytes,
             String signatureFilename,
             String documentFilename) throws IOException {
+        return verifyDetachedSignature(Content.of(signatureBytes), Content.of(documentBytes),
+            signatureFilename, documentFilename);
+    }
 
-        String boundary = "----Boundary" + UUID.randomUUID().toString().replace("-", "");
-
-        URL url = new URL(baseUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        try {
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(timeoutMs);
-            connection.setReadTimeout(timeoutMs);
-            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-            connection.setRequestProperty("Accept", "application/json");
-
-            try (OutputStream os = connection.getOutputStream();
-                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), true)) {
-
-                // report_type field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"report_type\"\r\n\r\n");
-                writer.append("json").append("\r\n");
-
-                // signature_files[] field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"signature_files[]\"; filename=\"")
-                      .append(signatureFilename).append("\"\r\n");
-                writer.append("Content-Type: application/octet-stream\r\n\r\n");
-                writer.flush();
-                os.write(signatureBytes);
-                os.flush();
-                writer.append("\r\n");
-
-                // detached_files[] field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"detached_files[]\"; filename=\"")
-                      .append(documentFilename).append("\"\r\n");
-                writer.append("Content-Type: application/pdf\r\n\r\n");
-                writer.flush();
-                os.write(documentBytes);
-                os.flush();
-                writer.append("\r\n");
-
-                // verify_incremental_updates field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"verify_incremental_updates\"\r\n\r\n");
-                writer.append("true").append("\r\n");
-
-                // End boundary
-                writer.append("--").append(boundary).append("--\r\n");
-                writer.flush();
-            }
-
-            int responseCode = connection.getResponseCode();
-            String responseBody;
-
-            InputStream inputStream = (responseCode >= 200 && responseCode < 300)
-                ? connection.getInputStream()
-                : connection.getErrorStream();
-
-            if (inputStream != null) {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    responseBody = sb.toString();
-                }
-            } else {
-                responseBody = "";
-            }
-
-            return new ItiVerificationResult(responseCode, responseBody);
-
-        } finally {
-            connection.disconnect();
-        }
+    /**
+     * Verify a detached signature (.p7s) against its original document.
+     *
+     * @param signature The .p7s signature
+     * @param document The original document
+     * @param signatureFilename Filename for the signature (e.g., "document.pdf.p7s")
+     * @param documentFilename Filename for the document (e.g., "document.pdf")
+     * @return ItiVerificationResult containing the validation response
+     * @throws IOException if the request fails
+     */
+    public ItiVerificationResult verifyDetachedSignature(
+            Content signature,
+            Content document,
+            String signatureFilename,
+            String documentFilename) throws IOException {
+        Multipart multipart = new Multipart();
+        multipart.field("report_type", "json");
+        multipart.file("signature_files[]", signatureFilename, "application/octet-stream", signature);
+        multipart.file("detached_files[]", documentFilename, "application/pdf", document);
+        multipart.field("verify_incremental_updates", "true");
+        return post(multipart);
     }
 
     /**
@@ -155,94 +182,203 @@ public class ItiVerificador {
     public ItiVerificationResult verifyEmbeddedSignature(
             byte[] signedDocumentBytes,
             String filename) throws IOException {
+        return verifyEmbeddedSignature(Content.of(signedDocumentBytes), filename);
+    }
+
+    /**
+     * Verify an embedded signature (signed PDF).
+     *
+     * @param signedDocument The signed document
+     * @param filename Filename for the document (e.g., "document_signed.pdf")
+     * @return ItiVerificationResult containing the validation response
+     * @throws IOException if the request fails
+     */
+    public ItiVerificationResult verifyEmbeddedSignature(
+            Content signedDocument,
+            String filename) throws IOException {
+        Multipart multipart = new Multipart();
+        multipart.field("report_type", "json");
+        multipart.file("signature_files[]", filename, "application/pdf", signedDocument);
+        multipart.field("verify_incremental_updates", "true");
+        return post(multipart);
+    }
+
+    private ItiVerificationResult post(Multipart multipart) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + multipart.boundary);
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setFixedLengthStreamingMode(multipart.length());
+
+        // Large writes bypass the buffer; it only batches the part headers
+        try (OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
+            multipart.writeTo(out);
+        }
+
+        int responseCode = connection.getResponseCode();
+        InputStream inputStream = (responseCode >= 200 && responseCode < 300)
+            ? connection.getInputStream()
+            : connection.getErrorStream();
 
-        String boundary = "----Boundary" + UUID.randomUUID().toString().replace("-", "");
-
-        URL url = new URL(baseUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        try {
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(timeoutMs);
-            connection.setReadTimeout(timeoutMs);
-            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-            connection.setRequestProperty("Accept", "application/json");
-
-            try (OutputStream os = connection.getOutputStream();
-                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), true)) {
-
-                // report_type field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"report_type\"\r\n\r\n");
-                writer.append("json").append("\r\n");
-
-                // signature_files[] field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"signature_files[]\"; filename=\"")
-                      .append(filename).append("\"\r\n");
-                writer.append("Content-Type: application/pdf\r\n\r\n");
-                writer.flush();
-                os.write(signedDocumentBytes);
-                os.flush();
-                writer.append("\r\n");
-
-                // verify_incremental_updates field
-                writer.append("--").append(boundary).append("\r\n");
-                writer.append("Content-Disposition: form-data; name=\"verify_incremental_updates\"\r\n\r\n");
-                writer.append("true").append("\r\n");
-
-                // End boundary
-                writer.append("--").append(boundary).append("--\r\n");
-                writer.flush();
+        byte[] body = new byte[0];
+        if (inputStream != null) {
+            try (InputStream in = inputStream) {
+                body = readAll(in, connection.getContentLengthLong());
             }
+        }
+        return ItiVerificationResult.parse(responseCode, body);
+    }
 
-            int responseCode = connection.getResponseCode();
-            String responseBody;
+    private static byte[] readAll(InputStream in, long contentLength) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+            contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 8192);
+        byte[] data = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+            buffer.write(data, 0, bytesRead);
+        }
+        return buffer.toByteArray();
+    }
 
-            InputStream inputStream = (responseCode >= 200 && responseCode < 300)
-                ? connection.getInputStream()
-                : connection.getErrorStream();
+    /**
+     * multipart/form-data body whose length is known before it is written.
+     */
+    private static final class Multipart {
+        private final String boundary = "----Boundary" + UUID.randomUUID().toString().replace("-", "");
+        private final List<byte[]> headers = new ArrayList<>();
+        private final List<Content> contents = new ArrayList<>();
+
+        void field(String name, String value) {
+            part("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n",
+                Content.of(value.getBytes(StandardCharsets.UTF_8)));
+        }
 
-            if (inputStream != null) {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    responseBody = sb.toString();
-                }
-            } else {
-                responseBody = "";
+        void file(String name, String filename, String contentType, Content content) {
+            part("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + quote(filename) + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n", content);
+        }
+
+        private void part(String header, Content content) {
+            headers.add(("--" + boundary + "\r\n" + header).getBytes(StandardCharsets.UTF_8));
+            contents.add(content);
+        }
+
+        private byte[] closing() {
+            return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        long length() {
+            long length = closing().length;
+            for (int i = 0; i < headers.size(); i++) {
+                length += headers.get(i).length + contents.get(i).length() + CRLF.length;
             }
+            return length;
+        }
 
-            return new ItiVerificationResult(responseCode, responseBody);
+        void writeTo(OutputStream out) throws IOException {
+            for (int i = 0; i < headers.size(); i++) {
+                out.write(headers.get(i));
+                contents.get(i).writeTo(out);
+                out.write(CRLF);
+            }
+            out.write(closing());
+        }
 
-        } finally {
-            connection.disconnect();
+        private static String quote(String filename) {
+            return filename.replace("\"", "%22").replace("\r", "").replace("\n", "");
         }
     }
 
     /**
      * Result from ITI Verificador API.
+     *
+     * The report is scanned once with a streaming parser for validity verdicts:
+     * boolean fields named aprovado, valido or valid, and string values such as
+     * "Aprovado" or "Reprovado". The signature counts as valid when at least one
+     * verdict was found and none is negative.
      */
     public static class ItiVerificationResult {
+        private static final Set<String> VERDICT_FIELDS = new HashSet<>(Arrays.asList(
+            "aprovado", "valido", "válido", "valid"));
+        private static final Set<String> NEGATIVE_VERDICTS = new HashSet<>(Arrays.asList(
+            "reprovado", "invalido", "inválido", "invalid"));
+
         private final int httpStatus;
-        private final String jsonResponse;
+        private final byte[] body;
+        private final int verdicts;
+        private final int negativeVerdicts;
+        private final boolean parsed;
+        private volatile String jsonResponse;
 
         public ItiVerificationResult(int httpStatus, String jsonResponse) {
-            this.httpStatus = httpStatus;
+            this(httpStatus, jsonResponse != null ? jsonResponse.getBytes(StandardCharsets.UTF_8) : new byte[0]);
             this.jsonResponse = jsonResponse;
         }
 
+        private ItiVerificationResult(int httpStatus, byte[] body) {
+            this.httpStatus = httpStatus;
+            this.body = body;
+
+            int found = 0;
+            int negative = 0;
+            boolean complete = false;
+            try (JsonParser parser = JSON.createParser(body)) {
+                String field = null;
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (token == JsonToken.FIELD_NAME) {
+                        field = parser.getCurrentName().toLowerCase();
+                        continue;
+                    }
+                    if ((token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE)
+                            && field != null && VERDICT_FIELDS.contains(field)) {
+                        found++;
+                        negative += token == JsonToken.VALUE_FALSE ? 1 : 0;
+                    } else if (token == JsonToken.VALUE_STRING) {
+                        String value = parser.getText().trim().toLowerCase();
+                        if (VERDICT_FIELDS.contains(value)) {
+                            found++;
+                        } else if (NEGATIVE_VERDICTS.contains(value)) {
+                            found++;
+                            negative++;
+                        }
+                    }
+                    field = null;
+                }
+                complete = true;
+            } catch (IOException e) {
+                // Not JSON (e.g. an HTML error page): no verdicts
+            }
+            this.verdicts = found;
+            this.negativeVerdicts = negative;
+            this.parsed = complete;
+        }
+
+        static ItiVerificationResult parse(int httpStatus, byte[] body) {
+            return new ItiVerificationResult(httpStatus, body);
+        }
+
+        /**
+         * Raw response bytes, for ItiResultCache's disk tier. Not copied; do not modify.
+         */
+        byte[] getBody() {
+            return body;
+        }
+
         public int getHttpStatus() {
             return httpStatus;
         }
 
         public String getJsonResponse() {
-            return jsonResponse;
+            String response = jsonResponse;
+            if (response == null) {
+                response = new String(body, StandardCharsets.UTF_8);
+                jsonResponse = response;
+            }
+            return response;
         }
 
         public boolean isSuccess() {
@@ -250,29 +386,40 @@ public class ItiVerificador {
         }
 
         /**
-         * Check if the signature is valid based on the response.
-         * This is a simple check - for production use, parse the full JSON response.
+         * Whether the response body was well-formed JSON.
+         */
+        public boolean isJson() {
+            return parsed;
+        }
+
+        /**
+         * Number of validity verdicts found in the report.
+         */
+        public int getVerdictCount() {
+            return verdicts;
+        }
+
+        /**
+         * Number of negative verdicts (false, "Reprovado", ...) in the report.
+         */
+        public int getNegativeVerdictCount() {
+            return negativeVerdicts;
+        }
+
+        /**
+         * Check if the signature is valid: a successful JSON report with at
+         * least one verdict and no negative one.
          */
         public boolean isSignatureValid() {
-            if (!isSuccess()) {
-                return false;
-            }
-            // The ITI response contains validation status in the JSON
-            // A valid signature will have "valido": true or similar indicators
-            // This is a simplified check - enhance based on actual API response structure
-            return jsonResponse != null &&
-                   (jsonResponse.contains("\"aprovado\"") ||
-                    jsonResponse.contains("\"valido\"") ||
-                    jsonResponse.contains("\"valid\""));
+            return isSuccess() && parsed && verdicts > 0 && negativeVerdicts == 0;
         }
 
         @Override
         public String toString() {
+            String response = getJsonResponse();
             return String.format("ItiVerificationResult{httpStatus=%d, success=%s, response=%s}",
                 httpStatus, isSuccess(),
-                jsonResponse != null && jsonResponse.length() > 200
-                    ? jsonResponse.substring(0, 200) + "..."
-                    : jsonResponse);
+                response.length() > 200 ? response.substring(0, 200) + "..." : response);
         }
     }
 
@@ -281,6 +428,14 @@ public class ItiVerificador {
         return baseUrl;
     }
 
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public int getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
     public static String getProductionUrl() {
         return PRODUCTION_URL;
     }
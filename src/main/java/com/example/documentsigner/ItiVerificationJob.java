@@ -0,0 +1,193 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * A pending or finished ITI Verificador verification run by the
+ * {@link ItiVerificationQueue}.
+ *
+ * A COMPLETED job carries either the ITI report or, when the job was degraded
+ * (circuit open or retries exhausted), the verdict of the local verification.
+ */
+public class ItiVerificationJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Where the verdict of a COMPLETED job came from.
+     */
+    public enum Source {
+        ITI,
+        LOCAL
+    }
+
+    private final String id;
+    private final String environment;
+    private final String filename;
+    private final URI callbackUrl;
+    private final Instant submittedAt;
+    private volatile Status status = Status.PENDING;
+    private volatile int attempts;
+    private volatile Instant completedAt;
+    private volatile String error;
+    private volatile Source source;
+    private volatile ItiVerificationResult itiResult;
+    private volatile boolean localValid;
+    private volatile String callbackStatus;
+    private volatile ItiVerificationQueue.Check check;
+    private volatile ItiVerificationQueue.LocalCheck localCheck;
+
+    ItiVerificationJob(String id, String environment, String filename, URI callbackUrl,
+                       ItiVerificationQueue.Check check, ItiVerificationQueue.LocalCheck localCheck) {
+        this.id = id;
+        this.environment = environment;
+        this.filename = filename;
+        this.callbackUrl = callbackUrl;
+        this.check = check;
+        this.localCheck = localCheck;
+        this.submittedAt = Instant.now();
+        this.callbackStatus = callbackUrl != null ? "PENDING" : null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * URL notified when the job finishes, or null.
+     */
+    public URI getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    /**
+     * PENDING, DELIVERED or FAILED for jobs with a callback URL; null otherwise.
+     */
+    public String getCallbackStatus() {
+        return callbackStatus;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Calls made to the ITI Verificador so far.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * Last ITI failure (kept on degraded jobs as the reason), or why the job FAILED.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * ITI or LOCAL once COMPLETED; null before.
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isDegraded() {
+        return source == Source.LOCAL;
+    }
+
+    /**
+     * The ITI report, for jobs completed by the ITI.
+     */
+    public ItiVerificationResult getItiResult() {
+        return itiResult;
+    }
+
+    /**
+     * The verdict: the ITI's for ITI jobs, the local verification's for degraded ones.
+     */
+    public boolean isSignatureValid() {
+        ItiVerificationResult result = itiResult;
+        return result != null ? result.isSignatureValid() : localValid;
+    }
+
+    public boolean isFinished() {
+        Status current = status;
+        return current == Status.COMPLETED || current == Status.FAILED;
+    }
+
+    ItiVerificationQueue.Check getCheck() {
+        return check;
+    }
+
+    ItiVerificationQueue.LocalCheck getLocalCheck() {
+        return localCheck;
+    }
+
+    void markRunning() {
+        this.status = Status.RUNNING;
+    }
+
+    void markAttempt() {
+        this.attempts++;
+    }
+
+    void markPending(String error) {
+        this.error = error;
+        this.status = Status.PENDING;
+    }
+
+    void markCompleted(ItiVerificationResult itiResult) {
+        this.itiResult = itiResult;
+        this.source = Source.ITI;
+        this.error = null;
+        finish(Status.COMPLETED);
+    }
+
+    void markDegraded(boolean localValid, String reason) {
+        this.localValid = localValid;
+        this.source = Source.LOCAL;
+        this.error = reason;
+        finish(Status.COMPLETED);
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    void markCallback(String callbackStatus) {
+        this.callbackStatus = callbackStatus;
+    }
+
+    private void finish(Status status) {
+        this.check = null;
+        this.localCheck = null;
+        this.completedAt = Instant.now();
+        this.status = status;
+    }
+}
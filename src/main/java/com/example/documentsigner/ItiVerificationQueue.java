@@ -0,0 +1,544 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import com.example.documentsigner.ItiVerificationJob.Status;
+import com.example.documentsigner.exception.ItiException;
+import com.example.documentsigner.net.GuardedHttpClient;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background ITI Verificador verifications, so the ITI round trip never holds
+ * a request thread.
+ *
+ * - concurrency worker threads take jobs from the queue, so at most that many
+ *   ITI calls are in flight; calls are further spaced to requestsPerSecond.
+ * - A call that fails to connect, times out or is answered with 429 or 5xx is
+ *   retried up to maxAttempts times, after an exponential backoff with jitter
+ *   so retries from many jobs do not arrive together.
+ * - A circuit breaker opens after breakerFailureThreshold consecutive such
+ *   failures. While it is open, jobs are not sent to the ITI but degraded to the
+ *   local verification; after breakerOpenMillis one trial call is let through
+ *   and its outcome closes or reopens the circuit. Jobs that exhaust their
+ *   retries are degraded too.
+ * - Finished jobs are POSTed as JSON to their callback URL, if any, and kept for
+ *   the retention period so their status and result can be fetched. Callback
+ *   URLs must match one of the allowed origins (scheme, host and port) when
+ *   any are set; otherwise their host must resolve only to public addresses,
+ *   checked on submission and again before every delivery, and the delivery
+ *   connects to the address that was checked.
+ * - The pending limit counts every unfinished job: queued, being verified or
+ *   waiting for a retry.
+ *
+ * The ITI call itself is supplied per job, so it goes through the caller's
+ * cache and ITI client.
+ */
+public class ItiVerificationQueue implements Closeable {
+
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+    private static final int CALLBACK_ATTEMPTS = 3;
+    private static final int CALLBACK_TIMEOUT_MS = 10000;
+    private static final long CALLBACK_MAX_RESPONSE_BYTES = 1 << 20;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Calls the ITI Verificador for a job.
+     */
+    public interface Check {
+        ItiVerificationResult verify() throws IOException;
+    }
+
+    /**
+     * Verifies a job locally when the ITI cannot be used.
+     *
+     * @return true if the signature is valid
+     */
+    public interface LocalCheck {
+        boolean verify();
+    }
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final int maxPending;
+    private final long retentionMillis;
+    private final RateLimiter rateLimiter;
+    private final CircuitBreaker breaker;
+    private volatile List<URI> callbackOrigins = new ArrayList<>();
+    private final GuardedHttpClient publicHttp =
+        new GuardedHttpClient(CALLBACK_TIMEOUT_MS, CALLBACK_MAX_RESPONSE_BYTES, true);
+    private final GuardedHttpClient originHttp =
+        new GuardedHttpClient(CALLBACK_TIMEOUT_MS, CALLBACK_MAX_RESPONSE_BYTES, false);
+
+    private final BlockingQueue<ItiVerificationJob> queue = new LinkedBlockingQueue<>();
+    private final Map<String, ItiVerificationJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final ExecutorService workers;
+    private final ExecutorService callbacks;
+    private final ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+
+    /**
+     * @param concurrency Maximum ITI calls in flight
+     * @param requestsPerSecond Maximum ITI calls started per second; 0 for no limit
+     * @param maxAttempts ITI calls per job before it is degraded
+     * @param retryDelayMillis Backoff before the first retry, doubled for each further one
+     * @param breakerFailureThreshold Consecutive failures that open the circuit
+     * @param breakerOpenMillis How long the circuit stays open before a trial call
+     * @param maxPending Maximum unfinished jobs; further submissions are rejected
+     * @param retentionMillis How long finished jobs stay queryable
+     */
+    public ItiVerificationQueue(int concurrency, double requestsPerSecond, int maxAttempts, long retryDelayMillis,
+                                int breakerFailureThreshold, long breakerOpenMillis, int maxPending,
+                                long retentionMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxPending = maxPending;
+        this.retentionMillis = retentionMillis;
+        this.rateLimiter = new RateLimiter(requestsPerSecond);
+        this.breaker = new CircuitBreaker(Math.max(1, breakerFailureThreshold), breakerOpenMillis);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, concurrency), daemonThreads("iti-verify"));
+        this.callbacks = Executors.newFixedThreadPool(2, daemonThreads("iti-verify-callback"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("iti-verify-retry"));
+        for (int i = 0; i < Math.max(1, concurrency); i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Restrict callback URLs to the origins given (e.g. "https://erp.example.com"
+     * or "http://10.0.0.5:8080"): scheme, host and port must all be equal.
+     * A listed origin is trusted whatever it resolves to. Empty allows any
+     * http(s) URL whose host resolves only to public addresses.
+     *
+     * @throws IllegalArgumentException if an origin is not an http(s) URL
+     */
+    public void setCallbackOrigins(List<String> callbackOrigins) {
+        List<URI> origins = new ArrayList<>();
+        for (String origin : callbackOrigins) {
+            URI uri = URI.create(origin.trim());
+            if (!isHttp(uri)) {
+                throw new IllegalArgumentException("Callback origin must be an http or https URL: " + origin);
+            }
+            origins.add(uri);
+        }
+        this.callbackOrigins = origins;
+    }
+
+    /**
+     * Queue a verification.
+     *
+     * @param environment ITI environment, reported with the job
+     * @param filename Filename to report with the job (may be null)
+     * @param check The ITI call
+     * @param localCheck Local verification used when the job is degraded, or null to fail instead
+     * @param callbackUrl http(s) URL to notify when the job finishes, or null/blank for none
+     * @return The queued job
+     * @throws IllegalArgumentException if the callback URL is not an allowed http(s) URL
+     * @throws ItiException if too many verifications are pending
+     */
+    public ItiVerificationJob submit(String environment, String filename, Check check, LocalCheck localCheck,
+                                     String callbackUrl) {
+        URI callback = parseCallbackUrl(callbackUrl);
+        evictExpired();
+        int count;
+        do {
+            count = unfinished.get();
+            if (count >= maxPending) {
+                throw new ItiException("Too many pending ITI verifications");
+            }
+        } while (!unfinished.compareAndSet(count, count + 1));
+
+        ItiVerificationJob job = new ItiVerificationJob(UUID.randomUUID().toString(), environment, filename,
+            callback, check, localCheck);
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        return job;
+    }
+
+    /**
+     * @return The job, or null if unknown or expired
+     */
+    public ItiVerificationJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Number of known jobs per status.
+     */
+    public Map<Status, Integer> getStatusCounts() {
+        Map<Status, Integer> counts = new LinkedHashMap<>();
+        for (Status status : Status.values()) {
+            counts.put(status, 0);
+        }
+        for (ItiVerificationJob job : jobs.values()) {
+            Status status = job.getStatus();
+            counts.put(status, counts.get(status) + 1);
+        }
+        return counts;
+    }
+
+    public CircuitState getCircuitState() {
+        return breaker.getState();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+        callbacks.shutdownNow();
+        retryScheduler.shutdownNow();
+    }
+
+    private URI parseCallbackUrl(String callbackUrl) {
+        if (callbackUrl == null || callbackUrl.trim().isEmpty()) {
+            return null;
+        }
+        URI uri = URI.create(callbackUrl.trim());
+        if (!isHttp(uri)) {
+            throw new IllegalArgumentException("Callback URL must be an absolute http or https URL");
+        }
+        if (uri.getUserInfo() != null) {
+            throw new IllegalArgumentException("Callback URL must not carry credentials");
+        }
+        String refused = refuseCallback(uri);
+        if (refused != null) {
+            throw new IllegalArgumentException(refused);
+        }
+        return uri;
+    }
+
+    /**
+     * Why a callback URL may not be called, or null if it may: not one of the
+     * allowed origins, or, without any, a host that does not resolve to public
+     * addresses only.
+     */
+    private String refuseCallback(URI uri) {
+        List<URI> origins = callbackOrigins;
+        if (!origins.isEmpty()) {
+            for (URI origin : origins) {
+                if (origin.getScheme().equalsIgnoreCase(uri.getScheme())
+                        && origin.getHost().equalsIgnoreCase(uri.getHost())
+                        && port(origin) == port(uri)) {
+                    return null;
+                }
+            }
+            return "Callback URL is not allowed: " + uri;
+        }
+
+        return publicHttp.refuse(uri);
+    }
+
+    private static boolean isHttp(URI uri) {
+        String scheme = uri.getScheme();
+        return scheme != null && (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))
+            && uri.getHost() != null;
+    }
+
+    private static int port(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return uri.getScheme().equalsIgnoreCase("https") ? 443 : 80;
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                run(queue.take());
+                evictExpired();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run(ItiVerificationJob job) throws InterruptedException {
+        job.markRunning();
+        if (!breaker.allowRequest()) {
+            String last = job.getError();
+            degrade(job, "ITI circuit open" + (last != null ? "; last failure: " + last : ""));
+            return;
+        }
+
+        rateLimiter.acquire();
+        job.markAttempt();
+        String failure;
+        try {
+            ItiVerificationResult result = job.getCheck().verify();
+            if (!isTransient(result.getHttpStatus())) {
+                breaker.recordSuccess();
+                job.markCompleted(result);
+                finish(job);
+                return;
+            }
+            failure = "ITI answered HTTP " + result.getHttpStatus();
+        } catch (IOException e) {
+            failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } catch (RuntimeException e) {
+            // Not an ITI failure, so it neither counts against the circuit nor is retried
+            breaker.release();
+            job.markFailed(e.getMessage());
+            finish(job);
+            return;
+        }
+
+        breaker.recordFailure();
+        if (job.getAttempts() < maxAttempts && running) {
+            job.markPending(failure);
+            retryScheduler.schedule(() -> queue.add(job), retryDelay(job.getAttempts()), TimeUnit.MILLISECONDS);
+        } else {
+            degrade(job, "ITI unavailable after " + job.getAttempts() + " attempt(s): " + failure);
+        }
+    }
+
+    private static boolean isTransient(int httpStatus) {
+        return httpStatus == 429 || httpStatus >= 500;
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half the delay is fixed, half random.
+     */
+    private long retryDelay(int attempts) {
+        long delay = Math.min(MAX_RETRY_DELAY_MS, retryDelayMillis << Math.min(attempts - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void degrade(ItiVerificationJob job, String reason) {
+        LocalCheck localCheck = job.getLocalCheck();
+        if (localCheck == null) {
+            job.markFailed(reason);
+        } else {
+            try {
+                job.markDegraded(localCheck.verify(), reason);
+            } catch (RuntimeException e) {
+                job.markFailed(reason + "; local verification failed: " + e.getMessage());
+            }
+        }
+        finish(job);
+    }
+
+    // ==================== Callbacks ====================
+
+    /**
+     * Releases the job's place under the pending limit and notifies its callback.
+     */
+    private void finish(ItiVerificationJob job) {
+        unfinished.decrementAndGet();
+        notifyCallback(job);
+    }
+
+    private void notifyCallback(ItiVerificationJob job) {
+        if (job.getCallbackUrl() != null && running) {
+            callbacks.execute(() -> deliver(job, 1));
+        }
+    }
+
+    private void deliver(ItiVerificationJob job, int attempt) {
+        // The host may resolve differently now than when the job was submitted
+        String refused = refuseCallback(job.getCallbackUrl());
+        if (refused != null) {
+            job.markCallback("FAILED: " + refused);
+            return;
+        }
+        String failure;
+        try {
+            int status = post(job.getCallbackUrl(), toJson(job));
+            if (status >= 200 && status < 300) {
+                job.markCallback("DELIVERED");
+                return;
+            }
+            failure = "HTTP " + status;
+        } catch (IOException e) {
+            failure = e.getMessage();
+        }
+        if (attempt < CALLBACK_ATTEMPTS && running) {
+            retryScheduler.schedule(() -> callbacks.execute(() -> deliver(job, attempt + 1)),
+                retryDelay(attempt), TimeUnit.MILLISECONDS);
+        } else {
+            job.markCallback("FAILED: " + failure);
+        }
+    }
+
+    /**
+     * POSTs the body to the callback URL. The client connects to the address it
+     * checked, so a host that resolved to a public address when the job was
+     * submitted cannot be rebound to an internal one for the delivery. Listed
+     * origins are trusted whatever they resolve to.
+     */
+    private int post(URI url, byte[] body) throws IOException {
+        GuardedHttpClient http = callbackOrigins.isEmpty() ? publicHttp : originHttp;
+        return http.post(url, "application/json", body).getStatus();
+    }
+
+    /**
+     * The callback body: the job's status and verdict, with the raw ITI report
+     * when there is one.
+     */
+    static byte[] toJson(ItiVerificationJob job) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("id", job.getId());
+            json.writeStringField("status", job.getStatus().name());
+            json.writeStringField("environment", job.getEnvironment());
+            json.writeStringField("filename", job.getFilename());
+            json.writeNumberField("attempts", job.getAttempts());
+            if (job.getSource() != null) {
+                json.writeStringField("source", job.getSource().name());
+                json.writeBooleanField("degraded", job.isDegraded());
+                json.writeBooleanField("signatureValid", job.isSignatureValid());
+            }
+            ItiVerificationResult result = job.getItiResult();
+            if (result != null) {
+                json.writeNumberField("httpStatus", result.getHttpStatus());
+                json.writeStringField("itiResponse", result.getJsonResponse());
+            }
+            json.writeStringField("error", job.getError());
+            json.writeStringField("submittedAt", job.getSubmittedAt().toString());
+            json.writeStringField("completedAt", job.getCompletedAt() != null ? job.getCompletedAt().toString() : null);
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minusMillis(retentionMillis);
+        Iterator<ItiVerificationJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            ItiVerificationJob job = iterator.next();
+            if (job.isFinished() && job.getCompletedAt().isBefore(cutoff)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Spaces call starts at least 1/requestsPerSecond apart, with no bursts.
+     */
+    private static final class RateLimiter {
+        private final long intervalNanos;
+        private long nextStart;
+
+        private RateLimiter(double requestsPerSecond) {
+            this.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+            this.nextStart = System.nanoTime();
+        }
+
+        void acquire() throws InterruptedException {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(nextStart, now);
+                nextStart = start + intervalNanos;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    /**
+     * Consecutive-failure circuit breaker with a single trial call when half open.
+     */
+    private static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMillis;
+        private CircuitState state = CircuitState.CLOSED;
+        private int failures;
+        private long openUntil;
+        private boolean trialInFlight;
+
+        private CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+        }
+
+        synchronized boolean allowRequest() {
+            if (state == CircuitState.OPEN && System.currentTimeMillis() >= openUntil) {
+                state = CircuitState.HALF_OPEN;
+            }
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    if (trialInFlight) {
+                        return false;
+                    }
+                    trialInFlight = true;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized void recordSuccess() {
+            state = CircuitState.CLOSED;
+            failures = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void recordFailure() {
+            failures++;
+            if (state == CircuitState.HALF_OPEN || failures >= failureThreshold) {
+                state = CircuitState.OPEN;
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+            trialInFlight = false;
+        }
+
+        /**
+         * The call ended without telling anything about the ITI's health.
+         */
+        synchronized void release() {
+            trialInFlight = false;
+        }
+
+        synchronized CircuitState getState() {
+            if (state == CircuitState.OPEN && System.currentTimeMillis() >= openUntil) {
+                return CircuitState.HALF_OPEN;
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.example.documentsigner;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable stand-in for the ITI Verificador, for tests and benchmarks.
+ *
+ * Serves the /report multipart contract ItiVerificador uses (report_type,
+ * signature_files[], optional detached_files[], verify_incremental_updates)
+ * over HTTP on the loopback interface, and answers with a JSON report in the
+ * ITI's shape: one entry per submitted file with its hash and one verdict per
+ * signature, named after the signer certificate's CN. Signatures are not
+ * cryptographically checked; every well-formed submission is "Aprovado"
+ * unless picked for rejection. Point ItiVerificador at getUrl().
+ *
+ * Faults are injected per request, in this order:
+ * - throttling: beyond maxRequestsPerSecond in the current second, 429 with
+ *   Retry-After, answered at once;
+ * - latency: a log-normal delay with the configured median and 99th percentile,
+ *   the long-tailed shape of a remote service;
+ * - errors: with probability errorRate, a 500, 502, 503 or 504 with an HTML
+ *   page, as a failing gateway would send;
+ * - rejections: with probability rejectionRate, a 200 report with "Reprovado".
+ */
+public class LocalItiVerificador implements Closeable {
+
+    /** Standard normal quantile of the 99th percentile */
+    private static final double Z_99 = 2.326;
+    private static final int[] ERROR_STATUSES = {500, 502, 503, 504};
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong approved = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong badRequests = new AtomicLong();
+    private volatile long latencyMedianMillis;
+    private volatile double latencySigma;
+    private volatile double errorRate;
+    private volatile double rejectionRate;
+    private volatile int maxRequestsPerSecond;
+    private long windowSecond;
+    private int windowRequests;
+
+    /**
+     * Starts the stand-in on the given loopback port (0 picks a free port).
+     */
+    public LocalItiVerificador(int port) throws IOException {
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-iti");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/report", new ReportHandler());
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * URL to configure as the ITI Verificador report endpoint.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/report";
+    }
+
+    /**
+     * Response latency as a log-normal distribution.
+     *
+     * @param medianMillis Median delay; 0 for none
+     * @param p99Millis 99th percentile delay; equal to the median for a fixed delay
+     */
+    public void setLatencyMillis(long medianMillis, long p99Millis) {
+        this.latencySigma = medianMillis > 0 && p99Millis > medianMillis
+            ? Math.log((double) p99Millis / medianMillis) / Z_99 : 0;
+        this.latencyMedianMillis = Math.max(0, medianMillis);
+    }
+
+    /**
+     * Fraction of requests (0 to 1) answered with a 5xx error.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Fraction of well-formed submissions (0 to 1) reported as "Reprovado".
+     */
+    public void setRejectionRate(double rejectionRate) {
+        this.rejectionRate = rejectionRate;
+    }
+
+    /**
+     * Requests accepted per second before answering 429; 0 for no limit.
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Requests received, and how they were answered.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("approved", approved.get());
+        stats.put("rejected", rejected.get());
+        stats.put("errors", errors.get());
+        stats.put("throttled", throttled.get());
+        stats.put("badRequests", badRequests.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private synchronized boolean throttle() {
+        int limit = maxRequestsPerSecond;
+        if (limit <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (second != windowSecond) {
+            windowSecond = second;
+            windowRequests = 0;
+        }
+        return ++windowRequests > limit;
+    }
+
+    private long latency() {
+        long median = latencyMedianMillis;
+        if (median <= 0) {
+            return 0;
+        }
+        return (long) (median * Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    // ==================== Report ====================
+
+    private byte[] report(List<Part> parts, boolean reject) throws IOException {
+        List<Part> signatures = new ArrayList<>();
+        List<Part> detached = new ArrayList<>();
+        for (Part part : parts) {
+            if ("signature_files[]".equals(part.name)) {
+                signatures.add(part);
+            } else if ("detached_files[]".equals(part.name)) {
+                detached.add(part);
+            }
+        }
+
+        String status = reject ? "Reprovado" : "Aprovado";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("verificador", "LocalItiVerificador");
+            json.writeStringField("dataValidacao", Instant.now().toString());
+            json.writeArrayFieldStart("arquivos");
+            for (Part signature : signatures) {
+                boolean embedded = signature.isPdf();
+                json.writeStartObject();
+                json.writeStringField("nome", signature.filename);
+                json.writeNumberField("tamanho", signature.content.length);
+                json.writeStringField("sha256", sha256Hex(signature.content));
+                json.writeStringField("tipo", embedded ? "PAdES" : "CAdES");
+                if (!embedded && !detached.isEmpty()) {
+                    json.writeArrayFieldStart("arquivosDestacados");
+                    for (Part document : detached) {
+                        json.writeStartObject();
+                        json.writeStringField("nome", document.filename);
+                        json.writeNumberField("tamanho", document.content.length);
+                        json.writeStringField("sha256", sha256Hex(document.content));
+                        json.writeEndObject();
+                    }
+                    json.writeEndArray();
+                }
+                json.writeArrayFieldStart("assinaturas");
+                for (String signer : embedded ? pdfSigners(signature.content) : cmsSigners(signature.content)) {
+                    json.writeStartObject();
+                    json.writeStringField("assinante", signer);
+                    json.writeStringField("status", status);
+                    json.writeObjectFieldStart("integridade");
+                    json.writeBooleanField("valido", !reject);
+                    json.writeEndObject();
+                    json.writeObjectFieldStart("cadeiaCertificados");
+                    json.writeBooleanField("valido", !reject);
+                    json.writeStringField("raiz", "AC Raiz ICP-Brasil (simulada)");
+                    json.writeEndObject();
+                    if (reject) {
+                        json.writeStringField("mensagem", "Assinatura reprovada (simulada)");
+                    }
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Signer names of a detached CMS signature; one unnamed signer if it cannot be read.
+     */
+    private static List<String> cmsSigners(byte[] signature) {
+        List<String> names = new ArrayList<>();
+        try {
+            CMSSignedData signedData = new CMSSignedData(signature);
+            for (SignerInformation signer : signedData.getSignerInfos().getSigners()) {
+                @SuppressWarnings("unchecked")
+                Collection<X509CertificateHolder> matches = signedData.getCertificates().getMatches(signer.getSID());
+                names.add(matches.isEmpty() ? "Desconhecido" : commonName(matches.iterator().next().getSubject()));
+            }
+        } catch (CMSException | RuntimeException e) {
+            // Reported as a single signer
+        }
+        if (names.isEmpty()) {
+            names.add("Desconhecido");
+        }
+        return names;
+    }
+
+    /**
+     * Signer names of the signature fields of a PDF; one unnamed signer if it cannot be read.
+     */
+    private static List<String> pdfSigners(byte[] pdf) {
+        List<String> names = new ArrayList<>();
+        try (PDDocument document = PDDocument.load(pdf)) {
+            for (PDSignature signature : document.getSignatureDictionaries()) {
+                names.add(signature.getName() != null ? signature.getName() : "Desconhecido");
+            }
+        } catch (IOException | RuntimeException e) {
+            // Reported as a single signer
+        }
+        if (names.isEmpty()) {
+            names.add("Desconhecido");
+        }
+        return names;
+    }
+
+    private static String commonName(X500Name subject) {
+        RDN[] cn = subject.getRDNs(BCStyle.CN);
+        return cn.length > 0 ? IETFUtils.valueToString(cn[0].getFirst().getValue()) : subject.toString();
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ==================== Multipart ====================
+
+    /**
+     * The parts of a multipart/form-data body, or null if it is malformed.
+     */
+    static List<Part> parseMultipart(String contentType, byte[] body) {
+        String boundary = null;
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase().startsWith("boundary=")) {
+                boundary = trimmed.substring("boundary=".length()).replace("\"", "");
+            }
+        }
+        if (boundary == null || boundary.isEmpty()) {
+            return null;
+        }
+
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        byte[] separator = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        List<Part> parts = new ArrayList<>();
+        int position = indexOf(body, delimiter, 0);
+        if (position < 0) {
+            return null;
+        }
+        position += delimiter.length;
+        while (true) {
+            if (position + 2 <= body.length && body[position] == '-' && body[position + 1] == '-') {
+                return parts;
+            }
+            if (position + 2 > body.length || body[position] != '\r' || body[position + 1] != '\n') {
+                return null;
+            }
+            int headersEnd = indexOf(body, new byte[] {'\r', '\n', '\r', '\n'}, position + 2);
+            if (headersEnd < 0) {
+                return null;
+            }
+            String headers = new String(body, position + 2, headersEnd - position - 2, StandardCharsets.UTF_8);
+            int contentStart = headersEnd + 4;
+            int contentEnd = indexOf(body, separator, contentStart);
+            if (contentEnd < 0) {
+                return null;
+            }
+            byte[] content = new byte[contentEnd - contentStart];
+            System.arraycopy(body, contentStart, content, 0, content.length);
+            parts.add(new Part(dispositionParameter(headers, "name"), dispositionParameter(headers, "filename"),
+                content));
+            position = contentEnd + separator.length;
+        }
+    }
+
+    private static String dispositionParameter(String headers, String parameter) {
+        for (String line : headers.split("\r\n")) {
+            if (!line.toLowerCase().startsWith("content-disposition:")) {
+                continue;
+            }
+            for (String item : line.split(";")) {
+                String trimmed = item.trim();
+                if (trimmed.startsWith(parameter + "=")) {
+                    return trimmed.substring(parameter.length() + 1).replace("\"", "");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    static final class Part {
+        private final String name;
+        private final String filename;
+        private final byte[] content;
+
+        Part(String name, String filename, byte[] content) {
+            this.name = name;
+            this.filename = filename;
+            this.content = content;
+        }
+
+        boolean isPdf() {
+            return content.length >= 5 && content[0] == '%' && content[1] == 'P' && content[2] == 'D'
+                && content[3] == 'F' && content[4] == '-';
+        }
+    }
+
+    private class ReportHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                // Read the whole request first so the connection can be kept alive whatever the answer
+                byte[] body = readAll(exchange.getRequestBody());
+                requests.incrementAndGet();
+
+                if (throttle()) {
+                    throttled.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 429, "application/json",
+                        "{\"erro\":\"Limite de requisições excedido\"}".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+
+                long delay = latency();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (random.nextDouble() < errorRate) {
+                    errors.incrementAndGet();
+                    int status = ERROR_STATUSES[random.nextInt(ERROR_STATUSES.length)];
+                    send(exchange, status, "text/html",
+                        ("<html><body><h1>" + status + "</h1>Erro simulado</body></html>")
+                            .getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                List<Part> parts = contentType != null && contentType.toLowerCase().startsWith("multipart/form-data")
+                    ? parseMultipart(contentType, body) : null;
+                String problem = validate(parts);
+                if (problem != null) {
+                    badRequests.incrementAndGet();
+                    send(exchange, 400, "application/json",
+                        ("{\"erro\":\"" + problem + "\"}").getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+
+                boolean reject = random.nextDouble() < rejectionRate;
+                (reject ? rejected : approved).incrementAndGet();
+                send(exchange, 200, "application/json", report(parts, reject));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private String validate(List<Part> parts) {
+            if (parts == null) {
+                return "Requisição multipart inválida";
+            }
+            boolean json = false;
+            boolean signature = false;
+            for (Part part : parts) {
+                if ("report_type".equals(part.name)) {
+                    json = "json".equals(new String(part.content, StandardCharsets.UTF_8).trim());
+                } else if ("signature_files[]".equals(part.name) && part.content.length > 0) {
+                    signature = true;
+                }
+            }
+            if (!json) {
+                return "report_type deve ser json";
+            }
+            return signature ? null : "Nenhum arquivo em signature_files[]";
+        }
+
+        private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, bytesRead);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -5,19 +5,42 @@ import com.example.documentsigner.exception.InvalidCertificateException;
 import com.example.documentsigner.exception.InvalidDocumentException;
 import com.example.documentsigner.exception.InvalidPasswordException;
 import com.example.documentsigner.exception.SigningException;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.merkle.MerkleBatchSignature;
+import com.example.documentsigner.merkle.MerkleProof;
+import com.example.documentsigner.merkle.MerkleTree;
+import com.example.documentsigner.merkle.MerkleVerificationResult;
 import com.example.documentsigner.pades.PadesSignerService;
+import com.example.documentsigner.revocation.OcspClient;
+import com.example.documentsigner.revocation.RevocationIndex;
+import com.example.documentsigner.trust.CertificatePathValidator;
 import com.example.documentsigner.pades.dto.PdfVerificationResult;
 import com.example.documentsigner.pades.dto.SignatureMetadata;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.VerificationLevel;
 import com.example.documentsigner.pades.dto.VisualSignatureConfig;
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.policy.SignaturePolicyRegistry;
+import com.example.documentsigner.tsa.TsaClient;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.bouncycastle.cms.CMSSignedData;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class PdfSigner {
 
@@ -33,12 +56,63 @@ public class PdfSigner {
 
     private final DocumentSigner documentSigner;
     private final PadesSignerService padesSignerService;
+    private RevocationIndex revocationIndex = RevocationIndex.empty();
+    private OcspClient ocspClient = OcspClient.disabled();
 
     public PdfSigner() {
         this.documentSigner = new DocumentSigner();
         this.padesSignerService = new PadesSignerService();
     }
 
+    /**
+     * Set the TSA client used for signature timestamps, for both .p7s and PAdES signatures.
+     */
+    public void setTsaClient(TsaClient tsaClient) {
+        documentSigner.setTsaClient(tsaClient);
+        padesSignerService.setTsaClient(tsaClient);
+    }
+
+    /**
+     * Set the validator used to check signer certificate chains when verifying
+     * PAdES signatures.
+     */
+    public void setCertificatePathValidator(CertificatePathValidator certificatePathValidator) {
+        padesSignerService.setCertificatePathValidator(certificatePathValidator);
+    }
+
+    /**
+     * Set the CRL index used to reject revoked signer certificates before
+     * signing, and to report revocation when verifying PAdES signatures.
+     */
+    public void setRevocationIndex(RevocationIndex revocationIndex) {
+        this.revocationIndex = revocationIndex != null ? revocationIndex : RevocationIndex.empty();
+        padesSignerService.setRevocationIndex(revocationIndex);
+    }
+
+    /**
+     * Set the OCSP client asked for signer certificate status when no current
+     * CRL covers the certificate, before signing and when verifying PAdES signatures.
+     */
+    public void setOcspClient(OcspClient ocspClient) {
+        this.ocspClient = ocspClient != null ? ocspClient : OcspClient.disabled();
+        padesSignerService.setOcspClient(ocspClient);
+    }
+
+    /**
+     * Set the signature policies a PAdES signature's policy identifier is
+     * checked against on full verification.
+     */
+    public void setPolicyRegistry(SignaturePolicyRegistry policyRegistry) {
+        padesSignerService.setPolicyRegistry(policyRegistry);
+    }
+
+    /**
+     * Set the pool the signatures of a PDF are verified on in parallel.
+     */
+    public void setVerificationExecutor(ExecutorService verificationExecutor) {
+        padesSignerService.setVerificationExecutor(verificationExecutor);
+    }
+
     /**
      * Sign a PDF file and save the signature to a .p7s file.
      * (Original method for GUI compatibility)
@@ -71,6 +145,37 @@ public class PdfSigner {
      * @throws SigningException if signing fails
      */
     public byte[] signPdfBytes(byte[] pdfBytes, byte[] certBytes, String password) {
+        return signPdfBytes(pdfBytes, certBytes, password, null, false);
+    }
+
+    /**
+     * Sign PDF bytes under a signature policy (e.g. ICP-Brasil AD-RB), optionally
+     * with a signature timestamp (CAdES-T).
+     *
+     * @param pdfBytes The PDF document as byte array
+     * @param certBytes The PFX/PKCS12 certificate as byte array
+     * @param password The certificate password
+     * @param signaturePolicy The signature policy to reference, or null for none
+     * @param timestamp true to add a signature timestamp (implied by AD-RT policies)
+     * @return The P7S signature as byte array
+     * @throws SigningException if signing fails
+     */
+    public byte[] signPdfBytes(byte[] pdfBytes, byte[] certBytes, String password,
+                               SignaturePolicy signaturePolicy, boolean timestamp) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        signPdfBytes(pdfBytes, certBytes, password, signaturePolicy, timestamp, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Sign PDF bytes as signPdfBytes does, writing the P7S signature to output.
+     * Nothing is written if signing fails.
+     *
+     * @param output Receives the P7S signature; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfBytes(byte[] pdfBytes, byte[] certBytes, String password,
+                             SignaturePolicy signaturePolicy, boolean timestamp, OutputStream output) {
         // Validate inputs
         if (pdfBytes == null || pdfBytes.length == 0) {
             throw new InvalidDocumentException("PDF document is empty or null");
@@ -82,47 +187,138 @@ public class PdfSigner {
             throw new InvalidPasswordException("Password is required");
         }
 
+        signSaved(() -> PDDocument.load(pdfBytes), certBytes, password, signaturePolicy, timestamp, output);
+    }
+
+    /**
+     * Sign a PDF file as signPdfBytes does, writing the P7S signature to output.
+     *
+     * The document is re-saved to a temporary file and signed from there, and
+     * PDFBox keeps its parsing buffers in temporary files too, so a large
+     * upload is never read into the heap. Nothing is written if signing fails.
+     *
+     * @param pdfFile The PDF document
+     * @param output Receives the P7S signature; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfFile(Path pdfFile, byte[] certBytes, String password,
+                            SignaturePolicy signaturePolicy, boolean timestamp, OutputStream output) {
+        if (pdfFile == null || !Files.isRegularFile(pdfFile)) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+        if (certBytes == null || certBytes.length == 0) {
+            throw new InvalidCertificateException("Certificate is empty or null");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new InvalidPasswordException("Password is required");
+        }
+
+        signSaved(() -> PDDocument.load(pdfFile.toFile(), MemoryUsageSetting.setupTempFileOnly()), certBytes,
+            password, signaturePolicy, timestamp, output);
+    }
+
+    private interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
+
+    /**
+     * Re-saves the loaded PDF to a temporary file, which also checks that it
+     * parses, and signs the saved file into output. The normalized document
+     * is what the P7S signs (see verifySignature), and it never has to be
+     * held in memory as a whole.
+     */
+    private void signSaved(DocumentLoader loader, byte[] certBytes, String password,
+                           SignaturePolicy signaturePolicy, boolean timestamp, OutputStream output) {
+        Path saved = null;
         try {
             // Validate PDF format
-            PDDocument document = PDDocument.load(pdfBytes);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            document.save(baos);
-            document.close();
+            saved = Files.createTempFile("signed-content-", ".pdf");
+            try (PDDocument document = loader.load()) {
+                document.save(saved.toFile());
+            } catch (IOException e) {
+                throw new InvalidDocumentException("Invalid PDF format: " + e.getMessage(), e);
+            }
 
-            // Validate certificate format and password
-            KeyStore keystore = KeyStore.getInstance("PKCS12");
-            try {
-                keystore.load(new ByteArrayInputStream(certBytes), password.toCharArray());
-            } catch (java.io.IOException e) {
-                if (e.getCause() instanceof java.security.UnrecoverableKeyException) {
-                    throw new InvalidPasswordException("Incorrect certificate password", e);
+            // Validate certificate format, password and expiry
+            validateCredential(certBytes, password);
+
+            // Sign the document
+            documentSigner.signDocumentWithCertBytes(saved, certBytes, password, signaturePolicy, timestamp, output);
+
+        } catch (InvalidDocumentException | InvalidCertificateException | InvalidPasswordException
+                 | ExpiredCertificateException | TimestampException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to sign document: " + e.getMessage(), e);
+        } finally {
+            if (saved != null) {
+                try {
+                    Files.deleteIfExists(saved);
+                } catch (IOException ignored) {
+                    // Left to the temporary directory's cleanup
                 }
-                throw new InvalidCertificateException("Invalid certificate format", e);
             }
+        }
+    }
 
-            // Check certificate expiry
-            String alias = keystore.aliases().nextElement();
-            X509Certificate cert = (X509Certificate) keystore.getCertificate(alias);
-            Date now = new Date();
-            if (now.after(cert.getNotAfter())) {
-                throw new ExpiredCertificateException(
-                    "Certificate expired on " + cert.getNotAfter(),
-                    cert.getNotAfter()
-                );
-            }
-            if (now.before(cert.getNotBefore())) {
-                throw new InvalidCertificateException(
-                    "Certificate is not yet valid. Valid from: " + cert.getNotBefore()
-                );
+    /**
+     * Add a co-signature to an existing .p7s signature.
+     * The existing SHA-256 messageDigest is reused when available, so the document
+     * is only needed (and hashed) when the signature is detached and uses another algorithm.
+     *
+     * @param signatureBytes The existing P7S signature bytes
+     * @param originalPdfBytes The original PDF bytes (optional, may be null)
+     * @param certBytes The co-signer's PFX/PKCS12 certificate
+     * @param password The certificate password
+     * @return The P7S signature with the additional signer
+     * @throws SigningException if co-signing fails
+     */
+    public byte[] coSignPdfBytes(byte[] signatureBytes, byte[] originalPdfBytes, byte[] certBytes, String password) {
+        validateSignatureInputs(signatureBytes, certBytes, password);
+
+        try {
+            validateCredential(certBytes, password);
+
+            byte[] document = null;
+            if (originalPdfBytes != null && originalPdfBytes.length > 0) {
+                // Normalize the PDF the same way signing and verification do
+                PDDocument pdf = PDDocument.load(originalPdfBytes);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                pdf.save(baos);
+                pdf.close();
+                document = baos.toByteArray();
             }
 
-            // Sign the document
-            return documentSigner.signDocumentWithCertBytes(baos.toByteArray(), certBytes, password);
+            return documentSigner.coSign(signatureBytes, document, certBytes, password);
 
         } catch (InvalidDocumentException | InvalidCertificateException | InvalidPasswordException | ExpiredCertificateException e) {
             throw e;
         } catch (Exception e) {
-            throw new SigningException("Failed to sign document: " + e.getMessage(), e);
+            throw new SigningException("Failed to co-sign document: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add a counter-signature to one signer of an existing .p7s signature.
+     *
+     * @param signatureBytes The existing P7S signature bytes
+     * @param signerIndex Index of the signer to counter-sign, or -1 for the last one
+     * @param certBytes The counter-signer's PFX/PKCS12 certificate
+     * @param password The certificate password
+     * @return The P7S signature with the countersignature added
+     * @throws SigningException if counter-signing fails
+     */
+    public byte[] counterSignPdfBytes(byte[] signatureBytes, int signerIndex, byte[] certBytes, String password) {
+        validateSignatureInputs(signatureBytes, certBytes, password);
+
+        try {
+            validateCredential(certBytes, password);
+            return documentSigner.counterSign(signatureBytes, signerIndex, certBytes, password);
+
+        } catch (InvalidDocumentException | InvalidCertificateException | InvalidPasswordException | ExpiredCertificateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to counter-sign document: " + e.getMessage(), e);
         }
     }
 
@@ -148,6 +344,163 @@ public class PdfSigner {
         }
     }
 
+    // ==================== Merkle Batch Methods ====================
+
+    /**
+     * Sign a whole batch with a single private-key operation.
+     *
+     * Builds a Merkle tree over the documents' SHA-256 digests and signs only the
+     * root, using the same CMS machinery as {@link #signPdfBytes}. Each document
+     * gets an inclusion proof; proof plus the shared root signature is its receipt.
+     * The root is signed as MerkleBatchSignature.ROOT_CONTENT_TYPE content, and
+     * verification accepts no other. Digests are taken over the bytes as uploaded (no PDF normalization), so any
+     * file type can be receipted.
+     *
+     * @param documentDigests SHA-256 digest of each document, in batch order
+     * @param certBytes The PFX/PKCS12 certificate bytes
+     * @param password The certificate password
+     * @return The signed root and one proof per document
+     * @throws SigningException if signing fails
+     */
+    public MerkleBatchSignature signBatchMerkle(List<byte[]> documentDigests, byte[] certBytes, String password) {
+        if (documentDigests == null || documentDigests.isEmpty()) {
+            throw new InvalidDocumentException("At least one document is required");
+        }
+        if (certBytes == null || certBytes.length == 0) {
+            throw new InvalidCertificateException("Certificate is empty or null");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new InvalidPasswordException("Password is required");
+        }
+
+        try {
+            validateCredential(certBytes, password);
+
+            MerkleTree tree = MerkleTree.build(documentDigests);
+            byte[] root = tree.getRoot();
+
+            // One RSA operation for the whole batch
+            byte[] rootSignature = documentSigner.signDocumentWithCertBytes(root,
+                MerkleBatchSignature.ROOT_CONTENT_TYPE, certBytes, password);
+
+            List<MerkleProof> proofs = new ArrayList<>(documentDigests.size());
+            for (int i = 0; i < documentDigests.size(); i++) {
+                proofs.add(tree.getProof(i, documentDigests.get(i)));
+            }
+
+            return new MerkleBatchSignature(root, rootSignature, proofs);
+
+        } catch (InvalidDocumentException | InvalidCertificateException | InvalidPasswordException | ExpiredCertificateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to sign Merkle batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verify a document against its Merkle batch receipt.
+     *
+     * @param documentBytes The document bytes, as they were uploaded for signing
+     * @param rootSignature The batch's P7S signature over the root
+     * @param proof The document's inclusion proof
+     * @return Verification result
+     * @throws SigningException if the receipt cannot be parsed
+     */
+    public MerkleVerificationResult verifyMerkleReceipt(byte[] documentBytes, byte[] rootSignature, MerkleProof proof) {
+        if (documentBytes == null) {
+            throw new InvalidDocumentException("Document is null");
+        }
+        if (rootSignature == null || rootSignature.length == 0) {
+            throw new InvalidDocumentException("Signature is empty or null");
+        }
+        if (proof == null) {
+            throw new InvalidDocumentException("Inclusion proof is required");
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(documentBytes);
+
+            CMSSignedData cms = new CMSSignedData(rootSignature);
+            if (cms.getSignedContent() == null
+                    || !MerkleBatchSignature.ROOT_CONTENT_TYPE.getId().equals(cms.getSignedContentTypeOID())) {
+                throw new InvalidDocumentException("Signature does not carry a Merkle root");
+            }
+            byte[] signedRoot = (byte[]) cms.getSignedContent().getContent();
+            String rootHex = MerkleTree.toHex(signedRoot);
+
+            boolean rootSignatureValid = documentSigner.verifySignature(rootSignature, signedRoot);
+
+            if (proof.getDocumentDigest() != null
+                    && !proof.getDocumentDigest().equalsIgnoreCase(MerkleTree.toHex(digest))) {
+                return new MerkleVerificationResult(false, rootSignatureValid, rootHex,
+                    "Document digest does not match the receipt");
+            }
+
+            byte[] computedRoot = MerkleTree.computeRoot(digest, proof.getPath());
+            boolean inclusionValid = MessageDigest.isEqual(signedRoot, computedRoot);
+
+            String details;
+            if (inclusionValid && rootSignatureValid) {
+                details = "Document is included in the signed batch";
+            } else if (!inclusionValid) {
+                details = "Inclusion proof does not lead to the signed root";
+            } else {
+                details = "Root signature verification failed";
+            }
+
+            return new MerkleVerificationResult(inclusionValid, rootSignatureValid, rootHex, details);
+
+        } catch (InvalidDocumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to verify Merkle receipt: " + e.getMessage(), e);
+        }
+    }
+
+    private void validateSignatureInputs(byte[] signatureBytes, byte[] certBytes, String password) {
+        if (signatureBytes == null || signatureBytes.length == 0) {
+            throw new InvalidDocumentException("Signature is empty or null");
+        }
+        if (certBytes == null || certBytes.length == 0) {
+            throw new InvalidCertificateException("Certificate is empty or null");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new InvalidPasswordException("Password is required");
+        }
+    }
+
+    /**
+     * Check that the PFX loads with the given password and is within its validity period.
+     */
+    private void validateCredential(byte[] certBytes, String password) throws Exception {
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        try {
+            keystore.load(new ByteArrayInputStream(certBytes), password.toCharArray());
+        } catch (java.io.IOException e) {
+            if (e.getCause() instanceof java.security.UnrecoverableKeyException) {
+                throw new InvalidPasswordException("Incorrect certificate password", e);
+            }
+            throw new InvalidCertificateException("Invalid certificate format", e);
+        }
+
+        // Check certificate expiry
+        String alias = keystore.aliases().nextElement();
+        X509Certificate cert = (X509Certificate) keystore.getCertificate(alias);
+        Date now = new Date();
+        if (now.after(cert.getNotAfter())) {
+            throw new ExpiredCertificateException(
+                "Certificate expired on " + cert.getNotAfter(),
+                cert.getNotAfter()
+            );
+        }
+        if (now.before(cert.getNotBefore())) {
+            throw new InvalidCertificateException(
+                "Certificate is not yet valid. Valid from: " + cert.getNotBefore()
+            );
+        }
+        CertificateValidator.checkRevocation(keystore.getCertificateChain(alias), revocationIndex, ocspClient);
+    }
+
     // ==================== PAdES Signing Methods ====================
 
     /**
@@ -194,6 +547,55 @@ public class PdfSigner {
         return padesSignerService.signPdfVisible(pdfBytes, certBytes, password, metadata, visualConfig);
     }
 
+    /**
+     * Sign PDF using PAdES format, visible or not, writing the signed PDF to output.
+     *
+     * @param visualConfig Visual signature configuration, or null for an invisible signature
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfPadesVisible(byte[] pdfBytes, byte[] certBytes, String password,
+                                    SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                                    OutputStream output) {
+        padesSignerService.signPdfVisible(pdfBytes, certBytes, password, metadata, visualConfig, output);
+    }
+
+    /**
+     * Sign a PDF file using PAdES format, visible or not, writing the signed PDF
+     * to output without reading the file into memory.
+     *
+     * @param visualConfig Visual signature configuration, or null for an invisible signature
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfPadesVisible(Path pdfFile, byte[] certBytes, String password,
+                                    SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                                    OutputStream output) {
+        padesSignerService.signPdfVisible(pdfFile, certBytes, password, metadata, visualConfig, output);
+    }
+
+    /**
+     * Sign PDF using PAdES format with several signers, one incremental revision each.
+     *
+     * @param pdfBytes The PDF document bytes
+     * @param signers Signers in signing order
+     * @return Signed PDF bytes with one embedded signature per signer
+     * @throws SigningException if signing fails
+     */
+    public byte[] signPdfPadesMultiple(byte[] pdfBytes, List<SignerCredential> signers) {
+        return padesSignerService.signPdfMultiple(pdfBytes, signers);
+    }
+
+    /**
+     * Sign PDF using PAdES format with several signers, writing the signed PDF to output.
+     *
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfPadesMultiple(byte[] pdfBytes, List<SignerCredential> signers, OutputStream output) {
+        padesSignerService.signPdfMultiple(pdfBytes, signers, output);
+    }
+
     /**
      * Sign PDF with format selection.
      *
@@ -232,6 +634,18 @@ public class PdfSigner {
         return padesSignerService.verifyPdfSignature(signedPdfBytes);
     }
 
+    /**
+     * Verify embedded PDF signature (PAdES) at the given level.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param level How much to verify; EXTERNAL is verified as FULL here
+     * @return Verification result
+     * @throws SigningException if verification fails
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, VerificationLevel level) {
+        return padesSignerService.verifyPdfSignature(signedPdfBytes, level);
+    }
+
     /**
      * Get the PAdES signer service for advanced operations.
      */
@@ -0,0 +1,316 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.exception.SigningException;
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.VerificationLevel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Verifies many documents in one run.
+ *
+ * Items are PAdES PDFs or detached P7S signatures paired with their original
+ * (a file named X.p7s signs the file named X). They are verified on a shared
+ * pool of signer.verify.bulk.parallelism threads through the same
+ * SigningService as the single-document endpoints, so the trust store, CRL
+ * index, OCSP responses, validated paths and cached results are reused across
+ * the run. At most signer.verify.bulk.max-in-flight items per run are read and
+ * verified at a time, which bounds memory however large the run is. Results
+ * are handed to the writer in completion order, each tagged with its index.
+ */
+@Service
+public class BulkVerificationService {
+
+    private static final String P7S_SUFFIX = ".p7s";
+
+    public enum ItemType {
+        PDF,
+        DETACHED
+    }
+
+    /**
+     * Lazily read document or signature bytes.
+     */
+    public interface Source {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * Receives one result line; an IOException (client gone) aborts the run.
+     */
+    public interface ResultWriter {
+        void write(Map<String, Object> line) throws IOException;
+    }
+
+    /**
+     * A document to verify. For DETACHED items the original may be missing,
+     * which is reported as that item's error.
+     */
+    public static final class Item {
+        private final String name;
+        private final ItemType type;
+        private final Source document;
+        private final Source signature;
+
+        private Item(String name, ItemType type, Source document, Source signature) {
+            this.name = name;
+            this.type = type;
+            this.document = document;
+            this.signature = signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ItemType getType() {
+            return type;
+        }
+    }
+
+    private final SigningService signingService;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Path fileRoot;
+
+    public BulkVerificationService(SigningService signingService,
+                                   @Qualifier("bulkVerificationExecutor") ExecutorService executor,
+                                   @Value("${signer.verify.bulk.max-in-flight:16}") int maxInFlight,
+                                   @Value("${signer.verify.bulk.file-root:}") String fileRoot) {
+        this.signingService = signingService;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.fileRoot = fileRoot.trim().isEmpty() ? null : Paths.get(fileRoot).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Groups named sources into items: X.p7s becomes a DETACHED item over X,
+     * every other name a PDF item. Originals of a P7S are not verified on their own.
+     *
+     * @param sources Sources by name, in the order results should be indexed
+     */
+    public static List<Item> group(Map<String, Source> sources) {
+        List<Item> items = new ArrayList<>();
+        for (Map.Entry<String, Source> entry : sources.entrySet()) {
+            String name = entry.getKey();
+            if (isSignature(name)) {
+                String original = name.substring(0, name.length() - P7S_SUFFIX.length());
+                items.add(new Item(name, ItemType.DETACHED, sources.get(original), entry.getValue()));
+            } else if (!sources.containsKey(name + P7S_SUFFIX)) {
+                items.add(new Item(name, ItemType.PDF, entry.getValue(), null));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Resolves file references under signer.verify.bulk.file-root into items.
+     * A directory stands for the PDF and P7S files directly inside it; the
+     * original of a P7S is picked up from next to it. Every file, including
+     * directory entries and originals, must really be under the root once
+     * symbolic links are followed, and is read from that real path.
+     *
+     * @param paths Paths relative to the file root
+     * @throws IllegalArgumentException if file references are disabled, or a
+     *         path is outside the root or does not exist
+     */
+    public List<Item> resolveFiles(List<String> paths) throws IOException {
+        if (fileRoot == null) {
+            throw new IllegalArgumentException("File references are disabled; set signer.verify.bulk.file-root");
+        }
+
+        Path realRoot = fileRoot.toRealPath();
+        Map<String, Source> sources = new LinkedHashMap<>();
+        for (String path : paths) {
+            Path file = fileRoot.resolve(path.trim()).normalize();
+            if (!file.startsWith(fileRoot)
+                    || (Files.exists(file) && !file.toRealPath().startsWith(realRoot))) {
+                throw new IllegalArgumentException("Path is outside the file root: " + path);
+            }
+            if (Files.isDirectory(file)) {
+                List<Path> children = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(file, "*.{pdf,PDF,p7s,P7S}")) {
+                    for (Path child : entries) {
+                        children.add(child);
+                    }
+                }
+                Collections.sort(children);
+                for (Path child : children) {
+                    addFile(sources, child, realRoot);
+                }
+            } else if (Files.isRegularFile(file)) {
+                addFile(sources, file, realRoot);
+            } else {
+                throw new IllegalArgumentException("File not found: " + path);
+            }
+        }
+
+        // Detached signatures verify against the original next to them
+        for (String name : new ArrayList<>(sources.keySet())) {
+            if (isSignature(name)) {
+                String original = name.substring(0, name.length() - P7S_SUFFIX.length());
+                Path originalFile = fileRoot.resolve(original).normalize();
+                if (!sources.containsKey(original) && Files.isRegularFile(originalFile)) {
+                    addFile(sources, originalFile, realRoot);
+                }
+            }
+        }
+        return group(sources);
+    }
+
+    /**
+     * Verifies the items, writing one result line per item as it finishes and
+     * a final summary line.
+     *
+     * @param level Verification level for PDF items; detached signatures are
+     *        always checked for integrity only
+     * @param useStaging ITI environment for the EXTERNAL level
+     */
+    public void verify(List<Item> items, VerificationLevel level, boolean useStaging, ResultWriter writer)
+            throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(executor);
+        Set<Future<Map<String, Object>>> pending = new HashSet<>();
+        int next = 0;
+        int valid = 0;
+        int invalid = 0;
+        int errors = 0;
+
+        try {
+            while (next < items.size() || !pending.isEmpty()) {
+                while (next < items.size() && pending.size() < maxInFlight) {
+                    final int index = next++;
+                    final Item item = items.get(index);
+                    pending.add(completion.submit(() -> verifyItem(index, item, level, useStaging)));
+                }
+
+                Future<Map<String, Object>> done = completion.take();
+                pending.remove(done);
+                Map<String, Object> line;
+                try {
+                    line = done.get();
+                } catch (ExecutionException e) {
+                    // verifyItem reports its own failures; this is a bug, not a bad document
+                    throw new IllegalStateException("Bulk verification failed", e.getCause());
+                }
+
+                if (line.containsKey("error")) {
+                    errors++;
+                } else if (Boolean.TRUE.equals(line.get("valid"))) {
+                    valid++;
+                } else {
+                    invalid++;
+                }
+                writer.write(line);
+            }
+        } finally {
+            for (Future<Map<String, Object>> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", items.size());
+        summary.put("valid", valid);
+        summary.put("invalid", invalid);
+        summary.put("errors", errors);
+        summary.put("durationMs", System.currentTimeMillis() - started);
+        writer.write(Collections.<String, Object>singletonMap("summary", summary));
+    }
+
+    private Map<String, Object> verifyItem(int index, Item item, VerificationLevel level, boolean useStaging) {
+        long started = System.currentTimeMillis();
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("name", item.name);
+        line.put("type", item.type.name());
+
+        try {
+            if (item.type == ItemType.PDF) {
+                PdfVerificationResult result = verifyPdf(item.document.read(), level, useStaging);
+                line.put("valid", result.isValid());
+                line.put("level", result.getLevel().name());
+                line.put("signerName", result.getSignerName());
+                line.put("signingTime", result.getSigningTime() != null ? result.getSigningTime().toString() : null);
+                line.put("revocationStatus", result.getRevocationStatus());
+                line.put("signatures", result.getSignatures() != null ? result.getSignatures().size() : 0);
+                line.put("details", result.getDetails());
+                if (result.getExternalValid() != null) {
+                    line.put("externalValid", result.getExternalValid());
+                }
+            } else if (item.document == null) {
+                line.put("error", "Original document not found for " + item.name);
+                line.put("code", "ORIGINAL_NOT_FOUND");
+            } else {
+                line.put("valid", signingService.verifySignature(item.signature.read(), item.document.read()));
+            }
+        } catch (IOException e) {
+            line.put("error", "Failed to read " + item.name + ": " + e.getMessage());
+            line.put("code", "FILE_READ_ERROR");
+        } catch (SigningException e) {
+            line.put("error", e.getMessage());
+            line.put("code", e.getErrorCode() != null ? e.getErrorCode() : "VERIFICATION_ERROR");
+        } catch (ItiUnavailableException e) {
+            line.put("error", "Failed to connect to ITI Verificador: " + e.getCause().getMessage());
+            line.put("code", "ITI_CONNECTION_ERROR");
+        } catch (RuntimeException e) {
+            line.put("error", e.getMessage());
+            line.put("code", "VERIFICATION_ERROR");
+        }
+
+        line.put("durationMs", System.currentTimeMillis() - started);
+        return line;
+    }
+
+    /**
+     * Keeps ITI failures apart from read failures of the document itself.
+     */
+    private PdfVerificationResult verifyPdf(byte[] pdfBytes, VerificationLevel level, boolean useStaging) {
+        try {
+            return signingService.verifyPdfSignature(pdfBytes, level, useStaging);
+        } catch (IOException e) {
+            throw new ItiUnavailableException(e);
+        }
+    }
+
+    private static final class ItiUnavailableException extends RuntimeException {
+        private ItiUnavailableException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Adds the file under its name relative to the root, to be read from its
+     * real path, which must be under the real root.
+     */
+    private void addFile(Map<String, Source> sources, Path file, Path realRoot) throws IOException {
+        Path realFile = file.toRealPath();
+        if (!file.startsWith(fileRoot) || !realFile.startsWith(realRoot)) {
+            throw new IllegalArgumentException("Path is outside the file root: " + fileRoot.relativize(file));
+        }
+        sources.put(fileRoot.relativize(file).toString(), () -> Files.readAllBytes(realFile));
+    }
+
+    private static boolean isSignature(String name) {
+        return name.toLowerCase().endsWith(P7S_SUFFIX);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.api.dto.ErrorResponse;
+import com.example.documentsigner.ingest.DocumentStore;
+import com.example.documentsigner.ingest.DocumentStore.StoredDocument;
+import com.example.documentsigner.ingest.IngestLimitExceededException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content-addressed document store: documents uploaded once are passed to any
+ * endpoint as documentRef=sha256:&lt;hex&gt; in place of the document file.
+ * Clients check with HEAD whether a document is still stored before sending
+ * the reference, and upload it again only if it was evicted.
+ */
+@RestController
+@RequestMapping("/api/v1/documents")
+@CrossOrigin(origins = "*")
+public class DocumentController {
+
+    private final DocumentStore documentStore;
+
+    public DocumentController(DocumentStore documentStore) {
+        this.documentStore = documentStore;
+    }
+
+    /**
+     * Store one or more documents. Also accepts documentRef=upload:&lt;id&gt;
+     * to keep a completed resumable upload.
+     */
+    @PostMapping
+    public ResponseEntity<?> storeDocuments(@RequestParam("document") MultipartFile[] documents)
+            throws IOException {
+        List<StoredDocument> stored = new ArrayList<>();
+        try {
+            for (MultipartFile document : documents) {
+                if (!(document instanceof IngestedMultipartFile)) {
+                    return ResponseEntity.badRequest()
+                            .body(new ErrorResponse("Unsupported upload", "INVALID_REQUEST"));
+                }
+                stored.add(documentStore.put(((IngestedMultipartFile) document).getPart()));
+            }
+        } catch (IngestLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse(e.getMessage(), "FILE_TOO_LARGE"));
+        }
+
+        if (stored.size() == 1) {
+            return ResponseEntity.created(URI.create("/api/v1/documents/" + stored.get(0).getSha256Hex()))
+                    .body(describe(stored.get(0)));
+        }
+        final List<Object> described = new ArrayList<>();
+        for (StoredDocument document : stored) {
+            described.add(describe(document));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(new Object() {
+            public final List<Object> documents = described;
+        });
+    }
+
+    /**
+     * Whether a document is stored: 200 with its size, or 404. Does not count as use.
+     */
+    @RequestMapping(value = "/{sha256}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headDocument(@PathVariable("sha256") String sha256) {
+        StoredDocument document = documentStore.peek(sha256);
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentLength(document.getSize())
+                .eTag("\"" + document.getSha256Hex() + "\"")
+                .build();
+    }
+
+    /**
+     * Download a stored document.
+     */
+    @GetMapping("/{sha256}")
+    public ResponseEntity<?> getDocument(@PathVariable("sha256") String sha256) {
+        StoredDocument document = documentStore.get(sha256);
+        if (document == null) {
+            return documentNotFound(sha256);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", document.getFilename());
+        headers.setContentLength(document.getSize());
+        headers.setETag("\"" + document.getSha256Hex() + "\"");
+        return new ResponseEntity<>(new FileSystemResource(document.getFile()), headers, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{sha256}")
+    public ResponseEntity<?> deleteDocument(@PathVariable("sha256") String sha256) {
+        if (!documentStore.remove(sha256)) {
+            return documentNotFound(sha256);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Document count, total size, size limit and evictions.
+     */
+    @GetMapping
+    public ResponseEntity<?> getDocumentStoreStats() {
+        return ResponseEntity.ok(documentStore.getStats());
+    }
+
+    private static ResponseEntity<?> documentNotFound(String sha256) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse("Document not stored: " + sha256, "DOCUMENT_NOT_FOUND"));
+    }
+
+    private static Object describe(StoredDocument document) {
+        return new Object() {
+            public final String sha256 = document.getSha256Hex();
+            public final long size = document.getSize();
+            public final String filename = document.getFilename();
+            public final String documentRef = DocumentStore.REFERENCE_SCHEME + ":" + document.getSha256Hex();
+        };
+    }
+}
@@ -5,12 +5,17 @@ import com.example.documentsigner.exception.ExpiredCertificateException;
 import com.example.documentsigner.exception.InvalidCertificateException;
 import com.example.documentsigner.exception.InvalidDocumentException;
 import com.example.documentsigner.exception.InvalidPasswordException;
+import com.example.documentsigner.exception.ItiException;
+import com.example.documentsigner.exception.RevocationException;
 import com.example.documentsigner.exception.SigningException;
+import com.example.documentsigner.exception.StorageException;
+import com.example.documentsigner.exception.TimestampException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -43,6 +48,34 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse(e.getMessage(), e.getErrorCode()));
     }
 
+    @ExceptionHandler(TimestampException.class)
+    public ResponseEntity<ErrorResponse> handleTimestamp(TimestampException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(e.getMessage(), e.getErrorCode()));
+    }
+
+    @ExceptionHandler(RevocationException.class)
+    public ResponseEntity<ErrorResponse> handleRevocation(RevocationException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(e.getMessage(), e.getErrorCode()));
+    }
+
+    @ExceptionHandler(ItiException.class)
+    public ResponseEntity<ErrorResponse> handleIti(ItiException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(e.getMessage(), e.getErrorCode()));
+    }
+
+    @ExceptionHandler(StorageException.class)
+    public ResponseEntity<ErrorResponse> handleStorage(StorageException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_GATEWAY)
+                .body(new ErrorResponse(e.getMessage(), e.getErrorCode()));
+    }
+
     @ExceptionHandler(SigningException.class)
     public ResponseEntity<ErrorResponse> handleSigningException(SigningException e) {
         return ResponseEntity
@@ -57,6 +90,23 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse("File size exceeds maximum limit", "FILE_TOO_LARGE"));
     }
 
+    @ExceptionHandler(MultipartException.class)
+    public ResponseEntity<ErrorResponse> handleMultipart(MultipartException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse("Invalid multipart request: " + e.getMostSpecificCause().getMessage(),
+                    "INVALID_MULTIPART"));
+    }
+
+    /**
+     * Rethrown, so no error body is appended to the part of the document
+     * already sent and the container aborts the connection instead.
+     */
+    @ExceptionHandler(ResponseAbortedException.class)
+    public void handleResponseAborted(ResponseAbortedException e) {
+        throw e;
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception e) {
         return ResponseEntity
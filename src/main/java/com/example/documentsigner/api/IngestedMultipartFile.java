@@ -0,0 +1,105 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.ingest.IngestedPart;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A MultipartFile over an upload read by the MultipartIngestor, which also
+ * knows the upload's SHA-256.
+ */
+public class IngestedMultipartFile implements MultipartFile {
+
+    private final IngestedPart part;
+
+    public IngestedMultipartFile(IngestedPart part) {
+        this.part = part;
+    }
+
+    /**
+     * The SHA-256 of a multipart file: computed during upload for ingested
+     * files, otherwise by reading the file.
+     */
+    public static byte[] sha256(MultipartFile file) throws IOException {
+        if (file instanceof IngestedMultipartFile) {
+            return ((IngestedMultipartFile) file).getSha256();
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(file.getBytes());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public IngestedPart getPart() {
+        return part;
+    }
+
+    public byte[] getSha256() {
+        return part.getSha256();
+    }
+
+    public String getSha256Hex() {
+        return part.getSha256Hex();
+    }
+
+    /**
+     * The file a multipart file's content is in, when it was spilled to disk or
+     * refers to a stored document; null when it is held in memory.
+     */
+    public static Path file(MultipartFile file) {
+        if (file instanceof IngestedMultipartFile) {
+            return ((IngestedMultipartFile) file).part.getFile();
+        }
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return part.getName();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return part.getFilename();
+    }
+
+    @Override
+    public String getContentType() {
+        return part.getContentType();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return part.getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return part.getSize();
+    }
+
+    /**
+     * A copy of the content; see IngestedPart.getBytes().
+     */
+    @Override
+    public byte[] getBytes() throws IOException {
+        return part.getBytes();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return part.openStream();
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        part.moveTo(dest.toPath());
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.documentsigner.api;
+
+/**
+ * A streamed response that failed after its headers and part of its body
+ * were sent. It is not handled as an error response, since there is no way
+ * to report one any more: it propagates to the servlet container, which
+ * closes the connection without ending the body, so the client sees a
+ * truncated transfer rather than a complete but corrupt document.
+ */
+class ResponseAbortedException extends RuntimeException {
+
+    ResponseAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.documentsigner.api;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The body of a 200 response whose headers are applied on the first write.
+ * Until then the response is left untouched, so a handler that fails before
+ * producing any output still gets its JSON error response.
+ */
+class ResponseBodyOutputStream extends OutputStream {
+
+    private final HttpServletResponse response;
+    private final HttpHeaders headers;
+    private OutputStream body;
+    private long written;
+
+    ResponseBodyOutputStream(HttpServletResponse response, HttpHeaders headers) {
+        this.response = response;
+        this.headers = headers;
+    }
+
+    boolean isCommitted() {
+        return body != null;
+    }
+
+    /**
+     * Bytes handed to the response so far.
+     */
+    long getWritten() {
+        return written;
+    }
+
+    /**
+     * Applies the status and headers, if no write has yet.
+     */
+    void commit() throws IOException {
+        if (body == null) {
+            response.setStatus(HttpStatus.OK.value());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+            body = response.getOutputStream();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        commit();
+        body.write(b);
+        written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        commit();
+        body.write(b, off, len);
+        written += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (body != null) {
+            body.flush();
+        }
+    }
+}
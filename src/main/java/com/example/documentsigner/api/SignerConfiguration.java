@@ -0,0 +1,441 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.ItiResultCache;
+import com.example.documentsigner.LocalItiVerificador;
+import com.example.documentsigner.ItiVerificador;
+import com.example.documentsigner.ItiVerificationQueue;
+import com.example.documentsigner.ingest.DocumentReferences;
+import com.example.documentsigner.ingest.DocumentStore;
+import com.example.documentsigner.ingest.MultipartIngestor;
+import com.example.documentsigner.ingest.ResumableUploadStore;
+import com.example.documentsigner.ltv.CrlFetcher;
+import com.example.documentsigner.ltv.LtvEnricher;
+import com.example.documentsigner.net.GuardedHttpClient;
+import com.example.documentsigner.ltv.ValidationDataCache;
+import com.example.documentsigner.pades.PadesSignerService;
+import com.example.documentsigner.pades.TimestampUpgradeWorker;
+import com.example.documentsigner.pades.VerificationResultCache;
+import com.example.documentsigner.policy.SignaturePolicyRegistry;
+import com.example.documentsigner.revocation.LocalOcspResponder;
+import com.example.documentsigner.revocation.OcspClient;
+import com.example.documentsigner.revocation.RevocationIndex;
+import com.example.documentsigner.storage.DocumentStorages;
+import com.example.documentsigner.storage.FileSystemStorage;
+import com.example.documentsigner.storage.S3Storage;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import com.example.documentsigner.tsa.LocalTimestampAuthority;
+import com.example.documentsigner.tsa.TsaClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Beans shared by the signing endpoints.
+ */
+@Configuration
+public class SignerConfiguration {
+
+    /**
+     * Multipart uploads are read by the MultipartIngestor rather than the servlet
+     * container: files up to signer.ingest.memory-threshold stay in memory, larger
+     * ones are spilled to disk, and each is hashed while it arrives.
+     */
+    @Bean
+    public MultipartIngestor multipartIngestor(
+            @Value("${signer.ingest.memory-threshold:1MB}") DataSize memoryThreshold,
+            @Value("${signer.ingest.max-file-size:50MB}") DataSize maxFileSize,
+            @Value("${signer.ingest.max-request-size:100MB}") DataSize maxRequestSize,
+            @Value("${signer.ingest.spill-directory:}") String spillDirectory) throws IOException {
+        return new MultipartIngestor((int) Math.min(Integer.MAX_VALUE, memoryThreshold.toBytes()),
+            maxFileSize.toBytes(), maxRequestSize.toBytes(),
+            spillDirectory.trim().isEmpty() ? null : Paths.get(spillDirectory.trim()));
+    }
+
+    /**
+     * Resumable chunked uploads under signer.upload.directory; completed
+     * uploads are usable as documentRef=upload:&lt;id&gt;.
+     */
+    @Bean(destroyMethod = "close")
+    public ResumableUploadStore resumableUploadStore(
+            @Value("${signer.upload.directory:uploads}") String directory,
+            @Value("${signer.upload.max-size:${signer.ingest.max-file-size:50MB}}") DataSize maxSize,
+            @Value("${signer.upload.expiry-hours:24}") long expiryHours,
+            @Value("${signer.upload.max-open:100}") int maxOpen) throws IOException {
+        return new ResumableUploadStore(Paths.get(directory), maxSize.toBytes(),
+            TimeUnit.HOURS.toMillis(expiryHours), maxOpen);
+    }
+
+    /**
+     * Content-addressed document store under signer.documents.directory;
+     * stored documents are usable as documentRef=sha256:&lt;hex&gt;.
+     */
+    @Bean
+    public DocumentStore documentStore(
+            @Value("${signer.documents.directory:documents}") String directory,
+            @Value("${signer.documents.max-size:10GB}") DataSize maxSize) throws IOException {
+        return new DocumentStore(Paths.get(directory), maxSize.toBytes());
+    }
+
+    /**
+     * Storages documents are read from (documentRef=fs:..., s3:...) and signed
+     * documents written to (destination=...): a directory under
+     * signer.storage.fs.root and/or a bucket of an S3-compatible store at
+     * signer.storage.s3.endpoint. Both are disabled by default.
+     */
+    @Bean
+    public DocumentStorages documentStorages(
+            @Value("${signer.storage.fs.root:}") String fsRoot,
+            @Value("${signer.storage.s3.endpoint:}") String s3Endpoint,
+            @Value("${signer.storage.s3.region:us-east-1}") String s3Region,
+            @Value("${signer.storage.s3.bucket:}") String s3Bucket,
+            @Value("${signer.storage.s3.access-key:}") String s3AccessKey,
+            @Value("${signer.storage.s3.secret-key:}") String s3SecretKey) throws IOException {
+        DocumentStorages storages = new DocumentStorages();
+        if (!fsRoot.trim().isEmpty()) {
+            storages.register("fs", new FileSystemStorage(Paths.get(fsRoot.trim())));
+        }
+        if (!s3Endpoint.trim().isEmpty()) {
+            if (s3Bucket.trim().isEmpty()) {
+                throw new IllegalStateException("signer.storage.s3.bucket is required with signer.storage.s3.endpoint");
+            }
+            storages.register("s3", new S3Storage(URI.create(s3Endpoint.trim()), s3Region.trim(), s3Bucket.trim(),
+                s3AccessKey, s3SecretKey));
+        }
+        return storages;
+    }
+
+    /**
+     * References to uploads, stored documents and storages; the documents are
+     * held to signer.ingest.max-file-size, as direct uploads are.
+     */
+    @Bean
+    public DocumentReferences documentReferences(ResumableUploadStore resumableUploadStore,
+                                                 DocumentStore documentStore, DocumentStorages documentStorages,
+                                                 MultipartIngestor multipartIngestor,
+                                                 @Value("${signer.ingest.max-file-size:50MB}") DataSize maxFileSize) {
+        DocumentReferences references = new DocumentReferences(maxFileSize.toBytes());
+        references.register(ResumableUploadStore.REFERENCE_SCHEME, resumableUploadStore::resolve);
+        references.register(DocumentStore.REFERENCE_SCHEME, documentStore::resolve);
+        documentStorages.registerReferences(references, multipartIngestor);
+        return references;
+    }
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public StreamingMultipartResolver multipartResolver(MultipartIngestor multipartIngestor,
+                                                       DocumentReferences documentReferences) {
+        return new StreamingMultipartResolver(multipartIngestor, documentReferences);
+    }
+
+    /**
+     * Signature policies loaded once at startup from signer.policy.directory.
+     * A missing directory leaves policy selection disabled.
+     */
+    @Bean
+    public SignaturePolicyRegistry signaturePolicyRegistry(
+            @Value("${signer.policy.directory:policies}") String directory,
+            @Value("${signer.policy.base-uri:http://politicas.icpbrasil.gov.br/}") String baseUri)
+            throws IOException {
+        return SignaturePolicyRegistry.loadFromDirectory(Paths.get(directory), baseUri);
+    }
+
+    /**
+     * In-process TSA for tests and benchmarks, started only when
+     * signer.tsa.local.enabled=true.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "signer.tsa.local.enabled", havingValue = "true")
+    public LocalTimestampAuthority localTimestampAuthority(
+            @Value("${signer.tsa.local.port:0}") int port) throws Exception {
+        return new LocalTimestampAuthority(port);
+    }
+
+    /**
+     * Shared TSA client. Uses signer.tsa.urls, or the local TSA when it is
+     * enabled and no URLs are configured. With neither, timestamping is disabled.
+     */
+    @Bean
+    public TsaClient tsaClient(
+            @Value("${signer.tsa.urls:}") String urls,
+            @Value("${signer.tsa.timeout-ms:10000}") int timeoutMs,
+            @Value("${signer.tsa.max-concurrent-requests:16}") int maxConcurrentRequests,
+            @Value("${signer.tsa.policy-oid:}") String policyOid,
+            ObjectProvider<LocalTimestampAuthority> localTsa) {
+        List<String> tsaUrls = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                tsaUrls.add(url.trim());
+            }
+        }
+        LocalTimestampAuthority local = localTsa.getIfAvailable();
+        if (tsaUrls.isEmpty() && local != null) {
+            tsaUrls.add(local.getUrl());
+        }
+        return new TsaClient(tsaUrls, timeoutMs, maxConcurrentRequests, policyOid);
+    }
+
+    /**
+     * Trusted roots and intermediates (e.g. the ICP-Brasil hierarchy) loaded once
+     * at startup from signer.trust.directory.
+     */
+    @Bean
+    public TrustStore trustStore(@Value("${signer.trust.directory:trust}") String directory) throws IOException {
+        return TrustStore.loadFromDirectory(Paths.get(directory));
+    }
+
+    /**
+     * Signer chains are validated against the trust store; validated issuer
+     * paths are cached.
+     */
+    @Bean
+    public CertificatePathValidator certificatePathValidator(
+            TrustStore trustStore,
+            @Value("${signer.trust.path-cache-max-entries:1000}") int cacheMaxEntries,
+            @Value("${signer.trust.path-cache-ttl-minutes:60}") long cacheTtlMinutes) {
+        return new CertificatePathValidator(trustStore, cacheMaxEntries, TimeUnit.MINUTES.toMillis(cacheTtlMinutes));
+    }
+
+    /**
+     * Offline CRLs from signer.revocation.crl-directory, verified against the
+     * trust store and re-read every signer.revocation.refresh-minutes.
+     */
+    @Bean(destroyMethod = "close")
+    public RevocationIndex revocationIndex(
+            TrustStore trustStore,
+            @Value("${signer.revocation.crl-directory:crls}") String directory,
+            @Value("${signer.revocation.refresh-minutes:15}") long refreshMinutes) {
+        RevocationIndex index = new RevocationIndex(Paths.get(directory), trustStore);
+        index.startRefresh(TimeUnit.MINUTES.toMillis(refreshMinutes));
+        return index;
+    }
+
+    /**
+     * In-process OCSP responder for tests and benchmarks, started only when
+     * signer.ocsp.local.enabled=true. Answers for the CA in signer.ocsp.local.issuer-pfx.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "signer.ocsp.local.enabled", havingValue = "true")
+    public LocalOcspResponder localOcspResponder(
+            @Value("${signer.ocsp.local.port:0}") int port,
+            @Value("${signer.ocsp.local.issuer-pfx}") String issuerPfx,
+            @Value("${signer.ocsp.local.issuer-password}") String issuerPassword) throws Exception {
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(Paths.get(issuerPfx))) {
+            keystore.load(in, issuerPassword.toCharArray());
+        }
+        String alias = keystore.aliases().nextElement();
+        return new LocalOcspResponder((X509Certificate) keystore.getCertificate(alias),
+            (PrivateKey) keystore.getKey(alias, issuerPassword.toCharArray()), port);
+    }
+
+    /**
+     * OCSP client consulted when no current CRL covers a certificate, enabled with
+     * signer.ocsp.enabled=true. Uses signer.ocsp.responder-url, the local
+     * responder when it is enabled, or else the URL in each certificate.
+     */
+    @Bean
+    public OcspClient ocspClient(
+            @Value("${signer.ocsp.enabled:false}") boolean enabled,
+            @Value("${signer.ocsp.responder-url:}") String responderUrl,
+            @Value("${signer.ocsp.timeout-ms:5000}") int timeoutMs,
+            @Value("${signer.ocsp.max-concurrent-requests:16}") int maxConcurrentRequests,
+            @Value("${signer.ocsp.cache-max-entries:10000}") int cacheMaxEntries,
+            @Value("${signer.ocsp.max-age-minutes:60}") long maxAgeMinutes,
+            ObjectProvider<LocalOcspResponder> localResponder) {
+        if (!enabled) {
+            return OcspClient.disabled();
+        }
+        LocalOcspResponder local = localResponder.getIfAvailable();
+        if (responderUrl.trim().isEmpty() && local != null) {
+            responderUrl = local.getUrl();
+        }
+        return new OcspClient(responderUrl, timeoutMs, maxConcurrentRequests, cacheMaxEntries,
+            TimeUnit.MINUTES.toMillis(maxAgeMinutes));
+    }
+
+    /**
+     * Verification results by document hash. Entries are keyed by the trust
+     * store and CRL epochs, so a CRL reload invalidates them; the TTL bounds
+     * reuse of OCSP answers and time-dependent checks.
+     */
+    @Bean
+    public VerificationResultCache verificationResultCache(
+            @Value("${signer.verify.cache-max-entries:10000}") int cacheMaxEntries,
+            @Value("${signer.verify.cache-ttl-minutes:10}") long cacheTtlMinutes) {
+        return new VerificationResultCache(cacheMaxEntries, TimeUnit.MINUTES.toMillis(cacheTtlMinutes));
+    }
+
+    /**
+     * In-process ITI Verificador stand-in for tests and benchmarks, started only
+     * when signer.iti.local.enabled=true, with configurable latency and faults.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "signer.iti.local.enabled", havingValue = "true")
+    public LocalItiVerificador localItiVerificador(
+            @Value("${signer.iti.local.port:0}") int port,
+            @Value("${signer.iti.local.latency-median-ms:0}") long latencyMedianMs,
+            @Value("${signer.iti.local.latency-p99-ms:0}") long latencyP99Ms,
+            @Value("${signer.iti.local.error-rate:0}") double errorRate,
+            @Value("${signer.iti.local.rejection-rate:0}") double rejectionRate,
+            @Value("${signer.iti.local.max-requests-per-second:0}") int maxRequestsPerSecond) throws IOException {
+        LocalItiVerificador local = new LocalItiVerificador(port);
+        local.setLatencyMillis(latencyMedianMs, latencyP99Ms);
+        local.setErrorRate(errorRate);
+        local.setRejectionRate(rejectionRate);
+        local.setMaxRequestsPerSecond(maxRequestsPerSecond);
+        return local;
+    }
+
+    /**
+     * ITI Verificador client for production, shared by every request so its
+     * connections are kept alive between reports. Uses the local stand-in
+     * instead when it is enabled.
+     */
+    @Bean
+    public ItiVerificador itiVerificador(
+            @Value("${signer.iti.production.url:https://verificador.iti.gov.br/report}") String url,
+            @Value("${signer.iti.production.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${signer.iti.production.read-timeout-ms:60000}") int readTimeoutMs,
+            ObjectProvider<LocalItiVerificador> localIti) {
+        LocalItiVerificador local = localIti.getIfAvailable();
+        return new ItiVerificador(local != null ? local.getUrl() : url, connectTimeoutMs, readTimeoutMs);
+    }
+
+    /**
+     * ITI Verificador client for the staging (homologação) environment, or the
+     * local stand-in when it is enabled.
+     */
+    @Bean
+    public ItiVerificador itiStagingVerificador(
+            @Value("${signer.iti.staging.url:https://verificador.staging.iti.br/report}") String url,
+            @Value("${signer.iti.staging.connect-timeout-ms:10000}") int connectTimeoutMs,
+            @Value("${signer.iti.staging.read-timeout-ms:120000}") int readTimeoutMs,
+            ObjectProvider<LocalItiVerificador> localIti) {
+        LocalItiVerificador local = localIti.getIfAvailable();
+        return new ItiVerificador(local != null ? local.getUrl() : url, connectTimeoutMs, readTimeoutMs);
+    }
+
+    /**
+     * ITI reports by submitted files and environment, in memory and optionally
+     * on disk under signer.iti.cache.directory.
+     */
+    @Bean
+    public ItiResultCache itiResultCache(
+            @Value("${signer.iti.cache.max-entries:1000}") int maxEntries,
+            @Value("${signer.iti.cache.ttl-minutes:60}") long ttlMinutes,
+            @Value("${signer.iti.cache.directory:}") String directory,
+            @Value("${signer.iti.cache.disk-max-size:1GB}") DataSize diskMaxSize) throws IOException {
+        return new ItiResultCache(maxEntries, TimeUnit.MINUTES.toMillis(ttlMinutes),
+            directory.trim().isEmpty() ? null : Paths.get(directory.trim()), diskMaxSize.toBytes());
+    }
+
+    /**
+     * Background ITI verifications for requests made with async=true, with a
+     * cap on concurrent and per-second ITI calls and a circuit breaker that
+     * degrades to local verification while the ITI is failing.
+     */
+    @Bean(destroyMethod = "close")
+    public ItiVerificationQueue itiVerificationQueue(
+            @Value("${signer.iti.queue.concurrency:4}") int concurrency,
+            @Value("${signer.iti.queue.requests-per-second:2}") double requestsPerSecond,
+            @Value("${signer.iti.queue.max-attempts:4}") int maxAttempts,
+            @Value("${signer.iti.queue.retry-delay-ms:2000}") long retryDelayMs,
+            @Value("${signer.iti.queue.breaker-failure-threshold:5}") int breakerFailureThreshold,
+            @Value("${signer.iti.queue.breaker-open-seconds:30}") long breakerOpenSeconds,
+            @Value("${signer.iti.queue.max-pending:10000}") int maxPending,
+            @Value("${signer.iti.queue.retention-minutes:60}") long retentionMinutes,
+            @Value("${signer.iti.queue.callback-origins:}") String callbackOrigins) {
+        ItiVerificationQueue queue = new ItiVerificationQueue(concurrency, requestsPerSecond, maxAttempts,
+            retryDelayMs, breakerFailureThreshold, TimeUnit.SECONDS.toMillis(breakerOpenSeconds), maxPending,
+            TimeUnit.MINUTES.toMillis(retentionMinutes));
+        List<String> origins = new ArrayList<>();
+        for (String origin : callbackOrigins.split(",")) {
+            if (!origin.trim().isEmpty()) {
+                origins.add(origin.trim());
+            }
+        }
+        queue.setCallbackOrigins(origins);
+        return queue;
+    }
+
+    /**
+     * LTV enrichment; the validation data cache is shared by every enriched document.
+     * CRLs are fetched only for validated chains, from public addresses.
+     */
+    @Bean
+    public LtvEnricher ltvEnricher(
+            CertificatePathValidator certificatePathValidator,
+            @Value("${signer.ltv.cache-max-entries:10000}") int cacheMaxEntries,
+            @Value("${signer.ltv.crl.timeout-ms:10000}") int crlTimeoutMs,
+            @Value("${signer.ltv.crl.max-age-minutes:1440}") long crlMaxAgeMinutes,
+            @Value("${signer.ltv.crl.max-size:20MB}") DataSize crlMaxSize,
+            @Value("${signer.ltv.crl.max-entries:1000}") int crlMaxEntries) {
+        ValidationDataCache cache = new ValidationDataCache(cacheMaxEntries);
+        GuardedHttpClient http = new GuardedHttpClient(crlTimeoutMs, crlMaxSize.toBytes(), true);
+        return new LtvEnricher(cache,
+            new CrlFetcher(cache, http, TimeUnit.MINUTES.toMillis(crlMaxAgeMinutes), crlMaxEntries),
+            certificatePathValidator);
+    }
+
+    /**
+     * Background B-B to B-T upgrades for signatures requested with timestamp=async.
+     */
+    @Bean(destroyMethod = "close")
+    public TimestampUpgradeWorker timestampUpgradeWorker(
+            TsaClient tsaClient,
+            @Value("${signer.upgrade.batch-size:32}") int batchSize,
+            @Value("${signer.upgrade.parallelism:4}") int parallelism,
+            @Value("${signer.upgrade.max-pending:10000}") int maxPending,
+            @Value("${signer.upgrade.retention-minutes:60}") long retentionMinutes) {
+        PadesSignerService padesSignerService = new PadesSignerService();
+        padesSignerService.setTsaClient(tsaClient);
+        return new TimestampUpgradeWorker(padesSignerService, batchSize, parallelism, maxPending,
+            TimeUnit.MINUTES.toMillis(retentionMinutes));
+    }
+
+    /**
+     * Pool the signatures of one PDF are verified on in parallel, shut down
+     * with the context. Used only when signer.verify.parallelism is above 1.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pdfVerificationExecutor(@Value("${signer.verify.parallelism:4}") int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), daemonThreads("pdf-verify"));
+    }
+
+    /**
+     * Pool /verify/bulk verifies documents on, shared by all calls and shut
+     * down with the context.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService bulkVerificationExecutor(
+            @Value("${signer.verify.bulk.parallelism:4}") int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), daemonThreads("bulk-verify"));
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
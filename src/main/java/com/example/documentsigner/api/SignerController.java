@@ -1,27 +1,64 @@
 package com.example.documentsigner.api;
 
 import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import com.example.documentsigner.ItiVerificationJob;
+import com.example.documentsigner.PdfSigner.SignatureFormat;
 import com.example.documentsigner.api.dto.CertificateInfo;
 import com.example.documentsigner.api.dto.ErrorResponse;
+import com.example.documentsigner.api.dto.MerkleDocumentReceipt;
 import com.example.documentsigner.api.dto.PdfSignResponse;
 import com.example.documentsigner.api.dto.SignResponse;
 import com.example.documentsigner.api.dto.VerifyResponse;
+import com.example.documentsigner.exception.StorageException;
+import com.example.documentsigner.ingest.MultipartIngestor;
+import com.example.documentsigner.merkle.MerkleBatchSignature;
+import com.example.documentsigner.merkle.MerkleProof;
+import com.example.documentsigner.merkle.MerkleTree;
+import com.example.documentsigner.merkle.MerkleVerificationResult;
+import com.example.documentsigner.pades.dto.CertificationLevel;
+import com.example.documentsigner.pades.dto.ChangeType;
+import com.example.documentsigner.pades.dto.DocumentRevision;
 import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.SignatureVerificationResult;
 import com.example.documentsigner.pades.dto.SignatureMetadata;
 import com.example.documentsigner.pades.dto.SignaturePosition;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob;
+import com.example.documentsigner.pades.dto.VerificationLevel;
 import com.example.documentsigner.pades.dto.VisualSignatureConfig;
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.storage.DocumentStorages;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -30,10 +67,29 @@ import java.util.zip.ZipOutputStream;
 @CrossOrigin(origins = "*")
 public class SignerController {
 
-    private final SigningService signingService;
+    private static final Logger log = LoggerFactory.getLogger(SignerController.class);
 
-    public SignerController(SigningService signingService) {
+    private final SigningService signingService;
+    private final BulkVerificationService bulkVerificationService;
+    private final ObjectMapper objectMapper;
+    private final DocumentStorages documentStorages;
+    private final MultipartIngestor multipartIngestor;
+
+    public SignerController(SigningService signingService, BulkVerificationService bulkVerificationService,
+                            ObjectMapper objectMapper, DocumentStorages documentStorages,
+                            MultipartIngestor multipartIngestor) {
         this.signingService = signingService;
+        this.bulkVerificationService = bulkVerificationService;
+        this.objectMapper = objectMapper;
+        this.documentStorages = documentStorages;
+        this.multipartIngestor = multipartIngestor;
+    }
+
+    /**
+     * Writes a signed document to the stream it is given.
+     */
+    private interface DocumentWriter {
+        void writeTo(OutputStream output) throws IOException;
     }
 
     @GetMapping("/health")
@@ -97,17 +153,26 @@ public class SignerController {
         // Other exceptions are handled by GlobalExceptionHandler
     }
 
+    /**
+     * Sign a PDF into a CMS signature (P7S), encoded straight into the response.
+     */
     @PostMapping("/sign")
     public ResponseEntity<?> signDocument(
             @RequestParam("document") MultipartFile document,
             @RequestParam("certificate") MultipartFile certificate,
-            @RequestParam("password") String password) {
+            @RequestParam("password") String password,
+            @RequestParam(value = "policy", required = false) String policy,
+            @RequestParam(value = "timestamp", defaultValue = "false") boolean timestamp,
+            @RequestParam(value = "destination", required = false) String destination,
+            HttpServletResponse response) {
 
         try {
-            byte[] pdfBytes = document.getBytes();
+            // Spilled uploads and stored documents are signed from their file
+            Path pdfFile = IngestedMultipartFile.file(document);
+            byte[] pdfBytes = pdfFile == null ? document.getBytes() : null;
             byte[] certBytes = certificate.getBytes();
 
-            byte[] signature = signingService.signDocument(pdfBytes, certBytes, password);
+            SignaturePolicy signaturePolicy = signingService.resolvePolicy(policy, SignatureFormat.CMS);
 
             String originalFilename = document.getOriginalFilename();
             String outputFilename = (originalFilename != null ? originalFilename : "document") + ".p7s";
@@ -115,10 +180,18 @@ public class SignerController {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
             headers.setContentDispositionFormData("attachment", outputFilename);
-            headers.setContentLength(signature.length);
 
-            return new ResponseEntity<>(signature, headers, HttpStatus.OK);
+            return streamDocument(output -> {
+                if (pdfFile != null) {
+                    signingService.signDocument(pdfFile, certBytes, password, signaturePolicy, timestamp, output);
+                } else {
+                    signingService.signDocument(pdfBytes, certBytes, password, signaturePolicy, timestamp, output);
+                }
+            }, document.getSize(), headers, destination, response);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.badRequest()
                     .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
@@ -154,11 +227,23 @@ public class SignerController {
         }
     }
 
+    /**
+     * Sign multiple documents, one .p7s per document.
+     *
+     * With mode=merkle the batch is signed with a single private-key operation:
+     * a Merkle tree is built over the documents' SHA-256 digests, only its root is
+     * signed, and each document gets an inclusion proof. Check receipts with /verify/merkle.
+     */
     @PostMapping("/sign/batch")
     public ResponseEntity<?> signBatch(
             @RequestParam("documents") MultipartFile[] documents,
             @RequestParam("certificate") MultipartFile certificate,
-            @RequestParam("password") String password) {
+            @RequestParam("password") String password,
+            @RequestParam(value = "mode", defaultValue = "individual") String mode) {
+
+        if ("merkle".equalsIgnoreCase(mode)) {
+            return signBatchMerkle(documents, certificate, password);
+        }
 
         try {
             byte[] certBytes = certificate.getBytes();
@@ -198,6 +283,147 @@ public class SignerController {
         }
     }
 
+    /**
+     * Add a co-signature (parallel signer over the same document) to an existing .p7s.
+     * The document is optional: it is only read when the existing signature has no
+     * SHA-256 digest to reuse and does not encapsulate its content.
+     */
+    @PostMapping("/sign/cosign")
+    public ResponseEntity<?> coSignDocument(
+            @RequestParam("signature") MultipartFile signature,
+            @RequestParam(value = "document", required = false) MultipartFile document,
+            @RequestParam("certificate") MultipartFile certificate,
+            @RequestParam("password") String password) {
+
+        try {
+            byte[] signatureBytes = signature.getBytes();
+            byte[] pdfBytes = document != null ? document.getBytes() : null;
+            byte[] certBytes = certificate.getBytes();
+
+            byte[] updated = signingService.coSignDocument(signatureBytes, pdfBytes, certBytes, password);
+
+            return signatureResponse(updated, signature.getOriginalFilename());
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
+        }
+    }
+
+    /**
+     * Add a counter-signature to one signer of an existing .p7s.
+     * signerIndex selects the signer to counter-sign; by default the last one.
+     */
+    @PostMapping("/sign/countersign")
+    public ResponseEntity<?> counterSignDocument(
+            @RequestParam("signature") MultipartFile signature,
+            @RequestParam("certificate") MultipartFile certificate,
+            @RequestParam("password") String password,
+            @RequestParam(value = "signerIndex", defaultValue = "-1") int signerIndex) {
+
+        try {
+            byte[] signatureBytes = signature.getBytes();
+            byte[] certBytes = certificate.getBytes();
+
+            byte[] updated = signingService.counterSignDocument(signatureBytes, signerIndex, certBytes, password);
+
+            return signatureResponse(updated, signature.getOriginalFilename());
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
+        }
+    }
+
+    private ResponseEntity<?> signBatchMerkle(MultipartFile[] documents, MultipartFile certificate, String password) {
+        try {
+            byte[] certBytes = certificate.getBytes();
+
+            List<byte[]> digests = new ArrayList<>();
+            List<String> filenames = new ArrayList<>();
+            List<MerkleDocumentReceipt> failures = new ArrayList<>();
+
+            for (MultipartFile document : documents) {
+                try {
+                    digests.add(IngestedMultipartFile.sha256(document));
+                    filenames.add(document.getOriginalFilename());
+                } catch (IOException e) {
+                    failures.add(new MerkleDocumentReceipt(false, document.getOriginalFilename(), null,
+                            "Failed to read document"));
+                }
+            }
+
+            if (digests.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(new ErrorResponse("No readable documents in batch", "FILE_READ_ERROR"));
+            }
+
+            MerkleBatchSignature batch = signingService.signBatchMerkle(digests, certBytes, password);
+
+            List<MerkleDocumentReceipt> receipts = new ArrayList<>();
+            for (int i = 0; i < filenames.size(); i++) {
+                receipts.add(new MerkleDocumentReceipt(true, filenames.get(i), batch.getProofs().get(i), null));
+            }
+            receipts.addAll(failures);
+
+            return ResponseEntity.ok(new Object() {
+                public final boolean success = true;
+                public final String mode = "merkle";
+                public final String algorithm = "SHA-256";
+                public final String root = MerkleTree.toHex(batch.getRoot());
+                public final String rootSignature = java.util.Base64.getEncoder()
+                    .encodeToString(batch.getRootSignature());
+                public final List<MerkleDocumentReceipt> documents = receipts;
+                public final int total = receipts.size();
+                public final long signed = filenames.size();
+                public final String timestamp = Instant.now().toString();
+            });
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read certificate", "FILE_READ_ERROR"));
+        }
+    }
+
+    /**
+     * Verify a document against a Merkle batch receipt from /sign/batch?mode=merkle.
+     * signature is the batch's root signature (.p7s); proof is the document's
+     * proof object from the batch response, as JSON.
+     */
+    @PostMapping("/verify/merkle")
+    public ResponseEntity<?> verifyMerkleReceipt(
+            @RequestParam("document") MultipartFile document,
+            @RequestParam("signature") MultipartFile signature,
+            @RequestParam("proof") String proof) {
+
+        MerkleProof merkleProof;
+        try {
+            merkleProof = objectMapper.readValue(proof, MerkleProof.class);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Invalid proof JSON: " + e.getMessage(), "INVALID_PROOF"));
+        }
+
+        try {
+            MerkleVerificationResult result = signingService.verifyMerkleReceipt(
+                document.getBytes(), signature.getBytes(), merkleProof);
+
+            return ResponseEntity.ok(new Object() {
+                public final boolean valid = result.isValid();
+                public final boolean inclusionValid = result.isInclusionValid();
+                public final boolean rootSignatureValid = result.isRootSignatureValid();
+                public final String root = result.getRoot();
+                public final String filename = document.getOriginalFilename();
+                public final String details = result.getDetails();
+                public final String timestamp = Instant.now().toString();
+            });
+
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
+        }
+    }
+
     @PostMapping("/verify")
     public ResponseEntity<?> verifySignature(
             @RequestParam("document") MultipartFile document,
@@ -223,12 +449,17 @@ public class SignerController {
      *
      * Production: https://verificador.iti.gov.br
      * Staging: https://verificador.staging.iti.br
+     *
+     * With async=true the verification is queued and 202 is returned with the
+     * job id; the result is fetched from /iti/jobs/{id} or POSTed to callbackUrl.
      */
     @PostMapping("/verify/iti")
     public ResponseEntity<?> verifyWithIti(
             @RequestParam("document") MultipartFile document,
             @RequestParam("signature") MultipartFile signature,
-            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging) {
+            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "callbackUrl", required = false) String callbackUrl) {
 
         try {
             byte[] pdfBytes = document.getBytes();
@@ -241,6 +472,18 @@ public class SignerController {
                 ? signature.getOriginalFilename()
                 : docFilename + ".p7s";
 
+            if (async) {
+                ItiVerificationJob job = signingService.submitItiVerification(
+                    signatureBytes,
+                    pdfBytes,
+                    sigFilename,
+                    docFilename,
+                    useStaging,
+                    callbackUrl
+                );
+                return itiJobAccepted(job, null);
+            }
+
             ItiVerificationResult result = signingService.verifyWithIti(
                 signatureBytes,
                 pdfBytes,
@@ -257,6 +500,9 @@ public class SignerController {
                 public final String timestamp = Instant.now().toString();
             });
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
                     .body(new ErrorResponse("Failed to connect to ITI Verificador: " + e.getMessage(), "ITI_CONNECTION_ERROR"));
@@ -266,13 +512,18 @@ public class SignerController {
     /**
      * Sign a document and immediately verify with ITI Verificador.
      * Complete flow: sign -> validate externally.
+     *
+     * With async=true the signature is returned at once with 202 and the ITI
+     * verification is queued, as for /verify/iti.
      */
     @PostMapping("/sign/verified")
     public ResponseEntity<?> signAndVerifyWithIti(
             @RequestParam("document") MultipartFile document,
             @RequestParam("certificate") MultipartFile certificate,
             @RequestParam("password") String password,
-            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging) {
+            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "callbackUrl", required = false) String callbackUrl) {
 
         try {
             byte[] pdfBytes = document.getBytes();
@@ -281,6 +532,19 @@ public class SignerController {
                 ? document.getOriginalFilename()
                 : "document.pdf";
 
+            if (async) {
+                SigningService.SignAndSubmitResult submitted = signingService.signAndSubmitItiVerification(
+                    pdfBytes,
+                    certBytes,
+                    password,
+                    docFilename,
+                    useStaging,
+                    callbackUrl
+                );
+                return itiJobAccepted(submitted.getJob(),
+                    java.util.Base64.getEncoder().encodeToString(submitted.getSignature()));
+            }
+
             SigningService.SignAndVerifyResult result = signingService.signAndVerifyWithIti(
                 pdfBytes,
                 certBytes,
@@ -304,17 +568,42 @@ public class SignerController {
                 public final String timestamp = Instant.now().toString();
             });
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
                     .body(new ErrorResponse("Failed to verify with ITI: " + e.getMessage(), "ITI_CONNECTION_ERROR"));
         }
     }
 
+    /**
+     * 202 for a queued ITI verification, pointing at its status.
+     */
+    private ResponseEntity<?> itiJobAccepted(ItiVerificationJob job, String signatureBase64) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Job-Id", job.getId());
+        headers.setLocation(URI.create("/api/v1/iti/jobs/" + job.getId()));
+
+        return new ResponseEntity<>(new Object() {
+            public final boolean success = true;
+            public final String jobId = job.getId();
+            public final String status = job.getStatus().name();
+            public final String environment = job.getEnvironment();
+            public final String filename = job.getFilename();
+            public final String signature = signatureBase64;
+            public final String timestamp = Instant.now().toString();
+        }, headers, HttpStatus.ACCEPTED);
+    }
+
     // ==================== PAdES Endpoints ====================
 
     /**
      * Sign PDF with PAdES format (embedded signature).
-     * Returns the signed PDF file directly.
+     * Returns the signed PDF file directly, written to the response as it is
+     * saved. With ltv the signed document is buffered to be read back, and only
+     * the enriched one is streamed; with an async timestamp the whole document
+     * is kept for the upgrade worker.
      */
     @PostMapping("/sign/pdf")
     public ResponseEntity<?> signPdfPades(
@@ -330,24 +619,43 @@ public class SignerController {
             @RequestParam(value = "x", required = false) Integer x,
             @RequestParam(value = "y", required = false) Integer y,
             @RequestParam(value = "width", defaultValue = "200") int width,
-            @RequestParam(value = "height", defaultValue = "80") int height) {
+            @RequestParam(value = "height", defaultValue = "80") int height,
+            @RequestParam(value = "certificationLevel", required = false) String certificationLevel,
+            @RequestParam(value = "policy", required = false) String policy,
+            @RequestParam(value = "timestamp", defaultValue = "false") String timestamp,
+            @RequestParam(value = "ltv", defaultValue = "false") boolean ltv,
+            @RequestParam(value = "destination", required = false) String destination,
+            HttpServletResponse response) {
 
         try {
-            byte[] pdfBytes = document.getBytes();
+            // Spilled uploads and stored documents are signed from their file
+            Path pdfFile = IngestedMultipartFile.file(document);
+            byte[] pdfBytes = pdfFile == null ? document.getBytes() : null;
             byte[] certBytes = certificate.getBytes();
 
+            // "async" signs B-B now and appends a document timestamp in the background
+            boolean asyncTimestamp = "async".equalsIgnoreCase(timestamp);
+            SignaturePolicy signaturePolicy = signingService.resolvePolicy(policy, SignatureFormat.PADES);
+            if (asyncTimestamp && signaturePolicy != null && signaturePolicy.isTimestampRequired()) {
+                throw new IllegalArgumentException(
+                    "Policy " + signaturePolicy.getName() + " requires a signature timestamp; use timestamp=true");
+            }
+
             // Build metadata
             SignatureMetadata metadata = SignatureMetadata.builder()
                 .reason(reason)
                 .location(location)
                 .contactInfo(contact)
+                .certificationLevel(parseCertificationLevel(certificationLevel))
+                .signaturePolicy(signaturePolicy)
+                .timestamp(!asyncTimestamp && parseTimestamp(timestamp))
                 .build();
 
-            byte[] signedPdf;
+            VisualSignatureConfig visualConfig = null;
 
             if (visible) {
                 // Build visual config
-                VisualSignatureConfig visualConfig = VisualSignatureConfig.builder()
+                visualConfig = VisualSignatureConfig.builder()
                     .enabled(true)
                     .page(page)
                     .position(parsePosition(position))
@@ -356,11 +664,6 @@ public class SignerController {
                     .width(width)
                     .height(height)
                     .build();
-
-                signedPdf = signingService.signDocumentPadesVisible(
-                    pdfBytes, certBytes, password, metadata, visualConfig);
-            } else {
-                signedPdf = signingService.signDocumentPades(pdfBytes, certBytes, password, metadata);
             }
 
             String originalFilename = document.getOriginalFilename();
@@ -369,10 +672,140 @@ public class SignerController {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
             headers.setContentDispositionFormData("attachment", outputFilename);
-            headers.setContentLength(signedPdf.length);
 
-            return new ResponseEntity<>(signedPdf, headers, HttpStatus.OK);
+            VisualSignatureConfig signatureAppearance = visualConfig;
+            DocumentWriter signing = output -> {
+                if (pdfFile != null) {
+                    signingService.signDocumentPadesVisible(
+                        pdfFile, certBytes, password, metadata, signatureAppearance, output);
+                } else {
+                    signingService.signDocumentPadesVisible(
+                        pdfBytes, certBytes, password, metadata, signatureAppearance, output);
+                }
+            };
+            if (!ltv && !asyncTimestamp) {
+                return streamDocument(signing, document.getSize(), headers, destination, response);
+            }
+
+            // LTV reads the signatures back from the signed document, so that one is buffered
+            ByteArrayOutputStream signedOutput = new ByteArrayOutputStream();
+            signing.writeTo(signedOutput);
+            byte[] signedPdf = signedOutput.toByteArray();
+
+            if (!asyncTimestamp) {
+                return streamDocument(output -> signingService.addValidationData(signedPdf, output),
+                    document.getSize(), headers, destination, response);
+            }
+
+            // The upgrade worker keeps the whole document until its timestamp is appended
+            byte[] queuedPdf = signedPdf;
+            if (ltv) {
+                ByteArrayOutputStream enrichedOutput = new ByteArrayOutputStream(signedPdf.length + 16384);
+                signingService.addValidationData(signedPdf, enrichedOutput);
+                queuedPdf = enrichedOutput.toByteArray();
+            }
+
+            headers.setContentLength(queuedPdf.length);
 
+            TimestampUpgradeJob job = signingService.submitTimestampUpgrade(queuedPdf, outputFilename);
+            headers.set("X-Upgrade-Id", job.getId());
+            headers.setLocation(URI.create("/api/v1/upgrades/" + job.getId()));
+
+            return documentResponse(queuedPdf, headers, destination);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
+        }
+    }
+
+    /**
+     * Sign PDF with PAdES for several signers (e.g. both parties and witnesses)
+     * in a single request. Signers are applied in the order the certificates are
+     * sent, each as its own incremental revision, and the final document is returned.
+     *
+     * Per-signer values (passwords, reasons, locations, pages, positions, x, y) are
+     * matched to certificates by position; missing optional values fall back to
+     * the defaults used by /sign/pdf. A certificationLevel applies to the first signer.
+     */
+    @PostMapping("/sign/pdf/multi")
+    public ResponseEntity<?> signPdfPadesMultiple(
+            @RequestParam("document") MultipartFile document,
+            @RequestParam("certificates") MultipartFile[] certificates,
+            @RequestParam(value = "contact", required = false) String contact,
+            @RequestParam(value = "visible", defaultValue = "false") boolean visible,
+            @RequestParam(value = "pages", required = false) int[] pages,
+            @RequestParam(value = "positions", required = false) String[] positions,
+            @RequestParam(value = "x", required = false) Integer[] xs,
+            @RequestParam(value = "y", required = false) Integer[] ys,
+            @RequestParam(value = "width", defaultValue = "200") int width,
+            @RequestParam(value = "height", defaultValue = "80") int height,
+            @RequestParam(value = "certificationLevel", required = false) String certificationLevel,
+            @RequestParam(value = "destination", required = false) String destination,
+            WebRequest request,
+            HttpServletResponse response) {
+
+        // Read free-text values raw so a comma inside a password or reason is not split
+        String[] passwords = request.getParameterValues("passwords");
+        String[] reasons = request.getParameterValues("reasons");
+        String[] locations = request.getParameterValues("locations");
+
+        if (passwords == null || passwords.length != certificates.length) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Exactly one password is required per certificate", "INVALID_REQUEST"));
+        }
+
+        try {
+            byte[] pdfBytes = document.getBytes();
+            CertificationLevel level = parseCertificationLevel(certificationLevel);
+            List<SignerCredential> signers = new ArrayList<>();
+
+            for (int i = 0; i < certificates.length; i++) {
+                // Only the first signer can certify; the rest are approval signatures
+                SignatureMetadata metadata = SignatureMetadata.builder()
+                    .reason(valueAt(reasons, i))
+                    .location(valueAt(locations, i))
+                    .contactInfo(contact)
+                    .certificationLevel(i == 0 ? level : null)
+                    .build();
+
+                VisualSignatureConfig visualConfig = null;
+                if (visible) {
+                    visualConfig = VisualSignatureConfig.builder()
+                        .enabled(true)
+                        .page(pages != null && i < pages.length ? pages[i] : 1)
+                        .position(parsePosition(valueAt(positions, i)))
+                        .x(valueAt(xs, i))
+                        .y(valueAt(ys, i))
+                        .width(width)
+                        .height(height)
+                        .build();
+                }
+
+                signers.add(SignerCredential.builder()
+                    .certBytes(certificates[i].getBytes())
+                    .password(passwords[i])
+                    .metadata(metadata)
+                    .visualConfig(visualConfig)
+                    .build());
+            }
+
+            String outputFilename = generateSignedFilename(document.getOriginalFilename());
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", outputFilename);
+            headers.set("X-Signature-Count", String.valueOf(signers.size()));
+
+            return streamDocument(output -> signingService.signDocumentPadesMultiple(pdfBytes, signers, output),
+                document.getSize(), headers, destination, response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.badRequest()
                     .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
@@ -396,7 +829,8 @@ public class SignerController {
             @RequestParam(value = "x", required = false) Integer x,
             @RequestParam(value = "y", required = false) Integer y,
             @RequestParam(value = "width", defaultValue = "200") int width,
-            @RequestParam(value = "height", defaultValue = "80") int height) {
+            @RequestParam(value = "height", defaultValue = "80") int height,
+            @RequestParam(value = "certificationLevel", required = false) String certificationLevel) {
 
         try {
             byte[] pdfBytes = document.getBytes();
@@ -407,6 +841,7 @@ public class SignerController {
                 .reason(reason)
                 .location(location)
                 .contactInfo(contact)
+                .certificationLevel(parseCertificationLevel(certificationLevel))
                 .build();
 
             byte[] signedPdf;
@@ -448,6 +883,9 @@ public class SignerController {
 
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.badRequest()
                     .body(new ErrorResponse("Failed to read uploaded files", "FILE_READ_ERROR"));
@@ -547,34 +985,275 @@ public class SignerController {
      */
     @PostMapping("/verify/pdf")
     public ResponseEntity<?> verifyPdfSignature(
-            @RequestParam("document") MultipartFile document) {
+            @RequestParam("document") MultipartFile document,
+            @RequestParam(value = "level", defaultValue = "full") String level,
+            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging) {
 
         try {
-            byte[] pdfBytes = document.getBytes();
-            PdfVerificationResult result = signingService.verifyPdfSignature(pdfBytes);
+            // A repeat verification is answered from the cache by the upload's digest, without reading the document
+            byte[] sha256 = IngestedMultipartFile.sha256(document);
+            VerificationLevel verificationLevel = parseVerificationLevel(level);
+            PdfVerificationResult cached = signingService.getCachedPdfVerification(sha256, verificationLevel,
+                useStaging);
+            PdfVerificationResult result;
+            try {
+                result = cached != null ? cached : signingService.verifyPdfSignature(document.getBytes(), sha256,
+                    verificationLevel, useStaging);
+            } catch (IOException e) {
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                        .body(new ErrorResponse("Failed to connect to ITI Verificador: " + e.getMessage(),
+                            "ITI_CONNECTION_ERROR"));
+            }
 
             return ResponseEntity.ok(new Object() {
                 public final boolean valid = result.isValid();
+                public final String level = result.getLevel().name();
                 public final Object signature = new Object() {
                     public final String signerName = result.getSignerName();
                     public final String signingTime = result.getSigningTime() != null
                         ? result.getSigningTime().toString() : null;
                     public final String reason = result.getReason();
-                    public final boolean certificateValid = result.isCertificateValid();
+                    public final Boolean certificateValid = result.getCertificateValid();
+                    public final String trustAnchor = result.getTrustAnchor();
+                    public final String revocationStatus = result.getRevocationStatus();
                     public final boolean integrityValid = result.isIntegrityValid();
                     public final boolean coversWholeDocument = result.isCoversWholeDocument();
                 };
+                public final List<Object> signatures = describeSignatures(result.getSignatures());
+                public final List<Object> revisions = describeRevisions(result.getRevisions());
+                public final String certificationLevel = result.getCertificationLevel() != null
+                    ? result.getCertificationLevel().name() : null;
+                public final boolean docMdpCompliant = result.isDocMdpCompliant();
+                public final Object external = result.getLevel() != VerificationLevel.EXTERNAL ? null : new Object() {
+                    public final String environment = useStaging ? "staging" : "production";
+                    public final Boolean valid = result.getExternalValid();
+                    public final String itiResponse = result.getExternalResponse();
+                };
                 public final String filename = document.getOriginalFilename();
                 public final String details = result.getDetails();
                 public final String timestamp = Instant.now().toString();
             });
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Failed to read uploaded file", "FILE_READ_ERROR"));
+        }
+    }
+
+    /**
+     * Add long-term validation data (DSS dictionary) to a signed PDF.
+     * Returns the PDF with an incremental DSS revision appended.
+     */
+    @PostMapping("/ltv/pdf")
+    public ResponseEntity<?> addValidationData(
+            @RequestParam("document") MultipartFile document,
+            @RequestParam(value = "destination", required = false) String destination,
+            HttpServletResponse response) {
+
+        try {
+            byte[] pdfBytes = document.getBytes();
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment",
+                document.getOriginalFilename() != null ? document.getOriginalFilename() : "document.pdf");
+
+            return streamDocument(output -> signingService.addValidationData(pdfBytes, output),
+                document.getSize(), headers, destination, response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
         } catch (IOException e) {
             return ResponseEntity.badRequest()
                     .body(new ErrorResponse("Failed to read uploaded file", "FILE_READ_ERROR"));
         }
     }
 
+    /**
+     * Verify many documents in one call: uploaded files and/or paths under
+     * signer.verify.bulk.file-root. PDFs are verified as PAdES; X.p7s is
+     * verified as a detached signature of X. Results are streamed as NDJSON,
+     * one line per document as it finishes, then a summary line.
+     */
+    @PostMapping("/verify/bulk")
+    public ResponseEntity<StreamingResponseBody> verifyBulk(
+            @RequestParam(value = "documents", required = false) MultipartFile[] documents,
+            @RequestParam(value = "paths", required = false) List<String> paths,
+            @RequestParam(value = "level", defaultValue = "full") String level,
+            @RequestParam(value = "staging", defaultValue = "false") boolean useStaging) {
+
+        try {
+            VerificationLevel verificationLevel = parseVerificationLevel(level);
+            Map<String, BulkVerificationService.Source> uploads = new LinkedHashMap<>();
+            if (documents != null) {
+                for (MultipartFile document : documents) {
+                    String name = document.getOriginalFilename() != null
+                        ? document.getOriginalFilename() : "document";
+                    if (uploads.containsKey(name)) {
+                        throw new IllegalArgumentException("Duplicate document name: " + name);
+                    }
+                    uploads.put(name, document::getBytes);
+                }
+            }
+            List<BulkVerificationService.Item> items = new ArrayList<>(BulkVerificationService.group(uploads));
+            if (paths != null && !paths.isEmpty()) {
+                items.addAll(bulkVerificationService.resolveFiles(paths));
+            }
+            if (items.isEmpty()) {
+                throw new IllegalArgumentException("No documents or paths given");
+            }
+
+            StreamingResponseBody body = out -> {
+                try {
+                    bulkVerificationService.verify(items, verificationLevel, useStaging, line -> {
+                        out.write(objectMapper.writeValueAsBytes(line));
+                        out.write('\n');
+                        out.flush();
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+
+        } catch (IllegalArgumentException e) {
+            return streamError(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
+        } catch (IOException e) {
+            return streamError(new ErrorResponse("Failed to read files: " + e.getMessage(), "FILE_READ_ERROR"));
+        }
+    }
+
+    /**
+     * A 400 error for endpoints whose success body is streamed; Spring only
+     * streams when the declared body type is StreamingResponseBody.
+     */
+    private ResponseEntity<StreamingResponseBody> streamError(ErrorResponse error) {
+        return ResponseEntity.badRequest()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> objectMapper.writeValue(out, error));
+    }
+
+    /**
+     * Hits, misses, evictions and size of the PDF verification result cache.
+     */
+    @GetMapping("/verify/pdf/cache")
+    public ResponseEntity<?> getVerificationCacheStats() {
+        return ResponseEntity.ok(signingService.getVerificationCacheStats());
+    }
+
+    /**
+     * Hits, misses, coalesced requests and size of the ITI report cache.
+     */
+    @GetMapping("/verify/iti/cache")
+    public ResponseEntity<?> getItiCacheStats() {
+        return ResponseEntity.ok(signingService.getItiCacheStats());
+    }
+
+    /**
+     * Counts of queued ITI verifications per status, and the ITI circuit state.
+     */
+    @GetMapping("/iti/jobs")
+    public ResponseEntity<?> getItiVerificationCounts() {
+        return ResponseEntity.ok(new Object() {
+            public final Map<ItiVerificationJob.Status, Integer> jobs = signingService.getItiVerificationCounts();
+            public final String circuit = signingService.getItiCircuitState().name();
+        });
+    }
+
+    /**
+     * Status and result of an ITI verification started with async=true.
+     */
+    @GetMapping("/iti/jobs/{id}")
+    public ResponseEntity<?> getItiVerification(@PathVariable("id") String id) {
+        ItiVerificationJob job = signingService.getItiVerification(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Unknown or expired ITI verification: " + id, "ITI_JOB_NOT_FOUND"));
+        }
+
+        final ItiVerificationResult itiResult = job.getItiResult();
+        final boolean completed = job.getStatus() == ItiVerificationJob.Status.COMPLETED;
+        return ResponseEntity.ok(new Object() {
+            public final String id = job.getId();
+            public final String status = job.getStatus().name();
+            public final String environment = job.getEnvironment();
+            public final String filename = job.getFilename();
+            public final int attempts = job.getAttempts();
+            public final String source = completed ? job.getSource().name() : null;
+            public final boolean degraded = job.isDegraded();
+            public final Boolean signatureValid = completed ? job.isSignatureValid() : null;
+            public final Integer httpStatus = itiResult != null ? itiResult.getHttpStatus() : null;
+            public final String itiResponse = itiResult != null ? itiResult.getJsonResponse() : null;
+            public final String callbackStatus = job.getCallbackStatus();
+            public final String submittedAt = job.getSubmittedAt().toString();
+            public final String completedAt = job.getCompletedAt() != null
+                ? job.getCompletedAt().toString() : null;
+            public final String error = job.getError();
+        });
+    }
+
+    /**
+     * Counts of background timestamp upgrades per status.
+     */
+    @GetMapping("/upgrades")
+    public ResponseEntity<?> getTimestampUpgradeCounts() {
+        return ResponseEntity.ok(signingService.getTimestampUpgradeCounts());
+    }
+
+    /**
+     * Status of a background timestamp upgrade started with timestamp=async.
+     */
+    @GetMapping("/upgrades/{id}")
+    public ResponseEntity<?> getTimestampUpgrade(@PathVariable("id") String id) {
+        TimestampUpgradeJob job = signingService.getTimestampUpgrade(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Unknown or expired upgrade: " + id, "UPGRADE_NOT_FOUND"));
+        }
+
+        return ResponseEntity.ok(new Object() {
+            public final String id = job.getId();
+            public final String status = job.getStatus().name();
+            public final String filename = job.getFilename();
+            public final int attempts = job.getAttempts();
+            public final String submittedAt = job.getSubmittedAt().toString();
+            public final String completedAt = job.getCompletedAt() != null
+                ? job.getCompletedAt().toString() : null;
+            public final String error = job.getError();
+        });
+    }
+
+    /**
+     * Download the timestamped (PAdES-B-T) PDF once its upgrade has completed.
+     */
+    @GetMapping("/upgrades/{id}/document")
+    public ResponseEntity<?> getTimestampUpgradeDocument(@PathVariable("id") String id) {
+        TimestampUpgradeJob job = signingService.getTimestampUpgrade(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Unknown or expired upgrade: " + id, "UPGRADE_NOT_FOUND"));
+        }
+        if (job.getStatus() != TimestampUpgradeJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse("Upgrade is " + job.getStatus().name(), "UPGRADE_NOT_COMPLETED"));
+        }
+
+        byte[] queuedPdf = job.getUpgradedPdf();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment",
+            job.getFilename() != null ? job.getFilename() : "document_signed.pdf");
+        headers.setContentLength(queuedPdf.length);
+
+        return new ResponseEntity<>(queuedPdf, headers, HttpStatus.OK);
+    }
+
     /**
      * Sign PDF with PAdES and verify locally.
      */
@@ -649,6 +1328,215 @@ public class SignerController {
         }
     }
 
+    /**
+     * Parses the certificationLevel parameter. Returns null (approval signature)
+     * when absent or "none".
+     */
+    private CertificationLevel parseCertificationLevel(String level) {
+        if (level == null || level.trim().isEmpty()) {
+            return null;
+        }
+        switch (level.trim().toLowerCase().replace("-", "_")) {
+            case "none":
+                return null;
+            case "1":
+            case "no_changes":
+                return CertificationLevel.NO_CHANGES;
+            case "2":
+            case "form_filling":
+                return CertificationLevel.FORM_FILLING;
+            case "3":
+            case "annotations":
+            case "form_filling_and_annotations":
+                return CertificationLevel.FORM_FILLING_AND_ANNOTATIONS;
+            default:
+                throw new IllegalArgumentException("Unknown certificationLevel: " + level);
+        }
+    }
+
+    /**
+     * Parses the timestamp parameter of /sign/pdf: true/sync or false. "async" is
+     * handled by the caller.
+     */
+    private boolean parseTimestamp(String timestamp) {
+        switch (timestamp.trim().toLowerCase()) {
+            case "true":
+            case "sync":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown timestamp mode: " + timestamp);
+        }
+    }
+
+    /**
+     * Parses the level parameter of /verify/pdf and /verify/bulk:
+     * integrity, full, or external (alias iti).
+     */
+    private VerificationLevel parseVerificationLevel(String level) {
+        switch (level.trim().toLowerCase()) {
+            case "integrity":
+                return VerificationLevel.INTEGRITY;
+            case "full":
+                return VerificationLevel.FULL;
+            case "external":
+            case "iti":
+                return VerificationLevel.EXTERNAL;
+            default:
+                throw new IllegalArgumentException("Unknown verification level: " + level);
+        }
+    }
+
+    /**
+     * The document as the response body, or, with a destination such as
+     * fs:assinados/a.pdf, written to that storage and described in a JSON
+     * response instead. Headers other than the body's own are kept.
+     */
+    private ResponseEntity<?> documentResponse(byte[] content, HttpHeaders headers, String destination) {
+        if (destination == null || destination.trim().isEmpty()) {
+            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        }
+
+        String target = destination.trim();
+        documentStorages.write(target, new ByteArrayInputStream(content), content.length,
+            String.valueOf(headers.getContentType()));
+        return storedDocumentResponse(target, headers, content.length,
+            MerkleTree.toHex(sha256().digest(content)));
+    }
+
+    /**
+     * As documentResponse, for a document written as it is produced: straight
+     * to the response, with the headers applied on its first byte, or, with a
+     * destination, to a spill file first, since storages need the length up
+     * front. No full-size copy of the document is kept on the heap either way.
+     *
+     * @param documentSize Size of the document being signed, for the log
+     * @return null once the document is written to the response
+     * @throws ResponseAbortedException if writing fails after the response was committed
+     */
+    private ResponseEntity<?> streamDocument(DocumentWriter document, long documentSize, HttpHeaders headers,
+                                             String destination, HttpServletResponse response) throws IOException {
+        if (destination == null || destination.trim().isEmpty()) {
+            ResponseBodyOutputStream output = new ResponseBodyOutputStream(response, headers);
+            try {
+                document.writeTo(output);
+                output.commit();
+                output.flush();
+            } catch (IOException | RuntimeException e) {
+                if (!output.isCommitted()) {
+                    throw e;
+                }
+                // Too late for an error response; the connection is aborted so the client cannot take
+                // the truncated body for a complete document
+                log.warn("Signed document response failed after {} bytes (document of {} bytes): {}",
+                    output.getWritten(), documentSize, e.toString());
+                throw new ResponseAbortedException("Response failed after " + output.getWritten() + " bytes", e);
+            }
+            return null;
+        }
+
+        String target = destination.trim();
+        Path spill = multipartIngestor.createSpillFile();
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream output = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(spill)), digest)) {
+                document.writeTo(output);
+            } catch (IOException e) {
+                throw new StorageException("Failed to write " + target + ": " + e.getMessage(), e);
+            }
+            long size = Files.size(spill);
+            try (InputStream content = Files.newInputStream(spill)) {
+                documentStorages.write(target, content, size, String.valueOf(headers.getContentType()));
+            }
+            return storedDocumentResponse(target, headers, size, MerkleTree.toHex(digest.digest()));
+        } finally {
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    /**
+     * JSON description of a document written to a destination. Headers other
+     * than the document's own are kept.
+     */
+    private static ResponseEntity<?> storedDocumentResponse(String target, HttpHeaders headers, long length,
+                                                            String digest) {
+        final String outputFilename = headers.getContentDisposition().getFilename();
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.putAll(headers);
+        responseHeaders.remove(HttpHeaders.CONTENT_TYPE);
+        responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+        responseHeaders.remove(HttpHeaders.CONTENT_DISPOSITION);
+        return ResponseEntity.ok().headers(responseHeaders).body(new Object() {
+            public final boolean success = true;
+            public final String destination = target;
+            public final String filename = outputFilename;
+            public final long size = length;
+            public final String sha256 = digest;
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private ResponseEntity<byte[]> signatureResponse(byte[] signature, String signatureFilename) {
+        String outputFilename = signatureFilename != null ? signatureFilename : "document.p7s";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", outputFilename);
+        headers.setContentLength(signature.length);
+
+        return new ResponseEntity<>(signature, headers, HttpStatus.OK);
+    }
+
+    private static List<Object> describeSignatures(List<SignatureVerificationResult> results) {
+        List<Object> signatures = new ArrayList<>();
+        for (SignatureVerificationResult entry : results) {
+            signatures.add(new Object() {
+                public final String fieldName = entry.getFieldName();
+                public final String type = entry.isDocumentTimestamp() ? "DOCUMENT_TIMESTAMP" : "SIGNATURE";
+                public final boolean valid = entry.isValid();
+                public final String signerName = entry.getSignerName();
+                public final String signingTime = entry.getSigningTime() != null
+                    ? entry.getSigningTime().toString() : null;
+                public final String reason = entry.getReason();
+                public final boolean integrityValid = entry.isIntegrityValid();
+                public final Boolean certificateValid = entry.getCertificateValid();
+                public final String trustAnchor = entry.getTrustAnchor();
+                public final String revocationStatus = entry.getRevocationStatus();
+                public final boolean coversWholeDocument = entry.isCoversWholeDocument();
+                public final Set<ChangeType> changesAfterSigning = entry.getChangesAfterSigning();
+                public final String details = entry.getDetails();
+            });
+        }
+        return signatures;
+    }
+
+    private static List<Object> describeRevisions(List<DocumentRevision> revisions) {
+        List<Object> described = new ArrayList<>();
+        for (DocumentRevision revision : revisions) {
+            described.add(new Object() {
+                public final int index = revision.getIndex();
+                public final long startOffset = revision.getStartOffset();
+                public final long endOffset = revision.getEndOffset();
+                public final Map<ChangeType, Integer> changes = revision.getChanges();
+                public final boolean signatureOnly = revision.isSignatureOnly();
+            });
+        }
+        return described;
+    }
+
+    private static <T> T valueAt(T[] values, int index) {
+        return values != null && index < values.length ? values[index] : null;
+    }
+
     private String generateSignedFilename(String originalFilename) {
         if (originalFilename == null || originalFilename.isEmpty()) {
             return "document_signed.pdf";
@@ -1,24 +1,107 @@
 package com.example.documentsigner.api;
 
 import com.example.documentsigner.CertificateValidator;
+import com.example.documentsigner.ItiResultCache;
 import com.example.documentsigner.ItiVerificador;
 import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import com.example.documentsigner.ItiVerificationJob;
+import com.example.documentsigner.ItiVerificationQueue;
 import com.example.documentsigner.PdfSigner;
+import com.example.documentsigner.PdfSigner.SignatureFormat;
 import com.example.documentsigner.api.dto.CertificateInfo;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.ltv.LtvEnricher;
+import com.example.documentsigner.merkle.MerkleBatchSignature;
+import com.example.documentsigner.merkle.MerkleProof;
+import com.example.documentsigner.merkle.MerkleVerificationResult;
+import com.example.documentsigner.pades.TimestampUpgradeWorker;
+import com.example.documentsigner.pades.VerificationResultCache;
 import com.example.documentsigner.pades.dto.PdfVerificationResult;
 import com.example.documentsigner.pades.dto.SignatureMetadata;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob;
+import com.example.documentsigner.pades.dto.VerificationLevel;
 import com.example.documentsigner.pades.dto.VisualSignatureConfig;
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.policy.SignaturePolicyRegistry;
+import com.example.documentsigner.revocation.OcspClient;
+import com.example.documentsigner.revocation.RevocationIndex;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import com.example.documentsigner.tsa.TsaClient;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class SigningService {
 
     private final PdfSigner pdfSigner;
-
-    public SigningService() {
+    private final SignaturePolicyRegistry policyRegistry;
+    private final TsaClient tsaClient;
+    private final TimestampUpgradeWorker upgradeWorker;
+    private final LtvEnricher ltvEnricher;
+    private final RevocationIndex revocationIndex;
+    private final OcspClient ocspClient;
+    private final TrustStore trustStore;
+    private final VerificationResultCache verificationCache;
+    private final ItiVerificador itiProduction;
+    private final ItiVerificador itiStaging;
+    private final ItiResultCache itiCache;
+    private final ItiVerificationQueue itiQueue;
+
+    public SigningService(SignaturePolicyRegistry policyRegistry, TsaClient tsaClient,
+                          TimestampUpgradeWorker upgradeWorker, LtvEnricher ltvEnricher,
+                          CertificatePathValidator certificatePathValidator, RevocationIndex revocationIndex,
+                          OcspClient ocspClient, VerificationResultCache verificationCache,
+                          @Qualifier("itiVerificador") ItiVerificador itiProduction,
+                          @Qualifier("itiStagingVerificador") ItiVerificador itiStaging,
+                          ItiResultCache itiCache, ItiVerificationQueue itiQueue,
+                          @Qualifier("pdfVerificationExecutor") ExecutorService verificationExecutor,
+                          @Value("${signer.verify.parallelism:4}") int verifyParallelism) {
         this.pdfSigner = new PdfSigner();
+        this.pdfSigner.setTsaClient(tsaClient);
+        this.pdfSigner.setCertificatePathValidator(certificatePathValidator);
+        this.pdfSigner.setRevocationIndex(revocationIndex);
+        this.pdfSigner.setOcspClient(ocspClient);
+        this.pdfSigner.setPolicyRegistry(policyRegistry);
+        if (verifyParallelism > 1) {
+            this.pdfSigner.setVerificationExecutor(verificationExecutor);
+        }
+        this.policyRegistry = policyRegistry;
+        this.tsaClient = tsaClient;
+        this.upgradeWorker = upgradeWorker;
+        this.ltvEnricher = ltvEnricher;
+        this.revocationIndex = revocationIndex;
+        this.ocspClient = ocspClient;
+        this.trustStore = certificatePathValidator.getTrustStore();
+        this.verificationCache = verificationCache;
+        this.itiProduction = itiProduction;
+        this.itiStaging = itiStaging;
+        this.itiCache = itiCache;
+        this.itiQueue = itiQueue;
+    }
+
+    /**
+     * Resolve a signature policy selected on a request.
+     *
+     * @param selector Policy family ("AD-RB", "AD-RT") or policy OID; null or blank for none
+     * @param format Signature format the policy is for
+     * @return The loaded policy, or null if none was requested
+     * @throws IllegalArgumentException if no loaded policy matches
+     */
+    public SignaturePolicy resolvePolicy(String selector, SignatureFormat format) {
+        return policyRegistry.resolve(selector, format);
     }
 
     /**
@@ -33,14 +116,14 @@ public class SigningService {
     }
 
     /**
-     * Validate certificate password and expiry.
+     * Validate certificate password, expiry and revocation.
      * Throws appropriate exceptions if validation fails.
      *
      * @param certBytes The PFX certificate bytes
      * @param password The certificate password
      */
     public void validateCertificate(byte[] certBytes, String password) {
-        CertificateValidator.validateCertificate(certBytes, password);
+        CertificateValidator.validateCertificate(certBytes, password, revocationIndex, ocspClient);
     }
 
     /**
@@ -55,6 +138,44 @@ public class SigningService {
         return pdfSigner.signPdfBytes(pdfBytes, certBytes, password);
     }
 
+    /**
+     * Sign a PDF document with a certificate under a signature policy.
+     *
+     * @param pdfBytes The PDF document bytes
+     * @param certBytes The PFX certificate bytes
+     * @param password The certificate password
+     * @param signaturePolicy The signature policy to reference, or null for none
+     * @param timestamp true to add a signature timestamp (implied by AD-RT policies)
+     * @return The P7S signature bytes
+     */
+    public byte[] signDocument(byte[] pdfBytes, byte[] certBytes, String password,
+                               SignaturePolicy signaturePolicy, boolean timestamp) {
+        return pdfSigner.signPdfBytes(pdfBytes, certBytes, password, signaturePolicy, timestamp);
+    }
+
+    /**
+     * Sign a PDF document with a certificate under a signature policy, writing
+     * the P7S signature to output. Nothing is written if signing fails.
+     *
+     * @param output Receives the P7S signature; not closed
+     */
+    public void signDocument(byte[] pdfBytes, byte[] certBytes, String password,
+                             SignaturePolicy signaturePolicy, boolean timestamp, OutputStream output) {
+        pdfSigner.signPdfBytes(pdfBytes, certBytes, password, signaturePolicy, timestamp, output);
+    }
+
+    /**
+     * Sign a PDF file with a certificate under a signature policy, writing the
+     * P7S signature to output without reading the file into memory. Nothing is
+     * written if signing fails.
+     *
+     * @param output Receives the P7S signature; not closed
+     */
+    public void signDocument(Path pdfFile, byte[] certBytes, String password,
+                             SignaturePolicy signaturePolicy, boolean timestamp, OutputStream output) {
+        pdfSigner.signPdfFile(pdfFile, certBytes, password, signaturePolicy, timestamp, output);
+    }
+
     /**
      * Verify a signature against the original document.
      *
@@ -66,9 +187,62 @@ public class SigningService {
         return pdfSigner.verifySignature(signatureBytes, originalPdfBytes);
     }
 
+    /**
+     * Add a co-signature to an existing P7S signature.
+     *
+     * @param signatureBytes The existing P7S signature bytes
+     * @param originalPdfBytes The original PDF bytes (optional, may be null)
+     * @param certBytes The co-signer's PFX certificate bytes
+     * @param password The certificate password
+     * @return The P7S signature bytes with the additional signer
+     */
+    public byte[] coSignDocument(byte[] signatureBytes, byte[] originalPdfBytes, byte[] certBytes, String password) {
+        return pdfSigner.coSignPdfBytes(signatureBytes, originalPdfBytes, certBytes, password);
+    }
+
+    /**
+     * Add a counter-signature to an existing P7S signature.
+     *
+     * @param signatureBytes The existing P7S signature bytes
+     * @param signerIndex Index of the signer to counter-sign, or -1 for the last one
+     * @param certBytes The counter-signer's PFX certificate bytes
+     * @param password The certificate password
+     * @return The P7S signature bytes with the countersignature added
+     */
+    public byte[] counterSignDocument(byte[] signatureBytes, int signerIndex, byte[] certBytes, String password) {
+        return pdfSigner.counterSignPdfBytes(signatureBytes, signerIndex, certBytes, password);
+    }
+
+    /**
+     * Sign a batch in Merkle mode: one signature over the root of a Merkle tree
+     * built from the documents' digests, plus one inclusion proof per document.
+     *
+     * @param documentDigests SHA-256 digest of each document, in batch order
+     * @param certBytes The PFX certificate bytes
+     * @param password The certificate password
+     * @return The signed root and per-document proofs
+     */
+    public MerkleBatchSignature signBatchMerkle(List<byte[]> documentDigests, byte[] certBytes, String password) {
+        return pdfSigner.signBatchMerkle(documentDigests, certBytes, password);
+    }
+
+    /**
+     * Verify a document against its Merkle batch receipt.
+     *
+     * @param documentBytes The document bytes
+     * @param rootSignature The batch's P7S signature over the root
+     * @param proof The document's inclusion proof
+     * @return Verification result
+     */
+    public MerkleVerificationResult verifyMerkleReceipt(byte[] documentBytes, byte[] rootSignature, MerkleProof proof) {
+        return pdfSigner.verifyMerkleReceipt(documentBytes, rootSignature, proof);
+    }
+
     /**
      * Verify a detached signature using the ITI Verificador (Brazilian Government).
      * This is the official external source of truth for ICP-Brasil signatures.
+     * Successful reports are cached by the files' hash and the environment, and
+     * identical concurrent requests share one ITI call.
      *
      * @param signatureBytes The P7S signature bytes
      * @param documentBytes The original document bytes
@@ -85,13 +259,28 @@ public class SigningService {
             String documentFilename,
             boolean useStaging) throws IOException {
 
-        ItiVerificador verificador = new ItiVerificador(useStaging);
-        return verificador.verifyDetachedSignature(
+        String key = ItiResultCache.key(environment(useStaging) + "/detached", signatureBytes, documentBytes);
+        return itiCache.get(key, () -> iti(useStaging).verifyDetachedSignature(
             signatureBytes,
             documentBytes,
             signatureFilename,
             documentFilename
-        );
+        ));
+    }
+
+    private ItiVerificador iti(boolean useStaging) {
+        return useStaging ? itiStaging : itiProduction;
+    }
+
+    private static String environment(boolean useStaging) {
+        return useStaging ? "staging" : "production";
+    }
+
+    /**
+     * Hits, misses, coalesced requests and size of the ITI report cache.
+     */
+    public Map<String, Long> getItiCacheStats() {
+        return itiCache.getStats();
     }
 
     /**
@@ -128,6 +317,89 @@ public class SigningService {
         return new SignAndVerifyResult(signature, itiResult);
     }
 
+    /**
+     * Queue a detached signature for verification by the ITI Verificador.
+     * The ITI call goes through the report cache like verifyWithIti; if the
+     * ITI stays unavailable the job is degraded to local verification.
+     *
+     * @param signatureBytes The P7S signature bytes
+     * @param documentBytes The original document bytes
+     * @param signatureFilename Filename for the signature
+     * @param documentFilename Filename for the document
+     * @param useStaging true to use staging environment
+     * @param callbackUrl URL notified when the job finishes, or null
+     * @return The queued job
+     */
+    public ItiVerificationJob submitItiVerification(
+            byte[] signatureBytes,
+            byte[] documentBytes,
+            String signatureFilename,
+            String documentFilename,
+            boolean useStaging,
+            String callbackUrl) {
+
+        return itiQueue.submit(environment(useStaging), documentFilename,
+            () -> verifyWithIti(signatureBytes, documentBytes, signatureFilename, documentFilename, useStaging),
+            () -> pdfSigner.verifySignature(signatureBytes, documentBytes),
+            callbackUrl);
+    }
+
+    /**
+     * Sign a document and queue the signature for ITI verification; returns
+     * without waiting for the ITI.
+     *
+     * @param pdfBytes The PDF document bytes
+     * @param certBytes The PFX certificate bytes
+     * @param password The certificate password
+     * @param documentFilename Original document filename
+     * @param useStaging true to use ITI staging environment
+     * @param callbackUrl URL notified when the verification finishes, or null
+     * @return The signature and the queued verification job
+     */
+    public SignAndSubmitResult signAndSubmitItiVerification(
+            byte[] pdfBytes,
+            byte[] certBytes,
+            String password,
+            String documentFilename,
+            boolean useStaging,
+            String callbackUrl) {
+
+        byte[] signature = pdfSigner.signPdfBytes(pdfBytes, certBytes, password);
+        ItiVerificationJob job = submitItiVerification(
+            signature,
+            pdfBytes,
+            documentFilename + ".p7s",
+            documentFilename,
+            useStaging,
+            callbackUrl
+        );
+        return new SignAndSubmitResult(signature, job);
+    }
+
+    /**
+     * Get a background ITI verification job.
+     *
+     * @param id The job id
+     * @return The job, or null if unknown or expired
+     */
+    public ItiVerificationJob getItiVerification(String id) {
+        return itiQueue.getJob(id);
+    }
+
+    /**
+     * Number of background ITI verification jobs per status.
+     */
+    public Map<ItiVerificationJob.Status, Integer> getItiVerificationCounts() {
+        return itiQueue.getStatusCounts();
+    }
+
+    /**
+     * State of the circuit breaker in front of the ITI Verificador.
+     */
+    public ItiVerificationQueue.CircuitState getItiCircuitState() {
+        return itiQueue.getCircuitState();
+    }
+
     /**
      * Result of sign and verify operation.
      */
@@ -149,6 +421,27 @@ public class SigningService {
         }
     }
 
+    /**
+     * Result of signing with a queued ITI verification.
+     */
+    public static class SignAndSubmitResult {
+        private final byte[] signature;
+        private final ItiVerificationJob job;
+
+        public SignAndSubmitResult(byte[] signature, ItiVerificationJob job) {
+            this.signature = signature;
+            this.job = job;
+        }
+
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        public ItiVerificationJob getJob() {
+            return job;
+        }
+    }
+
     // ==================== PAdES Signing Methods ====================
 
     /**
@@ -192,6 +485,85 @@ public class SigningService {
         return pdfSigner.signPdfPadesVisible(pdfBytes, certBytes, password, metadata, visualConfig);
     }
 
+    /**
+     * Sign a PDF document with PAdES format, writing the signed PDF to output.
+     * Nothing is written if signing fails.
+     *
+     * @param visualConfig Visual signature configuration, or null for an invisible signature
+     * @param output Receives the signed PDF; not closed
+     */
+    public void signDocumentPadesVisible(byte[] pdfBytes, byte[] certBytes, String password,
+                                         SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                                         OutputStream output) {
+        pdfSigner.signPdfPadesVisible(pdfBytes, certBytes, password, metadata, visualConfig, output);
+    }
+
+    /**
+     * Sign a PDF file with PAdES format, writing the signed PDF to output
+     * without reading the file into memory. Nothing is written if signing fails.
+     *
+     * @param visualConfig Visual signature configuration, or null for an invisible signature
+     * @param output Receives the signed PDF; not closed
+     */
+    public void signDocumentPadesVisible(Path pdfFile, byte[] certBytes, String password,
+                                         SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                                         OutputStream output) {
+        pdfSigner.signPdfPadesVisible(pdfFile, certBytes, password, metadata, visualConfig, output);
+    }
+
+    /**
+     * Sign a PDF document with PAdES format for several signers in one pass.
+     *
+     * @param pdfBytes The PDF document bytes
+     * @param signers Signers in signing order (parties first, then witnesses)
+     * @param output Receives the signed PDF, with one signature per signer; not closed
+     */
+    public void signDocumentPadesMultiple(byte[] pdfBytes, List<SignerCredential> signers, OutputStream output) {
+        pdfSigner.signPdfPadesMultiple(pdfBytes, signers, output);
+    }
+
+    /**
+     * Append a DSS revision with the certificates and CRLs needed to validate
+     * every signature in the PDF later (PAdES-LT).
+     *
+     * @param signedPdf The signed PDF bytes
+     * @param output Receives the PDF with validation data; not closed
+     */
+    public void addValidationData(byte[] signedPdf, OutputStream output) {
+        ltvEnricher.addValidationData(signedPdf, output);
+    }
+
+    /**
+     * Queue a PAdES-B-B signed PDF for background upgrade to B-T.
+     *
+     * @param signedPdf The signed PDF bytes
+     * @param filename Filename to report with the job
+     * @return The queued upgrade job
+     */
+    public TimestampUpgradeJob submitTimestampUpgrade(byte[] signedPdf, String filename) {
+        if (!tsaClient.isEnabled()) {
+            throw new TimestampException("A timestamp was requested but no timestamp authority is configured");
+        }
+        return upgradeWorker.submit(signedPdf, filename);
+    }
+
+    /**
+     * Get a background upgrade job.
+     *
+     * @param id The job id
+     * @return The job, or null if unknown or expired
+     */
+    public TimestampUpgradeJob getTimestampUpgrade(String id) {
+        return upgradeWorker.getJob(id);
+    }
+
+    /**
+     * Number of background upgrade jobs per status.
+     */
+    public Map<TimestampUpgradeJob.Status, Integer> getTimestampUpgradeCounts() {
+        return upgradeWorker.getStatusCounts();
+    }
+
     /**
      * Verify embedded PDF signature (PAdES).
      *
@@ -199,7 +571,138 @@ public class SigningService {
      * @return Verification result with details
      */
     public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes) {
-        return pdfSigner.verifyPdfSignature(signedPdfBytes);
+        return verifyPdfSignature(signedPdfBytes, VerificationLevel.FULL);
+    }
+
+    /**
+     * Verify embedded PDF signature (PAdES) locally, at the INTEGRITY or FULL level.
+     *
+     * Results are cached by document hash and level for as long as the trust
+     * store and the loaded CRLs stay the same, so re-verifying an unchanged
+     * document is a lookup. Cached results are shared and must not be modified.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param level INTEGRITY or FULL
+     * @return Verification result with details
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, VerificationLevel level) {
+        return verifyPdfSignature(signedPdfBytes, null, level);
+    }
+
+    /**
+     * Verify embedded PDF signature (PAdES) locally, with the document's SHA-256
+     * already known (e.g. computed while it was uploaded), so the cache lookup
+     * does not hash the document again.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param sha256 SHA-256 of signedPdfBytes, or null to compute it
+     * @param level INTEGRITY or FULL
+     * @return Verification result with details
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, byte[] sha256, VerificationLevel level) {
+        if (level == VerificationLevel.EXTERNAL) {
+            throw new IllegalArgumentException("EXTERNAL verification needs an ITI environment");
+        }
+        String key = verificationCacheKey(signedPdfBytes, sha256, level.name());
+        PdfVerificationResult result = verificationCache.get(key);
+        if (result == null) {
+            result = pdfSigner.verifyPdfSignature(signedPdfBytes, level);
+            verificationCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * The cached result of verifying the document with this SHA-256 at this
+     * level, so a caller holding the digest from the upload can answer a repeat
+     * verification without reading the document.
+     *
+     * @param useStaging true for the ITI staging environment (EXTERNAL only)
+     * @return The result, or null if not cached
+     */
+    public PdfVerificationResult getCachedPdfVerification(byte[] sha256, VerificationLevel level,
+                                                          boolean useStaging) {
+        String variant = level.name() + (level == VerificationLevel.EXTERNAL && useStaging ? "-staging" : "");
+        return verificationCache.get(verificationCacheKey(null, sha256, variant));
+    }
+
+    /**
+     * Verify embedded PDF signature (PAdES) at any level.
+     *
+     * EXTERNAL runs the FULL checks and, if they pass, submits the document to
+     * the ITI Verificador; valid then also requires its approval. A document
+     * that already fails locally is not sent. Results are cached like local ones.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param level How much to verify
+     * @param useStaging true to use the ITI staging environment
+     * @return Verification result with details
+     * @throws IOException if the ITI Verificador cannot be reached
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, VerificationLevel level,
+                                                    boolean useStaging) throws IOException {
+        return verifyPdfSignature(signedPdfBytes, null, level, useStaging);
+    }
+
+    /**
+     * Verify embedded PDF signature (PAdES) at any level, with the document's
+     * SHA-256 already known.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param sha256 SHA-256 of signedPdfBytes, or null to compute it
+     * @param level How much to verify
+     * @param useStaging true to use the ITI staging environment
+     * @return Verification result with details
+     * @throws IOException if the ITI Verificador cannot be reached
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, byte[] sha256, VerificationLevel level,
+                                                    boolean useStaging) throws IOException {
+        if (level != VerificationLevel.EXTERNAL) {
+            return verifyPdfSignature(signedPdfBytes, sha256, level);
+        }
+        String key = verificationCacheKey(signedPdfBytes, sha256, level.name() + (useStaging ? "-staging" : ""));
+        PdfVerificationResult result = verificationCache.get(key);
+        if (result == null) {
+            result = pdfSigner.verifyPdfSignature(signedPdfBytes, level);
+            if (result.isValid()) {
+                ItiVerificationResult itiResult = itiCache.get(
+                    ItiResultCache.key(environment(useStaging) + "/embedded", signedPdfBytes),
+                    () -> iti(useStaging).verifyEmbeddedSignature(signedPdfBytes, "document.pdf"));
+                result.setExternalValid(itiResult.isSignatureValid());
+                result.setExternalResponse(itiResult.getJsonResponse());
+                result.setValid(itiResult.isSignatureValid());
+                if (!itiResult.isSignatureValid()) {
+                    result.setDetails("Not confirmed by the ITI Verificador (HTTP " + itiResult.getHttpStatus() + ")");
+                }
+            }
+            verificationCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Document hash plus the epochs of the trust store and CRL index. The epochs
+     * are read before verifying, so a reload during verification files the
+     * result under the old key, which is never looked up again.
+     */
+    private String verificationCacheKey(byte[] signedPdfBytes, byte[] sha256, String variant) {
+        return (sha256 != null ? Hex.toHexString(sha256) : sha256Hex(signedPdfBytes)) + "@" + trustStore.getEpoch() + "." + revocationIndex.getEpoch()
+            + "/" + variant;
+    }
+
+    /**
+     * Hits, misses, evictions and size of the verification result cache.
+     */
+    public Map<String, Long> getVerificationCacheStats() {
+        return verificationCache.getStats();
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     /**
@@ -0,0 +1,154 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.ingest.DocumentReferences;
+import com.example.documentsigner.ingest.IngestLimitExceededException;
+import com.example.documentsigner.ingest.IngestedMultipart;
+import com.example.documentsigner.ingest.IngestedPart;
+import com.example.documentsigner.ingest.MultipartIngestor;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves multipart requests with the MultipartIngestor instead of the
+ * servlet container, so uploads are hashed as they arrive and only large ones
+ * touch the disk. Files are exposed as IngestedMultipartFile; their spill
+ * files are removed when the request completes. As a request listener it also
+ * covers asynchronous requests (e.g. streamed responses that read uploads
+ * after the handler returned), which Spring does not clean up.
+ *
+ * Reference fields (documentRef=upload:&lt;id&gt;, see DocumentReferences) are
+ * resolved into files here too, from form fields or query parameters, so
+ * every endpoint taking a file also takes a reference; a request whose files
+ * are all references need not be multipart at all.
+ */
+public class StreamingMultipartResolver implements MultipartResolver, ServletRequestListener {
+
+    private static final String INGESTED_ATTRIBUTE = StreamingMultipartResolver.class.getName() + ".INGESTED";
+    private static final String REFERENCED_ATTRIBUTE = StreamingMultipartResolver.class.getName() + ".REFERENCED";
+
+    private final MultipartIngestor ingestor;
+    private final DocumentReferences references;
+
+    public StreamingMultipartResolver(MultipartIngestor ingestor, DocumentReferences references) {
+        this.ingestor = ingestor;
+        this.references = references;
+    }
+
+    @Override
+    public boolean isMultipart(HttpServletRequest request) {
+        if (MultipartIngestor.boundary(request.getContentType()) != null) {
+            return true;
+        }
+        if (!"POST".equals(request.getMethod())) {
+            return false;
+        }
+        for (String name : request.getParameterMap().keySet()) {
+            if (DocumentReferences.fileParameter(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) throws MultipartException {
+        MultiValueMap<String, MultipartFile> files = new LinkedMultiValueMap<>();
+        Map<String, String> contentTypes = new HashMap<>();
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+
+        if (MultipartIngestor.boundary(request.getContentType()) != null) {
+            IngestedMultipart multipart;
+            try {
+                multipart = ingestor.ingest(request.getInputStream(), request.getContentType());
+            } catch (IngestLimitExceededException e) {
+                throw new MaxUploadSizeExceededException(e.getLimit(), e);
+            } catch (IOException e) {
+                throw new MultipartException("Failed to read multipart request: " + e.getMessage(), e);
+            }
+            request.setAttribute(INGESTED_ATTRIBUTE, multipart);
+
+            for (IngestedPart part : multipart.getFiles()) {
+                files.add(part.getName(), new IngestedMultipartFile(part));
+                if (part.getContentType() != null) {
+                    contentTypes.put(part.getName(), part.getContentType());
+                }
+            }
+            for (Map.Entry<String, List<String>> field : multipart.getFields().entrySet()) {
+                parameters.put(field.getKey(), field.getValue().toArray(new String[0]));
+            }
+        }
+
+        // Query parameters (or a url-encoded body) and multipart fields may both carry references
+        Map<String, String[]> fields = new LinkedHashMap<>(request.getParameterMap());
+        fields.putAll(parameters);
+        List<IngestedPart> referenced = new ArrayList<>();
+        request.setAttribute(REFERENCED_ATTRIBUTE, referenced);
+        for (Map.Entry<String, String[]> field : fields.entrySet()) {
+            String name = DocumentReferences.fileParameter(field.getKey());
+            if (name == null) {
+                continue;
+            }
+            for (String reference : field.getValue()) {
+                if (reference.isEmpty()) {
+                    continue;
+                }
+                try {
+                    IngestedPart part = references.resolve(name, reference);
+                    referenced.add(part);
+                    files.add(name, new IngestedMultipartFile(part));
+                } catch (IngestLimitExceededException e) {
+                    throw new MaxUploadSizeExceededException(e.getLimit(), e);
+                } catch (IOException e) {
+                    throw new MultipartException("Failed to open " + reference + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return new DefaultMultipartHttpServletRequest(request, files, parameters, contentTypes);
+    }
+
+    @Override
+    public void cleanupMultipart(MultipartHttpServletRequest request) {
+        // Asynchronous requests may still read their uploads; requestDestroyed cleans up for them
+        if (!request.isAsyncStarted()) {
+            close(request);
+        }
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        close(event.getServletRequest());
+    }
+
+    private static void close(ServletRequest request) {
+        Object multipart = request.getAttribute(INGESTED_ATTRIBUTE);
+        if (multipart instanceof IngestedMultipart) {
+            request.removeAttribute(INGESTED_ATTRIBUTE);
+            ((IngestedMultipart) multipart).close();
+        }
+        // Referenced documents read from a storage have spill files of their own; stored ones are borrowed and released
+        Object referenced = request.getAttribute(REFERENCED_ATTRIBUTE);
+        if (referenced instanceof List) {
+            request.removeAttribute(REFERENCED_ATTRIBUTE);
+            for (Object part : (List<?>) referenced) {
+                ((IngestedPart) part).delete();
+            }
+        }
+    }
+}
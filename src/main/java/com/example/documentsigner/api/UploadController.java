@@ -0,0 +1,157 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.api.dto.ErrorResponse;
+import com.example.documentsigner.ingest.IngestLimitExceededException;
+import com.example.documentsigner.ingest.ResumableUpload;
+import com.example.documentsigner.ingest.ResumableUploadStore;
+import com.example.documentsigner.ingest.TooManyUploadsException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Resumable chunked uploads: create an upload with the document's length, PUT
+ * its chunks at their offsets, then complete it with the document's SHA-256.
+ * A completed upload is passed to any endpoint as documentRef=upload:&lt;id&gt;
+ * in place of the document file.
+ */
+@RestController
+@RequestMapping("/api/v1/uploads")
+@CrossOrigin(origins = "*")
+public class UploadController {
+
+    private final ResumableUploadStore uploadStore;
+
+    public UploadController(ResumableUploadStore uploadStore) {
+        this.uploadStore = uploadStore;
+    }
+
+    /**
+     * Start an upload of length bytes.
+     */
+    @PostMapping
+    public ResponseEntity<?> createUpload(
+            @RequestParam("length") long length,
+            @RequestParam(value = "filename", required = false) String filename) throws IOException {
+        ResumableUpload upload;
+        try {
+            upload = uploadStore.create(filename, length);
+        } catch (TooManyUploadsException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(new ErrorResponse(e.getMessage(), "TOO_MANY_UPLOADS"));
+        } catch (IngestLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse(e.getMessage(), "FILE_TOO_LARGE"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
+        }
+
+        return ResponseEntity.created(URI.create("/api/v1/uploads/" + upload.getId()))
+                .body(describe(upload));
+    }
+
+    /**
+     * Write the request body at offset. Chunks may be sent in any order and
+     * resent; after a dropped connection, GET the upload and resume from
+     * nextOffset (or fill the gaps between ranges).
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> writeChunk(
+            @PathVariable("id") String id,
+            @RequestParam("offset") long offset,
+            InputStream body) throws IOException {
+        ResumableUpload upload;
+        try {
+            upload = uploadStore.write(id, offset, body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage(), "INVALID_REQUEST"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse(e.getMessage(), "UPLOAD_CONFLICT"));
+        }
+        if (upload == null) {
+            return uploadNotFound(id);
+        }
+
+        return ResponseEntity.ok(describe(upload));
+    }
+
+    /**
+     * Progress of an upload: bytes and ranges received so far.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getUpload(@PathVariable("id") String id) {
+        ResumableUpload upload = uploadStore.get(id);
+        if (upload == null) {
+            return uploadNotFound(id);
+        }
+
+        return ResponseEntity.ok(describe(upload));
+    }
+
+    /**
+     * Finish the upload once every byte has arrived. sha256 is the hex SHA-256
+     * of the whole document; on a mismatch the upload stays open so corrupted
+     * chunks can be resent.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<?> completeUpload(
+            @PathVariable("id") String id,
+            @RequestParam("sha256") String sha256) throws IOException {
+        ResumableUpload upload;
+        try {
+            upload = uploadStore.complete(id, sha256);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new ErrorResponse(e.getMessage(), "UPLOAD_DIGEST_MISMATCH"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse(e.getMessage(), "UPLOAD_INCOMPLETE"));
+        }
+        if (upload == null) {
+            return uploadNotFound(id);
+        }
+
+        return ResponseEntity.ok(describe(upload));
+    }
+
+    /**
+     * Abandon an upload and remove its data.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteUpload(@PathVariable("id") String id) {
+        if (!uploadStore.delete(id)) {
+            return uploadNotFound(id);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<?> uploadNotFound(String id) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse("Unknown or expired upload: " + id, "UPLOAD_NOT_FOUND"));
+    }
+
+    private static Object describe(ResumableUpload upload) {
+        final boolean completed = upload.isComplete();
+        return new Object() {
+            public final String id = upload.getId();
+            public final String filename = upload.getFilename();
+            public final long length = upload.getLength();
+            public final long received = upload.getReceived();
+            public final long nextOffset = upload.getNextOffset();
+            public final List<long[]> ranges = upload.getRanges();
+            public final boolean complete = completed;
+            public final String sha256 = upload.getSha256Hex();
+            public final String documentRef = completed
+                ? ResumableUploadStore.REFERENCE_SCHEME + ":" + upload.getId() : null;
+            public final String createdAt = upload.getCreatedAt().toString();
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.documentsigner.api.dto;
+
+import com.example.documentsigner.merkle.MerkleProof;
+
+/**
+ * Per-document entry of a Merkle-mode batch signing response.
+ */
+public class MerkleDocumentReceipt {
+    public final boolean success;
+    public final String filename;
+    public final MerkleProof proof;
+    public final String error;
+
+    public MerkleDocumentReceipt(boolean success, String filename, MerkleProof proof, String error) {
+        this.success = success;
+        this.filename = filename;
+        this.proof = proof;
+        this.error = error;
+    }
+}
@@ -9,4 +9,8 @@ public class InvalidCertificateException extends SigningException {
     public InvalidCertificateException(String message, Throwable cause) {
         super(message, "INVALID_CERTIFICATE", cause);
     }
+
+    protected InvalidCertificateException(String message, String errorCode) {
+        super(message, errorCode);
+    }
 }
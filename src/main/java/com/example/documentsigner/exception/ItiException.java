@@ -0,0 +1,12 @@
+package com.example.documentsigner.exception;
+
+public class ItiException extends SigningException {
+
+    public ItiException(String message) {
+        super(message, "ITI_ERROR");
+    }
+
+    public ItiException(String message, Throwable cause) {
+        super(message, "ITI_ERROR", cause);
+    }
+}
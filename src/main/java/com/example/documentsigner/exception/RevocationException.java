@@ -0,0 +1,12 @@
+package com.example.documentsigner.exception;
+
+public class RevocationException extends SigningException {
+
+    public RevocationException(String message) {
+        super(message, "REVOCATION_ERROR");
+    }
+
+    public RevocationException(String message, Throwable cause) {
+        super(message, "REVOCATION_ERROR", cause);
+    }
+}
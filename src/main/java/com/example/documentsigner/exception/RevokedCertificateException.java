@@ -0,0 +1,20 @@
+package com.example.documentsigner.exception;
+
+import java.util.Date;
+
+/**
+ * Exception thrown when attempting to sign with a revoked certificate.
+ */
+public class RevokedCertificateException extends InvalidCertificateException {
+
+    private final Date revocationDate;
+
+    public RevokedCertificateException(String message, Date revocationDate) {
+        super(message, "CERTIFICATE_REVOKED");
+        this.revocationDate = revocationDate;
+    }
+
+    public Date getRevocationDate() {
+        return revocationDate;
+    }
+}
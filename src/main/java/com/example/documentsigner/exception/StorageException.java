@@ -0,0 +1,12 @@
+package com.example.documentsigner.exception;
+
+public class StorageException extends SigningException {
+
+    public StorageException(String message) {
+        super(message, "STORAGE_ERROR");
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, "STORAGE_ERROR", cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.documentsigner.exception;
+
+public class TimestampException extends SigningException {
+
+    public TimestampException(String message) {
+        super(message, "TIMESTAMP_ERROR");
+    }
+
+    public TimestampException(String message, Throwable cause) {
+        super(message, "TIMESTAMP_ERROR", cause);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.documentsigner.ingest;
+
+import com.example.documentsigner.exception.InvalidDocumentException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves references such as upload:&lt;id&gt; to documents already held by
+ * the server, so requests can name a document instead of uploading it again.
+ *
+ * A form field or query parameter named &lt;param&gt;Ref stands for the file
+ * parameter &lt;param&gt;, for the parameters in FILE_PARAMETERS only; each
+ * value is a reference "scheme:id", resolved by the resolver registered for
+ * scheme. Referenced documents are held to maxSize, like direct uploads, since
+ * endpoints may read them whole.
+ */
+public class DocumentReferences {
+
+    /**
+     * Document parameters that may be given as references. Certificates are
+     * not: they are small and carry private keys.
+     */
+    public static final List<String> FILE_PARAMETERS = Collections.unmodifiableList(
+        Arrays.asList("document", "documents", "signature"));
+
+    private static final String FIELD_SUFFIX = "Ref";
+
+    /**
+     * Looks up one kind of stored document.
+     */
+    public interface Resolver {
+        /**
+         * @param name The file parameter the document stands for
+         * @param id The reference without its scheme
+         * @return The document as a part that borrows the stored file, or null if unknown
+         */
+        IngestedPart resolve(String name, String id) throws IOException;
+    }
+
+    private final Map<String, Resolver> resolvers = new ConcurrentHashMap<>();
+    private final long maxSize;
+
+    /**
+     * @param maxSize Largest referenced document accepted, in bytes; -1 for no limit
+     */
+    public DocumentReferences(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void register(String scheme, Resolver resolver) {
+        resolvers.put(scheme, resolver);
+    }
+
+    /**
+     * The file parameter a reference field stands for, or null if field is not one.
+     */
+    public static String fileParameter(String field) {
+        if (field == null || !field.endsWith(FIELD_SUFFIX)) {
+            return null;
+        }
+        String name = field.substring(0, field.length() - FIELD_SUFFIX.length());
+        return FILE_PARAMETERS.contains(name) ? name : null;
+    }
+
+    /**
+     * @param name The file parameter the document stands for
+     * @param reference The reference, "scheme:id"
+     * @throws InvalidDocumentException if the reference is malformed, unknown or expired
+     * @throws IngestLimitExceededException if the document is larger than maxSize
+     */
+    public IngestedPart resolve(String name, String reference) throws IOException {
+        int colon = reference != null ? reference.indexOf(':') : -1;
+        Resolver resolver = colon > 0 ? resolvers.get(reference.substring(0, colon)) : null;
+        if (resolver == null) {
+            throw new InvalidDocumentException("Unsupported document reference: " + reference
+                + " (expected one of " + resolvers.keySet() + " followed by ':' and an id)");
+        }
+        IngestedPart part = resolver.resolve(name, reference.substring(colon + 1).trim());
+        if (part == null) {
+            throw new InvalidDocumentException("Unknown or expired document reference: " + reference);
+        }
+        if (maxSize >= 0 && part.getSize() > maxSize) {
+            part.delete();
+            throw new IngestLimitExceededException("Referenced document " + reference + " of " + part.getSize()
+                + " bytes exceeds the maximum of " + maxSize + " bytes", maxSize);
+        }
+        return part;
+    }
+}
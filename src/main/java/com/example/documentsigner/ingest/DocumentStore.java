@@ -0,0 +1,328 @@
+package com.example.documentsigner.ingest;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed, disk-backed store of documents, so clients that sign or
+ * verify the same document repeatedly upload it once and then refer to it as
+ * sha256:&lt;hex&gt; (see DocumentReferences).
+ *
+ * - Each document is a file named by its SHA-256 in directory. Uploaded parts
+ *   already carry their SHA-256 and spill files are moved in, so storing
+ *   costs no hashing and, for large documents, no copy.
+ * - The total size is kept under maxBytes by evicting the least recently
+ *   used documents. Use updates the file's modification time, so the order
+ *   survives a restart, when the index is rebuilt from the directory.
+ * - Documents resolved as references are pinned until the request releases
+ *   them: evicting or removing a pinned document takes it out of the index at
+ *   once but leaves its file until the last pin is released, so the store may
+ *   briefly hold more than maxBytes on disk.
+ */
+public class DocumentStore {
+
+    public static final String REFERENCE_SCHEME = "sha256";
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final String INCOMING_PREFIX = ".incoming-";
+
+    /**
+     * A stored document.
+     */
+    public static class StoredDocument {
+        private final String sha256Hex;
+        private final long size;
+        private final String filename;
+        private final Path file;
+
+        StoredDocument(String sha256Hex, long size, String filename, Path file) {
+            this.sha256Hex = sha256Hex;
+            this.size = size;
+            this.filename = filename;
+            this.file = file;
+        }
+
+        public String getSha256Hex() {
+            return sha256Hex;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Filename of the first upload, or the SHA-256 for documents found at startup.
+         */
+        public String getFilename() {
+            return filename;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, StoredDocument> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long totalBytes;
+    private long evictions;
+
+    /**
+     * @param directory Directory holding the documents
+     * @param maxBytes Total size kept, in bytes
+     */
+    public DocumentStore(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(INCOMING_PREFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (SHA256_HEX.matcher(name).matches()) {
+                    found.add(file);
+                }
+            }
+        }
+        found.sort(Comparator.comparing(DocumentStore::lastModified));
+        for (Path file : found) {
+            String sha256Hex = file.getFileName().toString();
+            StoredDocument document = new StoredDocument(sha256Hex, Files.size(file), sha256Hex, file);
+            documents.put(sha256Hex, document);
+            totalBytes += document.getSize();
+        }
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * Stores an uploaded part under its SHA-256. A spill file is moved in; a
+     * document already stored is only marked as used.
+     *
+     * @throws IngestLimitExceededException if the document alone exceeds the store's size
+     */
+    public StoredDocument put(IngestedPart part) throws IOException {
+        String sha256Hex = part.getSha256Hex();
+        StoredDocument existing = get(sha256Hex);
+        if (existing != null) {
+            return existing;
+        }
+        if (part.getSize() > maxBytes) {
+            throw new IngestLimitExceededException("Document of " + part.getSize()
+                + " bytes exceeds the document store size of " + maxBytes + " bytes", maxBytes);
+        }
+
+        Path incoming = Files.createTempFile(directory, INCOMING_PREFIX, "");
+        Path target = directory.resolve(sha256Hex);
+        StoredDocument document = new StoredDocument(sha256Hex, part.getSize(), part.getFilename(), target);
+        try {
+            part.moveTo(incoming);
+            // Renamed under the lock, so a released pin cannot delete the file before it is indexed
+            synchronized (this) {
+                try {
+                    Files.move(incoming, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored concurrently, or evicted while pinned; same name, same content
+                }
+                StoredDocument previous = documents.put(sha256Hex, document);
+                if (previous != null) {
+                    totalBytes -= previous.getSize();
+                }
+                totalBytes += document.getSize();
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(incoming);
+        }
+        return document;
+    }
+
+    /**
+     * Looks up a document and marks it as used.
+     *
+     * @param sha256Hex SHA-256 in hex, any case
+     * @return The document, or null if not stored
+     */
+    public StoredDocument get(String sha256Hex) {
+        String key = normalize(sha256Hex);
+        if (key == null) {
+            return null;
+        }
+        StoredDocument document;
+        synchronized (this) {
+            document = documents.get(key);
+        }
+        if (document != null) {
+            try {
+                Files.setLastModifiedTime(document.getFile(), FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // Removed behind the store's back
+                remove(key);
+                return null;
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Whether a document is stored, without marking it as used.
+     */
+    public synchronized StoredDocument peek(String sha256Hex) {
+        String key = normalize(sha256Hex);
+        return key != null ? documents.get(key) : null;
+    }
+
+    /**
+     * @return false if the document was not stored
+     */
+    public synchronized boolean remove(String sha256Hex) {
+        String key = normalize(sha256Hex);
+        StoredDocument document = key != null ? documents.remove(key) : null;
+        if (document == null) {
+            return false;
+        }
+        totalBytes -= document.getSize();
+        deleteIfUnused(document);
+        return true;
+    }
+
+    /**
+     * A stored document as a part borrowing its file, for DocumentReferences.
+     * The document is pinned, so it cannot be deleted while the request reads
+     * it, until the part's delete() releases it.
+     *
+     * @return The part, or null if not stored
+     */
+    public IngestedPart resolve(String name, String sha256Hex) {
+        String key = normalize(sha256Hex);
+        if (key == null) {
+            return null;
+        }
+        StoredDocument document;
+        synchronized (this) {
+            document = documents.get(key);
+            if (document == null) {
+                return null;
+            }
+            pins.merge(key, 1, Integer::sum);
+        }
+        try {
+            Files.setLastModifiedTime(document.getFile(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Removed behind the store's back
+            unpin(key);
+            remove(key);
+            return null;
+        }
+        return new IngestedPart(name, document.getFilename(), null, document.getSize(),
+            Hex.decode(document.getSha256Hex()), null, document.getFile(), false, () -> unpin(key));
+    }
+
+    /**
+     * Whether a document is pinned by a request reading it.
+     */
+    public synchronized boolean isPinned(String sha256Hex) {
+        String key = normalize(sha256Hex);
+        return key != null && pins.containsKey(key);
+    }
+
+    /**
+     * Document count, total size, size limit and evictions so far.
+     */
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("documents", (long) documents.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    /**
+     * Drops least recently used documents until the store fits in maxBytes.
+     * Called with the lock held.
+     */
+    private void evict() {
+        Iterator<StoredDocument> it = documents.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            StoredDocument document = it.next();
+            it.remove();
+            totalBytes -= document.getSize();
+            evictions++;
+            deleteIfUnused(document);
+        }
+    }
+
+    private synchronized void unpin(String key) {
+        Integer count = pins.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(key, count - 1);
+            return;
+        }
+        pins.remove(key);
+        StoredDocument document = documents.get(key);
+        if (document == null) {
+            // Evicted or removed while pinned
+            delete(new StoredDocument(key, 0, key, directory.resolve(key)));
+        }
+    }
+
+    /**
+     * Deletes the file of a document taken out of the index, unless a request
+     * still reads it; unpin() deletes it then. Called with the lock held.
+     */
+    private void deleteIfUnused(StoredDocument document) {
+        if (!pins.containsKey(document.getSha256Hex())) {
+            delete(document);
+        }
+    }
+
+    private static void delete(StoredDocument document) {
+        try {
+            Files.deleteIfExists(document.getFile());
+        } catch (IOException ignored) {
+            // Not in the index any more; ignored until the next startup
+        }
+    }
+
+    private static String normalize(String sha256Hex) {
+        if (sha256Hex == null) {
+            return null;
+        }
+        String key = sha256Hex.trim().toLowerCase(Locale.ROOT);
+        return SHA256_HEX.matcher(key).matches() ? key : null;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
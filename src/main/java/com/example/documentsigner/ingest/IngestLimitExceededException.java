@@ -0,0 +1,23 @@
+package com.example.documentsigner.ingest;
+
+import java.io.IOException;
+
+/**
+ * An upload went over the file or request size limit; reading stopped there.
+ */
+public class IngestLimitExceededException extends IOException {
+
+    private final long limit;
+
+    public IngestLimitExceededException(String message, long limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /**
+     * The limit that was exceeded, in bytes.
+     */
+    public long getLimit() {
+        return limit;
+    }
+}
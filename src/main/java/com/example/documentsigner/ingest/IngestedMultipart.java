@@ -0,0 +1,46 @@
+package com.example.documentsigner.ingest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of one multipart request: uploaded files, in arrival order, and
+ * plain form fields. close() removes the files' spill files.
+ */
+public class IngestedMultipart implements Closeable {
+
+    private final List<IngestedPart> files = new ArrayList<>();
+    private final Map<String, List<String>> fields = new LinkedHashMap<>();
+
+    void addFile(IngestedPart part) {
+        files.add(part);
+    }
+
+    void addField(String name, String value) {
+        List<String> values = fields.get(name);
+        if (values == null) {
+            values = new ArrayList<>();
+            fields.put(name, values);
+        }
+        values.add(value);
+    }
+
+    public List<IngestedPart> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public Map<String, List<String>> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public void close() {
+        for (IngestedPart file : files) {
+            file.delete();
+        }
+    }
+}
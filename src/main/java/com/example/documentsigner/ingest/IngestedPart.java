@@ -0,0 +1,169 @@
+package com.example.documentsigner.ingest;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An uploaded file as received by the MultipartIngestor: held in memory when
+ * small, otherwise in a spill file, with its SHA-256 computed while it arrived.
+ *
+ * The spill file belongs to the part and is removed by delete(). Parts that
+ * stand for a stored document (see DocumentReferences) only borrow its file:
+ * moveTo() copies it and delete() leaves it in place, returning the file to
+ * its owner through the part's release callback.
+ */
+public class IngestedPart {
+
+    private final String name;
+    private final String filename;
+    private final String contentType;
+    private final long size;
+    private final byte[] sha256;
+    private final byte[] content;
+    private volatile Path file;
+    private volatile boolean owned;
+    private final AtomicReference<Runnable> release;
+
+    IngestedPart(String name, String filename, String contentType, long size, byte[] sha256,
+                 byte[] content, Path file) {
+        this(name, filename, contentType, size, sha256, content, file, true);
+    }
+
+    IngestedPart(String name, String filename, String contentType, long size, byte[] sha256,
+                 byte[] content, Path file, boolean owned) {
+        this(name, filename, contentType, size, sha256, content, file, owned, null);
+    }
+
+    /**
+     * @param release Run once by delete(), e.g. to let the owner of a borrowed file remove it again
+     */
+    IngestedPart(String name, String filename, String contentType, long size, byte[] sha256,
+                 byte[] content, Path file, boolean owned, Runnable release) {
+        this.name = name;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.size = size;
+        this.sha256 = sha256;
+        this.content = content;
+        this.file = file;
+        this.owned = owned;
+        this.release = new AtomicReference<>(release);
+    }
+
+    /**
+     * Form field name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Filename sent by the client (may be empty).
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Content type sent by the client, or null.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * SHA-256 of the content.
+     */
+    public byte[] getSha256() {
+        return sha256.clone();
+    }
+
+    public String getSha256Hex() {
+        return Hex.toHexString(sha256);
+    }
+
+    public boolean isInMemory() {
+        return content != null;
+    }
+
+    /**
+     * The spill or stored file, or null for in-memory parts.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * A copy of the content, read from the file for spilled parts. Large parts
+     * are better read through openStream() or getFile().
+     */
+    public byte[] getBytes() throws IOException {
+        if (content != null) {
+            return content.clone();
+        }
+        return Files.readAllBytes(spillFile());
+    }
+
+    public InputStream openStream() throws IOException {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        return Files.newInputStream(spillFile());
+    }
+
+    /**
+     * Stores the content at target: spill files are moved there, in-memory
+     * content is written and borrowed files are copied.
+     */
+    public void moveTo(Path target) throws IOException {
+        if (content != null) {
+            Files.write(target, content);
+            return;
+        }
+        if (!owned) {
+            Files.copy(spillFile(), target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        Files.move(spillFile(), target, StandardCopyOption.REPLACE_EXISTING);
+        file = target;
+        owned = false;
+    }
+
+    /**
+     * Removes the spill file, if any and not moved elsewhere, and releases a
+     * borrowed file.
+     */
+    public void delete() {
+        Path spill = file;
+        if (spill != null && owned) {
+            try {
+                Files.deleteIfExists(spill);
+            } catch (IOException ignored) {
+                // Left to the temporary directory's cleanup
+            }
+        }
+        Runnable callback = release.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private Path spillFile() throws IOException {
+        Path spill = file;
+        if (spill == null || !Files.exists(spill)) {
+            throw new IOException("Upload " + filename + " is no longer available");
+        }
+        return spill;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.documentsigner.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads multipart/form-data uploads straight from the request stream.
+ *
+ * - Each file part is copied as it arrives into memory while it is at most
+ *   memoryThreshold bytes, and into a spill file in spillDirectory once it
+ *   grows past that, so large uploads never sit in the heap.
+ * - The SHA-256 of every file is computed during the same copy, so caches,
+ *   deduplication and digest-based signing need no second pass over the data.
+ * - Files over maxFileSize and requests over maxRequestSize stop the read with
+ *   an IngestLimitExceededException; spill files written so far are removed.
+ *
+ * Instances are thread-safe and shared across requests.
+ */
+public class MultipartIngestor {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_SIZE = 1024 * 1024;
+    private static final String SPILL_PREFIX = "upload-";
+    private static final String SPILL_SUFFIX = ".part";
+
+    private final int memoryThreshold;
+    private final long maxFileSize;
+    private final long maxRequestSize;
+    private final Path spillDirectory;
+
+    /**
+     * @param memoryThreshold Largest file kept in memory, in bytes
+     * @param maxFileSize Largest file accepted, in bytes; -1 for no limit
+     * @param maxRequestSize Largest request body accepted, in bytes; -1 for no limit
+     * @param spillDirectory Directory for spill files, or null for the system temporary directory
+     */
+    public MultipartIngestor(int memoryThreshold, long maxFileSize, long maxRequestSize, Path spillDirectory)
+            throws IOException {
+        this.memoryThreshold = Math.max(0, memoryThreshold);
+        this.maxFileSize = maxFileSize;
+        this.maxRequestSize = maxRequestSize;
+        this.spillDirectory = spillDirectory;
+        if (spillDirectory != null) {
+            Files.createDirectories(spillDirectory);
+        }
+    }
+
+    /**
+     * The boundary parameter of a multipart Content-Type, or null if there is none.
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        String boundary = parameters(contentType).get("boundary");
+        return boundary != null && !boundary.isEmpty() ? boundary : null;
+    }
+
+    /**
+     * Read every part of a multipart request.
+     *
+     * @param body The request body
+     * @param contentType The request's Content-Type, with its boundary
+     * @return The files and fields; close it to remove the spill files
+     * @throws IngestLimitExceededException if a size limit is exceeded
+     * @throws IOException if the body cannot be read or is not valid multipart
+     */
+    public IngestedMultipart ingest(InputStream body, String contentType) throws IOException {
+        String boundary = boundary(contentType);
+        if (boundary == null) {
+            throw new IOException("Not a multipart request with a boundary: " + contentType);
+        }
+
+        MultipartStream stream = new MultipartStream(new LimitedInputStream(body, maxRequestSize), boundary);
+        IngestedMultipart multipart = new IngestedMultipart();
+        try {
+            String headers;
+            while ((headers = stream.nextPart()) != null) {
+                Map<String, String> headerMap = headers(headers);
+                Map<String, String> disposition = parameters(headerMap.getOrDefault("content-disposition", ""));
+                String name = disposition.get("name");
+                if (name == null) {
+                    continue;
+                }
+                String filename = disposition.containsKey("filename*")
+                    ? decodeExtended(disposition.get("filename*")) : disposition.get("filename");
+                if (filename != null) {
+                    multipart.addFile(readFile(stream.partStream(), name, filename, headerMap.get("content-type")));
+                } else {
+                    multipart.addField(name, readField(stream.partStream(), name));
+                }
+            }
+            return multipart;
+        } catch (IOException | RuntimeException e) {
+            multipart.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read a document from another source (e.g. a storage backend) the same
+     * way as an uploaded file: hashed, in memory or spilled, within maxFileSize.
+     *
+     * @return The part; delete() removes its spill file
+     */
+    public IngestedPart ingestFile(InputStream content, String name, String filename, String contentType)
+            throws IOException {
+        return readFile(content, name, filename, contentType);
+    }
+
+    /**
+     * A new empty spill file, for output too large to keep in memory (e.g. a
+     * signed document on its way to a storage). The caller deletes it.
+     */
+    public Path createSpillFile() throws IOException {
+        return spillDirectory != null
+            ? Files.createTempFile(spillDirectory, SPILL_PREFIX, SPILL_SUFFIX)
+            : Files.createTempFile(SPILL_PREFIX, SPILL_SUFFIX);
+    }
+
+    private IngestedPart readFile(InputStream part, String name, String filename, String contentType)
+            throws IOException {
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream(Math.min(memoryThreshold, CHUNK_SIZE));
+        Path spill = null;
+        OutputStream out = memory;
+        long size = 0;
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = part.read(chunk, 0, chunk.length)) != -1) {
+                size += read;
+                if (maxFileSize >= 0 && size > maxFileSize) {
+                    throw new IngestLimitExceededException(
+                        "File " + filename + " exceeds the maximum upload size of " + maxFileSize + " bytes",
+                        maxFileSize);
+                }
+                digest.update(chunk, 0, read);
+                if (spill == null && size > memoryThreshold) {
+                    spill = createSpillFile();
+                    out = Files.newOutputStream(spill);
+                    memory.writeTo(out);
+                    memory = null;
+                }
+                out.write(chunk, 0, read);
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            if (spill != null) {
+                Files.deleteIfExists(spill);
+            }
+            throw e;
+        }
+        return new IngestedPart(name, filename, contentType, size, digest.digest(),
+            memory != null ? memory.toByteArray() : null, spill);
+    }
+
+    private static String readField(InputStream part, String name) throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = part.read(chunk, 0, chunk.length)) != -1) {
+            if (value.size() + read > MAX_FIELD_SIZE) {
+                throw new IngestLimitExceededException("Form field " + name + " is too large", MAX_FIELD_SIZE);
+            }
+            value.write(chunk, 0, read);
+        }
+        return new String(value.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Part headers by lower-case name.
+     */
+    private static Map<String, String> headers(String block) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String line : block.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * The ;-separated parameters of a header value, names lower-cased, quoted
+     * values unquoted.
+     */
+    static Map<String, String> parameters(String value) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        int i = value.indexOf(';');
+        while (i >= 0 && i < value.length()) {
+            i++;
+            int equals = value.indexOf('=', i);
+            int semicolon = value.indexOf(';', i);
+            if (equals < 0 || (semicolon >= 0 && semicolon < equals)) {
+                i = semicolon;
+                continue;
+            }
+            String name = value.substring(i, equals).trim().toLowerCase(Locale.ROOT);
+            int start = equals + 1;
+            while (start < value.length() && value.charAt(start) == ' ') {
+                start++;
+            }
+            StringBuilder parameter = new StringBuilder();
+            if (start < value.length() && value.charAt(start) == '"') {
+                int j = start + 1;
+                while (j < value.length() && value.charAt(j) != '"') {
+                    char c = value.charAt(j);
+                    // Browsers send Windows paths unescaped; only \" and \\ are escapes
+                    if (c == '\\' && j + 1 < value.length()
+                            && (value.charAt(j + 1) == '"' || value.charAt(j + 1) == '\\')) {
+                        c = value.charAt(++j);
+                    }
+                    parameter.append(c);
+                    j++;
+                }
+                i = value.indexOf(';', j);
+            } else {
+                int end = semicolon >= 0 ? semicolon : value.length();
+                parameter.append(value.substring(start, end).trim());
+                i = semicolon;
+            }
+            parameters.put(name, parameter.toString());
+        }
+        return parameters;
+    }
+
+    /**
+     * An RFC 5987 value such as UTF-8''contrato%20assinado.pdf.
+     */
+    private static String decodeExtended(String value) {
+        int quote = value.indexOf("''");
+        if (quote < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value.substring(quote + 2).replace("+", "%2B"), value.substring(0, quote));
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value.substring(quote + 2);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Fails the read once more than limit bytes have come through.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws IngestLimitExceededException {
+            count += read;
+            if (limit >= 0 && count > limit) {
+                throw new IngestLimitExceededException(
+                    "Request exceeds the maximum size of " + limit + " bytes", limit);
+            }
+        }
+    }
+}
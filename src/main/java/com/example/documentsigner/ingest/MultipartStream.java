@@ -0,0 +1,210 @@
+package com.example.documentsigner.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental reader of a multipart body (RFC 7578).
+ *
+ * Parts are read one at a time straight from the request stream through a
+ * fixed buffer: nextPart() skips to the next part and returns its headers, and
+ * partStream() then reads that part's content up to the following delimiter.
+ * Nothing beyond the buffer is held in memory.
+ */
+final class MultipartStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean finished;
+    private PartStream current;
+
+    /**
+     * @param in The request body
+     * @param boundary The boundary from the Content-Type header
+     */
+    MultipartStream(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 4)];
+        // The first delimiter is not preceded by a line break; start with one so it matches like the others
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * Skips the rest of the current part (or the preamble) and reads the
+     * headers of the next one.
+     *
+     * @return The raw header block, or null after the last part
+     * @throws MalformedMultipartException if the body is not valid multipart
+     */
+    String nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        PartStream skipped = current != null ? current : new PartStream();
+        byte[] discard = new byte[8192];
+        while (skipped.read(discard, 0, discard.length) != -1) {
+            // skip
+        }
+        current = null;
+
+        head += delimiter.length;
+        ensure(2, "after a boundary");
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        if (buffer[head] != '\r' || buffer[head + 1] != '\n') {
+            throw new MalformedMultipartException("Boundary is not followed by a line break");
+        }
+        head += 2;
+
+        String headers = readHeaders();
+        current = new PartStream();
+        return headers;
+    }
+
+    /**
+     * Content of the part whose headers nextPart() returned last.
+     */
+    InputStream partStream() {
+        if (current == null) {
+            throw new IllegalStateException("No current part");
+        }
+        return current;
+    }
+
+    private String readHeaders() throws IOException {
+        ensure(2, "in part headers");
+        if (buffer[head] == '\r' && buffer[head + 1] == '\n') {
+            head += 2;
+            return "";
+        }
+        int searched = head;
+        while (true) {
+            int end = indexOf(HEADER_END, searched, tail);
+            if (end >= 0) {
+                String headers = new String(buffer, head, end - head, StandardCharsets.UTF_8);
+                head = end + HEADER_END.length;
+                return headers;
+            }
+            if (tail - head >= MAX_HEADER_SIZE) {
+                throw new MalformedMultipartException("Part headers too large");
+            }
+            searched = Math.max(head, tail - HEADER_END.length + 1);
+            int before = head;
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of body in part headers");
+            }
+            searched -= before - head;
+        }
+    }
+
+    /**
+     * Makes at least count bytes available from head.
+     */
+    private void ensure(int count, String where) throws IOException {
+        while (tail - head < count) {
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of body " + where);
+            }
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front and reads more after them.
+     *
+     * @return false at the end of the body
+     */
+    private boolean fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read == -1) {
+            return false;
+        }
+        tail += read;
+        return true;
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads up to the next delimiter, holding back the last delimiter.length - 1
+     * bytes of the buffer while no delimiter is in sight, since one may start there.
+     */
+    private final class PartStream extends InputStream {
+        private boolean ended;
+        private int scanned;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int found = indexOf(delimiter, Math.max(head, scanned), tail);
+                int available = found >= 0 ? found - head : tail - head - (delimiter.length - 1);
+                if (available > 0) {
+                    int count = Math.min(len, available);
+                    System.arraycopy(buffer, head, b, off, count);
+                    head += count;
+                    scanned = found >= 0 ? head : Math.max(head, tail - delimiter.length + 1);
+                    return count;
+                }
+                if (found >= 0) {
+                    ended = true;
+                    return -1;
+                }
+                scanned = Math.max(head, tail - delimiter.length + 1);
+                int before = head;
+                if (!fill()) {
+                    throw new MalformedMultipartException("Unexpected end of body in part content");
+                }
+                scanned -= before - head;
+            }
+        }
+    }
+
+    /**
+     * The body does not follow the multipart format.
+     */
+    static final class MalformedMultipartException extends IOException {
+        MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.documentsigner.ingest;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A document uploaded in chunks, in any order, into a file of known length.
+ *
+ * - Chunks are written at their offsets with positional writes, so they can
+ *   arrive out of order, in parallel or again after a dropped connection; the
+ *   ranges received so far are tracked, including the part of a chunk that
+ *   arrived before its connection dropped.
+ * - The SHA-256 is computed incrementally over the contiguous prefix: a chunk
+ *   that continues the prefix is hashed as it is written, and chunks that
+ *   arrived early are hashed from the file once the gap before them is filled.
+ * - A chunk that overwrites bytes already received, or is written while
+ *   another chunk is, may change bytes that were already hashed, so the whole
+ *   file is hashed again when the upload is completed.
+ */
+public class ResumableUpload {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final String id;
+    private final String filename;
+    private final long length;
+    private final Path file;
+    private final FileChannel channel;
+    private final Instant createdAt;
+    private final MessageDigest digest;
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private long hashedUpTo;
+    private boolean hashing;
+    private int writers;
+    private boolean rewritten;
+    private volatile long lastActivity;
+    private volatile byte[] sha256;
+
+    ResumableUpload(String id, String filename, long length, Path file) throws IOException {
+        this.id = id;
+        this.filename = filename;
+        this.length = length;
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.createdAt = Instant.now();
+        this.lastActivity = System.currentTimeMillis();
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Total length declared when the upload was created.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Bytes received so far, counting overlapping chunks once.
+     */
+    public synchronized long getReceived() {
+        long received = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            received += range.getValue() - range.getKey();
+        }
+        return received;
+    }
+
+    /**
+     * Received ranges as [start, end) pairs, in order.
+     */
+    public synchronized List<long[]> getRanges() {
+        List<long[]> list = new ArrayList<>();
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            list.add(new long[] {range.getKey(), range.getValue()});
+        }
+        return list;
+    }
+
+    /**
+     * Where a sequential client should resume: the end of the range starting at 0.
+     */
+    public synchronized long getNextOffset() {
+        Long end = ranges.get(0L);
+        return end != null ? end : 0;
+    }
+
+    public boolean isComplete() {
+        return sha256 != null;
+    }
+
+    /**
+     * SHA-256 of the document, once completed.
+     */
+    public String getSha256Hex() {
+        byte[] hash = sha256;
+        return hash != null ? Hex.toHexString(hash) : null;
+    }
+
+    byte[] getSha256() {
+        return sha256;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Write a chunk read from data at offset. Bytes written before a failure
+     * (e.g. the client disconnecting) stay recorded as received.
+     *
+     * @throws IllegalArgumentException if the chunk falls outside the declared length
+     * @throws IllegalStateException if the upload is already complete
+     */
+    void write(long offset, InputStream data) throws IOException {
+        if (sha256 != null) {
+            throw new IllegalStateException("Upload " + id + " is already complete");
+        }
+        if (offset < 0 || offset > length) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the upload (length " + length + ")");
+        }
+
+        boolean inline;
+        synchronized (this) {
+            // Checked again under the lock, so no chunk lands after the digest is taken
+            if (sha256 != null) {
+                throw new IllegalStateException("Upload " + id + " is already complete");
+            }
+            inline = !hashing && offset == hashedUpTo;
+            hashing |= inline;
+            rewritten |= ++writers > 1;
+        }
+        long position = offset;
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = data.read(chunk, 0, chunk.length)) != -1) {
+                if (position + read > length) {
+                    throw new IllegalArgumentException("Chunk extends past the end of the upload (length "
+                        + length + ")");
+                }
+                synchronized (this) {
+                    rewritten |= overlapsReceived(position, position + read);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                if (inline) {
+                    digest.update(chunk, 0, read);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                writers--;
+                addRange(offset, position);
+                if (inline) {
+                    hashedUpTo = position;
+                    hashing = false;
+                }
+                lastActivity = System.currentTimeMillis();
+            }
+        }
+        catchUp();
+    }
+
+    /**
+     * Finish the upload once every byte has arrived and the hash matches.
+     *
+     * @param expectedSha256Hex SHA-256 the client computed
+     * @throws IllegalStateException if bytes are missing or a chunk is still being written
+     * @throws IllegalArgumentException if the hash differs; the upload stays open and is rehashed
+     *         from the file on the next attempt, so corrupted chunks can be sent again
+     */
+    void complete(String expectedSha256Hex) throws IOException {
+        if (sha256 != null) {
+            if (!Hex.toHexString(sha256).equalsIgnoreCase(expectedSha256Hex)) {
+                throw new IllegalArgumentException("Digest mismatch: the upload's SHA-256 is " + getSha256Hex());
+            }
+            return;
+        }
+        synchronized (this) {
+            if (hashing || writers > 0) {
+                throw new IllegalStateException("A chunk of upload " + id + " is still being written");
+            }
+            if (rewritten) {
+                // Bytes already hashed may have changed: hash the file again from the start
+                digest.reset();
+                hashedUpTo = 0;
+                rewritten = false;
+            }
+        }
+        catchUp();
+        synchronized (this) {
+            if (hashing || writers > 0 || rewritten) {
+                throw new IllegalStateException("A chunk of upload " + id + " is still being written");
+            }
+            if (hashedUpTo != length) {
+                throw new IllegalStateException("Upload " + id + " is incomplete: " + getReceived() + " of "
+                    + length + " bytes received");
+            }
+            byte[] actual = digest.digest();
+            if (!Hex.toHexString(actual).equalsIgnoreCase(expectedSha256Hex)) {
+                hashedUpTo = 0;
+                throw new IllegalArgumentException("Digest mismatch: the upload's SHA-256 is "
+                    + Hex.toHexString(actual));
+            }
+            sha256 = actual;
+            lastActivity = System.currentTimeMillis();
+        }
+        channel.close();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to flush: positional writes go straight to the file
+        }
+    }
+
+    /**
+     * Hashes from the file any received bytes that now continue the hashed
+     * prefix, unless another thread is already hashing.
+     */
+    private void catchUp() throws IOException {
+        while (true) {
+            long from;
+            long to;
+            synchronized (this) {
+                Map.Entry<Long, Long> range = ranges.floorEntry(hashedUpTo);
+                if (hashing || range == null || range.getValue() <= hashedUpTo) {
+                    return;
+                }
+                hashing = true;
+                from = hashedUpTo;
+                to = range.getValue();
+            }
+            long position = from;
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                while (position < to) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(CHUNK_SIZE, to - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    digest.update(buffer.array(), 0, read);
+                    position += read;
+                }
+            } finally {
+                synchronized (this) {
+                    hashedUpTo = position;
+                    hashing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether any of [start, end) was already received. Called with the lock held.
+     */
+    private boolean overlapsReceived(long start, long end) {
+        Map.Entry<Long, Long> before = ranges.lowerEntry(end);
+        return before != null && before.getValue() > start;
+    }
+
+    /**
+     * Records [start, end), merging it with the ranges it touches.
+     */
+    private void addRange(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(start);
+        }
+        ranges.put(start, end);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.documentsigner.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads of documents too large to send reliably in one request.
+ *
+ * - The client creates an upload with the document's length, PUTs chunks at
+ *   their offsets (in any order, retrying any that failed) and completes it
+ *   with the SHA-256 it computed; see ResumableUpload.
+ * - A completed upload can be used by any endpoint as upload:&lt;id&gt; (see
+ *   DocumentReferences) until it expires.
+ * - Uploads expire expiryMillis after their last chunk or completion and
+ *   their files are removed. Upload state is held in memory, so files left
+ *   from a previous run are removed at startup.
+ * - A completed upload resolved as a reference is pinned until the request
+ *   releases it: deleting or expiring it forgets it at once, but its file is
+ *   removed only when the last pin is released.
+ * - At most maxOpenUploads uploads may be incomplete at a time, since each
+ *   keeps its file open; completed uploads do not count.
+ */
+public class ResumableUploadStore implements Closeable {
+
+    public static final String REFERENCE_SCHEME = "upload";
+
+    private static final String FILE_SUFFIX = ".upload";
+
+    private final Path directory;
+    private final long maxLength;
+    private final long expiryMillis;
+    private final int maxOpenUploads;
+    private final Map<String, ResumableUpload> uploads = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    /**
+     * @param directory Directory for the upload files
+     * @param maxLength Largest document accepted, in bytes; -1 for no limit
+     * @param expiryMillis How long an idle or completed upload is kept
+     * @param maxOpenUploads Most incomplete uploads at a time
+     */
+    public ResumableUploadStore(Path directory, long maxLength, long expiryMillis, int maxOpenUploads)
+            throws IOException {
+        this.directory = directory;
+        this.maxLength = maxLength;
+        this.expiryMillis = expiryMillis;
+        this.maxOpenUploads = maxOpenUploads;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * @param filename Name of the document, used for the uploaded file
+     * @param length Length of the document in bytes
+     * @throws IllegalArgumentException if the length is negative or over the limit
+     * @throws TooManyUploadsException if maxOpenUploads uploads are already open
+     */
+    public synchronized ResumableUpload create(String filename, long length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Upload length must not be negative");
+        }
+        if (maxLength >= 0 && length > maxLength) {
+            throw new IngestLimitExceededException(
+                "Upload of " + length + " bytes exceeds the maximum of " + maxLength + " bytes", maxLength);
+        }
+        evictExpired();
+        int open = 0;
+        for (ResumableUpload upload : uploads.values()) {
+            if (!upload.isComplete()) {
+                open++;
+            }
+        }
+        if (open >= maxOpenUploads) {
+            throw new TooManyUploadsException("Too many open uploads (" + open
+                + "); complete or delete one, or retry later");
+        }
+        String id = UUID.randomUUID().toString();
+        ResumableUpload upload = new ResumableUpload(id, filename, length, directory.resolve(id + FILE_SUFFIX));
+        uploads.put(id, upload);
+        return upload;
+    }
+
+    /**
+     * @return The upload, or null if unknown or expired
+     */
+    public ResumableUpload get(String id) {
+        evictExpired();
+        return uploads.get(id);
+    }
+
+    /**
+     * Writes a chunk at offset.
+     *
+     * @return The upload, or null if unknown or expired
+     * @see ResumableUpload#write(long, InputStream)
+     */
+    public ResumableUpload write(String id, long offset, InputStream data) throws IOException {
+        ResumableUpload upload = get(id);
+        if (upload != null) {
+            upload.write(offset, data);
+        }
+        return upload;
+    }
+
+    /**
+     * Completes the upload, checking its SHA-256.
+     *
+     * @return The upload, or null if unknown or expired
+     * @see ResumableUpload#complete(String)
+     */
+    public ResumableUpload complete(String id, String sha256Hex) throws IOException {
+        ResumableUpload upload = get(id);
+        if (upload != null) {
+            upload.complete(sha256Hex);
+        }
+        return upload;
+    }
+
+    /**
+     * Abandons an upload and removes its file.
+     *
+     * @return false if unknown or expired
+     */
+    public boolean delete(String id) {
+        ResumableUpload upload = uploads.remove(id);
+        if (upload == null) {
+            return false;
+        }
+        discard(upload);
+        return true;
+    }
+
+    /**
+     * A completed upload as a part borrowing its file, for DocumentReferences.
+     * The upload is pinned, so its file stays while the request reads it,
+     * until the part's delete() releases it.
+     *
+     * @return The part, or null if unknown, expired or not completed
+     */
+    public synchronized IngestedPart resolve(String name, String id) {
+        ResumableUpload upload = get(id);
+        if (upload == null || !upload.isComplete()) {
+            return null;
+        }
+        pins.merge(id, 1, Integer::sum);
+        return new IngestedPart(name, upload.getFilename(), null, upload.getLength(), upload.getSha256(), null,
+            upload.getFile(), false, () -> unpin(upload));
+    }
+
+    /**
+     * Whether a request is reading the upload.
+     */
+    public synchronized boolean isPinned(String id) {
+        return pins.containsKey(id);
+    }
+
+    public int size() {
+        return uploads.size();
+    }
+
+    @Override
+    public void close() {
+        for (ResumableUpload upload : uploads.values()) {
+            upload.close();
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - expiryMillis;
+        Iterator<ResumableUpload> it = uploads.values().iterator();
+        while (it.hasNext()) {
+            ResumableUpload upload = it.next();
+            if (upload.getLastActivity() < cutoff) {
+                it.remove();
+                discard(upload);
+            }
+        }
+    }
+
+    private synchronized void unpin(ResumableUpload upload) {
+        Integer count = pins.get(upload.getId());
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(upload.getId(), count - 1);
+            return;
+        }
+        pins.remove(upload.getId());
+        if (uploads.get(upload.getId()) != upload) {
+            // Deleted or expired while pinned
+            discard(upload);
+        }
+    }
+
+    /**
+     * Closes a forgotten upload and removes its file, unless a request still
+     * reads it; unpin() removes it then.
+     */
+    private synchronized void discard(ResumableUpload upload) {
+        if (pins.containsKey(upload.getId())) {
+            return;
+        }
+        upload.close();
+        try {
+            Files.deleteIfExists(upload.getFile());
+        } catch (IOException ignored) {
+            // Removed again at the next startup
+        }
+    }
+}
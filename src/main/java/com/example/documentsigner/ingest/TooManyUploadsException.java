@@ -0,0 +1,13 @@
+package com.example.documentsigner.ingest;
+
+import java.io.IOException;
+
+/**
+ * A resumable upload was refused because the most uploads allowed are already open.
+ */
+public class TooManyUploadsException extends IOException {
+
+    public TooManyUploadsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.documentsigner.ltv;
+
+import com.example.documentsigner.exception.RevocationException;
+import com.example.documentsigner.net.GuardedHttpClient;
+import org.bouncycastle.asn1.ASN1IA5String;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downloads CRLs from the distribution points named in certificates.
+ *
+ * A CRL is kept until its nextUpdate, capped at maxAgeMillis, so documents
+ * signed under the same chain share one download per distribution point.
+ * Concurrent requests for the same URL wait for a single download. CRLs are
+ * interned in the ValidationDataCache, which means each one is parsed and
+ * compressed only once.
+ *
+ * Distribution point URLs come from certificates in uploaded documents, so
+ * they are fetched through a GuardedHttpClient (public addresses only, no
+ * redirects, bounded size), and a CRL is only accepted when it is signed by
+ * the issuer of the certificate it was fetched for. At most maxEntries CRLs
+ * are kept, least recently used first out.
+ */
+public class CrlFetcher {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ValidationDataCache cache;
+    private final GuardedHttpClient http;
+    private final long maxAgeMillis;
+    private final Map<String, CachedCrl> crls;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * @param cache Cache the downloaded CRLs are interned in
+     * @param http Client the CRLs are downloaded with
+     * @param maxAgeMillis Longest a CRL is reused, whatever its nextUpdate
+     * @param maxEntries Most CRLs kept
+     */
+    public CrlFetcher(ValidationDataCache cache, GuardedHttpClient http, long maxAgeMillis, int maxEntries) {
+        this.cache = cache;
+        this.http = http;
+        this.maxAgeMillis = maxAgeMillis;
+        this.crls = new LinkedHashMap<String, CachedCrl>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCrl> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the current CRL published at the URL by issuer, downloading it if
+     * the cached copy is missing or stale.
+     *
+     * @param issuer Issuer of the certificate naming the URL; the CRL must be signed by its key
+     * @throws RevocationException if the CRL cannot be downloaded, parsed or is not the issuer's
+     */
+    public ValidationDataCache.Entry fetch(String url, X509Certificate issuer) {
+        String key = url + "\n" + issuer.getSubjectX500Principal().getName();
+        CachedCrl cached = cached(key, issuer);
+        if (cached != null) {
+            return cached.entry;
+        }
+
+        synchronized (locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES]) {
+            cached = cached(key, issuer);
+            if (cached != null) {
+                return cached.entry;
+            }
+
+            byte[] der;
+            X509CRL crl;
+            try {
+                der = download(url);
+                crl = (X509CRL) CertificateFactory.getInstance("X.509")
+                    .generateCRL(new ByteArrayInputStream(der));
+            } catch (IOException | CertificateException | CRLException e) {
+                throw new RevocationException("Failed to fetch CRL from " + url + ": " + e.getMessage(), e);
+            }
+            try {
+                if (!crl.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
+                    throw new GeneralSecurityException("issued by " + crl.getIssuerX500Principal().getName());
+                }
+                crl.verify(issuer.getPublicKey());
+            } catch (GeneralSecurityException e) {
+                throw new RevocationException("CRL from " + url + " is not signed by "
+                    + issuer.getSubjectX500Principal().getName() + ": " + e.getMessage(), e);
+            }
+
+            long expiresAt = System.currentTimeMillis() + maxAgeMillis;
+            if (crl.getNextUpdate() != null) {
+                expiresAt = Math.min(expiresAt, crl.getNextUpdate().getTime());
+            }
+            cached = new CachedCrl(cache.intern(der), issuer.getPublicKey(), expiresAt);
+            synchronized (crls) {
+                crls.put(key, cached);
+            }
+            return cached.entry;
+        }
+    }
+
+    /**
+     * The cached CRL under the key if it is fresh and was verified with the
+     * issuer's key, else null.
+     */
+    private CachedCrl cached(String key, X509Certificate issuer) {
+        CachedCrl cached;
+        synchronized (crls) {
+            cached = crls.get(key);
+        }
+        return cached != null && !cached.isExpired() && cached.issuerKey.equals(issuer.getPublicKey())
+            ? cached : null;
+    }
+
+    /**
+     * HTTP(S) URLs of the certificate's CRL distribution points. LDAP and other
+     * schemes are skipped.
+     */
+    public static List<String> getDistributionPoints(X509Certificate certificate) {
+        List<String> urls = new ArrayList<>();
+        byte[] extension = certificate.getExtensionValue(Extension.cRLDistributionPoints.getId());
+        if (extension == null) {
+            return urls;
+        }
+
+        try {
+            ASN1Primitive value = ASN1Primitive.fromByteArray(
+                ASN1OctetString.getInstance(extension).getOctets());
+            for (DistributionPoint point : CRLDistPoint.getInstance(value).getDistributionPoints()) {
+                DistributionPointName name = point.getDistributionPoint();
+                if (name == null || name.getType() != DistributionPointName.FULL_NAME) {
+                    continue;
+                }
+                for (GeneralName generalName : GeneralNames.getInstance(name.getName()).getNames()) {
+                    if (generalName.getTagNo() == GeneralName.uniformResourceIdentifier) {
+                        String url = ASN1IA5String.getInstance(generalName.getName()).getString();
+                        if (url.startsWith("http://") || url.startsWith("https://")) {
+                            urls.add(url);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // A malformed extension names no usable distribution point
+        }
+        return urls;
+    }
+
+    private byte[] download(String url) throws IOException {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IOException("Malformed URL");
+        }
+        GuardedHttpClient.Response response = http.get(uri);
+        if (response.getStatus() != 200) {
+            throw new IOException("HTTP " + response.getStatus());
+        }
+        return response.getBody();
+    }
+
+    private static final class CachedCrl {
+        private final ValidationDataCache.Entry entry;
+        private final PublicKey issuerKey;
+        private final long expiresAt;
+
+        private CachedCrl(ValidationDataCache.Entry entry, PublicKey issuerKey, long expiresAt) {
+            this.entry = entry;
+            this.issuerKey = issuerKey;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
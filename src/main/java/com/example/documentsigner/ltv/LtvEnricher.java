@@ -0,0 +1,339 @@
+package com.example.documentsigner.ltv;
+
+import com.example.documentsigner.exception.InvalidDocumentException;
+import com.example.documentsigner.exception.RevocationException;
+import com.example.documentsigner.exception.SigningException;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.PathValidationResult;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds long-term validation data to signed PDFs (PAdES-LT).
+ *
+ * For every signature and document timestamp in the document, the enricher
+ * collects the certificates carried in the CMS (and in its signature timestamp
+ * tokens). Each signer's chain is validated with the CertificatePathValidator,
+ * and a CRL is downloaded for every certificate below the trust anchor on the
+ * validated path, checked against its issuer's key. Certificates that do not
+ * chain to a trusted root get no CRL: their distribution points are whatever
+ * the uploader wrote, and are never fetched. It then appends an incremental revision whose catalog /DSS dictionary lists
+ * those objects. A /VRI entry per signature, keyed by the SHA-1 of its
+ * /Contents, points at the objects that apply to that signature.
+ *
+ * Each object is written to the document once, and signatures that share a
+ * certificate or CRL reference the same stream. Across documents, the
+ * ValidationDataCache and CrlFetcher share downloads and compressed stream
+ * bodies. An existing DSS is extended, not replaced.
+ */
+public class LtvEnricher {
+
+    private static final COSName DSS = COSName.getPDFName("DSS");
+    private static final COSName VRI = COSName.getPDFName("VRI");
+    private static final COSName CERTS = COSName.getPDFName("Certs");
+    private static final COSName CRLS = COSName.getPDFName("CRLs");
+    private static final COSName OCSPS = COSName.getPDFName("OCSPs");
+    private static final COSName CERT = COSName.getPDFName("Cert");
+    private static final COSName CRL = COSName.getPDFName("CRL");
+    private static final COSName OCSP = COSName.getPDFName("OCSP");
+
+    private final ValidationDataCache cache;
+    private final CrlFetcher crlFetcher;
+    private final CertificatePathValidator certificatePathValidator;
+
+    public LtvEnricher(ValidationDataCache cache, CrlFetcher crlFetcher,
+                       CertificatePathValidator certificatePathValidator) {
+        this.cache = cache;
+        this.crlFetcher = crlFetcher;
+        this.certificatePathValidator = certificatePathValidator;
+    }
+
+    public ValidationDataCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Appends a DSS revision covering every signature in the document.
+     *
+     * @param signedPdfBytes Signed PDF
+     * @return The PDF with the DSS revision appended
+     * @throws InvalidDocumentException if the PDF is invalid or has no signatures
+     * @throws RevocationException if a CRL cannot be fetched
+     */
+    public byte[] addValidationData(byte[] signedPdfBytes) throws SigningException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+            (signedPdfBytes != null ? signedPdfBytes.length : 0) + 16384);
+        addValidationData(signedPdfBytes, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Appends a DSS revision as addValidationData does, writing the PDF to
+     * output. Certificates and CRLs are all gathered before the first byte is
+     * written, so a CRL that cannot be fetched leaves output untouched.
+     *
+     * @param output Receives the PDF with the DSS revision appended; not closed
+     */
+    public void addValidationData(byte[] signedPdfBytes, OutputStream output) throws SigningException {
+        if (signedPdfBytes == null || signedPdfBytes.length == 0) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+
+        try {
+            PDDocument document;
+            try {
+                document = PDDocument.load(signedPdfBytes);
+            } catch (IOException e) {
+                throw new InvalidDocumentException("Invalid PDF format: " + e.getMessage(), e);
+            }
+
+            try {
+                List<PDSignature> signatures = document.getSignatureDictionaries();
+                if (signatures.isEmpty()) {
+                    throw new InvalidDocumentException("Document has no signatures to add validation data for");
+                }
+
+                COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+                Dss dss = new Dss(document.getDocument(), catalog.getCOSDictionary(DSS));
+
+                for (PDSignature signature : signatures) {
+                    byte[] contents = signature.getContents(signedPdfBytes);
+                    addSignature(dss, vriKey(contents), new CMSSignedData(contents));
+                }
+
+                catalog.setItem(DSS, dss.toDictionary());
+                catalog.setNeedToBeUpdated(true);
+
+                document.saveIncremental(output);
+
+            } finally {
+                document.close();
+            }
+
+        } catch (InvalidDocumentException | RevocationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to add validation data: " + e.getMessage(), e);
+        }
+    }
+
+    private void addSignature(Dss dss, String vriKey, CMSSignedData cms) throws Exception {
+        Set<X509CertificateHolder> certificates = new LinkedHashSet<>();
+        List<CMSSignedData> tokens = new ArrayList<>();
+        tokens.add(cms);
+        for (SignerInformation signer : cms.getSignerInfos().getSigners()) {
+            AttributeTable unsigned = signer.getUnsignedAttributes();
+            if (unsigned == null) {
+                continue;
+            }
+            ASN1EncodableVector attributes = unsigned.getAll(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken);
+            for (int i = 0; i < attributes.size(); i++) {
+                for (ASN1Encodable token : ((Attribute) attributes.get(i)).getAttrValues().toArray()) {
+                    tokens.add(new CMSSignedData(ContentInfo.getInstance(token)));
+                }
+            }
+        }
+
+        COSArray vriCerts = new COSArray();
+        COSArray vriCrls = new COSArray();
+        COSArray vriOcsps = new COSArray();
+
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter();
+        Date now = new Date();
+        for (CMSSignedData token : tokens) {
+            List<X509Certificate> supplied = new ArrayList<>();
+            for (X509CertificateHolder holder : token.getCertificates().getMatches(null)) {
+                certificates.add(holder);
+                supplied.add(converter.getCertificate(holder));
+            }
+            for (X509CRLHolder crl : token.getCRLs().getMatches(null)) {
+                addOnce(vriCrls, dss.crls.add(cache.intern(crl.getEncoded())));
+            }
+            for (Object ocsp : token.getOtherRevocationInfo(CMSObjectIdentifiers.id_ri_ocsp_response)
+                    .getMatches(null)) {
+                byte[] encoded = ((ASN1Encodable) ocsp).toASN1Primitive().getEncoded();
+                addOnce(vriOcsps, dss.ocsps.add(cache.intern(encoded)));
+            }
+
+            for (SignerInformation signer : token.getSignerInfos().getSigners()) {
+                Collection<X509CertificateHolder> signerCerts = token.getCertificates().getMatches(signer.getSID());
+                if (signerCerts.isEmpty()) {
+                    continue;
+                }
+                PathValidationResult path = certificatePathValidator.validate(
+                    converter.getCertificate(signerCerts.iterator().next()), supplied, now);
+                if (!path.isValid()) {
+                    continue;
+                }
+                List<X509Certificate> chain = path.getPath();
+                for (int i = 0; i < chain.size(); i++) {
+                    certificates.add(new X509CertificateHolder(chain.get(i).getEncoded()));
+                    if (i + 1 < chain.size()) {
+                        for (String url : CrlFetcher.getDistributionPoints(chain.get(i))) {
+                            addOnce(vriCrls, dss.crls.add(crlFetcher.fetch(url, chain.get(i + 1))));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (X509CertificateHolder holder : certificates) {
+            vriCerts.add(dss.certs.add(cache.intern(holder.getEncoded())));
+        }
+
+        COSDictionary vri = new COSDictionary();
+        vri.setItem(CERT, vriCerts);
+        if (vriCrls.size() > 0) {
+            vri.setItem(CRL, vriCrls);
+        }
+        if (vriOcsps.size() > 0) {
+            vri.setItem(OCSP, vriOcsps);
+        }
+        dss.vri.setItem(COSName.getPDFName(vriKey), vri);
+    }
+
+    private static void addOnce(COSArray array, COSBase object) {
+        if (array.indexOf(object) < 0) {
+            array.add(object);
+        }
+    }
+
+    /**
+     * VRI key: upper-case hex SHA-1 of the signature's /Contents.
+     */
+    private static String vriKey(byte[] contents) throws NoSuchAlgorithmException {
+        return Hex.toHexString(MessageDigest.getInstance("SHA-1").digest(contents)).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The DSS being built: the entries of any existing DSS plus the new ones.
+     */
+    private static final class Dss {
+        private final COSDictionary vri = new COSDictionary();
+        private final Section certs;
+        private final Section crls;
+        private final Section ocsps;
+
+        private Dss(COSDocument document, COSDictionary existing) throws IOException {
+            COSDictionary source = existing != null ? existing : new COSDictionary();
+            this.certs = new Section(document, source.getCOSArray(CERTS));
+            this.crls = new Section(document, source.getCOSArray(CRLS));
+            this.ocsps = new Section(document, source.getCOSArray(OCSPS));
+
+            COSDictionary existingVri = source.getCOSDictionary(VRI);
+            if (existingVri != null) {
+                for (Map.Entry<COSName, COSBase> entry : existingVri.entrySet()) {
+                    vri.setItem(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private COSDictionary toDictionary() {
+            COSDictionary dictionary = new COSDictionary();
+            dictionary.setItem(COSName.TYPE, DSS);
+            certs.addTo(dictionary, CERTS);
+            crls.addTo(dictionary, CRLS);
+            ocsps.addTo(dictionary, OCSPS);
+            dictionary.setItem(VRI, vri);
+            dictionary.setNeedToBeUpdated(true);
+            return dictionary;
+        }
+    }
+
+    /**
+     * One DSS array (/Certs, /CRLs or /OCSPs), holding each object once.
+     */
+    private static final class Section {
+        private final COSDocument document;
+        private final COSArray array = new COSArray();
+        private final Map<String, COSBase> byHash = new HashMap<>();
+
+        private Section(COSDocument document, COSArray existing) throws IOException {
+            this.document = document;
+            if (existing == null) {
+                return;
+            }
+            for (int i = 0; i < existing.size(); i++) {
+                COSBase stream = existing.getObject(i);
+                if (stream instanceof COSStream) {
+                    // Keep the existing reference so the object is not written again
+                    array.add(existing.get(i));
+                    byHash.put(Hex.toHexString(ValidationDataCache.sha256(read((COSStream) stream))),
+                        existing.get(i));
+                }
+            }
+        }
+
+        private COSBase add(ValidationDataCache.Entry entry) throws IOException {
+            COSBase stream = byHash.get(entry.getHash());
+            if (stream != null) {
+                return stream;
+            }
+
+            COSStream created = document.createCOSStream();
+            try (OutputStream out = created.createRawOutputStream()) {
+                out.write(entry.getCompressed());
+            }
+            created.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            created.setNeedToBeUpdated(true);
+
+            array.add(created);
+            byHash.put(entry.getHash(), created);
+            return created;
+        }
+
+        private void addTo(COSDictionary dictionary, COSName key) {
+            if (array.size() > 0) {
+                dictionary.setItem(key, array);
+            }
+        }
+
+        private static byte[] read(COSStream stream) throws IOException {
+            try (InputStream in = stream.createInputStream()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] data = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+                    buffer.write(data, 0, bytesRead);
+                }
+                return buffer.toByteArray();
+            }
+        }
+    }
+}
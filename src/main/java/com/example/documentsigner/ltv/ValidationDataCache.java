@@ -0,0 +1,134 @@
+package com.example.documentsigner.ltv;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Content-addressed cache of the certificates, CRLs and OCSP responses written
+ * into DSS dictionaries.
+ *
+ * Each object is keyed by the SHA-256 of its DER encoding. Its Flate-compressed
+ * stream body is encoded once, when the object is first seen. Enriching many
+ * documents under the same chain then copies the same compressed bytes into
+ * every DSS instead of re-encoding them. The cache is bounded, least recently
+ * used entries being dropped first, and is thread-safe.
+ */
+public class ValidationDataCache {
+
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries Maximum objects kept
+     */
+    public ValidationDataCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, ValidationDataCache.Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ValidationDataCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached entry for a DER-encoded object, adding it on first use.
+     */
+    public Entry intern(byte[] der) {
+        String hash = Hex.toHexString(sha256(der));
+        synchronized (entries) {
+            Entry entry = entries.get(hash);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry;
+            }
+        }
+
+        misses.incrementAndGet();
+        Entry entry = new Entry(hash, der, deflate(der));
+        synchronized (entries) {
+            Entry existing = entries.get(hash);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(hash, entry);
+        }
+        return entry;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * A validation object with its content hash and FlateDecode-encoded body.
+     */
+    public static final class Entry {
+        private final String hash;
+        private final byte[] der;
+        private final byte[] compressed;
+
+        private Entry(String hash, byte[] der, byte[] compressed) {
+            this.hash = hash;
+            this.der = der;
+            this.compressed = compressed;
+        }
+
+        /**
+         * Lower-case hex SHA-256 of the DER encoding.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public byte[] getDer() {
+            return der;
+        }
+
+        public byte[] getCompressed() {
+            return compressed;
+        }
+    }
+}
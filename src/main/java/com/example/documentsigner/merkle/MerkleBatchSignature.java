@@ -0,0 +1,42 @@
+package com.example.documentsigner.merkle;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+
+import java.util.List;
+
+/**
+ * Result of signing a batch in Merkle mode: one CMS signature over the root
+ * and one inclusion proof per document, in batch order.
+ */
+public class MerkleBatchSignature {
+
+    /**
+     * eContentType of a root signature (2.999 is the example arc). The signed
+     * content-type attribute covers it, so an ordinary signature over some
+     * 32-byte document cannot be passed off as a batch root, nor the other way round.
+     */
+    public static final ASN1ObjectIdentifier ROOT_CONTENT_TYPE = new ASN1ObjectIdentifier("2.999.6962.1");
+
+    private final byte[] root;
+    private final byte[] rootSignature;
+    private final List<MerkleProof> proofs;
+
+    public MerkleBatchSignature(byte[] root, byte[] rootSignature, List<MerkleProof> proofs) {
+        this.root = root;
+        this.rootSignature = rootSignature;
+        this.proofs = proofs;
+    }
+
+    public byte[] getRoot() {
+        return root;
+    }
+
+    /** P7S signature encapsulating the 32-byte root as ROOT_CONTENT_TYPE. */
+    public byte[] getRootSignature() {
+        return rootSignature;
+    }
+
+    public List<MerkleProof> getProofs() {
+        return proofs;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.documentsigner.merkle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inclusion proof of one document in a signed Merkle batch.
+ *
+ * Together with the batch's signed root (.p7s) this is the document's receipt:
+ * recomputing the root from the document's SHA-256 digest and the path must give
+ * the root carried inside the signature.
+ */
+public class MerkleProof {
+    private int leafIndex;
+    private int leafCount;
+    private String documentDigest;
+    private List<Step> path = new ArrayList<>();
+
+    public MerkleProof() {
+    }
+
+    public MerkleProof(int leafIndex, int leafCount, String documentDigest, List<Step> path) {
+        this.leafIndex = leafIndex;
+        this.leafCount = leafCount;
+        this.documentDigest = documentDigest;
+        this.path = path;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    public void setLeafIndex(int leafIndex) {
+        this.leafIndex = leafIndex;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public void setLeafCount(int leafCount) {
+        this.leafCount = leafCount;
+    }
+
+    /** Hex SHA-256 of the document bytes. */
+    public String getDocumentDigest() {
+        return documentDigest;
+    }
+
+    public void setDocumentDigest(String documentDigest) {
+        this.documentDigest = documentDigest;
+    }
+
+    public List<Step> getPath() {
+        return path;
+    }
+
+    public void setPath(List<Step> path) {
+        this.path = path;
+    }
+
+    /**
+     * One level of the proof: the sibling hash and whether it sits to the left.
+     */
+    public static class Step {
+        private String hash;
+        private boolean left;
+
+        public Step() {
+        }
+
+        public Step(String hash, boolean left) {
+            this.hash = hash;
+            this.left = left;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+
+        public boolean isLeft() {
+            return left;
+        }
+
+        public void setLeft(boolean left) {
+            this.left = left;
+        }
+    }
+}
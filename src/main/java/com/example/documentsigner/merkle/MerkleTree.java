@@ -0,0 +1,156 @@
+package com.example.documentsigner.merkle;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary SHA-256 Merkle tree over document digests.
+ *
+ * Hashing follows RFC 6962 domain separation so a leaf can never be passed
+ * off as an inner node:
+ * - leaf = SHA-256(0x00 || documentDigest)
+ * - node = SHA-256(0x01 || left || right)
+ *
+ * When a level has an odd number of nodes the last one is promoted to the
+ * next level unchanged (it is not paired with a copy of itself), so that
+ * level simply contributes no step to that leaf's proof.
+ */
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final List<byte[][]> levels;
+
+    private MerkleTree(List<byte[][]> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Build the tree from SHA-256 document digests, in batch order.
+     *
+     * @param documentDigests One digest per document
+     * @return The tree
+     */
+    public static MerkleTree build(List<byte[]> documentDigests) {
+        if (documentDigests == null || documentDigests.isEmpty()) {
+            throw new IllegalArgumentException("At least one document digest is required");
+        }
+
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[documentDigests.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = hashLeaf(documentDigests.get(i));
+        }
+        levels.add(level);
+
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                int left = 2 * i;
+                parent[i] = left + 1 < level.length
+                    ? hashNode(level[left], level[left + 1])
+                    : level[left];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+
+        return new MerkleTree(levels);
+    }
+
+    public byte[] getRoot() {
+        return levels.get(levels.size() - 1)[0].clone();
+    }
+
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    /**
+     * Inclusion proof for the leaf at the given index: the sibling hashes from
+     * the leaf up to the root.
+     */
+    public MerkleProof getProof(int leafIndex, byte[] documentDigest) {
+        if (leafIndex < 0 || leafIndex >= getLeafCount()) {
+            throw new IndexOutOfBoundsException("Leaf index " + leafIndex + " out of range");
+        }
+
+        List<MerkleProof.Step> path = new ArrayList<>();
+        int index = leafIndex;
+        for (int depth = 0; depth < levels.size() - 1; depth++) {
+            byte[][] level = levels.get(depth);
+            int sibling = index ^ 1;
+            if (sibling < level.length) {
+                path.add(new MerkleProof.Step(toHex(level[sibling]), sibling < index));
+            }
+            index /= 2;
+        }
+
+        return new MerkleProof(leafIndex, getLeafCount(), toHex(documentDigest), path);
+    }
+
+    /**
+     * Recompute the root from a document digest and its inclusion proof.
+     */
+    public static byte[] computeRoot(byte[] documentDigest, List<MerkleProof.Step> path) {
+        byte[] current = hashLeaf(documentDigest);
+        if (path != null) {
+            for (MerkleProof.Step step : path) {
+                byte[] sibling = fromHex(step.getHash());
+                current = step.isLeft() ? hashNode(sibling, current) : hashNode(current, sibling);
+            }
+        }
+        return current;
+    }
+
+    private static byte[] hashLeaf(byte[] documentDigest) {
+        MessageDigest digest = sha256();
+        digest.update(LEAF_PREFIX);
+        digest.update(documentDigest);
+        return digest.digest();
+    }
+
+    private static byte[] hashNode(byte[] left, byte[] right) {
+        MessageDigest digest = sha256();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public static byte[] fromHex(String hex) {
+        if (hex == null || hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hex value");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex value");
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
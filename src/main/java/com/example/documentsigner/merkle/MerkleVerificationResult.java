@@ -0,0 +1,42 @@
+package com.example.documentsigner.merkle;
+
+/**
+ * Result of verifying a document against a Merkle batch receipt.
+ */
+public class MerkleVerificationResult {
+    private final boolean inclusionValid;
+    private final boolean rootSignatureValid;
+    private final String root;
+    private final String details;
+
+    public MerkleVerificationResult(boolean inclusionValid, boolean rootSignatureValid,
+                                    String root, String details) {
+        this.inclusionValid = inclusionValid;
+        this.rootSignatureValid = rootSignatureValid;
+        this.root = root;
+        this.details = details;
+    }
+
+    public boolean isValid() {
+        return inclusionValid && rootSignatureValid;
+    }
+
+    /** The document's digest and proof lead to the signed root. */
+    public boolean isInclusionValid() {
+        return inclusionValid;
+    }
+
+    /** The CMS signature over the root is valid. */
+    public boolean isRootSignatureValid() {
+        return rootSignatureValid;
+    }
+
+    /** Hex root carried in the signature. */
+    public String getRoot() {
+        return root;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.documentsigner.net;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * HTTP/1.1 client for URLs that come from untrusted input, such as CRL
+ * distribution points in uploaded certificates or callback URLs.
+ *
+ * - The host is resolved once and, when publicOnly is set, every address it
+ *   resolves to must be public (see isPublic). The connection is made to the
+ *   checked address itself, with the host name only in the Host header and TLS
+ *   SNI, so a second DNS answer cannot redirect it.
+ * - HTTPS certificates are verified against the host name as usual.
+ * - Redirects are never followed; a 3xx is returned as is.
+ * - Response bodies above maxResponseBytes are refused without being read.
+ */
+public class GuardedHttpClient {
+
+    private static final int MAX_HEADER_BYTES = 65536;
+
+    private final int timeoutMs;
+    private final long maxResponseBytes;
+    private final boolean publicOnly;
+
+    /**
+     * @param timeoutMs Connect and read timeout
+     * @param maxResponseBytes Largest response body accepted
+     * @param publicOnly Refuse hosts that resolve to loopback, private and other non-public addresses
+     */
+    public GuardedHttpClient(int timeoutMs, long maxResponseBytes, boolean publicOnly) {
+        this.timeoutMs = timeoutMs;
+        this.maxResponseBytes = maxResponseBytes;
+        this.publicOnly = publicOnly;
+    }
+
+    /**
+     * A status code and body.
+     */
+    public static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    public Response get(URI uri) throws IOException {
+        return send("GET", uri, null, null);
+    }
+
+    public Response post(URI uri, String contentType, byte[] body) throws IOException {
+        return send("POST", uri, contentType, body);
+    }
+
+    /**
+     * Why the URL may not be called, or null if it may: not http(s), carrying
+     * credentials, or, with publicOnly, a host that does not resolve to public
+     * addresses only.
+     */
+    public String refuse(URI uri) {
+        try {
+            resolve(uri);
+            return null;
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * False for loopback, link-local (including cloud metadata at
+     * 169.254.169.254), private (RFC 1918, IPv6 unique local), shared
+     * (100.64.0.0/10), wildcard and multicast addresses.
+     */
+    public static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+        }
+        // fc00::/7
+        return (bytes[0] & 0xfe) != 0xfc;
+    }
+
+    private Response send(String method, URI uri, String contentType, byte[] body) throws IOException {
+        InetAddress address = resolve(uri);
+        boolean https = uri.getScheme().equalsIgnoreCase("https");
+        int port = port(uri);
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(address, port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            if (https) {
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(socket, uri.getHost(), port, true);
+                SSLParameters parameters = ssl.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                ssl.setSSLParameters(parameters);
+                ssl.startHandshake();
+                socket = ssl;
+            }
+
+            OutputStream out = socket.getOutputStream();
+            out.write(requestHead(method, uri, contentType, body).getBytes(StandardCharsets.ISO_8859_1));
+            if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+
+            return readResponse(new BufferedInputStream(socket.getInputStream()));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * The address to connect to: the first one the host resolves to, once all
+     * of them have passed the address check.
+     */
+    private InetAddress resolve(URI uri) throws IOException {
+        String scheme = uri.getScheme();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))
+                || uri.getHost() == null) {
+            throw new IOException("Not an absolute http or https URL: " + uri);
+        }
+        if (uri.getUserInfo() != null) {
+            throw new IOException("URL must not carry credentials: " + uri);
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new IOException("Host cannot be resolved: " + uri.getHost());
+        }
+        if (publicOnly) {
+            for (InetAddress address : addresses) {
+                if (!isPublic(address)) {
+                    throw new IOException("URL resolves to a non-public address: " + uri.getHost());
+                }
+            }
+        }
+        return addresses[0];
+    }
+
+    private static int port(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return uri.getScheme().equalsIgnoreCase("https") ? 443 : 80;
+    }
+
+    private static String requestHead(String method, URI uri, String contentType, byte[] body) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        StringBuilder head = new StringBuilder()
+            .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+            .append("Host: ").append(uri.getHost());
+        if (uri.getPort() != -1) {
+            head.append(':').append(uri.getPort());
+        }
+        head.append("\r\nConnection: close\r\nAccept-Encoding: identity\r\n");
+        if (body != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n")
+                .append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        return head.append("\r\n").toString();
+    }
+
+    private Response readResponse(InputStream in) throws IOException {
+        while (true) {
+            String statusLine = readLine(in);
+            String[] parts = statusLine.split(" ", 3);
+            int status;
+            try {
+                status = parts.length >= 2 && parts[0].startsWith("HTTP/") ? Integer.parseInt(parts[1]) : -1;
+            } catch (NumberFormatException e) {
+                status = -1;
+            }
+            if (status < 100 || status > 999) {
+                throw new IOException("Malformed HTTP status line");
+            }
+
+            long contentLength = -1;
+            boolean chunked = false;
+            int headerBytes = statusLine.length();
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                headerBytes += line.length();
+                if (headerBytes > MAX_HEADER_BYTES) {
+                    throw new IOException("HTTP response headers too large");
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    try {
+                        contentLength = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed Content-Length");
+                    }
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                }
+            }
+            if (status < 200) {
+                // Interim response (100 Continue): the real one follows
+                continue;
+            }
+
+            if (status == 204 || status == 304) {
+                return new Response(status, new byte[0]);
+            }
+            if (chunked) {
+                return new Response(status, readChunked(in));
+            }
+            if (contentLength > maxResponseBytes) {
+                throw new IOException("Response exceeds " + maxResponseBytes + " bytes");
+            }
+            return new Response(status, readBody(in, contentLength));
+        }
+    }
+
+    /**
+     * contentLength bytes, or everything up to the end of the stream when it is -1.
+     */
+    private byte[] readBody(InputStream in, long contentLength) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] data = new byte[8192];
+        long remaining = contentLength >= 0 ? contentLength : Long.MAX_VALUE;
+        while (remaining > 0) {
+            int bytesRead = in.read(data, 0, (int) Math.min(data.length, remaining));
+            if (bytesRead == -1) {
+                if (contentLength >= 0) {
+                    throw new IOException("HTTP response body truncated");
+                }
+                break;
+            }
+            if (body.size() + bytesRead > maxResponseBytes) {
+                throw new IOException("Response exceeds " + maxResponseBytes + " bytes");
+            }
+            body.write(data, 0, bytesRead);
+            remaining -= bytesRead;
+        }
+        return body.toByteArray();
+    }
+
+    private byte[] readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String line = readLine(in);
+            int extension = line.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((extension >= 0 ? line.substring(0, extension) : line).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed chunk size");
+            }
+            if (size == 0) {
+                // Trailers, up to the blank line
+                while (!readLine(in).isEmpty()) {
+                    // Ignored
+                }
+                return body.toByteArray();
+            }
+            if (size < 0 || body.size() + size > maxResponseBytes) {
+                throw new IOException("Response exceeds " + maxResponseBytes + " bytes");
+            }
+            body.write(readBody(in, size));
+            readLine(in);
+        }
+    }
+
+    /**
+     * A CRLF (or bare LF) terminated line, without the terminator.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("HTTP response ended unexpectedly");
+            }
+            if (line.length() >= MAX_HEADER_BYTES) {
+                throw new IOException("HTTP response line too long");
+            }
+            line.append((char) b);
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+}
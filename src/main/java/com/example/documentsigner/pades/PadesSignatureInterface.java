@@ -1,5 +1,7 @@
 package com.example.documentsigner.pades;
 
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.tsa.TsaClient;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
@@ -42,6 +44,8 @@ import java.util.Hashtable;
  * - Digest algorithm: SHA-256
  * - Signature algorithm: SHA256withRSA
  * - Signed attributes: content-type, message-digest, signing-time, signing-certificate-v2
+ * - Signature-policy-identifier when a signature policy (e.g. ICP-Brasil AD-RB) is given
+ * - Signature-timestamp unsigned attribute (PAdES-B-T) when a TSA client is given
  * - Certificate chain for validation
  */
 public class PadesSignatureInterface implements SignatureInterface {
@@ -49,6 +53,8 @@ public class PadesSignatureInterface implements SignatureInterface {
     private final PrivateKey privateKey;
     private final Certificate[] certificateChain;
     private final X509Certificate signingCertificate;
+    private final SignaturePolicy signaturePolicy;
+    private final TsaClient tsaClient;
 
     /**
      * Creates a new PAdES signature interface.
@@ -57,9 +63,37 @@ public class PadesSignatureInterface implements SignatureInterface {
      * @param certificateChain The full certificate chain (signing cert first)
      */
     public PadesSignatureInterface(PrivateKey privateKey, Certificate[] certificateChain) {
+        this(privateKey, certificateChain, null);
+    }
+
+    /**
+     * Creates a new PAdES signature interface that signs under a signature policy.
+     *
+     * @param privateKey The private key for signing
+     * @param certificateChain The full certificate chain (signing cert first)
+     * @param signaturePolicy The signature policy to reference, or null for none
+     */
+    public PadesSignatureInterface(PrivateKey privateKey, Certificate[] certificateChain,
+                                   SignaturePolicy signaturePolicy) {
+        this(privateKey, certificateChain, signaturePolicy, null);
+    }
+
+    /**
+     * Creates a new PAdES signature interface that signs under a signature policy
+     * and timestamps the signature.
+     *
+     * @param privateKey The private key for signing
+     * @param certificateChain The full certificate chain (signing cert first)
+     * @param signaturePolicy The signature policy to reference, or null for none
+     * @param tsaClient TSA client for the signature timestamp, or null for none
+     */
+    public PadesSignatureInterface(PrivateKey privateKey, Certificate[] certificateChain,
+                                   SignaturePolicy signaturePolicy, TsaClient tsaClient) {
         this.privateKey = privateKey;
         this.certificateChain = certificateChain;
         this.signingCertificate = (X509Certificate) certificateChain[0];
+        this.signaturePolicy = signaturePolicy;
+        this.tsaClient = tsaClient;
     }
 
     /**
@@ -89,11 +123,17 @@ public class PadesSignatureInterface implements SignatureInterface {
 
             // Create signing certificate attribute (ESS SigningCertificateV2)
             // This is required for PAdES-B compliance
-            Attribute signingCertAttr = createSigningCertificateAttribute();
+            Attribute signingCertAttr = createSigningCertificateAttribute(signingCertificate);
 
             // Create signed attributes table with signing-certificate-v2
             Hashtable<ASN1ObjectIdentifier, Attribute> signedAttrs = new Hashtable<>();
             signedAttrs.put(signingCertAttr.getAttrType(), signingCertAttr);
+
+            // Reference the signature policy; the attribute is prebuilt when the policy is loaded
+            if (signaturePolicy != null) {
+                Attribute policyAttr = signaturePolicy.toAttribute();
+                signedAttrs.put(policyAttr.getAttrType(), policyAttr);
+            }
             AttributeTable signedAttrTable = new AttributeTable(signedAttrs);
 
             // Build signer info generator with custom signed attributes
@@ -116,6 +156,11 @@ public class PadesSignatureInterface implements SignatureInterface {
                 false
             );
 
+            // Timestamp the signature value (PAdES-B-T)
+            if (tsaClient != null) {
+                signedData = tsaClient.addSignatureTimestamps(signedData);
+            }
+
             return signedData.getEncoded();
 
         } catch (Exception e) {
@@ -129,7 +174,7 @@ public class PadesSignatureInterface implements SignatureInterface {
      * This attribute binds the signing certificate to the signature,
      * preventing certificate substitution attacks.
      */
-    private Attribute createSigningCertificateAttribute() throws Exception {
+    public static Attribute createSigningCertificateAttribute(X509Certificate signingCertificate) throws Exception {
         // Calculate SHA-256 hash of the signing certificate
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
         byte[] certHash = digest.digest(signingCertificate.getEncoded());
@@ -4,14 +4,36 @@ import com.example.documentsigner.exception.ExpiredCertificateException;
 import com.example.documentsigner.exception.InvalidCertificateException;
 import com.example.documentsigner.exception.InvalidDocumentException;
 import com.example.documentsigner.exception.InvalidPasswordException;
+import com.example.documentsigner.exception.RevokedCertificateException;
 import com.example.documentsigner.exception.SigningException;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.pades.dto.CertificationLevel;
+import com.example.documentsigner.pades.dto.ChangeType;
+import com.example.documentsigner.pades.dto.DocumentRevision;
 import com.example.documentsigner.pades.dto.PdfVerificationResult;
 import com.example.documentsigner.pades.dto.SignatureMetadata;
 import com.example.documentsigner.pades.dto.SignaturePosition;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.SignatureVerificationResult;
 import com.example.documentsigner.pades.dto.SignerDisplayInfo;
+import com.example.documentsigner.pades.dto.VerificationLevel;
 import com.example.documentsigner.pades.dto.VisualSignatureConfig;
-
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.policy.SignaturePolicyRegistry;
+import com.example.documentsigner.revocation.OcspClient;
+import com.example.documentsigner.revocation.RevocationIndex;
+import com.example.documentsigner.revocation.RevocationStatus;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.PathValidationResult;
+import com.example.documentsigner.trust.TrustStore;
+import com.example.documentsigner.tsa.TsaClient;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -25,31 +47,63 @@ import org.apache.pdfbox.pdmodel.PDAppearanceContentStream;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.esf.OtherHashAlgAndValue;
+import org.bouncycastle.asn1.esf.SignaturePolicyId;
+import org.bouncycastle.asn1.esf.SignaturePolicyIdentifier;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Time;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignerDigestMismatchException;
 import org.bouncycastle.cms.SignerInformation;
-import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.tsp.TimeStampTokenInfo;
 import org.bouncycastle.util.Store;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Security;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,7 +117,13 @@ import java.util.regex.Pattern;
  * Features:
  * - Invisible signatures (signature panel only)
  * - Visual signatures with signer information
+ * - Multiple signers applied as sequential incremental revisions
+ * - Certification (DocMDP) signatures with no-changes, form-filling or annotation permissions
+ * - ICP-Brasil signature policy (AD-RB/AD-RT) identifier when set in the metadata
+ * - Signature timestamp from an RFC 3161 TSA (PAdES-B-T)
+ * - Document timestamps in a later revision (B-B to B-T upgrade)
  * - Certificate chain embedding
+ * - Signer certificate path validation against a trust store on verification
  * - SHA-256 with RSA signature algorithm
  * - SubFilter: ETSI.CAdES.detached
  */
@@ -72,12 +132,80 @@ public class PadesSignerService {
     // Preferred signature container size (32KB should be enough for most signatures with chain)
     private static final int PREFERRED_SIGNATURE_SIZE = 32768;
 
+    private static final COSName SUBFILTER_ETSI_RFC3161 = COSName.getPDFName("ETSI.RFC3161");
+
     static {
         if (Security.getProvider("BC") == null) {
             Security.addProvider(new BouncyCastleProvider());
         }
     }
 
+    private TsaClient tsaClient = TsaClient.disabled();
+    private CertificatePathValidator certificatePathValidator = untrusted();
+    private RevocationIndex revocationIndex = RevocationIndex.empty();
+    private OcspClient ocspClient = OcspClient.disabled();
+    private ExecutorService verificationExecutor;
+    private SignaturePolicyRegistry policyRegistry = SignaturePolicyRegistry.empty();
+
+    /**
+     * Set the TSA client used for signature timestamps (PAdES-B-T).
+     */
+    public void setTsaClient(TsaClient tsaClient) {
+        this.tsaClient = tsaClient != null ? tsaClient : TsaClient.disabled();
+    }
+
+    /**
+     * Set the validator used to check signer certificate chains on verification.
+     * Without one, no signer certificate is trusted.
+     */
+    public void setCertificatePathValidator(CertificatePathValidator certificatePathValidator) {
+        this.certificatePathValidator = certificatePathValidator != null ? certificatePathValidator : untrusted();
+    }
+
+    /**
+     * Set the CRL index used to reject revoked signer certificates before
+     * signing and to report revocation on verification.
+     */
+    public void setRevocationIndex(RevocationIndex revocationIndex) {
+        this.revocationIndex = revocationIndex != null ? revocationIndex : RevocationIndex.empty();
+    }
+
+    /**
+     * Set the OCSP client asked for certificate status when no current CRL in
+     * the revocation index covers the certificate.
+     */
+    public void setOcspClient(OcspClient ocspClient) {
+        this.ocspClient = ocspClient != null ? ocspClient : OcspClient.disabled();
+    }
+
+    /**
+     * Set the signature policies a signature's policy identifier is checked
+     * against on full verification. Without one, any explicit policy is unknown.
+     */
+    public void setPolicyRegistry(SignaturePolicyRegistry policyRegistry) {
+        this.policyRegistry = policyRegistry != null ? policyRegistry : SignaturePolicyRegistry.empty();
+    }
+
+    /**
+     * Set the pool the signatures of a document are verified on in parallel.
+     * Without one, they are verified one after another on the calling thread.
+     */
+    public void setVerificationExecutor(ExecutorService verificationExecutor) {
+        this.verificationExecutor = verificationExecutor;
+    }
+
+    /**
+     * Size of a PDF once signed: the original revision, the hex-encoded
+     * signature placeholder and room for the new objects and xref.
+     */
+    private static int signedSizeEstimate(byte[] pdfBytes) {
+        return (pdfBytes != null ? pdfBytes.length : 0) + 2 * PREFERRED_SIGNATURE_SIZE + 16384;
+    }
+
+    private static CertificatePathValidator untrusted() {
+        return new CertificatePathValidator(TrustStore.empty(), 1, 0);
+    }
+
     /**
      * Sign PDF with invisible signature (PAdES-B).
      *
@@ -90,146 +218,368 @@ public class PadesSignerService {
      */
     public byte[] signPdf(byte[] pdfBytes, byte[] certBytes, String password,
                           SignatureMetadata metadata) throws SigningException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(signedSizeEstimate(pdfBytes));
+        signPdf(pdfBytes, certBytes, password, metadata, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Sign PDF with invisible signature (PAdES-B), writing the signed PDF to output.
+     *
+     * PDFBox computes the signature before writing anything, so nothing is
+     * written to output if signing fails. The original revision is copied
+     * straight from pdfBytes, leaving no signed copy of the document on the heap.
+     *
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdf(byte[] pdfBytes, byte[] certBytes, String password,
+                        SignatureMetadata metadata, OutputStream output) throws SigningException {
         validateInputs(pdfBytes, certBytes, password);
+        sign(() -> PDDocument.load(pdfBytes), certBytes, password, metadata, null, output,
+            "Failed to sign PDF: ");
+    }
 
-        try {
-            // Load certificate and private key
-            KeyStore keystore = loadKeyStore(certBytes, password);
-            String alias = keystore.aliases().nextElement();
-            PrivateKey privateKey = (PrivateKey) keystore.getKey(alias, password.toCharArray());
-            Certificate[] certificateChain = keystore.getCertificateChain(alias);
-            X509Certificate signingCert = (X509Certificate) certificateChain[0];
+    /**
+     * Sign PDF with visible signature.
+     *
+     * @param pdfBytes The PDF document bytes
+     * @param certBytes The PFX/PKCS12 certificate bytes
+     * @param password The certificate password
+     * @param metadata Optional signature metadata
+     * @param visualConfig Visual signature configuration
+     * @return Signed PDF bytes
+     * @throws SigningException if signing fails
+     */
+    public byte[] signPdfVisible(byte[] pdfBytes, byte[] certBytes, String password,
+                                  SignatureMetadata metadata, VisualSignatureConfig visualConfig)
+            throws SigningException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(signedSizeEstimate(pdfBytes));
+        signPdfVisible(pdfBytes, certBytes, password, metadata, visualConfig, output);
+        return output.toByteArray();
+    }
 
-            // Validate certificate
-            validateCertificate(signingCert);
+    /**
+     * Sign PDF with visible signature, writing the signed PDF to output.
+     * As for signPdf, nothing is written if signing fails.
+     *
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfVisible(byte[] pdfBytes, byte[] certBytes, String password,
+                               SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                               OutputStream output) throws SigningException {
 
-            // Load PDF document
-            PDDocument document = PDDocument.load(pdfBytes);
+        if (visualConfig == null || !visualConfig.isEnabled()) {
+            signPdf(pdfBytes, certBytes, password, metadata, output);
+            return;
+        }
+
+        validateInputs(pdfBytes, certBytes, password);
+        sign(() -> PDDocument.load(pdfBytes), certBytes, password, metadata, visualConfig, output,
+            "Failed to sign PDF with visible signature: ");
+    }
 
+    /**
+     * Sign a PDF file, visible or not, writing the signed PDF to output.
+     *
+     * PDFBox reads the file as it needs it, and the original revision is
+     * copied from the file into output, so even very large documents are
+     * signed without being held on the heap. As for signPdf, nothing is
+     * written if signing fails.
+     *
+     * @param pdfFile The PDF document
+     * @param visualConfig Visual signature configuration, or null for an invisible signature
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfVisible(Path pdfFile, byte[] certBytes, String password,
+                               SignatureMetadata metadata, VisualSignatureConfig visualConfig,
+                               OutputStream output) throws SigningException {
+        if (pdfFile == null || !Files.isRegularFile(pdfFile)) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+        validateCredentialInputs(certBytes, password);
+        boolean visible = visualConfig != null && visualConfig.isEnabled();
+        sign(() -> {
             try {
-                // Create signature dictionary
-                PDSignature signature = createSignature(signingCert, metadata);
+                return PDDocument.load(pdfFile.toFile(), MemoryUsageSetting.setupTempFileOnly());
+            } catch (IOException e) {
+                throw new InvalidDocumentException("Invalid PDF format: " + e.getMessage(), e);
+            }
+        }, certBytes, password, metadata, visible ? visualConfig : null, output,
+            visible ? "Failed to sign PDF with visible signature: " : "Failed to sign PDF: ");
+    }
 
-                // Create signature interface
-                PadesSignatureInterface signatureInterface =
-                    new PadesSignatureInterface(privateKey, certificateChain);
+    /**
+     * Opens the document to sign.
+     */
+    private interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
 
-                // Configure signature options
-                SignatureOptions signatureOptions = new SignatureOptions();
-                signatureOptions.setPreferredSignatureSize(PREFERRED_SIGNATURE_SIZE);
+    private void sign(DocumentLoader loader, byte[] certBytes, String password, SignatureMetadata metadata,
+                      VisualSignatureConfig visualConfig, OutputStream output, String failure) {
+        try {
+            // Load certificate and private key
+            LoadedCredential credential = loadCredential(certBytes, password);
 
-                // Add signature to document
-                document.addSignature(signature, signatureInterface, signatureOptions);
+            // Load PDF document
+            PDDocument document = loader.load();
 
-                // Save incrementally
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                document.saveIncremental(output);
+            try {
+                // Add the signature, visible when there is a visual configuration
+                SignatureOptions signatureOptions = addSignature(document, credential, metadata, visualConfig);
 
-                return output.toByteArray();
+                // Save incrementally
+                try {
+                    document.saveIncremental(output);
+                } finally {
+                    signatureOptions.close();
+                }
 
             } finally {
                 document.close();
             }
 
         } catch (InvalidDocumentException | InvalidCertificateException |
-                 InvalidPasswordException | ExpiredCertificateException e) {
+                 InvalidPasswordException | ExpiredCertificateException | TimestampException e) {
             throw e;
         } catch (Exception e) {
-            throw new SigningException("Failed to sign PDF: " + e.getMessage(), e);
+            throw new SigningException(failure + e.getMessage(), e);
         }
     }
 
     /**
-     * Sign PDF with visible signature.
+     * Sign PDF with several signers in a single call (contracts with parties and witnesses).
+     *
+     * Every signer is applied as its own incremental revision, in list order, so each
+     * signature also covers the signatures made before it. All credentials are loaded
+     * and validated before the first signature is applied, so a wrong password for the
+     * last witness fails the request without doing any signing work.
+     *
+     * The revisions are appended to an in-memory buffer. PDFBox finalises the loaded
+     * document when it writes a signature, so the growing buffer is re-opened between
+     * signers, but the document is never re-uploaded or rewritten as a whole.
      *
      * @param pdfBytes The PDF document bytes
-     * @param certBytes The PFX/PKCS12 certificate bytes
-     * @param password The certificate password
-     * @param metadata Optional signature metadata
-     * @param visualConfig Visual signature configuration
-     * @return Signed PDF bytes
+     * @param signers Signers in signing order, each with its own metadata and placement
+     * @return Signed PDF bytes containing one signature per signer
      * @throws SigningException if signing fails
      */
-    public byte[] signPdfVisible(byte[] pdfBytes, byte[] certBytes, String password,
-                                  SignatureMetadata metadata, VisualSignatureConfig visualConfig)
-            throws SigningException {
+    public byte[] signPdfMultiple(byte[] pdfBytes, List<SignerCredential> signers) throws SigningException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(signedSizeEstimate(pdfBytes));
+        signPdfMultiple(pdfBytes, signers, output);
+        return output.toByteArray();
+    }
 
-        if (visualConfig == null || !visualConfig.isEnabled()) {
-            return signPdf(pdfBytes, certBytes, password, metadata);
+    /**
+     * Sign PDF with several signers as signPdfMultiple does, writing the signed PDF to output.
+     *
+     * Only the revisions before the last signer's are buffered, since each has to be
+     * parsed again; the last one is written straight to output. As for signPdf,
+     * nothing is written if signing fails.
+     *
+     * @param output Receives the signed PDF; not closed
+     * @throws SigningException if signing fails
+     */
+    public void signPdfMultiple(byte[] pdfBytes, List<SignerCredential> signers, OutputStream output)
+            throws SigningException {
+        if (pdfBytes == null || pdfBytes.length == 0) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+        if (signers == null || signers.isEmpty()) {
+            throw new InvalidDocumentException("At least one signer is required");
         }
-
-        validateInputs(pdfBytes, certBytes, password);
 
         try {
-            // Load certificate and private key
-            KeyStore keystore = loadKeyStore(certBytes, password);
-            String alias = keystore.aliases().nextElement();
-            PrivateKey privateKey = (PrivateKey) keystore.getKey(alias, password.toCharArray());
-            Certificate[] certificateChain = keystore.getCertificateChain(alias);
-            X509Certificate signingCert = (X509Certificate) certificateChain[0];
+            // Load and validate every credential before signing anything
+            List<LoadedCredential> credentials = new ArrayList<>();
+            for (SignerCredential signer : signers) {
+                validateCredentialInputs(signer.getCertBytes(), signer.getPassword());
+                credentials.add(loadCredential(signer.getCertBytes(), signer.getPassword()));
+            }
 
-            // Validate certificate
-            validateCertificate(signingCert);
+            byte[] current = pdfBytes;
 
-            // Extract signer info for visual appearance
-            SignerDisplayInfo signerInfo = extractSignerInfo(signingCert);
+            for (int i = 0; i < signers.size(); i++) {
+                PDDocument document;
+                try {
+                    document = PDDocument.load(current);
+                } catch (IOException e) {
+                    throw new InvalidDocumentException("Invalid PDF format: " + e.getMessage(), e);
+                }
 
-            // Load PDF document
-            PDDocument document = PDDocument.load(pdfBytes);
+                try {
+                    SignerCredential signer = signers.get(i);
+                    SignatureOptions signatureOptions = addSignature(
+                        document, credentials.get(i), signer.getMetadata(), signer.getVisualConfig());
+
+                    try {
+                        if (i == signers.size() - 1) {
+                            document.saveIncremental(output);
+                        } else {
+                            // Size the buffer for the original bytes plus the appended revision
+                            ByteArrayOutputStream revision = new ByteArrayOutputStream(
+                                signedSizeEstimate(current));
+                            document.saveIncremental(revision);
+                            current = revision.toByteArray();
+                        }
+                    } finally {
+                        signatureOptions.close();
+                    }
 
-            try {
-                // Validate page number
-                int pageIndex = visualConfig.getPage() - 1;
-                if (pageIndex < 0 || pageIndex >= document.getNumberOfPages()) {
-                    throw new InvalidDocumentException(
-                        "Invalid page number: " + visualConfig.getPage() +
-                        ". Document has " + document.getNumberOfPages() + " pages.");
+                } finally {
+                    document.close();
                 }
+            }
+
+        } catch (InvalidDocumentException | InvalidCertificateException |
+                 InvalidPasswordException | ExpiredCertificateException | TimestampException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningException("Failed to sign PDF with multiple signers: " + e.getMessage(), e);
+        }
+    }
 
-                // Create signature dictionary
-                PDSignature signature = createSignature(signingCert, metadata);
+    /**
+     * Add a document timestamp (ETSI.RFC3161 DocTimeStamp) in a new incremental
+     * revision, which raises the existing signatures to PAdES-B-T without
+     * touching them.
+     *
+     * Document timestamps are allowed at every DocMDP level, so this also works
+     * on documents certified with no changes allowed.
+     *
+     * @param pdfBytes The signed PDF bytes
+     * @return The PDF bytes with the document timestamp revision appended
+     * @throws SigningException if timestamping fails
+     */
+    public byte[] addDocumentTimestamp(byte[] pdfBytes) throws SigningException {
+        if (pdfBytes == null || pdfBytes.length == 0) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+        if (!tsaClient.isEnabled()) {
+            throw new TimestampException("A document timestamp was requested but no timestamp authority is configured");
+        }
 
-                // Create signature interface
-                PadesSignatureInterface signatureInterface =
-                    new PadesSignatureInterface(privateKey, certificateChain);
+        try {
+            PDDocument document;
+            try {
+                document = PDDocument.load(pdfBytes);
+            } catch (IOException e) {
+                throw new InvalidDocumentException("Invalid PDF format: " + e.getMessage(), e);
+            }
 
-                // Calculate signature rectangle position
-                PDPage page = document.getPage(pageIndex);
-                PDRectangle pageRect = page.getMediaBox();
-                float width = visualConfig.getWidth();
-                float height = visualConfig.getHeight();
-                PDRectangle signatureRect = calculateSignatureRectangle(
-                    pageRect, visualConfig, width, height);
+            try {
+                PDSignature timestamp = new PDSignature();
+                timestamp.setType(COSName.DOC_TIME_STAMP);
+                timestamp.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+                timestamp.setSubFilter(SUBFILTER_ETSI_RFC3161);
 
-                // Create signature options with proper rectangle
                 SignatureOptions signatureOptions = new SignatureOptions();
                 signatureOptions.setPreferredSignatureSize(PREFERRED_SIGNATURE_SIZE);
-                signatureOptions.setPage(pageIndex);
-
-                // Create the visual signature template
-                byte[] visualTemplate = createVisualSignatureTemplate(
-                    document, pageIndex, signatureRect, signerInfo);
-                signatureOptions.setVisualSignature(new ByteArrayInputStream(visualTemplate));
-
-                // Add signature to document
-                document.addSignature(signature, signatureInterface, signatureOptions);
-
-                // Save incrementally
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                document.saveIncremental(output);
 
+                // The token itself is the signature: its message imprint covers the ByteRange
+                document.addSignature(timestamp,
+                    content -> tsaClient.timestampDigest(sha256(content)).getEncoded(),
+                    signatureOptions);
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream(
+                    pdfBytes.length + 2 * PREFERRED_SIGNATURE_SIZE + 8192);
+                try {
+                    document.saveIncremental(output);
+                } finally {
+                    signatureOptions.close();
+                }
                 return output.toByteArray();
 
             } finally {
                 document.close();
             }
 
-        } catch (InvalidDocumentException | InvalidCertificateException |
-                 InvalidPasswordException | ExpiredCertificateException e) {
+        } catch (InvalidDocumentException | TimestampException e) {
             throw e;
         } catch (Exception e) {
-            throw new SigningException("Failed to sign PDF with visible signature: " + e.getMessage(), e);
+            throw new SigningException("Failed to add document timestamp: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds one signature (invisible, or visible when the visual config is enabled)
+     * to an open document. The caller saves incrementally and then closes the
+     * returned options, which hold the visual template document.
+     */
+    private SignatureOptions addSignature(PDDocument document, LoadedCredential credential,
+                              SignatureMetadata metadata, VisualSignatureConfig visualConfig)
+            throws IOException {
+
+        // A document certified with "no changes" cannot take further signatures
+        if (getDocMdpPermission(document) == CertificationLevel.NO_CHANGES.getPermission()) {
+            throw new InvalidDocumentException(
+                "Document is certified with no changes allowed and cannot be signed again");
+        }
+
+        // Create signature dictionary
+        PDSignature signature = createSignature(credential.signingCert, metadata);
+
+        // Certification (DocMDP) signatures must come before any approval signature
+        CertificationLevel certificationLevel = metadata != null ? metadata.getCertificationLevel() : null;
+        if (certificationLevel != null) {
+            if (!document.getSignatureDictionaries().isEmpty()) {
+                throw new InvalidDocumentException(
+                    "A certification signature must be the first signature in the document");
+            }
+            setDocMdpPermission(document, signature, certificationLevel);
+        }
+
+        // Timestamp when requested or when the signature policy requires it (AD-RT)
+        SignaturePolicy policy = metadata != null ? metadata.getSignaturePolicy() : null;
+        boolean timestamp = metadata != null
+            && (metadata.isTimestamp() || (policy != null && policy.isTimestampRequired()));
+        if (timestamp && !tsaClient.isEnabled()) {
+            throw new TimestampException("A signature timestamp was requested but no timestamp authority is configured");
         }
+
+        // Create signature interface
+        PadesSignatureInterface signatureInterface =
+            new PadesSignatureInterface(credential.privateKey, credential.certificateChain,
+                policy, timestamp ? tsaClient : null);
+
+        // Configure signature options
+        SignatureOptions signatureOptions = new SignatureOptions();
+        signatureOptions.setPreferredSignatureSize(PREFERRED_SIGNATURE_SIZE);
+
+        if (visualConfig != null && visualConfig.isEnabled()) {
+            // Validate page number
+            int pageIndex = visualConfig.getPage() - 1;
+            if (pageIndex < 0 || pageIndex >= document.getNumberOfPages()) {
+                throw new InvalidDocumentException(
+                    "Invalid page number: " + visualConfig.getPage() +
+                    ". Document has " + document.getNumberOfPages() + " pages.");
+            }
+
+            // Extract signer info for visual appearance
+            SignerDisplayInfo signerInfo = extractSignerInfo(credential.signingCert);
+
+            // Calculate signature rectangle position
+            PDPage page = document.getPage(pageIndex);
+            PDRectangle pageRect = page.getMediaBox();
+            float width = visualConfig.getWidth();
+            float height = visualConfig.getHeight();
+            PDRectangle signatureRect = calculateSignatureRectangle(
+                pageRect, visualConfig, width, height);
+
+            signatureOptions.setPage(pageIndex);
+
+            // Create the visual signature template
+            byte[] visualTemplate = createVisualSignatureTemplate(
+                document, pageIndex, signatureRect, signerInfo);
+            signatureOptions.setVisualSignature(new ByteArrayInputStream(visualTemplate));
+        }
+
+        // Add signature to document
+        document.addSignature(signature, signatureInterface, signatureOptions);
+        return signatureOptions;
     }
 
     private PDRectangle calculateSignatureRectangle(PDRectangle pageRect,
@@ -296,7 +646,7 @@ public class PadesSignerService {
 
             // Create signature field
             PDSignatureField signatureField = new PDSignatureField(acroForm);
-            signatureField.setPartialName("Signature1");
+            signatureField.setPartialName(nextSignatureFieldName(srcDoc));
 
             // Get widget and set rectangle
             PDAnnotationWidget widget = signatureField.getWidgets().get(0);
@@ -390,82 +740,155 @@ public class PadesSignerService {
     }
 
     /**
-     * Verify embedded PDF signature.
+     * Verify every signature and document timestamp in a PDF.
+     *
+     * Each one is checked against its own ByteRange: the digest is computed
+     * straight from the document bytes, range by range, and handed to the CMS
+     * verifier, so no signed-content copy is made. Signatures are verified in
+     * parallel on the verification pool when one is configured. From the FULL
+     * level on, the revisions appended after each signature are classified by
+     * RevisionAnalyzer (signatures, form fields, annotations or content), and a
+     * signature followed by content changes is invalid.
      *
      * @param signedPdfBytes The signed PDF bytes
      * @return Verification result
      * @throws SigningException if verification fails
      */
     public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes) throws SigningException {
+        return verifyPdfSignature(signedPdfBytes, VerificationLevel.FULL);
+    }
+
+    /**
+     * Verify every signature and document timestamp in a PDF at the given level.
+     *
+     * INTEGRITY checks only ByteRanges, digests and signature values: no chain
+     * building, revocation lookups or DocMDP analysis. EXTERNAL performs the
+     * FULL checks here; the ITI confirmation is up to the caller.
+     *
+     * @param signedPdfBytes The signed PDF bytes
+     * @param level How much to verify
+     * @return Verification result
+     * @throws SigningException if verification fails
+     */
+    public PdfVerificationResult verifyPdfSignature(byte[] signedPdfBytes, VerificationLevel level)
+            throws SigningException {
+        boolean checkCertificates = level != VerificationLevel.INTEGRITY;
         try {
             PDDocument document = PDDocument.load(signedPdfBytes);
 
             try {
-                List<PDSignature> signatures = document.getSignatureDictionaries();
+                List<PDSignature> signatures = new ArrayList<>(document.getSignatureDictionaries());
+                signatures.sort((a, b) -> Integer.compare(byteRangeEnd(a), byteRangeEnd(b)));
 
-                if (signatures.isEmpty()) {
+                boolean hasSignature = false;
+                for (PDSignature candidate : signatures) {
+                    hasSignature |= !isDocumentTimestamp(candidate);
+                }
+                if (!hasSignature) {
                     return PdfVerificationResult.builder()
                         .valid(false)
                         .details("No signatures found in document")
+                        .level(level)
                         .build();
                 }
 
-                // Verify the last (most recent) signature
-                PDSignature signature = signatures.get(signatures.size() - 1);
-
-                // Extract signature content
-                byte[] signatureContent = signature.getContents(signedPdfBytes);
-                byte[] signedContent = signature.getSignedContent(signedPdfBytes);
-
-                // Parse CMS signature
-                CMSSignedData cms = new CMSSignedData(
-                    new CMSProcessableByteArray(signedContent),
-                    signatureContent
-                );
-
-                Store<X509CertificateHolder> certStore = cms.getCertificates();
-                SignerInformationStore signers = cms.getSignerInfos();
-
-                boolean valid = true;
-                String signerName = null;
-
-                for (SignerInformation signer : signers.getSigners()) {
-                    Collection<X509CertificateHolder> certCollection = certStore.getMatches(signer.getSID());
-                    if (!certCollection.isEmpty()) {
-                        X509CertificateHolder certHolder = certCollection.iterator().next();
-                        X509Certificate cert = new JcaX509CertificateConverter()
-                            .setProvider("BC")
-                            .getCertificate(certHolder);
+                // Read everything needed from the COS objects here; the tasks only touch bytes
+                Map<COSDictionary, String> fieldNames = new IdentityHashMap<>();
+                for (PDSignatureField field : document.getSignatureFields()) {
+                    if (field.getSignature() != null) {
+                        fieldNames.put(field.getSignature().getCOSObject(), field.getFullyQualifiedName());
+                    }
+                }
+                List<Callable<SignatureVerificationResult>> tasks = new ArrayList<>();
+                for (PDSignature signature : signatures) {
+                    SignatureEntry entry = new SignatureEntry(signature,
+                        fieldNames.get(signature.getCOSObject()), isDocumentTimestamp(signature));
+                    tasks.add(() -> verifySignatureEntry(entry, signedPdfBytes, checkCertificates));
+                }
+                List<SignatureVerificationResult> results = runVerifications(tasks);
+
+                // What each later revision changed, for every signature that does not reach the end
+                List<DocumentRevision> revisions = Collections.emptyList();
+                if (checkCertificates) {
+                    revisions = RevisionAnalyzer.analyze(signedPdfBytes);
+                    for (int i = 0; i < signatures.size(); i++) {
+                        SignatureVerificationResult result = results.get(i);
+                        Set<ChangeType> changes = changesAfter(revisions, byteRangeEnd(signatures.get(i)));
+                        result.setChangesAfterSigning(changes);
+                        // Certification and approval signatures alike no longer vouch for changed content
+                        if (changes.contains(ChangeType.CONTENT) && !result.isDocumentTimestamp()
+                                && result.isValid()) {
+                            result.setValid(false);
+                            result.setDetails("Document content was changed after signing");
+                        }
+                    }
+                }
 
-                        signerName = extractCN(cert);
+                // Check revisions after a certification signature against its DocMDP level
+                CertificationLevel certificationLevel = null;
+                boolean docMdpCompliant = true;
+                PDSignature certification = getCertificationSignature(document);
+                if (certification != null) {
+                    certificationLevel = CertificationLevel.fromPermission(getDocMdpPermission(document));
+                    if (checkCertificates) {
+                        docMdpCompliant = isDocMdpCompliant(
+                            certification, certificationLevel, signatures, revisions);
+                    }
+                }
 
-                        // Verify signature
-                        if (!signer.verify(new JcaSimpleSignerInfoVerifierBuilder()
-                                .setProvider("BC")
-                                .build(cert))) {
-                            valid = false;
-                        }
+                SignatureVerificationResult latest = null;
+                boolean allValid = true;
+                boolean integrityValid = true;
+                boolean certificateValid = true;
+                RevocationStatus.Status revocationStatus = null;
+                SignatureVerificationResult firstInvalid = null;
+                for (SignatureVerificationResult result : results) {
+                    if (!result.isValid() && firstInvalid == null) {
+                        firstInvalid = result;
+                    }
+                    allValid &= result.isValid();
+                    integrityValid &= result.isIntegrityValid();
+                    if (result.isDocumentTimestamp()) {
+                        continue;
+                    }
+                    latest = result;
+                    certificateValid &= Boolean.TRUE.equals(result.getCertificateValid());
+                    if (result.getRevocationStatus() != null) {
+                        revocationStatus = worse(revocationStatus,
+                            RevocationStatus.Status.valueOf(result.getRevocationStatus()));
                     }
                 }
 
-                // Check if signature covers whole document
-                int[] byteRange = signature.getByteRange();
-                boolean coversWholeDocument = false;
-                if (byteRange != null && byteRange.length == 4) {
-                    int lastByte = byteRange[2] + byteRange[3];
-                    coversWholeDocument = lastByte >= signedPdfBytes.length - 1;
+                String details;
+                if (firstInvalid != null) {
+                    details = results.size() == 1 ? firstInvalid.getDetails()
+                        : describe(firstInvalid) + ": " + firstInvalid.getDetails();
+                } else if (!docMdpCompliant) {
+                    details = "Document was modified after certification beyond what its DocMDP level allows";
+                } else if (results.size() == 1) {
+                    details = checkCertificates ? "Signature is valid" : "Signature is intact";
+                } else {
+                    details = "All " + results.size()
+                        + (hasDocumentTimestamp(results) ? " signatures and timestamps are " : " signatures are ")
+                        + (checkCertificates ? "valid" : "intact");
                 }
 
                 return PdfVerificationResult.builder()
-                    .valid(valid)
-                    .signerName(signerName)
-                    .signingTime(signature.getSignDate() != null ?
-                        signature.getSignDate().getTime() : null)
-                    .reason(signature.getReason())
-                    .integrityValid(valid)
-                    .certificateValid(true)
-                    .coversWholeDocument(coversWholeDocument)
-                    .details(valid ? "Signature is valid" : "Signature verification failed")
+                    .valid(allValid && docMdpCompliant)
+                    .signerName(latest.getSignerName())
+                    .signingTime(latest.getSigningTime())
+                    .reason(latest.getReason())
+                    .integrityValid(integrityValid)
+                    .certificateValid(checkCertificates ? certificateValid : null)
+                    .trustAnchor(latest.getTrustAnchor())
+                    .revocationStatus(revocationStatus != null ? revocationStatus.name() : null)
+                    .coversWholeDocument(latest.isCoversWholeDocument())
+                    .certificationLevel(certificationLevel)
+                    .docMdpCompliant(docMdpCompliant)
+                    .details(details)
+                    .signatures(results)
+                    .level(level)
+                    .revisions(revisions)
                     .build();
 
             } finally {
@@ -477,6 +900,414 @@ public class PadesSignerService {
         }
     }
 
+    /**
+     * Union of the changes made by the revisions after the one that ends at the
+     * given ByteRange end.
+     */
+    private static Set<ChangeType> changesAfter(List<DocumentRevision> revisions, int signedEnd) {
+        Set<ChangeType> changes = EnumSet.noneOf(ChangeType.class);
+        DocumentRevision signed = RevisionAnalyzer.revisionEndingAt(revisions, signedEnd);
+        for (DocumentRevision revision : revisions) {
+            if (signed == null ? revision.getStartOffset() >= signedEnd : revision.getIndex() > signed.getIndex()) {
+                changes.addAll(revision.getChanges().keySet());
+            }
+        }
+        return changes;
+    }
+
+    private List<SignatureVerificationResult> runVerifications(List<Callable<SignatureVerificationResult>> tasks)
+            throws Exception {
+        List<SignatureVerificationResult> results = new ArrayList<>(tasks.size());
+        ExecutorService executor = verificationExecutor;
+        if (executor == null || tasks.size() == 1) {
+            for (Callable<SignatureVerificationResult> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+
+        for (Future<SignatureVerificationResult> future : executor.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Verifies one signature or document timestamp against its ByteRange, and
+     * its certificates when checkCertificates is set.
+     */
+    private SignatureVerificationResult verifySignatureEntry(SignatureEntry entry, byte[] pdfBytes,
+                                                             boolean checkCertificates) {
+        SignatureVerificationResult result = new SignatureVerificationResult();
+        result.setFieldName(entry.fieldName);
+        result.setDocumentTimestamp(entry.documentTimestamp);
+        result.setSigningTime(entry.signingTime);
+        result.setReason(entry.reason);
+        result.setCoversWholeDocument(entry.byteRange != null && entry.byteRange.length == 4
+            && isAtEndOfFile(pdfBytes, entry.byteRange[2] + entry.byteRange[3]));
+
+        String byteRangeProblem = checkByteRange(entry.byteRange, entry.contents, pdfBytes);
+        if (byteRangeProblem != null) {
+            result.setDetails(byteRangeProblem);
+            return result;
+        }
+
+        try {
+            if (entry.documentTimestamp) {
+                verifyDocumentTimestamp(entry, pdfBytes, result, checkCertificates);
+            } else {
+                verifySignerInfos(entry, pdfBytes, result, checkCertificates);
+            }
+        } catch (Exception e) {
+            result.setIntegrityValid(false);
+            result.setValid(false);
+            result.setDetails("Signature could not be verified: " + e.getMessage());
+        }
+        return result;
+    }
+
+    private void verifySignerInfos(SignatureEntry entry, byte[] pdfBytes, SignatureVerificationResult result,
+                                   boolean checkCertificates) throws Exception {
+        // Digest the byte ranges once per digest algorithm the signers use
+        CMSSignedData detached = new CMSSignedData(entry.contents);
+        Map<ASN1ObjectIdentifier, byte[]> digests = new HashMap<>();
+        for (SignerInformation signer : detached.getSignerInfos().getSigners()) {
+            ASN1ObjectIdentifier algorithm = signer.getDigestAlgorithmID().getAlgorithm();
+            if (!digests.containsKey(algorithm)) {
+                digests.put(algorithm, digestByteRange(pdfBytes, entry.byteRange, algorithm));
+            }
+        }
+        CMSSignedData cms = new CMSSignedData(digests, entry.contents);
+
+        Store<X509CertificateHolder> certStore = cms.getCertificates();
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+        List<X509Certificate> suppliedCerts = new ArrayList<>();
+        for (X509CertificateHolder holder : certStore.getMatches(null)) {
+            suppliedCerts.add(converter.getCertificate(holder));
+        }
+
+        boolean valid = true;
+        boolean certificateValid = true;
+        RevocationStatus.Status revocationStatus = null;
+        String certificateDetails = null;
+        String policyDetails = null;
+
+        for (SignerInformation signer : cms.getSignerInfos().getSigners()) {
+            Collection<X509CertificateHolder> certCollection = certStore.getMatches(signer.getSID());
+            if (certCollection.isEmpty()) {
+                // Without the certificate the signature value cannot be checked either
+                valid = false;
+                certificateValid = false;
+                certificateDetails = "Signer certificate not included in the signature";
+                continue;
+            }
+            X509Certificate cert = converter.getCertificate(certCollection.iterator().next());
+            result.setSignerName(extractCN(cert));
+
+            // Validate the signer's chain to a trusted root, as it stood when a trusted timestamp
+            // proves it signed; not evaluated at the INTEGRITY level
+            Date validationTime = checkCertificates ? validationTime(signer) : null;
+            PathValidationResult pathResult = checkCertificates
+                ? certificatePathValidator.validate(cert, suppliedCerts, validationTime) : null;
+            if (pathResult != null && pathResult.isValid()) {
+                result.setTrustAnchor(extractCN(pathResult.getTrustAnchor()));
+
+                // Check every certificate below the anchor for revocation
+                List<X509Certificate> path = pathResult.getPath();
+                for (int i = 0; i < path.size() - 1; i++) {
+                    X509Certificate pathCert = path.get(i);
+                    RevocationStatus status = revocationStatus(pathCert, path.get(i + 1), validationTime);
+                    revocationStatus = worse(revocationStatus, status.getStatus());
+                    if (status.isRevoked()) {
+                        certificateValid = false;
+                        certificateDetails = extractCN(pathCert) + ": " + status.getMessage();
+                        break;
+                    }
+                }
+            } else if (pathResult != null) {
+                certificateValid = false;
+                certificateDetails = pathResult.getMessage();
+            }
+
+            try {
+                // Against the key alone: the certificate's validity is the path validation's to judge
+                if (!signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC")
+                        .build(cert.getPublicKey()))) {
+                    valid = false;
+                }
+            } catch (CMSSignerDigestMismatchException e) {
+                valid = false;
+            }
+
+            if (checkCertificates && policyDetails == null) {
+                policyDetails = checkSignaturePolicy(signer);
+            }
+        }
+
+        result.setIntegrityValid(valid);
+        result.setCertificateValid(checkCertificates ? certificateValid : null);
+        result.setRevocationStatus(revocationStatus != null ? revocationStatus.name() : null);
+        result.setValid(valid && (!checkCertificates || (certificateValid && policyDetails == null)));
+        if (!valid) {
+            result.setDetails("Signature verification failed");
+        } else if (!checkCertificates) {
+            result.setDetails("Signature is intact; certificates not checked");
+        } else if (!certificateValid) {
+            result.setDetails("Signer certificate is not trusted: " + certificateDetails);
+        } else if (policyDetails != null) {
+            result.setDetails(policyDetails);
+        } else {
+            result.setDetails("Signature is valid");
+        }
+    }
+
+    /**
+     * Checks a document timestamp's message imprint against its ByteRange and
+     * the token's signature. The TSA chain is validated and reported, but, as
+     * for signature timestamps, an untrusted TSA does not invalidate it.
+     */
+    private void verifyDocumentTimestamp(SignatureEntry entry, byte[] pdfBytes, SignatureVerificationResult result,
+                                         boolean checkCertificates) throws Exception {
+        TimeStampToken token = new TimeStampToken(new CMSSignedData(entry.contents));
+        TimeStampTokenInfo info = token.getTimeStampInfo();
+        result.setSigningTime(info.getGenTime());
+
+        byte[] digest = digestByteRange(pdfBytes, entry.byteRange, info.getMessageImprintAlgOID());
+        boolean imprintValid = MessageDigest.isEqual(digest, info.getMessageImprintDigest());
+
+        Collection<X509CertificateHolder> tsaCerts = token.getCertificates().getMatches(token.getSID());
+        boolean tokenValid = false;
+        if (!tsaCerts.isEmpty()) {
+            X509Certificate tsaCert = new JcaX509CertificateConverter().setProvider("BC")
+                .getCertificate(tsaCerts.iterator().next());
+            result.setSignerName(extractCN(tsaCert));
+            try {
+                token.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC").build(tsaCert));
+                tokenValid = true;
+            } catch (TSPException e) {
+                tokenValid = false;
+            }
+            if (checkCertificates) {
+                JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+                List<X509Certificate> suppliedCerts = new ArrayList<>();
+                for (X509CertificateHolder holder : token.getCertificates().getMatches(null)) {
+                    suppliedCerts.add(converter.getCertificate(holder));
+                }
+                PathValidationResult pathResult =
+                    certificatePathValidator.validate(tsaCert, suppliedCerts, info.getGenTime());
+                result.setCertificateValid(pathResult.isValid());
+                if (pathResult.isValid()) {
+                    result.setTrustAnchor(extractCN(pathResult.getTrustAnchor()));
+                }
+            }
+        }
+
+        result.setIntegrityValid(imprintValid && tokenValid);
+        result.setValid(imprintValid && tokenValid);
+        if (!imprintValid) {
+            result.setDetails("Timestamp does not match the document revision");
+        } else if (!tokenValid) {
+            result.setDetails("Timestamp token signature verification failed");
+        } else {
+            result.setDetails("Timestamp is valid");
+        }
+    }
+
+    /**
+     * Check the signer's signature-policy-identifier attribute, if any, against
+     * the loaded policies: the OID must be known and the policy hash the
+     * signature commits to must match the policy document's.
+     *
+     * @return null when there is no explicit policy or it matches, otherwise why not
+     */
+    private String checkSignaturePolicy(SignerInformation signer) {
+        AttributeTable signedAttributes = signer.getSignedAttributes();
+        Attribute attribute = signedAttributes != null
+            ? signedAttributes.get(PKCSObjectIdentifiers.id_aa_ets_sigPolicyId) : null;
+        if (attribute == null) {
+            return null;
+        }
+        SignaturePolicyId policyId;
+        try {
+            policyId = SignaturePolicyIdentifier.getInstance(attribute.getAttrValues().getObjectAt(0))
+                .getSignaturePolicyId();
+        } catch (IllegalArgumentException e) {
+            return "Signature policy identifier is malformed";
+        }
+        if (policyId == null) {
+            // Implied policy: nothing to compare against
+            return null;
+        }
+
+        String oid = policyId.getSigPolicyId().getId();
+        SignaturePolicy policy = policyRegistry.getByOid(oid);
+        if (policy == null) {
+            return "Unknown signature policy " + oid;
+        }
+        OtherHashAlgAndValue hash = policyId.getSigPolicyHash();
+        if (!hash.getHashAlgorithm().getAlgorithm().equals(policy.getHashAlgorithm().getAlgorithm())
+                || !MessageDigest.isEqual(hash.getHashValue().getOctets(), policy.getDigest())) {
+            return "Signature policy hash does not match " + policy;
+        }
+        return null;
+    }
+
+    /**
+     * When the signer's certificates had to be valid: the time of a signature
+     * timestamp from a trusted TSA, else now. The signing-time attribute and /M
+     * are the signer's own claims and could be backdated to before an expiry
+     * or revocation, so they never move the validation time.
+     */
+    private Date validationTime(SignerInformation signer) {
+        Date timestamped = signatureTimestampTime(signer);
+        return timestamped != null ? timestamped : new Date();
+    }
+
+    /**
+     * The genTime of the signer's signature timestamp, or null if it has none,
+     * the token does not verify or does not cover the signature value, or the
+     * TSA's chain does not validate to a trusted root at that time.
+     */
+    private Date signatureTimestampTime(SignerInformation signer) {
+        AttributeTable unsigned = signer.getUnsignedAttributes();
+        Attribute attribute = unsigned != null
+            ? unsigned.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken) : null;
+        if (attribute == null) {
+            return null;
+        }
+        try {
+            TimeStampToken token = new TimeStampToken(new CMSSignedData(
+                ContentInfo.getInstance(attribute.getAttrValues().getObjectAt(0))));
+            TimeStampTokenInfo info = token.getTimeStampInfo();
+            byte[] digest = MessageDigest.getInstance(info.getMessageImprintAlgOID().getId(),
+                BouncyCastleProvider.PROVIDER_NAME).digest(signer.getSignature());
+            Collection<X509CertificateHolder> tsaCerts = token.getCertificates().getMatches(token.getSID());
+            if (!MessageDigest.isEqual(digest, info.getMessageImprintDigest()) || tsaCerts.isEmpty()) {
+                return null;
+            }
+            JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+            X509Certificate tsaCert = converter.getCertificate(tsaCerts.iterator().next());
+            token.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC").build(tsaCert));
+
+            // A token signed by any key vouches for nothing: the TSA must chain to a trusted root
+            List<X509Certificate> suppliedCerts = new ArrayList<>();
+            for (X509CertificateHolder holder : token.getCertificates().getMatches(null)) {
+                suppliedCerts.add(converter.getCertificate(holder));
+            }
+            return certificatePathValidator.validate(tsaCert, suppliedCerts, info.getGenTime()).isValid()
+                ? info.getGenTime() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * A ByteRange must be two ranges from the start of the file, within it,
+     * around a gap holding exactly the hex /Contents string: nothing but hex
+     * digits between the angle brackets, decoding to the dictionary's /Contents.
+     * Anything else in the gap would be unsigned bytes the signature does not
+     * vouch for.
+     */
+    private static String checkByteRange(int[] byteRange, byte[] contents, byte[] pdfBytes) {
+        if (byteRange == null || byteRange.length != 4) {
+            return "Signature has no valid ByteRange";
+        }
+        if (contents == null) {
+            return "Signature has no /Contents";
+        }
+        int gapStart = byteRange[0] + byteRange[1];
+        if (byteRange[0] != 0 || byteRange[1] < 0 || byteRange[3] < 0 || byteRange[2] <= gapStart
+                || (long) byteRange[2] + byteRange[3] > pdfBytes.length
+                || pdfBytes[gapStart] != '<' || pdfBytes[byteRange[2] - 1] != '>') {
+            return "Signature ByteRange does not match the document";
+        }
+        int hexLength = byteRange[2] - 1 - (gapStart + 1);
+        if (hexLength != contents.length * 2) {
+            return "Signature ByteRange gap does not hold the signature /Contents";
+        }
+        for (int i = 0; i < contents.length; i++) {
+            int high = Character.digit(pdfBytes[gapStart + 1 + 2 * i], 16);
+            int low = Character.digit(pdfBytes[gapStart + 2 + 2 * i], 16);
+            if (high < 0 || low < 0 || (byte) (high << 4 | low) != contents[i]) {
+                return "Signature ByteRange gap does not hold the signature /Contents";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Digest of the ByteRange, read directly from the document bytes.
+     */
+    private static byte[] digestByteRange(byte[] pdfBytes, int[] byteRange, ASN1ObjectIdentifier algorithm)
+            throws GeneralSecurityException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm.getId(), BouncyCastleProvider.PROVIDER_NAME);
+        for (int i = 0; i + 1 < byteRange.length; i += 2) {
+            digest.update(pdfBytes, byteRange[i], byteRange[i + 1]);
+        }
+        return digest.digest();
+    }
+
+    private static boolean hasDocumentTimestamp(List<SignatureVerificationResult> results) {
+        for (SignatureVerificationResult result : results) {
+            if (result.isDocumentTimestamp()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(SignatureVerificationResult result) {
+        String kind = result.isDocumentTimestamp() ? "Document timestamp" : "Signature";
+        return result.getFieldName() != null ? kind + " " + result.getFieldName() : kind;
+    }
+
+    /**
+     * Revocation status at the given time from the loaded CRLs, falling back to
+     * OCSP when they do not cover the certificate. A revocation after that time
+     * only counts for a key compromise.
+     *
+     * @param issuer The certificate's issuer, or null if unknown (no OCSP)
+     */
+    private RevocationStatus revocationStatus(X509Certificate cert, X509Certificate issuer, Date time) {
+        RevocationStatus status = revocationIndex.check(cert, time);
+        if (status.getStatus() == RevocationStatus.Status.UNKNOWN && issuer != null) {
+            status = ocspClient.check(cert, issuer).asOf(time);
+        }
+        return status;
+    }
+
+    /**
+     * The signing certificate's issuer: the next certificate in the PFX chain,
+     * or a trust store certificate whose key verifies it.
+     */
+    private X509Certificate findIssuer(LoadedCredential credential) {
+        if (credential.certificateChain.length > 1) {
+            return (X509Certificate) credential.certificateChain[1];
+        }
+        for (X509Certificate candidate : certificatePathValidator.getTrustStore().findIssuers(credential.signingCert)) {
+            try {
+                credential.signingCert.verify(candidate.getPublicKey());
+                return candidate;
+            } catch (GeneralSecurityException e) {
+                // Not this one
+            }
+        }
+        return null;
+    }
+
+    private static RevocationStatus.Status worse(RevocationStatus.Status current, RevocationStatus.Status status) {
+        if (current == null || status == RevocationStatus.Status.REVOKED
+                || (status == RevocationStatus.Status.UNKNOWN && current == RevocationStatus.Status.GOOD)) {
+            return status;
+        }
+        return current;
+    }
+
     /**
      * Extract signer information from certificate for visual display.
      */
@@ -521,6 +1352,29 @@ public class PadesSignerService {
         }
     }
 
+    private void validateCredentialInputs(byte[] certBytes, String password) {
+        if (certBytes == null || certBytes.length == 0) {
+            throw new InvalidCertificateException("Certificate is empty or null");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new InvalidPasswordException("Password is required");
+        }
+    }
+
+    private LoadedCredential loadCredential(byte[] certBytes, String password) throws Exception {
+        KeyStore keystore = loadKeyStore(certBytes, password);
+        String alias = keystore.aliases().nextElement();
+        PrivateKey privateKey = (PrivateKey) keystore.getKey(alias, password.toCharArray());
+        Certificate[] certificateChain = keystore.getCertificateChain(alias);
+
+        LoadedCredential credential = new LoadedCredential(privateKey, certificateChain);
+
+        // Validate certificate
+        validateCertificate(credential);
+
+        return credential;
+    }
+
     private KeyStore loadKeyStore(byte[] certBytes, String password) throws Exception {
         KeyStore keystore = KeyStore.getInstance("PKCS12");
         try {
@@ -534,7 +1388,8 @@ public class PadesSignerService {
         return keystore;
     }
 
-    private void validateCertificate(X509Certificate cert) {
+    private void validateCertificate(LoadedCredential credential) {
+        X509Certificate cert = credential.signingCert;
         Date now = new Date();
         if (now.after(cert.getNotAfter())) {
             throw new ExpiredCertificateException(
@@ -547,6 +1402,32 @@ public class PadesSignerService {
                 "Certificate is not yet valid. Valid from: " + cert.getNotBefore()
             );
         }
+        RevocationStatus revocation = revocationStatus(cert, findIssuer(credential), now);
+        if (revocation.isRevoked()) {
+            throw new RevokedCertificateException(
+                "Certificate revoked on " + revocation.getRevocationDate(),
+                revocation.getRevocationDate()
+            );
+        }
+    }
+
+    /**
+     * Returns the first free "SignatureN" field name, so that a new visible
+     * signature never collides with a field from an earlier signature.
+     */
+    private String nextSignatureFieldName(PDDocument document) {
+        Set<String> usedNames = new HashSet<>();
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm != null) {
+            for (PDField field : acroForm.getFieldTree()) {
+                usedNames.add(field.getFullyQualifiedName());
+            }
+        }
+        int index = 1;
+        while (usedNames.contains("Signature" + index)) {
+            index++;
+        }
+        return "Signature" + index;
     }
 
     private PDSignature createSignature(X509Certificate cert, SignatureMetadata metadata) {
@@ -578,6 +1459,168 @@ public class PadesSignerService {
         return signature;
     }
 
+    // ==================== DocMDP (Certification) Helpers ====================
+
+    /**
+     * Turns the signature into a certification signature: adds the DocMDP
+     * signature reference with the permission level and registers the signature
+     * under /Perms /DocMDP in the catalog.
+     */
+    private void setDocMdpPermission(PDDocument document, PDSignature signature, CertificationLevel level) {
+        COSDictionary transformParams = new COSDictionary();
+        transformParams.setItem(COSName.TYPE, COSName.TRANSFORM_PARAMS);
+        transformParams.setInt(COSName.P, level.getPermission());
+        transformParams.setName(COSName.V, "1.2");
+        transformParams.setNeedToBeUpdated(true);
+
+        COSDictionary reference = new COSDictionary();
+        reference.setItem(COSName.TYPE, COSName.SIG_REF);
+        reference.setItem(COSName.TRANSFORM_METHOD, COSName.DOCMDP);
+        reference.setItem(COSName.TRANSFORM_PARAMS, transformParams);
+        reference.setNeedToBeUpdated(true);
+
+        COSArray references = new COSArray();
+        references.add(reference);
+        references.setNeedToBeUpdated(true);
+        signature.getCOSObject().setItem(COSName.REFERENCE, references);
+
+        COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+        COSDictionary perms = new COSDictionary();
+        perms.setItem(COSName.DOCMDP, signature);
+        perms.setNeedToBeUpdated(true);
+        catalog.setItem(COSName.PERMS, perms);
+        catalog.setNeedToBeUpdated(true);
+    }
+
+    /**
+     * Returns the DocMDP /P value of the document's certification signature,
+     * or 0 if the document is not certified.
+     */
+    private int getDocMdpPermission(PDDocument document) {
+        COSDictionary certification = getCertificationDictionary(document);
+        if (certification == null) {
+            return 0;
+        }
+        COSBase references = certification.getDictionaryObject(COSName.REFERENCE);
+        if (references instanceof COSArray) {
+            for (COSBase item : (COSArray) references) {
+                COSBase reference = item instanceof COSObject ? ((COSObject) item).getObject() : item;
+                if (reference instanceof COSDictionary && COSName.DOCMDP.equals(
+                        ((COSDictionary) reference).getDictionaryObject(COSName.TRANSFORM_METHOD))) {
+                    COSBase params = ((COSDictionary) reference).getDictionaryObject(COSName.TRANSFORM_PARAMS);
+                    if (params instanceof COSDictionary) {
+                        return CertificationLevel.fromPermission(
+                            ((COSDictionary) params).getInt(COSName.P, 2)).getPermission();
+                    }
+                }
+            }
+        }
+        // Certified without explicit transform parameters: default level
+        return CertificationLevel.FORM_FILLING.getPermission();
+    }
+
+    private PDSignature getCertificationSignature(PDDocument document) {
+        COSDictionary certification = getCertificationDictionary(document);
+        return certification != null ? new PDSignature(certification) : null;
+    }
+
+    private COSDictionary getCertificationDictionary(PDDocument document) {
+        COSBase perms = document.getDocumentCatalog().getCOSObject().getDictionaryObject(COSName.PERMS);
+        if (perms instanceof COSDictionary) {
+            COSBase docMdp = ((COSDictionary) perms).getDictionaryObject(COSName.DOCMDP);
+            if (docMdp instanceof COSDictionary) {
+                return (COSDictionary) docMdp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the revisions appended after the certification signature are
+     * allowed by its DocMDP level, from what RevisionAnalyzer found each of them
+     * changed. Every level allows OTHER changes (metadata, validation data) and
+     * revisions that add a document timestamp; FORM_FILLING also allows
+     * signatures and form fields, and FORM_FILLING_AND_ANNOTATIONS annotations
+     * as well. CONTENT and UNKNOWN changes are never allowed.
+     */
+    private boolean isDocMdpCompliant(PDSignature certification, CertificationLevel level,
+                                      List<PDSignature> signatures, List<DocumentRevision> revisions) {
+        DocumentRevision certified = RevisionAnalyzer.revisionEndingAt(revisions, byteRangeEnd(certification));
+        if (certified == null) {
+            return false;
+        }
+        Set<DocumentRevision> timestampRevisions = new HashSet<>();
+        for (PDSignature signature : signatures) {
+            if (isDocumentTimestamp(signature)) {
+                DocumentRevision revision = RevisionAnalyzer.revisionEndingAt(revisions, byteRangeEnd(signature));
+                if (revision != null) {
+                    timestampRevisions.add(revision);
+                }
+            }
+        }
+
+        Set<ChangeType> allowed = EnumSet.of(ChangeType.OTHER);
+        if (level != CertificationLevel.NO_CHANGES) {
+            allowed.add(ChangeType.SIGNATURE);
+            allowed.add(ChangeType.FORM_FIELD);
+        }
+        if (level == CertificationLevel.FORM_FILLING_AND_ANNOTATIONS) {
+            allowed.add(ChangeType.ANNOTATION);
+        }
+        for (DocumentRevision revision : revisions) {
+            if (revision.getIndex() <= certified.getIndex()) {
+                continue;
+            }
+            for (ChangeType change : revision.getChanges().keySet()) {
+                boolean timestamp = change == ChangeType.SIGNATURE && timestampRevisions.contains(revision);
+                if (!allowed.contains(change) && !timestamp) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] sha256(InputStream content) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private boolean isDocumentTimestamp(PDSignature signature) {
+        return COSName.DOC_TIME_STAMP.equals(signature.getCOSObject().getCOSName(COSName.TYPE))
+            || SUBFILTER_ETSI_RFC3161.getName().equals(signature.getSubFilter());
+    }
+
+    private int byteRangeEnd(PDSignature signature) {
+        int[] byteRange = signature.getByteRange();
+        if (byteRange == null || byteRange.length != 4) {
+            return -1;
+        }
+        return byteRange[2] + byteRange[3];
+    }
+
+    private boolean isAtEndOfFile(byte[] pdfBytes, int offset) {
+        for (int i = offset; i < pdfBytes.length; i++) {
+            if (!isWhitespace(pdfBytes[i])) {
+                return false;
+            }
+        }
+        return offset <= pdfBytes.length;
+    }
+
+    private boolean isWhitespace(byte b) {
+        return b == '\n' || b == '\r' || b == ' ' || b == '\t' || b == '\f' || b == 0;
+    }
+
     private String extractCN(X509Certificate cert) {
         return extractCN(cert.getSubjectX500Principal().getName());
     }
@@ -643,4 +1686,42 @@ public class PadesSignerService {
 
         return null;
     }
+
+    /**
+     * What verification needs from a signature dictionary, read up front so
+     * verification tasks never touch PDFBox objects.
+     */
+    private static class SignatureEntry {
+        private final String fieldName;
+        private final boolean documentTimestamp;
+        private final int[] byteRange;
+        private final byte[] contents;
+        private final Date signingTime;
+        private final String reason;
+
+        SignatureEntry(PDSignature signature, String fieldName, boolean documentTimestamp) {
+            this.fieldName = fieldName;
+            this.documentTimestamp = documentTimestamp;
+            this.byteRange = signature.getByteRange();
+            // From the dictionary; checkByteRange holds it against what the ByteRange gap contains
+            this.contents = signature.getContents();
+            this.signingTime = signature.getSignDate() != null ? signature.getSignDate().getTime() : null;
+            this.reason = signature.getReason();
+        }
+    }
+
+    /**
+     * Private key and chain loaded from a PFX, with the signing certificate first.
+     */
+    private static class LoadedCredential {
+        private final PrivateKey privateKey;
+        private final Certificate[] certificateChain;
+        private final X509Certificate signingCert;
+
+        LoadedCredential(PrivateKey privateKey, Certificate[] certificateChain) {
+            this.privateKey = privateKey;
+            this.certificateChain = certificateChain;
+            this.signingCert = (X509Certificate) certificateChain[0];
+        }
+    }
 }
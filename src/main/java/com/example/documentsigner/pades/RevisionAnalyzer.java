@@ -0,0 +1,1333 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.pades.dto.ChangeType;
+import com.example.documentsigner.pades.dto.DocumentRevision;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Splits a PDF into its revisions and classifies what each incremental update
+ * changed.
+ *
+ * Revisions are found by scanning the raw bytes for %%EOF markers preceded by
+ * a startxref, so the file can be a memory-mapped view that is never copied
+ * to the heap. For each update only the objects listed in its cross-reference
+ * section (table or stream, including hybrid files) are read, and each is
+ * compared with its previous version where that matters: a page whose only
+ * change is /Annots gained annotations, not content. Nothing but those objects
+ * and the few they reference (new annotations, fields, object streams) is
+ * parsed; stream data is only decoded for xref and object streams, and for
+ * existing streams an update rewrites, whose data is compared with the old.
+ *
+ * The classification is conservative: an existing object rewritten in a way
+ * that is not recognised as a signature, form or annotation change counts as
+ * CONTENT, and so does an existing stream rewritten with other data, whether
+ * or not its dictionary changed, unless it only serves a field or annotation
+ * the same update rewrites (its appearance stream, the form's default
+ * resources). A rewritten object is judged by the role it had in the previous
+ * revision, never by keys the update gave it: page content that gains
+ * /Type /Sig or /Type /Annot is still page content, and changing an object's
+ * /Type, /Subtype or /FT, or turning it into a stream or out of one, is CONTENT.
+ *
+ * Decompressed stream data is limited per analysis to a multiple of the
+ * file's size (see MAX_INFLATE_RATIO), so a small Flate bomb cannot exhaust
+ * the heap; a stream past the limit counts as changed.
+ */
+public final class RevisionAnalyzer {
+
+    private static final byte[] EOF_MARKER = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STARTXREF = "startxref".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Set<String> ANNOTATION_SUBTYPES = new HashSet<>(Arrays.asList(
+        "Text", "Link", "FreeText", "Line", "Square", "Circle", "Polygon", "PolyLine", "Highlight",
+        "Underline", "Squiggly", "StrikeOut", "Stamp", "Caret", "Ink", "Popup", "FileAttachment",
+        "Sound", "Movie", "Widget", "Screen", "PrinterMark", "TrapNet", "Watermark", "3D", "Redact"));
+    private static final Set<String> VALIDATION_DATA_KEYS = new HashSet<>(Arrays.asList(
+        "Type", "Certs", "OCSPs", "CRLs", "VRI", "Cert", "OCSP", "CRL", "TU", "TS"));
+    // Catalog entries that signing and LTV updates touch without changing what is rendered
+    private static final Set<String> CATALOG_SIGNING_KEYS = new HashSet<>(Arrays.asList(
+        "AcroForm", "DSS", "Perms", "Extensions", "Metadata", "Version"));
+    // AcroForm entries a signature adds: the field itself, and default appearance resources
+    private static final Set<String> ACROFORM_SIGNING_KEYS = new HashSet<>(Arrays.asList(
+        "Fields", "SigFlags", "DA", "DR"));
+    // Stream entries that change with the encoding, not the data
+    private static final Set<String> STREAM_ENCODING_KEYS = new HashSet<>(Arrays.asList(
+        "Length", "Filter", "DecodeParms", "DL"));
+    // Keys that decide what role an object plays; an update may not change them on an existing object
+    private static final List<String> ROLE_KEYS = Arrays.asList("Type", "Subtype", "FT");
+    private static final Object NULL = new Keyword("null");
+    // Decompressed data allowed per analysis, as a multiple of the file size, within the bounds below
+    private static final int MAX_INFLATE_RATIO = 10;
+    private static final long MIN_INFLATE_BUDGET = 16L * 1024 * 1024;
+    private static final long MAX_INFLATE_BUDGET = 256L * 1024 * 1024;
+
+    private RevisionAnalyzer() {
+    }
+
+    /**
+     * Analyses a file through a read-only memory mapping (files up to 2 GB).
+     */
+    public static List<DocumentRevision> analyze(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return analyze(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static List<DocumentRevision> analyze(byte[] pdfBytes) {
+        return analyze(ByteBuffer.wrap(pdfBytes));
+    }
+
+    /**
+     * @param pdf The whole file, from offset 0 to its limit
+     * @return Every revision in file order; the first is the original document
+     */
+    public static List<DocumentRevision> analyze(ByteBuffer pdf) {
+        return new Analysis(pdf).run();
+    }
+
+    /**
+     * The revision that ends at the given offset (trailing whitespace allowed),
+     * or null if the offset is not a revision boundary.
+     */
+    public static DocumentRevision revisionEndingAt(List<DocumentRevision> revisions, long offset) {
+        for (DocumentRevision revision : revisions) {
+            if (offset <= revision.getEndOffset() && offset > revision.getStartOffset()) {
+                return revision;
+            }
+        }
+        return null;
+    }
+
+    private static final class Analysis {
+        private final ByteBuffer pdf;
+        private final int length;
+        private final Map<XrefEntry, Object> objects = new IdentityHashMap<>();
+        private final Map<XrefEntry, ObjectStream> objectStreams = new IdentityHashMap<>();
+        private long inflateBudget;
+
+        private Analysis(ByteBuffer pdf) {
+            this.pdf = pdf;
+            this.length = pdf.limit();
+            this.inflateBudget = Math.min(MAX_INFLATE_BUDGET,
+                Math.max(MIN_INFLATE_BUDGET, (long) MAX_INFLATE_RATIO * length));
+        }
+
+        private List<DocumentRevision> run() {
+            List<DocumentRevision> revisions = new ArrayList<>();
+            Map<Integer, XrefEntry> current = new HashMap<>();
+
+            int start = 0;
+            for (int i = 0; i <= length - EOF_MARKER.length; i++) {
+                if (!matches(pdf, i, EOF_MARKER)) {
+                    continue;
+                }
+                int xref = startxrefBefore(i);
+                int end = i + EOF_MARKER.length;
+                while (end < length && isWhitespace(pdf.get(end))) {
+                    end++;
+                }
+                // Linearized files have a dummy "startxref 0" after the first-page section
+                if (xref > 0 && xref < i) {
+                    DocumentRevision revision = new DocumentRevision(revisions.size(), start, end);
+                    analyzeRevision(revision, xref, current);
+                    revisions.add(revision);
+                    start = end;
+                }
+                i = end - 1;
+            }
+
+            // Bytes appended without a cross-reference section of their own
+            if (start < length) {
+                DocumentRevision trailing = new DocumentRevision(revisions.size(), start, length);
+                trailing.addChange(ChangeType.UNKNOWN);
+                revisions.add(trailing);
+            }
+            return revisions;
+        }
+
+        private void analyzeRevision(DocumentRevision revision, int xref, Map<Integer, XrefEntry> current) {
+            XrefSection section;
+            try {
+                section = readXrefChain(xref, (int) revision.getStartOffset(), (int) revision.getEndOffset());
+            } catch (IOException | RuntimeException e) {
+                if (revision.getIndex() > 0) {
+                    revision.addChange(ChangeType.UNKNOWN);
+                }
+                return;
+            }
+
+            XrefView previous = new XrefView(current, Collections.<Integer, XrefEntry>emptyMap());
+            XrefView next = new XrefView(current, section.entries);
+            if (revision.getIndex() > 0) {
+                int root = refNumber(section.trailer.get("Root"));
+                int info = refNumber(section.trailer.get("Info"));
+                Map<Integer, ChangeType> owned = ownedObjects(section, next, previous);
+                for (Map.Entry<Integer, XrefEntry> entry : section.entries.entrySet()) {
+                    int number = entry.getKey();
+                    if (entry.getValue() == null) {
+                        // A freed object that existed before is a deletion
+                        if (number != 0 && previous.get(number) != null) {
+                            revision.addChange(ChangeType.CONTENT);
+                        }
+                        continue;
+                    }
+                    ChangeType type = classify(number, root, info, owned, next, previous);
+                    if (type != null) {
+                        revision.addChange(type);
+                    }
+                }
+            }
+
+            for (Map.Entry<Integer, XrefEntry> entry : section.entries.entrySet()) {
+                if (entry.getValue() == null) {
+                    current.remove(entry.getKey());
+                } else {
+                    current.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        // ==================== Classification ====================
+
+        private ChangeType classify(int number, int root, int info, Map<Integer, ChangeType> owned,
+                                    XrefView next, XrefView previous) {
+            Object value = read(next.get(number), next);
+            Object oldValue = read(previous.get(number), previous);
+            if (value == null) {
+                return oldValue == null ? ChangeType.OTHER : ChangeType.CONTENT;
+            }
+            Map<String, Object> dict = dictionary(value);
+            Map<String, Object> oldDict = dictionary(oldValue);
+
+            if (oldValue != null && number != root && number != info) {
+                // An existing object keeps the role it had; the update's own keys cannot change it
+                if (dict != null && !sameRole(dict, oldDict)) {
+                    return ChangeType.CONTENT;
+                }
+                if (value instanceof StreamValue != oldValue instanceof StreamValue) {
+                    return ChangeType.CONTENT;
+                }
+            }
+            if (number == root) {
+                return classifyCatalog(dict, oldDict, next, previous);
+            }
+            if (number == info) {
+                return ChangeType.OTHER;
+            }
+            if (dict == null) {
+                if (value instanceof List && oldValue instanceof List) {
+                    return classifyArray(list(oldValue), list(value), next);
+                }
+                return oldValue == null || value.equals(oldValue) ? ChangeType.OTHER : ChangeType.CONTENT;
+            }
+
+            String type = name(dict.get("Type"));
+            if ("XRef".equals(type) || "ObjStm".equals(type)) {
+                return null;
+            }
+            if (value instanceof StreamValue && oldValue instanceof StreamValue && !"Metadata".equals(type)) {
+                // Page contents, fonts, images, form XObjects: the data is what is rendered, whatever
+                // the dictionary says. An appearance stream redrawn along with its field or annotation
+                // belongs to that change
+                if (sameStream((StreamValue) value, next, (StreamValue) oldValue, previous)) {
+                    return ChangeType.OTHER;
+                }
+                return owned.containsKey(number) ? owned.get(number) : ChangeType.CONTENT;
+            }
+            if ("Sig".equals(type) || "DocTimeStamp".equals(type) || isSignatureDictionary(dict)) {
+                return ChangeType.SIGNATURE;
+            }
+            String fieldType = fieldType(dict, next);
+            if (fieldType != null) {
+                return "Sig".equals(fieldType) ? ChangeType.SIGNATURE : ChangeType.FORM_FIELD;
+            }
+            if (isAnnotation(dict)) {
+                return ChangeType.ANNOTATION;
+            }
+            if (dict.containsKey("Fields")) {
+                return classifyAcroForm(dict, oldDict, next, previous);
+            }
+            if ("Page".equals(type)) {
+                return classifyPage(dict, oldDict, next, previous);
+            }
+            if ("Pages".equals(type)) {
+                return dict.equals(oldDict) ? ChangeType.OTHER : ChangeType.CONTENT;
+            }
+            if ("Catalog".equals(type)) {
+                return classifyCatalog(dict, oldDict, next, previous);
+            }
+            if (oldValue == null || dict.equals(oldDict)) {
+                // New appearance streams, fonts, DSS streams... or an unchanged rewrite
+                return ChangeType.OTHER;
+            }
+            if ("Metadata".equals(type) || VALIDATION_DATA_KEYS.containsAll(dict.keySet()) || isVriMap(dict)) {
+                return ChangeType.OTHER;
+            }
+            return owned.containsKey(number) ? owned.get(number) : ChangeType.CONTENT;
+        }
+
+        /**
+         * Objects that only serve the fields and annotations this update rewrites,
+         * by object number, with the change their owner counts as: appearance
+         * streams (/AP), and the AcroForm default resources (/DR and its /Font)
+         * that filling a field may extend. Only existing objects are looked up
+         * here, so an object counts as owned only if its owner already referred
+         * to it that way in the previous revision: a new /AP cannot claim page
+         * content.
+         */
+        private Map<Integer, ChangeType> ownedObjects(XrefSection section, XrefView next, XrefView previous) {
+            Map<Integer, ChangeType> owners = new HashMap<>();
+            for (Map.Entry<Integer, XrefEntry> entry : section.entries.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                Map<Integer, ChangeType> served = servedObjects(dictionary(read(entry.getValue(), next)), next);
+                if (served.isEmpty()) {
+                    continue;
+                }
+                Map<Integer, ChangeType> servedBefore = servedObjects(
+                    dictionary(read(previous.get(entry.getKey()), previous)), previous);
+                for (Map.Entry<Integer, ChangeType> object : served.entrySet()) {
+                    if (object.getValue() == servedBefore.get(object.getKey())) {
+                        owners.put(object.getKey(), object.getValue());
+                    }
+                }
+            }
+            owners.remove(-1);
+            return owners;
+        }
+
+        /**
+         * The appearance streams of a field or annotation, or the default
+         * resources of an AcroForm, with the change they count as.
+         */
+        private Map<Integer, ChangeType> servedObjects(Map<String, Object> dict, XrefView view) {
+            Map<Integer, ChangeType> served = new HashMap<>();
+            if (dict == null) {
+                return served;
+            }
+            if (dict.containsKey("Fields")) {
+                Object resources = dict.get("DR");
+                served.put(refNumber(resources), ChangeType.FORM_FIELD);
+                Map<String, Object> resourcesDict = dictionary(resolve(resources, view));
+                if (resourcesDict != null) {
+                    served.put(refNumber(resourcesDict.get("Font")), ChangeType.FORM_FIELD);
+                }
+                return served;
+            }
+            if (!dict.containsKey("AP")) {
+                return served;
+            }
+            String fieldType = fieldType(dict, view);
+            ChangeType owner = fieldType != null
+                ? ("Sig".equals(fieldType) ? ChangeType.SIGNATURE : ChangeType.FORM_FIELD)
+                : isAnnotation(dict) ? ChangeType.ANNOTATION : null;
+            Map<String, Object> appearance = dictionary(resolve(dict.get("AP"), view));
+            if (owner == null || appearance == null) {
+                return served;
+            }
+            for (Object states : appearance.values()) {
+                // Either one stream, or a dictionary of streams by appearance state
+                Map<String, Object> byState = states instanceof Ref ? null : dictionary(states);
+                for (Object stream : byState != null ? byState.values() : Collections.singleton(states)) {
+                    served.put(refNumber(stream), owner);
+                }
+            }
+            return served;
+        }
+
+        private ChangeType classifyCatalog(Map<String, Object> dict, Map<String, Object> oldDict,
+                                           XrefView next, XrefView previous) {
+            if (dict == null || oldDict == null) {
+                return ChangeType.CONTENT;
+            }
+            if (!without(dict, CATALOG_SIGNING_KEYS).equals(without(oldDict, CATALOG_SIGNING_KEYS))) {
+                return ChangeType.CONTENT;
+            }
+            Object acroForm = dict.get("AcroForm");
+            Object oldAcroForm = oldDict.get("AcroForm");
+            if (acroForm != null && !acroForm.equals(oldAcroForm)) {
+                return classifyAcroForm(dictionary(resolve(acroForm, next)), dictionary(resolve(oldAcroForm, previous)),
+                    next, previous);
+            }
+            return ChangeType.OTHER;
+        }
+
+        private ChangeType classifyAcroForm(Map<String, Object> dict, Map<String, Object> oldDict,
+                                            XrefView next, XrefView previous) {
+            if (dict == null) {
+                return ChangeType.FORM_FIELD;
+            }
+            Map<String, Object> old = oldDict != null ? oldDict : Collections.<String, Object>emptyMap();
+            if (oldDict != null
+                    && !without(dict, ACROFORM_SIGNING_KEYS).equals(without(oldDict, ACROFORM_SIGNING_KEYS))) {
+                return ChangeType.FORM_FIELD;
+            }
+            ChangeType fields = classifyReferences(list(resolve(old.get("Fields"), previous)),
+                list(resolve(dict.get("Fields"), next)), next, ChangeType.FORM_FIELD);
+            if (fields == ChangeType.OTHER && !equal(dict.get("SigFlags"), old.get("SigFlags"))) {
+                return ChangeType.SIGNATURE;
+            }
+            return fields;
+        }
+
+        private ChangeType classifyPage(Map<String, Object> dict, Map<String, Object> oldDict,
+                                        XrefView next, XrefView previous) {
+            if (oldDict == null) {
+                return ChangeType.CONTENT;
+            }
+            Set<String> annots = Collections.singleton("Annots");
+            if (!without(dict, annots).equals(without(oldDict, annots))) {
+                return ChangeType.CONTENT;
+            }
+            if (equal(dict.get("Annots"), oldDict.get("Annots"))) {
+                // Unchanged, or an indirect /Annots array classified on its own
+                return ChangeType.OTHER;
+            }
+            return classifyReferences(list(resolve(oldDict.get("Annots"), previous)),
+                list(resolve(dict.get("Annots"), next)), next, ChangeType.ANNOTATION);
+        }
+
+        /**
+         * An indirect array: /Annots and /Fields gain signatures, fields or
+         * annotations; anything else (e.g. a page's /Contents) is content.
+         */
+        private ChangeType classifyArray(List<Object> oldArray, List<Object> array, XrefView next) {
+            ChangeType kind = null;
+            for (Object element : array) {
+                Map<String, Object> dict = dictionary(resolve(element, next));
+                if (dict == null || read(next.get(refNumber(element)), next) instanceof StreamValue) {
+                    return ChangeType.CONTENT;
+                }
+                ChangeType elementKind = fieldType(dict, next) != null ? ChangeType.FORM_FIELD
+                    : isAnnotation(dict) ? ChangeType.ANNOTATION : ChangeType.CONTENT;
+                if (kind == null || elementKind == ChangeType.CONTENT) {
+                    kind = elementKind;
+                }
+            }
+            return classifyReferences(oldArray, array, next, kind != null ? kind : ChangeType.CONTENT);
+        }
+
+        /**
+         * Additions that are all signature fields are SIGNATURE; any other
+         * addition or a removal is the given kind.
+         */
+        private ChangeType classifyReferences(List<Object> oldRefs, List<Object> refs, XrefView next,
+                                              ChangeType kind) {
+            if (!refs.containsAll(oldRefs)) {
+                return kind;
+            }
+            boolean added = false;
+            for (Object ref : refs) {
+                if (oldRefs.contains(ref)) {
+                    continue;
+                }
+                added = true;
+                Map<String, Object> dict = dictionary(resolve(ref, next));
+                if (dict == null || !"Sig".equals(fieldType(dict, next))) {
+                    return kind;
+                }
+            }
+            return added ? ChangeType.SIGNATURE : ChangeType.OTHER;
+        }
+
+        /**
+         * Whether a rewritten stream holds the same data as before: the same
+         * dictionary apart from its encoding, and the same decoded bytes, or
+         * the same raw bytes when the filter is not one decode() supports.
+         */
+        private boolean sameStream(StreamValue stream, XrefView view, StreamValue oldStream, XrefView oldView) {
+            if (!without(stream.dictionary, STREAM_ENCODING_KEYS)
+                    .equals(without(oldStream.dictionary, STREAM_ENCODING_KEYS))) {
+                return false;
+            }
+            try {
+                return Arrays.equals(decode(stream, view), decode(oldStream, oldView));
+            } catch (IOException | RuntimeException e) {
+                // Undecodable: equal only if encoded identically
+            }
+            try {
+                return stream.dictionary.equals(oldStream.dictionary)
+                    && Arrays.equals(rawData(stream, view), rawData(oldStream, oldView));
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Whether a rewritten dictionary plays the role its previous version
+         * did: the same /Type, /Subtype and /FT, and a signature dictionary
+         * only if it was one before.
+         */
+        private boolean sameRole(Map<String, Object> dict, Map<String, Object> oldDict) {
+            if (oldDict == null) {
+                return false;
+            }
+            for (String key : ROLE_KEYS) {
+                if (!equal(dict.get(key), oldDict.get(key))) {
+                    return false;
+                }
+            }
+            return isSignatureDictionary(dict) == isSignatureDictionary(oldDict);
+        }
+
+        private boolean isSignatureDictionary(Map<String, Object> dict) {
+            return dict.containsKey("ByteRange") && dict.containsKey("Contents");
+        }
+
+        /**
+         * /FT of a field, or of the parent field of a widget.
+         */
+        private String fieldType(Map<String, Object> dict, XrefView view) {
+            for (int depth = 0; dict != null && depth < 8; depth++) {
+                String fieldType = name(dict.get("FT"));
+                if (fieldType != null) {
+                    return fieldType;
+                }
+                if (!"Widget".equals(name(dict.get("Subtype"))) && !dict.containsKey("T")) {
+                    return null;
+                }
+                dict = dictionary(resolve(dict.get("Parent"), view));
+            }
+            return null;
+        }
+
+        private boolean isAnnotation(Map<String, Object> dict) {
+            String type = name(dict.get("Type"));
+            return "Annot".equals(type)
+                || (type == null && ANNOTATION_SUBTYPES.contains(name(dict.get("Subtype"))) && dict.containsKey("Rect"));
+        }
+
+        /**
+         * A DSS /VRI dictionary: keys are SHA-1 hashes of signatures.
+         */
+        private boolean isVriMap(Map<String, Object> dict) {
+            for (String key : dict.keySet()) {
+                if (key.length() != 40) {
+                    return false;
+                }
+            }
+            return !dict.isEmpty();
+        }
+
+        // ==================== Cross-reference data ====================
+
+        /**
+         * The revision's xref section and any earlier sections of the same
+         * revision it chains to (linearized and hybrid files).
+         */
+        private XrefSection readXrefChain(int offset, int revisionStart, int revisionEnd) throws IOException {
+            XrefSection chain = null;
+            Set<Integer> visited = new HashSet<>();
+            int position = offset;
+            while (position >= 0 && visited.add(position)) {
+                XrefSection section = readXrefSection(position);
+                if (chain == null) {
+                    chain = section;
+                } else {
+                    for (Map.Entry<Integer, XrefEntry> entry : section.entries.entrySet()) {
+                        if (!chain.entries.containsKey(entry.getKey())) {
+                            chain.entries.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+                int prev = toInt(section.trailer.get("Prev"), -1);
+                position = prev >= revisionStart && prev < revisionEnd ? prev : -1;
+            }
+            return chain;
+        }
+
+        private XrefSection readXrefSection(int offset) throws IOException {
+            Parser parser = new Parser(pdf, offset);
+            parser.skipWhitespace();
+            if (parser.matchKeyword("xref")) {
+                return readXrefTable(parser);
+            }
+            parser.readObjectHeader();
+            Object value = parser.readObject();
+            if (!(value instanceof StreamValue)) {
+                throw new IOException("No cross-reference section at offset " + offset);
+            }
+            return readXrefStream((StreamValue) value);
+        }
+
+        private XrefSection readXrefTable(Parser parser) throws IOException {
+            XrefSection section = new XrefSection();
+            while (true) {
+                parser.skipWhitespace();
+                if (parser.matchKeyword("trailer")) {
+                    break;
+                }
+                int first = toInt(parser.readObject(), -1);
+                int count = toInt(parser.readObject(), -1);
+                if (first < 0 || count < 0) {
+                    throw new IOException("Malformed cross-reference table");
+                }
+                for (int i = 0; i < count; i++) {
+                    long entryOffset = toLong(parser.readObject());
+                    parser.readObject();
+                    Object kind = parser.readObject();
+                    section.entries.put(first + i,
+                        new Keyword("n").equals(kind) ? new XrefEntry(1, (int) entryOffset, 0) : null);
+                }
+            }
+            Object trailer = parser.readObject();
+            if (!(trailer instanceof Map)) {
+                throw new IOException("Malformed trailer");
+            }
+            section.trailer = castMap(trailer);
+
+            // Hybrid files list compressed objects in a separate xref stream
+            int xrefStream = toInt(section.trailer.get("XRefStm"), -1);
+            if (xrefStream > 0) {
+                for (Map.Entry<Integer, XrefEntry> entry : readXrefSection(xrefStream).entries.entrySet()) {
+                    if (!section.entries.containsKey(entry.getKey())) {
+                        section.entries.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return section;
+        }
+
+        private XrefSection readXrefStream(StreamValue stream) throws IOException {
+            XrefSection section = new XrefSection();
+            section.trailer = stream.dictionary;
+            byte[] data = decode(stream, null);
+
+            List<Object> widths = list(stream.dictionary.get("W"));
+            if (widths.size() != 3) {
+                throw new IOException("Malformed cross-reference stream");
+            }
+            int[] w = {toInt(widths.get(0), 0), toInt(widths.get(1), 0), toInt(widths.get(2), 0)};
+            List<Object> index = list(stream.dictionary.get("Index"));
+            if (index.isEmpty()) {
+                index = Arrays.<Object>asList(0L, (long) toInt(stream.dictionary.get("Size"), 0));
+            }
+
+            int position = 0;
+            int rowLength = w[0] + w[1] + w[2];
+            for (int i = 0; i + 1 < index.size(); i += 2) {
+                int first = toInt(index.get(i), 0);
+                int count = toInt(index.get(i + 1), 0);
+                for (int j = 0; j < count && position + rowLength <= data.length; j++) {
+                    long type = w[0] == 0 ? 1 : field(data, position, w[0]);
+                    long second = field(data, position + w[0], w[1]);
+                    long third = field(data, position + w[0] + w[1], w[2]);
+                    position += rowLength;
+                    if (type == 0) {
+                        section.entries.put(first + j, null);
+                    } else if (type == 1 || type == 2) {
+                        section.entries.put(first + j, new XrefEntry((int) type, (int) second, (int) third));
+                    }
+                }
+            }
+            return section;
+        }
+
+        private static long field(byte[] data, int offset, int width) {
+            long value = 0;
+            for (int i = 0; i < width; i++) {
+                value = (value << 8) | (data[offset + i] & 0xff);
+            }
+            return value;
+        }
+
+        // ==================== Objects ====================
+
+        /**
+         * The object an xref entry points to, or null if it cannot be read.
+         * Object streams are looked up in the given view.
+         */
+        private Object read(XrefEntry entry, XrefView view) {
+            if (entry == null) {
+                return null;
+            }
+            if (objects.containsKey(entry)) {
+                return objects.get(entry);
+            }
+            Object value;
+            try {
+                if (entry.type == 1) {
+                    Parser parser = new Parser(pdf, entry.offset);
+                    parser.readObjectHeader();
+                    value = parser.readObject();
+                } else {
+                    ObjectStream stream = objectStream(entry.offset, view);
+                    value = stream != null ? stream.read(entry.index) : null;
+                }
+            } catch (IOException | RuntimeException e) {
+                value = null;
+            }
+            objects.put(entry, value);
+            return value;
+        }
+
+        private ObjectStream objectStream(int number, XrefView view) throws IOException {
+            XrefEntry entry = view.get(number);
+            if (entry == null || entry.type != 1) {
+                return null;
+            }
+            ObjectStream stream = objectStreams.get(entry);
+            if (stream == null) {
+                Object value = read(entry, view);
+                if (!(value instanceof StreamValue)) {
+                    return null;
+                }
+                stream = new ObjectStream((StreamValue) value, decode((StreamValue) value, view));
+                objectStreams.put(entry, stream);
+            }
+            return stream;
+        }
+
+        private Object resolve(Object value, XrefView view) {
+            return value instanceof Ref ? read(view.get(((Ref) value).number), view) : value;
+        }
+
+        private byte[] decode(StreamValue stream, XrefView view) throws IOException {
+            byte[] raw = rawData(stream, view);
+
+            Object filter = stream.dictionary.get("Filter");
+            List<Object> filters = filter instanceof List ? list(filter)
+                : filter != null ? Collections.singletonList(filter) : Collections.emptyList();
+            if (filters.isEmpty()) {
+                return raw;
+            }
+            if (filters.size() != 1 || !"FlateDecode".equals(name(filters.get(0)))) {
+                throw new IOException("Unsupported stream filter " + filters);
+            }
+            byte[] inflated = inflate(raw);
+
+            Object parms = stream.dictionary.get("DecodeParms");
+            if (parms instanceof List) {
+                parms = list(parms).isEmpty() ? null : list(parms).get(0);
+            }
+            Map<String, Object> decodeParms = dictionary(parms);
+            int predictor = decodeParms != null ? toInt(decodeParms.get("Predictor"), 1) : 1;
+            if (predictor >= 10) {
+                int columns = toInt(decodeParms.get("Columns"), 1);
+                return unpredictPng(inflated, columns);
+            } else if (predictor != 1) {
+                throw new IOException("Unsupported predictor " + predictor);
+            }
+            return inflated;
+        }
+
+        private byte[] rawData(StreamValue stream, XrefView view) throws IOException {
+            Object lengthValue = stream.dictionary.get("Length");
+            if (lengthValue instanceof Ref && view != null) {
+                lengthValue = read(view.get(((Ref) lengthValue).number), view);
+            }
+            return stream.data(toInt(lengthValue, -1));
+        }
+
+        /**
+         * Inflates data, charging the output to the analysis' budget.
+         *
+         * @throws IOException if the output would exceed what is left of the budget
+         */
+        private byte[] inflate(byte[] data) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    (int) Math.min(inflateBudget, Math.min(Integer.MAX_VALUE / 4, data.length) * 4L));
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(buffer);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    if (count > inflateBudget) {
+                        inflateBudget = 0;
+                        throw new IOException("Decompressed stream data exceeds the analysis limit");
+                    }
+                    inflateBudget -= count;
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt Flate stream", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /**
+         * Reverses PNG row predictors (one filter-type byte per row).
+         */
+        private static byte[] unpredictPng(byte[] data, int columns) {
+            int rows = data.length / (columns + 1);
+            byte[] out = new byte[rows * columns];
+            byte[] previous = new byte[columns];
+            for (int row = 0; row < rows; row++) {
+                int in = row * (columns + 1);
+                int filter = data[in] & 0xff;
+                byte[] current = new byte[columns];
+                for (int i = 0; i < columns; i++) {
+                    int raw = data[in + 1 + i] & 0xff;
+                    int left = i > 0 ? current[i - 1] & 0xff : 0;
+                    int up = previous[i] & 0xff;
+                    int upLeft = i > 0 ? previous[i - 1] & 0xff : 0;
+                    int value;
+                    switch (filter) {
+                        case 1:
+                            value = raw + left;
+                            break;
+                        case 2:
+                            value = raw + up;
+                            break;
+                        case 3:
+                            value = raw + ((left + up) >> 1);
+                            break;
+                        case 4:
+                            value = raw + paeth(left, up, upLeft);
+                            break;
+                        default:
+                            value = raw;
+                    }
+                    current[i] = (byte) value;
+                }
+                System.arraycopy(current, 0, out, row * columns, columns);
+                previous = current;
+            }
+            return out;
+        }
+
+        private static int paeth(int left, int up, int upLeft) {
+            int p = left + up - upLeft;
+            int pa = Math.abs(p - left);
+            int pb = Math.abs(p - up);
+            int pc = Math.abs(p - upLeft);
+            return pa <= pb && pa <= pc ? left : pb <= pc ? up : upLeft;
+        }
+
+        /**
+         * Offset in the startxref line right before the %%EOF at the given
+         * position, or -1 if there is none.
+         */
+        private int startxrefBefore(int eofOffset) {
+            int i = eofOffset - 1;
+            while (i >= 0 && isWhitespace(pdf.get(i))) {
+                i--;
+            }
+            int digitsEnd = i + 1;
+            while (i >= 0 && pdf.get(i) >= '0' && pdf.get(i) <= '9') {
+                i--;
+            }
+            int digitsStart = i + 1;
+            if (digitsStart == digitsEnd || digitsEnd - digitsStart > 10) {
+                return -1;
+            }
+            while (i >= 0 && isWhitespace(pdf.get(i))) {
+                i--;
+            }
+            int keywordStart = i - STARTXREF.length + 1;
+            if (keywordStart < 0 || !matches(pdf, keywordStart, STARTXREF)) {
+                return -1;
+            }
+            long value = 0;
+            for (int j = digitsStart; j < digitsEnd; j++) {
+                value = value * 10 + (pdf.get(j) - '0');
+            }
+            return value < length ? (int) value : -1;
+        }
+
+        private final class XrefView {
+            private final Map<Integer, XrefEntry> base;
+            private final Map<Integer, XrefEntry> overlay;
+
+            private XrefView(Map<Integer, XrefEntry> base, Map<Integer, XrefEntry> overlay) {
+                this.base = base;
+                this.overlay = overlay;
+            }
+
+            private XrefEntry get(int number) {
+                if (overlay.containsKey(number)) {
+                    return overlay.get(number);
+                }
+                return base.get(number);
+            }
+        }
+    }
+
+    // ==================== Object model ====================
+
+    private static final class XrefSection {
+        // Object number to entry; null marks a freed object
+        private final Map<Integer, XrefEntry> entries = new LinkedHashMap<>();
+        private Map<String, Object> trailer = Collections.emptyMap();
+    }
+
+    /**
+     * Type 1: object at a file offset. Type 2: object at an index in an object stream.
+     */
+    private static final class XrefEntry {
+        private final int type;
+        private final int offset;
+        private final int index;
+
+        private XrefEntry(int type, int offset, int index) {
+            this.type = type;
+            this.offset = offset;
+            this.index = index;
+        }
+    }
+
+    private static final class ObjectStream {
+        private final ByteBuffer data;
+        private final int[] offsets;
+
+        private ObjectStream(StreamValue stream, byte[] decoded) throws IOException {
+            this.data = ByteBuffer.wrap(decoded);
+            int count = toInt(stream.dictionary.get("N"), 0);
+            int first = toInt(stream.dictionary.get("First"), 0);
+            this.offsets = new int[count];
+            Parser parser = new Parser(data, 0);
+            for (int i = 0; i < count; i++) {
+                parser.readObject();
+                offsets[i] = first + toInt(parser.readObject(), 0);
+            }
+        }
+
+        private Object read(int index) throws IOException {
+            if (index < 0 || index >= offsets.length) {
+                return null;
+            }
+            return new Parser(data, offsets[index]).readObject();
+        }
+    }
+
+    private static final class Name {
+        private final String value;
+
+        private Name(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Name && ((Name) other).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+
+    private static final class Ref {
+        private final int number;
+        private final int generation;
+
+        private Ref(int number, int generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Ref && ((Ref) other).number == number && ((Ref) other).generation == generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return number * 31 + generation;
+        }
+    }
+
+    /**
+     * Literal or hex string, or a bare keyword, kept as its raw text.
+     */
+    private static final class Keyword {
+        private final String text;
+
+        private Keyword(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Keyword && ((Keyword) other).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+    }
+
+    /**
+     * A stream object: its dictionary and where its data starts. Equality
+     * covers the dictionary and the data position.
+     */
+    private static final class StreamValue {
+        private final Map<String, Object> dictionary;
+        private final ByteBuffer source;
+        private final int dataOffset;
+
+        private StreamValue(Map<String, Object> dictionary, ByteBuffer source, int dataOffset) {
+            this.dictionary = dictionary;
+            this.source = source;
+            this.dataOffset = dataOffset;
+        }
+
+        private byte[] data(int length) throws IOException {
+            if (length < 0 || dataOffset + length > source.limit()) {
+                // No usable /Length: the data runs up to endstream
+                int end = indexOf(source, "endstream".getBytes(StandardCharsets.US_ASCII), dataOffset);
+                if (end < 0) {
+                    throw new IOException("Unterminated stream");
+                }
+                while (end > dataOffset && (source.get(end - 1) == '\n' || source.get(end - 1) == '\r')) {
+                    end--;
+                }
+                length = end - dataOffset;
+            }
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = source.get(dataOffset + i);
+            }
+            return data;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StreamValue && ((StreamValue) other).dictionary.equals(dictionary)
+                && ((StreamValue) other).dataOffset == dataOffset;
+        }
+
+        @Override
+        public int hashCode() {
+            return dictionary.hashCode() * 31 + dataOffset;
+        }
+    }
+
+    /**
+     * Minimal reader for PDF objects over a byte buffer, by absolute position.
+     * Strings are kept raw; names are not #-decoded.
+     */
+    private static final class Parser {
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+
+        private Parser(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+            this.position = position;
+        }
+
+        private void readObjectHeader() throws IOException {
+            readObject();
+            readObject();
+            skipWhitespace();
+            if (!matchKeyword("obj")) {
+                throw new IOException("Expected obj at offset " + position);
+            }
+        }
+
+        private Object readObject() throws IOException {
+            skipWhitespace();
+            if (position >= limit) {
+                throw new IOException("Unexpected end of data");
+            }
+            byte c = buffer.get(position);
+            if (c == '<' && position + 1 < limit && buffer.get(position + 1) == '<') {
+                Map<String, Object> dictionary = readDictionary();
+                int afterDictionary = position;
+                skipWhitespace();
+                if (matchKeyword("stream")) {
+                    if (position < limit && buffer.get(position) == '\r') {
+                        position++;
+                    }
+                    if (position < limit && buffer.get(position) == '\n') {
+                        position++;
+                    }
+                    return new StreamValue(dictionary, buffer, position);
+                }
+                position = afterDictionary;
+                return dictionary;
+            }
+            if (c == '<') {
+                return new Keyword(readUntil('>'));
+            }
+            if (c == '[') {
+                position++;
+                List<Object> array = new ArrayList<>();
+                while (true) {
+                    skipWhitespace();
+                    if (position >= limit) {
+                        throw new IOException("Unterminated array");
+                    }
+                    if (buffer.get(position) == ']') {
+                        position++;
+                        return array;
+                    }
+                    array.add(readObject());
+                }
+            }
+            if (c == '(') {
+                return new Keyword(readLiteralString());
+            }
+            if (c == '/') {
+                return new Name(readName());
+            }
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
+                return readNumberOrReference();
+            }
+            String keyword = readRegular();
+            if (keyword.isEmpty()) {
+                throw new IOException("Unexpected character at offset " + position);
+            }
+            if ("true".equals(keyword) || "false".equals(keyword)) {
+                return Boolean.valueOf(keyword);
+            }
+            return "null".equals(keyword) ? NULL : new Keyword(keyword);
+        }
+
+        private Map<String, Object> readDictionary() throws IOException {
+            position += 2;
+            Map<String, Object> dictionary = new LinkedHashMap<>();
+            while (true) {
+                skipWhitespace();
+                if (position + 1 >= limit) {
+                    throw new IOException("Unterminated dictionary");
+                }
+                if (buffer.get(position) == '>' && buffer.get(position + 1) == '>') {
+                    position += 2;
+                    return dictionary;
+                }
+                if (buffer.get(position) != '/') {
+                    throw new IOException("Expected a name at offset " + position);
+                }
+                String key = readName();
+                Object value = readObject();
+                if (value != NULL) {
+                    dictionary.put(key, value);
+                }
+            }
+        }
+
+        private Object readNumberOrReference() throws IOException {
+            String number = readRegular();
+            if (number.indexOf('.') >= 0) {
+                try {
+                    return Double.valueOf(number);
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            }
+            long value = parseLong(number);
+
+            // "n g R" is a reference
+            int saved = position;
+            skipWhitespace();
+            String generation = readRegular();
+            if (!generation.isEmpty() && isDigits(generation)) {
+                skipWhitespace();
+                if (matchKeyword("R")) {
+                    return new Ref((int) value, Integer.parseInt(generation));
+                }
+            }
+            position = saved;
+            return value;
+        }
+
+        private String readName() {
+            position++;
+            return readRegular();
+        }
+
+        private String readRegular() {
+            int start = position;
+            while (position < limit && !isWhitespace(buffer.get(position)) && !isDelimiter(buffer.get(position))) {
+                position++;
+            }
+            return ascii(start, position);
+        }
+
+        private String readUntil(char terminator) throws IOException {
+            int start = position;
+            while (position < limit && buffer.get(position) != terminator) {
+                position++;
+            }
+            if (position >= limit) {
+                throw new IOException("Unterminated string");
+            }
+            position++;
+            return ascii(start, position);
+        }
+
+        private String readLiteralString() throws IOException {
+            int start = position;
+            int depth = 0;
+            while (position < limit) {
+                byte c = buffer.get(position++);
+                if (c == '\\') {
+                    position++;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return ascii(start, position);
+                }
+            }
+            throw new IOException("Unterminated string");
+        }
+
+        /**
+         * Consumes the keyword if it is next and is followed by a delimiter.
+         */
+        private boolean matchKeyword(String keyword) {
+            int end = position + keyword.length();
+            if (end > limit) {
+                return false;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                if (buffer.get(position + i) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            if (end < limit && !isWhitespace(buffer.get(end)) && !isDelimiter(buffer.get(end))) {
+                return false;
+            }
+            position = end;
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (position < limit) {
+                byte c = buffer.get(position);
+                if (isWhitespace(c)) {
+                    position++;
+                } else if (c == '%') {
+                    while (position < limit && buffer.get(position) != '\n' && buffer.get(position) != '\r') {
+                        position++;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private String ascii(int start, int end) {
+            char[] chars = new char[end - start];
+            for (int i = start; i < end; i++) {
+                chars[i - start] = (char) (buffer.get(i) & 0xff);
+            }
+            return new String(chars);
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static Map<String, Object> dictionary(Object value) {
+        if (value instanceof StreamValue) {
+            return ((StreamValue) value).dictionary;
+        }
+        return value instanceof Map ? castMap(value) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        return value instanceof List ? (List<Object>) value : Collections.emptyList();
+    }
+
+    private static String name(Object value) {
+        return value instanceof Name ? ((Name) value).value : null;
+    }
+
+    private static int refNumber(Object value) {
+        return value instanceof Ref ? ((Ref) value).number : -1;
+    }
+
+    private static int toInt(Object value, int defaultValue) {
+        return value instanceof Long ? (int) (long) (Long) value : defaultValue;
+    }
+
+    private static long toLong(Object value) throws IOException {
+        if (!(value instanceof Long)) {
+            throw new IOException("Expected an integer");
+        }
+        return (Long) value;
+    }
+
+    private static long parseLong(String number) {
+        try {
+            return Long.parseLong(number.startsWith("+") ? number.substring(1) : number);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static Map<String, Object> without(Map<String, Object> dict, Set<String> keys) {
+        Map<String, Object> copy = new HashMap<>(dict);
+        copy.keySet().removeAll(keys);
+        return copy;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, byte[] marker) {
+        if (offset < 0 || offset + marker.length > buffer.limit()) {
+            return false;
+        }
+        for (int j = 0; j < marker.length; j++) {
+            if (buffer.get(offset + j) != marker[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] marker, int from) {
+        for (int i = from; i <= buffer.limit() - marker.length; i++) {
+            if (matches(buffer, i, marker)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == '\n' || b == '\r' || b == ' ' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']'
+            || b == '{' || b == '}' || b == '/' || b == '%';
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.exception.InvalidDocumentException;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob.Status;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background upgrade of signed PDFs from PAdES-B-B to B-T.
+ *
+ * Signing returns the B-B document straight away and submits it here; a
+ * dispatcher thread takes pending jobs in batches of up to batchSize and
+ * timestamps each batch in parallel, appending a document timestamp revision
+ * with {@link PadesSignerService#addDocumentTimestamp(byte[])}. The TSA round
+ * trip therefore never sits on the request path. A batch is a unit of dispatch,
+ * not of TSA traffic: an RFC 3161 request carries a single message imprint, and
+ * each document timestamp has to sign its own document's ByteRange digest, so
+ * every job still makes its own request.
+ *
+ * Jobs that fail on a TSA error are retried up to MAX_ATTEMPTS times, after a
+ * delay that grows with each attempt. Finished jobs are kept for the retention
+ * period so their status and result can be fetched, then dropped. The pending
+ * limit counts every unfinished job: queued, being timestamped or waiting for
+ * a retry.
+ */
+public class TimestampUpgradeWorker implements Closeable {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final PadesSignerService padesSignerService;
+    private final int batchSize;
+    private final int maxPending;
+    private final long retentionMillis;
+
+    private final BlockingQueue<TimestampUpgradeJob> queue = new LinkedBlockingQueue<>();
+    private final Map<String, TimestampUpgradeJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService retryScheduler;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    /**
+     * @param padesSignerService Signer service with a TSA client configured
+     * @param batchSize Maximum jobs taken per batch
+     * @param parallelism Jobs timestamped concurrently within a batch
+     * @param maxPending Maximum unfinished jobs; further submissions are rejected
+     * @param retentionMillis How long finished jobs stay queryable
+     */
+    public TimestampUpgradeWorker(PadesSignerService padesSignerService, int batchSize, int parallelism,
+                                  int maxPending, long retentionMillis) {
+        this.padesSignerService = padesSignerService;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = maxPending;
+        this.retentionMillis = retentionMillis;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), daemonThreads("timestamp-upgrade"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("timestamp-upgrade-retry"));
+        this.dispatcher = daemonThreads("timestamp-upgrade-dispatcher").newThread(this::dispatch);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue a signed PDF for upgrade.
+     *
+     * @param signedPdf The B-B signed PDF
+     * @param filename Filename to report with the job (may be null)
+     * @return The queued job
+     * @throws TimestampException if too many upgrades are pending
+     */
+    public TimestampUpgradeJob submit(byte[] signedPdf, String filename) {
+        if (signedPdf == null || signedPdf.length == 0) {
+            throw new InvalidDocumentException("PDF document is empty or null");
+        }
+        evictExpired();
+        int count;
+        do {
+            count = unfinished.get();
+            if (count >= maxPending) {
+                throw new TimestampException("Too many pending timestamp upgrades");
+            }
+        } while (!unfinished.compareAndSet(count, count + 1));
+
+        TimestampUpgradeJob job = new TimestampUpgradeJob(UUID.randomUUID().toString(), filename, signedPdf);
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        return job;
+    }
+
+    /**
+     * @return The job, or null if unknown or expired
+     */
+    public TimestampUpgradeJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Number of known jobs per status.
+     */
+    public Map<Status, Integer> getStatusCounts() {
+        Map<Status, Integer> counts = new LinkedHashMap<>();
+        for (Status status : Status.values()) {
+            counts.put(status, 0);
+        }
+        for (TimestampUpgradeJob job : jobs.values()) {
+            Status status = job.getStatus();
+            counts.put(status, counts.get(status) + 1);
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        executor.shutdownNow();
+        retryScheduler.shutdownNow();
+    }
+
+    private void dispatch() {
+        while (running) {
+            try {
+                List<TimestampUpgradeJob> batch = new ArrayList<>();
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (final TimestampUpgradeJob job : batch) {
+                    tasks.add(() -> {
+                        upgrade(job);
+                        return null;
+                    });
+                }
+                executor.invokeAll(tasks);
+                evictExpired();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void upgrade(TimestampUpgradeJob job) {
+        job.markRunning();
+        try {
+            job.markCompleted(padesSignerService.addDocumentTimestamp(job.getSignedPdf()));
+        } catch (TimestampException e) {
+            if (job.getAttempts() < MAX_ATTEMPTS && running) {
+                job.markPending(e.getMessage());
+                retryScheduler.schedule(() -> queue.add(job),
+                    RETRY_DELAY_MS * job.getAttempts(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            job.markFailed(e.getMessage());
+        } catch (RuntimeException e) {
+            job.markFailed(e.getMessage());
+        }
+        unfinished.decrementAndGet();
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minusMillis(retentionMillis);
+        Iterator<TimestampUpgradeJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            TimestampUpgradeJob job = iterator.next();
+            if (job.isFinished() && job.getCompletedAt().isBefore(cutoff)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of PDF verification results.
+ *
+ * Callers key results by the SHA-256 of the document together with the epochs
+ * of the validation inputs (trust store, revocation data). When CRLs are
+ * reloaded or the trust store is replaced, the epochs change, the old keys are
+ * never asked for again and their entries age out of the LRU order. Entries
+ * also expire after ttlMillis, which bounds how long an OCSP answer or a
+ * certificate's validity period baked into a result is reused.
+ *
+ * Cached results are shared between callers and must not be modified.
+ * Instances are thread-safe.
+ */
+public class VerificationResultCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, CachedResult> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries Maximum cached results; 0 disables the cache
+     * @param ttlMillis Longest a result is reused
+     */
+    public VerificationResultCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.results = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A cache that stores nothing.
+     */
+    public static VerificationResultCache disabled() {
+        return new VerificationResultCache(0, 0);
+    }
+
+    /**
+     * The cached result for the key, or null if there is none or it expired.
+     */
+    public PdfVerificationResult get(String key) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        synchronized (results) {
+            CachedResult cached = results.get(key);
+            if (cached != null && cached.isExpired()) {
+                results.remove(key);
+                cached = null;
+            }
+            if (cached == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return cached.result;
+        }
+    }
+
+    public void put(String key, PdfVerificationResult result) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        CachedResult cached = new CachedResult(result, System.currentTimeMillis() + ttlMillis);
+        synchronized (results) {
+            results.put(key, cached);
+        }
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /**
+     * Hits, misses, evictions, current size and capacity.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        synchronized (results) {
+            stats.put("size", (long) results.size());
+        }
+        stats.put("maxEntries", (long) maxEntries);
+        return stats;
+    }
+
+    private static final class CachedResult {
+        private final PdfVerificationResult result;
+        private final long expiresAt;
+
+        private CachedResult(PdfVerificationResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.documentsigner.pades.dto;
+
+/**
+ * DocMDP permission level of a certification signature (ISO 32000-1, 12.8.2.2).
+ * A document without a certification signature has no level.
+ */
+public enum CertificationLevel {
+    /** No changes allowed; any later revision invalidates the certification. */
+    NO_CHANGES(1),
+    /** Form filling, page templates and signing allowed. */
+    FORM_FILLING(2),
+    /** As FORM_FILLING, plus annotation creation, deletion and modification. */
+    FORM_FILLING_AND_ANNOTATIONS(3);
+
+    private final int permission;
+
+    CertificationLevel(int permission) {
+        this.permission = permission;
+    }
+
+    /** The /P value written to the DocMDP transform parameters. */
+    public int getPermission() {
+        return permission;
+    }
+
+    public static CertificationLevel fromPermission(int permission) {
+        for (CertificationLevel level : values()) {
+            if (level.permission == permission) {
+                return level;
+            }
+        }
+        // ISO 32000-1: out-of-range values are treated as the default (2)
+        return FORM_FILLING;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.documentsigner.pades.dto;
+
+/**
+ * What an incremental update changed, classified per object it rewrote.
+ */
+public enum ChangeType {
+    /** Signature or document timestamp dictionaries and signature fields. */
+    SIGNATURE,
+    /** Form fields other than signatures, and the AcroForm. */
+    FORM_FIELD,
+    /** Annotations other than signature widgets. */
+    ANNOTATION,
+    /** Page content, resources, page tree or catalog entries that affect rendering. */
+    CONTENT,
+    /** Metadata, validation data (DSS) and new objects referenced only by the above. */
+    OTHER,
+    /** The revision's cross-reference data could not be read. */
+    UNKNOWN
+}
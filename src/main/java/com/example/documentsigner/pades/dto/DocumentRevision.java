@@ -0,0 +1,62 @@
+package com.example.documentsigner.pades.dto;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One revision of a PDF: the original document or an incremental update,
+ * with the kinds of changes it made.
+ */
+public class DocumentRevision {
+    private static final Set<ChangeType> SIGNATURE_CHANGES = EnumSet.of(ChangeType.SIGNATURE, ChangeType.OTHER);
+
+    private final int index;
+    private final long startOffset;
+    private final long endOffset;
+    private final Map<ChangeType, Integer> changes = new EnumMap<>(ChangeType.class);
+
+    public DocumentRevision(int index, long startOffset, long endOffset) {
+        this.index = index;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Position of the revision in the file, 0 for the original document.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Offset just past the revision's %%EOF and the line end after it.
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Number of changed objects per change type. Empty for the original document.
+     */
+    public Map<ChangeType, Integer> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    public void addChange(ChangeType type) {
+        changes.merge(type, 1, Integer::sum);
+    }
+
+    /**
+     * Whether the revision only added signatures, timestamps or validation data.
+     */
+    public boolean isSignatureOnly() {
+        return SIGNATURE_CHANGES.containsAll(changes.keySet());
+    }
+}
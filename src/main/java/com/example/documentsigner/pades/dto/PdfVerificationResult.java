@@ -1,6 +1,8 @@
 package com.example.documentsigner.pades.dto;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Result of PDF signature verification.
@@ -10,10 +12,19 @@ public class PdfVerificationResult {
     private String signerName;
     private Date signingTime;
     private String reason;
-    private boolean certificateValid;
+    private Boolean certificateValid;
+    private String trustAnchor;
+    private String revocationStatus;
     private boolean integrityValid;
     private boolean coversWholeDocument;
+    private CertificationLevel certificationLevel;
+    private boolean docMdpCompliant = true;
     private String details;
+    private List<SignatureVerificationResult> signatures = Collections.emptyList();
+    private VerificationLevel level = VerificationLevel.FULL;
+    private Boolean externalValid;
+    private String externalResponse;
+    private List<DocumentRevision> revisions = Collections.emptyList();
 
     public PdfVerificationResult() {
     }
@@ -50,14 +61,42 @@ public class PdfVerificationResult {
         this.reason = reason;
     }
 
-    public boolean isCertificateValid() {
+    /**
+     * Whether the signer's chain validated to a trusted root and no certificate
+     * on it is revoked; null at the INTEGRITY level, where it is not evaluated.
+     */
+    public Boolean getCertificateValid() {
         return certificateValid;
     }
 
-    public void setCertificateValid(boolean certificateValid) {
+    public void setCertificateValid(Boolean certificateValid) {
         this.certificateValid = certificateValid;
     }
 
+    /**
+     * Common name of the trusted root the signer's chain validated to, or null
+     * if it did not validate.
+     */
+    public String getTrustAnchor() {
+        return trustAnchor;
+    }
+
+    public void setTrustAnchor(String trustAnchor) {
+        this.trustAnchor = trustAnchor;
+    }
+
+    /**
+     * GOOD, REVOKED or UNKNOWN: the worst revocation status (CRL, then OCSP)
+     * on the signer's chain, or null if the chain did not validate.
+     */
+    public String getRevocationStatus() {
+        return revocationStatus;
+    }
+
+    public void setRevocationStatus(String revocationStatus) {
+        this.revocationStatus = revocationStatus;
+    }
+
     public boolean isIntegrityValid() {
         return integrityValid;
     }
@@ -74,6 +113,30 @@ public class PdfVerificationResult {
         this.coversWholeDocument = coversWholeDocument;
     }
 
+    /**
+     * DocMDP level of the document's certification signature, or null if the
+     * document is not certified.
+     */
+    public CertificationLevel getCertificationLevel() {
+        return certificationLevel;
+    }
+
+    public void setCertificationLevel(CertificationLevel certificationLevel) {
+        this.certificationLevel = certificationLevel;
+    }
+
+    /**
+     * Whether the revisions added after the certification signature are allowed
+     * by its DocMDP level. Always true for documents that are not certified.
+     */
+    public boolean isDocMdpCompliant() {
+        return docMdpCompliant;
+    }
+
+    public void setDocMdpCompliant(boolean docMdpCompliant) {
+        this.docMdpCompliant = docMdpCompliant;
+    }
+
     public String getDetails() {
         return details;
     }
@@ -82,6 +145,66 @@ public class PdfVerificationResult {
         this.details = details;
     }
 
+    /**
+     * Every signature and document timestamp in the document, in revision order.
+     * The top-level fields describe the most recent signature; valid requires
+     * every entry to be valid.
+     */
+    public List<SignatureVerificationResult> getSignatures() {
+        return signatures;
+    }
+
+    public void setSignatures(List<SignatureVerificationResult> signatures) {
+        this.signatures = signatures;
+    }
+
+    /**
+     * The level the document was verified at. Below FULL, certificateValid,
+     * trustAnchor, revocationStatus and docMdpCompliant are not evaluated.
+     */
+    public VerificationLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(VerificationLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Verdict of the ITI Verificador at the EXTERNAL level; null when it was
+     * not consulted (other levels, or the local verification already failed).
+     */
+    public Boolean getExternalValid() {
+        return externalValid;
+    }
+
+    public void setExternalValid(Boolean externalValid) {
+        this.externalValid = externalValid;
+    }
+
+    /**
+     * Raw ITI Verificador response when it was consulted.
+     */
+    public String getExternalResponse() {
+        return externalResponse;
+    }
+
+    public void setExternalResponse(String externalResponse) {
+        this.externalResponse = externalResponse;
+    }
+
+    /**
+     * Revisions of the document in file order, with what each incremental
+     * update changed. Empty at the INTEGRITY level.
+     */
+    public List<DocumentRevision> getRevisions() {
+        return revisions;
+    }
+
+    public void setRevisions(List<DocumentRevision> revisions) {
+        this.revisions = revisions;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -109,11 +232,21 @@ public class PdfVerificationResult {
             return this;
         }
 
-        public Builder certificateValid(boolean certificateValid) {
+        public Builder certificateValid(Boolean certificateValid) {
             result.setCertificateValid(certificateValid);
             return this;
         }
 
+        public Builder trustAnchor(String trustAnchor) {
+            result.setTrustAnchor(trustAnchor);
+            return this;
+        }
+
+        public Builder revocationStatus(String revocationStatus) {
+            result.setRevocationStatus(revocationStatus);
+            return this;
+        }
+
         public Builder integrityValid(boolean integrityValid) {
             result.setIntegrityValid(integrityValid);
             return this;
@@ -124,11 +257,36 @@ public class PdfVerificationResult {
             return this;
         }
 
+        public Builder certificationLevel(CertificationLevel certificationLevel) {
+            result.setCertificationLevel(certificationLevel);
+            return this;
+        }
+
+        public Builder docMdpCompliant(boolean docMdpCompliant) {
+            result.setDocMdpCompliant(docMdpCompliant);
+            return this;
+        }
+
         public Builder details(String details) {
             result.setDetails(details);
             return this;
         }
 
+        public Builder signatures(List<SignatureVerificationResult> signatures) {
+            result.setSignatures(signatures);
+            return this;
+        }
+
+        public Builder level(VerificationLevel level) {
+            result.setLevel(level);
+            return this;
+        }
+
+        public Builder revisions(List<DocumentRevision> revisions) {
+            result.setRevisions(revisions);
+            return this;
+        }
+
         public PdfVerificationResult build() {
             return result;
         }
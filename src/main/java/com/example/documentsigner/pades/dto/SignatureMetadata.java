@@ -1,5 +1,7 @@
 package com.example.documentsigner.pades.dto;
 
+import com.example.documentsigner.policy.SignaturePolicy;
+
 /**
  * Metadata for PAdES signature.
  */
@@ -7,6 +9,9 @@ public class SignatureMetadata {
     private String reason;
     private String location;
     private String contactInfo;
+    private CertificationLevel certificationLevel;
+    private SignaturePolicy signaturePolicy;
+    private boolean timestamp;
 
     public SignatureMetadata() {
     }
@@ -17,6 +22,12 @@ public class SignatureMetadata {
         this.contactInfo = contactInfo;
     }
 
+    public SignatureMetadata(String reason, String location, String contactInfo,
+                             CertificationLevel certificationLevel) {
+        this(reason, location, contactInfo);
+        this.certificationLevel = certificationLevel;
+    }
+
     public String getReason() {
         return reason;
     }
@@ -41,6 +52,41 @@ public class SignatureMetadata {
         this.contactInfo = contactInfo;
     }
 
+    /**
+     * DocMDP level for a certification signature, or null for an ordinary
+     * approval signature.
+     */
+    public CertificationLevel getCertificationLevel() {
+        return certificationLevel;
+    }
+
+    public void setCertificationLevel(CertificationLevel certificationLevel) {
+        this.certificationLevel = certificationLevel;
+    }
+
+    /**
+     * Signature policy to reference in the signed attributes, or null for none.
+     */
+    public SignaturePolicy getSignaturePolicy() {
+        return signaturePolicy;
+    }
+
+    public void setSignaturePolicy(SignaturePolicy signaturePolicy) {
+        this.signaturePolicy = signaturePolicy;
+    }
+
+    /**
+     * Whether to add a signature timestamp (PAdES-B-T). Implied by a policy
+     * that requires one.
+     */
+    public boolean isTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(boolean timestamp) {
+        this.timestamp = timestamp;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -49,6 +95,9 @@ public class SignatureMetadata {
         private String reason;
         private String location;
         private String contactInfo;
+        private CertificationLevel certificationLevel;
+        private SignaturePolicy signaturePolicy;
+        private boolean timestamp;
 
         public Builder reason(String reason) {
             this.reason = reason;
@@ -65,8 +114,26 @@ public class SignatureMetadata {
             return this;
         }
 
+        public Builder certificationLevel(CertificationLevel certificationLevel) {
+            this.certificationLevel = certificationLevel;
+            return this;
+        }
+
+        public Builder signaturePolicy(SignaturePolicy signaturePolicy) {
+            this.signaturePolicy = signaturePolicy;
+            return this;
+        }
+
+        public Builder timestamp(boolean timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
         public SignatureMetadata build() {
-            return new SignatureMetadata(reason, location, contactInfo);
+            SignatureMetadata metadata = new SignatureMetadata(reason, location, contactInfo, certificationLevel);
+            metadata.setSignaturePolicy(signaturePolicy);
+            metadata.setTimestamp(timestamp);
+            return metadata;
         }
     }
 }
@@ -0,0 +1,155 @@
+package com.example.documentsigner.pades.dto;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Verification result of one signature or document timestamp in a PDF.
+ */
+public class SignatureVerificationResult {
+    private String fieldName;
+    private boolean documentTimestamp;
+    private boolean valid;
+    private String signerName;
+    private Date signingTime;
+    private String reason;
+    private boolean integrityValid;
+    private Boolean certificateValid;
+    private String trustAnchor;
+    private String revocationStatus;
+    private boolean coversWholeDocument;
+    private Set<ChangeType> changesAfterSigning = Collections.emptySet();
+    private String details;
+
+    public SignatureVerificationResult() {
+    }
+
+    /**
+     * Name of the signature field, or null if the signature has no field.
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public void setFieldName(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * Whether this is a document timestamp (ETSI.RFC3161) rather than a signature.
+     */
+    public boolean isDocumentTimestamp() {
+        return documentTimestamp;
+    }
+
+    public void setDocumentTimestamp(boolean documentTimestamp) {
+        this.documentTimestamp = documentTimestamp;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    /**
+     * Common name of the signer, or of the TSA for a document timestamp.
+     */
+    public String getSignerName() {
+        return signerName;
+    }
+
+    public void setSignerName(String signerName) {
+        this.signerName = signerName;
+    }
+
+    public Date getSigningTime() {
+        return signingTime;
+    }
+
+    public void setSigningTime(Date signingTime) {
+        this.signingTime = signingTime;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * Whether the signature value matches the bytes in its ByteRange.
+     */
+    public boolean isIntegrityValid() {
+        return integrityValid;
+    }
+
+    public void setIntegrityValid(boolean integrityValid) {
+        this.integrityValid = integrityValid;
+    }
+
+    /**
+     * Whether the signer's chain validated to a trusted root and no certificate
+     * on it is revoked; null at the INTEGRITY level, where it is not evaluated.
+     */
+    public Boolean getCertificateValid() {
+        return certificateValid;
+    }
+
+    public void setCertificateValid(Boolean certificateValid) {
+        this.certificateValid = certificateValid;
+    }
+
+    public String getTrustAnchor() {
+        return trustAnchor;
+    }
+
+    public void setTrustAnchor(String trustAnchor) {
+        this.trustAnchor = trustAnchor;
+    }
+
+    public String getRevocationStatus() {
+        return revocationStatus;
+    }
+
+    public void setRevocationStatus(String revocationStatus) {
+        this.revocationStatus = revocationStatus;
+    }
+
+    /**
+     * Whether the ByteRange reaches the end of the file, i.e. no revision was
+     * added after this signature.
+     */
+    public boolean isCoversWholeDocument() {
+        return coversWholeDocument;
+    }
+
+    public void setCoversWholeDocument(boolean coversWholeDocument) {
+        this.coversWholeDocument = coversWholeDocument;
+    }
+
+    /**
+     * Kinds of changes made by the revisions added after this signature;
+     * empty if there are none, or if revisions were not analysed (INTEGRITY level).
+     */
+    public Set<ChangeType> getChangesAfterSigning() {
+        return changesAfterSigning;
+    }
+
+    public void setChangesAfterSigning(Set<ChangeType> changesAfterSigning) {
+        this.changesAfterSigning = changesAfterSigning;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public void setDetails(String details) {
+        this.details = details;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.documentsigner.pades.dto;
+
+/**
+ * One signer of a multi-signature PAdES request: the PFX credential plus
+ * the metadata and placement to use for that signer's signature.
+ */
+public class SignerCredential {
+    private byte[] certBytes;
+    private String password;
+    private SignatureMetadata metadata;
+    private VisualSignatureConfig visualConfig;
+
+    public SignerCredential() {
+    }
+
+    public SignerCredential(byte[] certBytes, String password,
+                            SignatureMetadata metadata, VisualSignatureConfig visualConfig) {
+        this.certBytes = certBytes;
+        this.password = password;
+        this.metadata = metadata;
+        this.visualConfig = visualConfig;
+    }
+
+    public byte[] getCertBytes() {
+        return certBytes;
+    }
+
+    public void setCertBytes(byte[] certBytes) {
+        this.certBytes = certBytes;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public SignatureMetadata getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(SignatureMetadata metadata) {
+        this.metadata = metadata;
+    }
+
+    public VisualSignatureConfig getVisualConfig() {
+        return visualConfig;
+    }
+
+    public void setVisualConfig(VisualSignatureConfig visualConfig) {
+        this.visualConfig = visualConfig;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private byte[] certBytes;
+        private String password;
+        private SignatureMetadata metadata;
+        private VisualSignatureConfig visualConfig;
+
+        public Builder certBytes(byte[] certBytes) {
+            this.certBytes = certBytes;
+            return this;
+        }
+
+        public Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public Builder metadata(SignatureMetadata metadata) {
+            this.metadata = metadata;
+            return this;
+        }
+
+        public Builder visualConfig(VisualSignatureConfig visualConfig) {
+            this.visualConfig = visualConfig;
+            return this;
+        }
+
+        public SignerCredential build() {
+            return new SignerCredential(certBytes, password, metadata, visualConfig);
+        }
+    }
+}
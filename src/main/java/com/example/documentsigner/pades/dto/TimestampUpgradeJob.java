@@ -0,0 +1,106 @@
+package com.example.documentsigner.pades.dto;
+
+import java.time.Instant;
+
+/**
+ * A pending or finished upgrade of a signed PDF from PAdES-B-B to B-T by
+ * appending a document timestamp.
+ */
+public class TimestampUpgradeJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final String filename;
+    private final Instant submittedAt;
+    private volatile Status status = Status.PENDING;
+    private volatile int attempts;
+    private volatile Instant completedAt;
+    private volatile String error;
+    private volatile byte[] signedPdf;
+    private volatile byte[] upgradedPdf;
+
+    public TimestampUpgradeJob(String id, String filename, byte[] signedPdf) {
+        this.id = id;
+        this.filename = filename;
+        this.signedPdf = signedPdf;
+        this.submittedAt = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * The B-B document waiting for its timestamp; released once the job finishes.
+     */
+    public byte[] getSignedPdf() {
+        return signedPdf;
+    }
+
+    /**
+     * The B-T document, available once the job is COMPLETED.
+     */
+    public byte[] getUpgradedPdf() {
+        return upgradedPdf;
+    }
+
+    public boolean isFinished() {
+        Status current = status;
+        return current == Status.COMPLETED || current == Status.FAILED;
+    }
+
+    public void markRunning() {
+        this.attempts++;
+        this.status = Status.RUNNING;
+    }
+
+    public void markPending(String error) {
+        this.error = error;
+        this.status = Status.PENDING;
+    }
+
+    public void markCompleted(byte[] upgradedPdf) {
+        this.upgradedPdf = upgradedPdf;
+        this.signedPdf = null;
+        this.error = null;
+        this.completedAt = Instant.now();
+        this.status = Status.COMPLETED;
+    }
+
+    public void markFailed(String error) {
+        this.signedPdf = null;
+        this.error = error;
+        this.completedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.documentsigner.pades.dto;
+
+/**
+ * How much of a PDF verification to perform. Each level includes the checks
+ * of the previous one.
+ */
+public enum VerificationLevel {
+    /** ByteRange coverage, digests and signature values only; no certificate checks. */
+    INTEGRITY,
+    /** Adds signer chain validation, revocation and DocMDP checks. */
+    FULL,
+    /** Adds confirmation by the ITI Verificador. */
+    EXTERNAL
+}
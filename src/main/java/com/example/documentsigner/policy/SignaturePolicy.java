@@ -0,0 +1,99 @@
+package com.example.documentsigner.policy;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.esf.OtherHashAlgAndValue;
+import org.bouncycastle.asn1.esf.SigPolicyQualifierInfo;
+import org.bouncycastle.asn1.esf.SigPolicyQualifiers;
+import org.bouncycastle.asn1.esf.SignaturePolicyId;
+import org.bouncycastle.asn1.esf.SignaturePolicyIdentifier;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+
+/**
+ * A signature policy (e.g. ICP-Brasil AD-RB) as referenced from a signature.
+ *
+ * Holds the policy OID, the digest of the policy document and the URI it is
+ * published at. The signature-policy-identifier attribute is built once when
+ * the policy is loaded and shared by every signature that uses it.
+ */
+public final class SignaturePolicy {
+
+    private final String name;
+    private final String oid;
+    private final String uri;
+    private final AlgorithmIdentifier hashAlgorithm;
+    private final byte[] digest;
+    private final Attribute attribute;
+
+    public SignaturePolicy(String name, String oid, String uri,
+                           AlgorithmIdentifier hashAlgorithm, byte[] digest) {
+        this.name = name;
+        this.oid = oid;
+        this.uri = uri;
+        this.hashAlgorithm = hashAlgorithm;
+        this.digest = digest.clone();
+        this.attribute = createAttribute();
+    }
+
+    /**
+     * Policy name, taken from the policy file name (e.g. PA_AD_RB_v2_3).
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getOid() {
+        return oid;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public AlgorithmIdentifier getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * Whether the policy requires a signature timestamp (AD-RT).
+     */
+    public boolean isTimestampRequired() {
+        SignaturePolicyType type = SignaturePolicyType.forOid(oid);
+        return type != null && type.isTimestampRequired();
+    }
+
+    /**
+     * The signed signature-policy-identifier attribute (id-aa-ets-sigPolicyId)
+     * referencing this policy.
+     */
+    public Attribute toAttribute() {
+        return attribute;
+    }
+
+    private Attribute createAttribute() {
+        SigPolicyQualifierInfo spUri = new SigPolicyQualifierInfo(
+            PKCSObjectIdentifiers.id_spq_ets_uri, new DERIA5String(uri));
+
+        SignaturePolicyId policyId = new SignaturePolicyId(
+            new ASN1ObjectIdentifier(oid),
+            new OtherHashAlgAndValue(hashAlgorithm, new DEROctetString(digest)),
+            new SigPolicyQualifiers(new SigPolicyQualifierInfo[]{spUri}));
+
+        return new Attribute(
+            PKCSObjectIdentifiers.id_aa_ets_sigPolicyId,
+            new DERSet(new SignaturePolicyIdentifier(policyId)));
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + oid + ")";
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.documentsigner.policy;
+
+import com.example.documentsigner.PdfSigner.SignatureFormat;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signature policies available for signing, loaded once from a local directory.
+ *
+ * Each *.der file in the directory is read as an ICP-Brasil policy document
+ * (SignaturePolicy ::= SEQUENCE { signPolicyHashAlg, signPolicyInfo, signPolicyHash }).
+ * The policy OID and digest are taken from the document when it is loaded, so
+ * signing never fetches or hashes a policy file.
+ *
+ * Requests select a policy either by family ("AD-RB", "AD-RT"), which picks the
+ * newest loaded version for the signature format, or by exact OID.
+ */
+public class SignaturePolicyRegistry {
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final Map<String, SignaturePolicy> policiesByOid;
+
+    public SignaturePolicyRegistry(Collection<SignaturePolicy> policies) {
+        Map<String, SignaturePolicy> byOid = new LinkedHashMap<>();
+        for (SignaturePolicy policy : policies) {
+            byOid.put(policy.getOid(), policy);
+        }
+        this.policiesByOid = Collections.unmodifiableMap(byOid);
+    }
+
+    /**
+     * Registry with no policies; signing works as before and any policy
+     * selection is rejected.
+     */
+    public static SignaturePolicyRegistry empty() {
+        return new SignaturePolicyRegistry(Collections.<SignaturePolicy>emptyList());
+    }
+
+    /**
+     * Loads every *.der policy document in the directory.
+     *
+     * @param directory Directory holding the policy documents (may not exist)
+     * @param baseUri URI prefix the documents are published under; the file name
+     *                is appended to form the SPURI qualifier
+     * @return the registry, empty if the directory does not exist
+     * @throws IOException if a policy document cannot be read or parsed
+     */
+    public static SignaturePolicyRegistry loadFromDirectory(Path directory, String baseUri) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return empty();
+        }
+
+        List<SignaturePolicy> policies = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.der")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String uri = baseUri.endsWith("/") ? baseUri + fileName : baseUri + "/" + fileName;
+                policies.add(parsePolicy(fileName.substring(0, fileName.length() - 4), uri,
+                    Files.readAllBytes(file)));
+            }
+        }
+        return new SignaturePolicyRegistry(policies);
+    }
+
+    /**
+     * Parses a DER policy document.
+     *
+     * The digest is the signPolicyHash carried by the document when present,
+     * otherwise it is computed with signPolicyHashAlg over the DER value of
+     * signPolicyInfo without its outer tag and length, as ETSI TS 101 733
+     * (5.8.1) defines it for ASN.1 policies.
+     */
+    static SignaturePolicy parsePolicy(String name, String uri, byte[] encoded) throws IOException {
+        try {
+            ASN1Sequence policy = ASN1Sequence.getInstance(ASN1Primitive.fromByteArray(encoded));
+            AlgorithmIdentifier hashAlgorithm = AlgorithmIdentifier.getInstance(policy.getObjectAt(0));
+            ASN1Encodable policyInfo = policy.getObjectAt(1);
+            String oid = ASN1ObjectIdentifier.getInstance(
+                ASN1Sequence.getInstance(policyInfo).getObjectAt(0)).getId();
+
+            byte[] digest;
+            if (policy.size() > 2) {
+                digest = ASN1OctetString.getInstance(policy.getObjectAt(2)).getOctets();
+            } else {
+                digest = MessageDigest.getInstance(hashAlgorithm.getAlgorithm().getId(), "BC")
+                    .digest(contentOctets(ASN1Sequence.getInstance(policyInfo)));
+            }
+
+            return new SignaturePolicy(name, oid, uri, hashAlgorithm, digest);
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Invalid signature policy document " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The value of a DER SEQUENCE without its tag and length: the DER encodings
+     * of its elements, one after the other.
+     */
+    private static byte[] contentOctets(ASN1Sequence sequence) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (ASN1Encodable element : sequence) {
+            content.write(element.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * Resolves a policy selection from a request.
+     *
+     * @param selector Policy family ("AD-RB", "AD-RT") or exact policy OID;
+     *                 null or blank means no policy
+     * @param format Signature format the policy will be used with
+     * @return the policy, or null when no policy was requested
+     * @throws IllegalArgumentException if no loaded policy matches
+     */
+    public SignaturePolicy resolve(String selector, SignatureFormat format) {
+        if (selector == null || selector.trim().isEmpty() || "none".equalsIgnoreCase(selector.trim())) {
+            return null;
+        }
+
+        String value = selector.trim();
+        SignaturePolicyType type = SignaturePolicyType.fromString(value);
+        if (type == null) {
+            SignaturePolicy policy = policiesByOid.get(value);
+            if (policy == null) {
+                throw new IllegalArgumentException("Unknown signature policy: " + selector);
+            }
+            return policy;
+        }
+
+        SignaturePolicy newest = null;
+        for (SignaturePolicy policy : policiesByOid.values()) {
+            if (type.matches(policy.getOid(), format)
+                    && (newest == null || compareOids(policy.getOid(), newest.getOid()) > 0)) {
+                newest = policy;
+            }
+        }
+        if (newest == null) {
+            throw new IllegalArgumentException(
+                "No " + selector + " policy loaded for " + format + " signatures");
+        }
+        return newest;
+    }
+
+    public SignaturePolicy getByOid(String oid) {
+        return policiesByOid.get(oid);
+    }
+
+    public Collection<SignaturePolicy> getPolicies() {
+        return policiesByOid.values();
+    }
+
+    private static int compareOids(String a, String b) {
+        String[] arcsA = a.split("\\.");
+        String[] arcsB = b.split("\\.");
+        for (int i = 0; i < Math.min(arcsA.length, arcsB.length); i++) {
+            int cmp = Long.compare(Long.parseLong(arcsA[i]), Long.parseLong(arcsB[i]));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(arcsA.length, arcsB.length);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.documentsigner.policy;
+
+import com.example.documentsigner.PdfSigner.SignatureFormat;
+
+/**
+ * ICP-Brasil signature policy families (DOC-ICP-15.03).
+ *
+ * Each family has its own OID arc for CAdES (detached .p7s) and for PAdES;
+ * the last two arcs under it are the policy version.
+ */
+public enum SignaturePolicyType {
+    /** Basic reference signature (Assinatura Digital com Referência Básica) */
+    AD_RB("2.16.76.1.7.1.1.", "2.16.76.1.7.1.11.", false),
+    /** Signature with time reference (Assinatura Digital com Referência de Tempo) */
+    AD_RT("2.16.76.1.7.1.2.", "2.16.76.1.7.1.12.", true);
+
+    private final String cadesArc;
+    private final String padesArc;
+    private final boolean timestampRequired;
+
+    SignaturePolicyType(String cadesArc, String padesArc, boolean timestampRequired) {
+        this.cadesArc = cadesArc;
+        this.padesArc = padesArc;
+        this.timestampRequired = timestampRequired;
+    }
+
+    /**
+     * Whether signatures under this policy must carry a signature timestamp.
+     */
+    public boolean isTimestampRequired() {
+        return timestampRequired;
+    }
+
+    /**
+     * Whether the policy OID belongs to this family for the given format.
+     */
+    public boolean matches(String oid, SignatureFormat format) {
+        return oid.startsWith(format == SignatureFormat.PADES ? padesArc : cadesArc);
+    }
+
+    /**
+     * Parses a request value such as "AD-RB", "ad_rt" or "adrb".
+     *
+     * @return the policy type, or null if the value names no known family
+     */
+    public static SignaturePolicyType fromString(String value) {
+        String normalized = value.trim().toUpperCase().replace("-", "").replace("_", "");
+        for (SignaturePolicyType type : values()) {
+            if (type.name().replace("_", "").equals(normalized)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the family a policy OID belongs to, or null if it is not an
+     * AD-RB or AD-RT policy.
+     */
+    public static SignaturePolicyType forOid(String oid) {
+        for (SignaturePolicyType type : values()) {
+            if (oid.startsWith(type.cadesArc) || oid.startsWith(type.padesArc)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
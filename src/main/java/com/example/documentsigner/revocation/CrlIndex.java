@@ -0,0 +1,547 @@
+package com.example.documentsigner.revocation;
+
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1UTCTime;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.operator.ContentVerifier;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * The revoked serial numbers of one CRL, sorted in an off-heap buffer.
+ *
+ * The CRL is walked directly as DER instead of through X509CRL, which would
+ * build an object per entry. Each entry becomes a fixed-width record: the
+ * serial in two's complement, sign-extended to the widest serial in the CRL,
+ * followed by the revocation time as epoch milliseconds and the CRLReason
+ * code from the entry's reasonCode extension (0xff without one). The records are
+ * sorted in place in a direct ByteBuffer, and lookups binary-search it. A
+ * CRL with hundreds of thousands of entries costs a few megabytes outside the
+ * heap and about twenty record comparisons per lookup.
+ *
+ * Instances are immutable once built and safe to share between threads.
+ */
+public final class CrlIndex {
+
+    private static final int TAG_BOOLEAN = 0x01;
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_BIT_STRING = 0x03;
+    private static final int TAG_OCTET_STRING = 0x04;
+    private static final int TAG_OID = 0x06;
+    private static final int TAG_ENUMERATED = 0x0A;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_UTC_TIME = 0x17;
+    private static final int TAG_GENERALIZED_TIME = 0x18;
+    private static final int TAG_EXTENSIONS = 0xA0;
+    // id-ce-cRLReasons (2.5.29.21), content octets
+    private static final byte[] REASON_CODE_OID = {0x55, 0x1D, 0x15};
+    private static final byte NO_REASON = (byte) 0xff;
+
+    private final X500Principal issuer;
+    private final String authorityKeyId;
+    private final Date thisUpdate;
+    private final Date nextUpdate;
+    private final int serialWidth;
+    private final int recordSize;
+    private final int count;
+    private final ByteBuffer records;
+
+    private CrlIndex(X500Principal issuer, String authorityKeyId, Date thisUpdate, Date nextUpdate,
+                     int serialWidth, int count, ByteBuffer records) {
+        this.issuer = issuer;
+        this.authorityKeyId = authorityKeyId;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.serialWidth = serialWidth;
+        this.recordSize = serialWidth + 9;
+        this.count = count;
+        this.records = records;
+    }
+
+    /**
+     * Parses a DER CRL and verifies its signature with the issuer's certificate.
+     *
+     * @param der The DER-encoded CRL
+     * @param issuerCertificate Certificate of the CA that signed the CRL
+     * @throws IOException if the CRL is malformed, is a delta CRL, or its
+     *                     signature does not verify
+     */
+    public static CrlIndex parse(byte[] der, X509Certificate issuerCertificate) throws IOException {
+        try {
+            int tbs = contentOffset(der, expect(der, 0, TAG_SEQUENCE));
+            int tbsEnd = end(der, expect(der, tbs, TAG_SEQUENCE));
+            int signatureAlgorithm = expect(der, tbsEnd, TAG_SEQUENCE);
+            int signature = expect(der, end(der, signatureAlgorithm), TAG_BIT_STRING);
+
+            verifySignature(der, tbs, tbsEnd, signatureAlgorithm, signature, issuerCertificate);
+
+            int issuerStart = issuerOffset(der, tbs);
+            X500Principal issuer = new X500Principal(Arrays.copyOfRange(der, issuerStart, end(der, issuerStart)));
+            if (!issuer.equals(issuerCertificate.getSubjectX500Principal())) {
+                throw new IOException("CRL issuer " + issuer.getName() + " does not match the issuer certificate");
+            }
+            int p = end(der, issuerStart);
+
+            Date thisUpdate = new Date(parseTime(der, p));
+            p = end(der, p);
+
+            Date nextUpdate = null;
+            if (p < tbsEnd && (tag(der, p) == TAG_UTC_TIME || tag(der, p) == TAG_GENERALIZED_TIME)) {
+                nextUpdate = new Date(parseTime(der, p));
+                p = end(der, p);
+            }
+
+            int revokedStart = -1;
+            if (p < tbsEnd && tag(der, p) == TAG_SEQUENCE) {
+                revokedStart = p;
+                p = end(der, p);
+            }
+
+            String authorityKeyId = null;
+            if (p < tbsEnd && tag(der, p) == TAG_EXTENSIONS) {
+                int extensionsStart = contentOffset(der, p);
+                Extensions extensions = Extensions.getInstance(ASN1Primitive.fromByteArray(
+                    Arrays.copyOfRange(der, extensionsStart, end(der, p))));
+                if (extensions.getExtension(Extension.deltaCRLIndicator) != null) {
+                    throw new IOException("Delta CRLs are not supported");
+                }
+                AuthorityKeyIdentifier aki = AuthorityKeyIdentifier.fromExtensions(extensions);
+                if (aki != null && aki.getKeyIdentifier() != null) {
+                    authorityKeyId = Hex.toHexString(aki.getKeyIdentifier());
+                }
+            }
+
+            return build(der, revokedStart, issuer, authorityKeyId, thisUpdate, nextUpdate);
+
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed CRL: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the issuer name of a DER CRL without verifying or indexing it, to
+     * find the certificate to verify it with.
+     *
+     * @throws IOException if the CRL is malformed
+     */
+    public static X500Principal readIssuer(byte[] der) throws IOException {
+        try {
+            int tbs = contentOffset(der, expect(der, 0, TAG_SEQUENCE));
+            expect(der, tbs, TAG_SEQUENCE);
+            int issuerStart = issuerOffset(der, tbs);
+            return new X500Principal(Arrays.copyOfRange(der, issuerStart, end(der, issuerStart)));
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed CRL: " + e.getMessage(), e);
+        }
+    }
+
+    public X500Principal getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Hex authority key identifier of the CRL, or null if it carries none.
+     */
+    public String getAuthorityKeyId() {
+        return authorityKeyId;
+    }
+
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * When the next CRL is due; null if the CRL does not say.
+     */
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    public boolean isStale(Date time) {
+        return nextUpdate != null && time.after(nextUpdate);
+    }
+
+    /**
+     * Number of revoked serials.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Revocation time of the serial in epoch milliseconds, or null if the serial
+     * is not on the CRL.
+     */
+    public Long getRevocationTime(BigInteger serialNumber) {
+        int index = find(serialNumber);
+        return index < 0 ? null : records.getLong(index * recordSize + serialWidth);
+    }
+
+    /**
+     * CRLReason code the serial was revoked with, or null if the serial is not
+     * on the CRL or its entry gives no reason.
+     */
+    public Integer getRevocationReason(BigInteger serialNumber) {
+        int index = find(serialNumber);
+        if (index < 0) {
+            return null;
+        }
+        byte reason = records.get(index * recordSize + serialWidth + 8);
+        return reason == NO_REASON ? null : (int) reason;
+    }
+
+    /**
+     * Index of the serial's record, or -1.
+     */
+    private int find(BigInteger serialNumber) {
+        byte[] serial = serialNumber.toByteArray();
+        if (serial.length > serialWidth || count == 0) {
+            return -1;
+        }
+        byte[] key = new byte[serialWidth];
+        signExtend(serial, 0, serial.length, key, 0, serialWidth);
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareKey(mid, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static CrlIndex build(byte[] der, int revokedStart, X500Principal issuer, String authorityKeyId,
+                                  Date thisUpdate, Date nextUpdate) throws IOException {
+        // First pass: count the entries and find the widest serial
+        int count = 0;
+        int width = 1;
+        if (revokedStart >= 0) {
+            int listEnd = end(der, revokedStart);
+            for (int entry = contentOffset(der, revokedStart); entry < listEnd; entry = end(der, entry)) {
+                int serial = expect(der, contentOffset(der, expect(der, entry, TAG_SEQUENCE)), TAG_INTEGER);
+                width = Math.max(width, contentLength(der, serial));
+                count++;
+            }
+        }
+
+        int recordSize = width + 9;
+        ByteBuffer records = ByteBuffer.allocateDirect(Math.max(1, count * recordSize));
+
+        // Second pass: write the records
+        if (revokedStart >= 0) {
+            byte[] record = new byte[recordSize];
+            int listEnd = end(der, revokedStart);
+            int index = 0;
+            for (int entry = contentOffset(der, revokedStart); entry < listEnd; entry = end(der, entry)) {
+                int serial = contentOffset(der, entry);
+                signExtend(der, contentOffset(der, serial), contentLength(der, serial), record, 0, width);
+                int time = end(der, serial);
+                long revocationTime = parseTime(der, time);
+                for (int i = 0; i < 8; i++) {
+                    record[width + i] = (byte) (revocationTime >>> (56 - 8 * i));
+                }
+                int extensions = end(der, time);
+                record[width + 8] = extensions < end(der, entry) && tag(der, extensions) == TAG_SEQUENCE
+                    ? reasonCode(der, extensions) : NO_REASON;
+                records.position(index * recordSize);
+                records.put(record);
+                index++;
+            }
+            records.clear();
+        }
+
+        CrlIndex crlIndex = new CrlIndex(issuer, authorityKeyId, thisUpdate, nextUpdate, width, count, records);
+        crlIndex.sort();
+        return crlIndex;
+    }
+
+    /**
+     * The reasonCode in a CRL entry's extensions, or NO_REASON.
+     */
+    private static byte reasonCode(byte[] der, int extensions) throws IOException {
+        int extensionsEnd = end(der, extensions);
+        for (int extension = contentOffset(der, extensions); extension < extensionsEnd;
+                extension = end(der, extension)) {
+            int oid = expect(der, contentOffset(der, expect(der, extension, TAG_SEQUENCE)), TAG_OID);
+            if (contentLength(der, oid) != REASON_CODE_OID.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < REASON_CODE_OID.length; i++) {
+                matches &= der[contentOffset(der, oid) + i] == REASON_CODE_OID[i];
+            }
+            if (!matches) {
+                continue;
+            }
+            int value = end(der, oid);
+            if (tag(der, value) == TAG_BOOLEAN) {
+                value = end(der, value);
+            }
+            int reason = expect(der, contentOffset(der, expect(der, value, TAG_OCTET_STRING)), TAG_ENUMERATED);
+            if (contentLength(der, reason) != 1) {
+                throw new IOException("Malformed CRL: bad reason code at offset " + reason);
+            }
+            return der[contentOffset(der, reason)];
+        }
+        return NO_REASON;
+    }
+
+    /**
+     * Offset of the issuer Name in the TBSCertList: after the optional version
+     * and the signature algorithm.
+     */
+    private static int issuerOffset(byte[] der, int tbs) throws IOException {
+        int p = contentOffset(der, tbs);
+        if (tag(der, p) == TAG_INTEGER) {
+            p = end(der, p);
+        }
+        p = end(der, expect(der, p, TAG_SEQUENCE));
+        return expect(der, p, TAG_SEQUENCE);
+    }
+
+    private static void verifySignature(byte[] der, int tbs, int tbsEnd, int signatureAlgorithm, int signature,
+                                        X509Certificate issuerCertificate) throws IOException {
+        boolean[] keyUsage = issuerCertificate.getKeyUsage();
+        if (keyUsage != null && (keyUsage.length < 7 || !keyUsage[6])) {
+            throw new IOException("Issuer certificate is not allowed to sign CRLs");
+        }
+
+        try {
+            AlgorithmIdentifier algorithm = AlgorithmIdentifier.getInstance(
+                Arrays.copyOfRange(der, signatureAlgorithm, end(der, signatureAlgorithm)));
+            ContentVerifier verifier = new JcaContentVerifierProviderBuilder()
+                .setProvider("BC")
+                .build(issuerCertificate)
+                .get(algorithm);
+            try (OutputStream out = verifier.getOutputStream()) {
+                out.write(der, tbs, tbsEnd - tbs);
+            }
+            // BIT STRING content: one byte of unused bits, then the signature
+            int signatureStart = contentOffset(der, signature) + 1;
+            if (!verifier.verify(Arrays.copyOfRange(der, signatureStart, end(der, signature)))) {
+                throw new IOException("CRL signature does not verify");
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Cannot verify CRL signature: " + e.getMessage(), e);
+        }
+    }
+
+    // ---- Record order ----
+
+    private int compareKey(int index, byte[] key) {
+        int base = index * recordSize;
+        int first = Byte.compare(records.get(base), key[0]);
+        if (first != 0) {
+            return first;
+        }
+        for (int i = 1; i < serialWidth; i++) {
+            int difference = (records.get(base + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private int compareRecords(int a, int b) {
+        int baseA = a * recordSize;
+        int baseB = b * recordSize;
+        int first = Byte.compare(records.get(baseA), records.get(baseB));
+        if (first != 0) {
+            return first;
+        }
+        for (int i = 1; i < serialWidth; i++) {
+            int difference = (records.get(baseA + i) & 0xff) - (records.get(baseB + i) & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * In-place heapsort of the records, so sorting needs no heap copy of the CRL.
+     */
+    private void sort() {
+        byte[] a = new byte[recordSize];
+        byte[] b = new byte[recordSize];
+        for (int start = count / 2 - 1; start >= 0; start--) {
+            siftDown(start, count, a, b);
+        }
+        for (int last = count - 1; last > 0; last--) {
+            swap(0, last, a, b);
+            siftDown(0, last, a, b);
+        }
+    }
+
+    private void siftDown(int root, int size, byte[] a, byte[] b) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compareRecords(child + 1, child) > 0) {
+                child++;
+            }
+            if (compareRecords(root, child) >= 0) {
+                return;
+            }
+            swap(root, child, a, b);
+            root = child;
+        }
+    }
+
+    private void swap(int i, int j, byte[] a, byte[] b) {
+        records.position(i * recordSize);
+        records.get(a);
+        records.position(j * recordSize);
+        records.get(b);
+        records.position(i * recordSize);
+        records.put(b);
+        records.position(j * recordSize);
+        records.put(a);
+        records.clear();
+    }
+
+    // ---- DER ----
+
+    private static int tag(byte[] der, int offset) {
+        return der[offset] & 0xff;
+    }
+
+    private static int expect(byte[] der, int offset, int tag) throws IOException {
+        if (tag(der, offset) != tag) {
+            throw new IOException("Malformed CRL: expected tag " + Integer.toHexString(tag)
+                + " at offset " + offset);
+        }
+        return offset;
+    }
+
+    private static int contentOffset(byte[] der, int offset) {
+        int first = der[offset + 1] & 0xff;
+        return first < 0x80 ? offset + 2 : offset + 2 + (first & 0x7f);
+    }
+
+    private static int contentLength(byte[] der, int offset) throws IOException {
+        int first = der[offset + 1] & 0xff;
+        if (first < 0x80) {
+            return first;
+        }
+        int octets = first & 0x7f;
+        if (octets == 0 || octets > 4) {
+            throw new IOException("Malformed CRL: unsupported length at offset " + offset);
+        }
+        int length = 0;
+        for (int i = 0; i < octets; i++) {
+            length = (length << 8) | (der[offset + 2 + i] & 0xff);
+        }
+        if (length < 0) {
+            throw new IOException("Malformed CRL: length overflow at offset " + offset);
+        }
+        return length;
+    }
+
+    private static int end(byte[] der, int offset) throws IOException {
+        int end = contentOffset(der, offset) + contentLength(der, offset);
+        if (end > der.length) {
+            throw new IOException("Malformed CRL: truncated at offset " + offset);
+        }
+        return end;
+    }
+
+    private static void signExtend(byte[] source, int offset, int length, byte[] target, int targetOffset,
+                                   int width) {
+        byte fill = length > 0 && source[offset] < 0 ? (byte) 0xff : 0;
+        int padding = width - length;
+        for (int i = 0; i < padding; i++) {
+            target[targetOffset + i] = fill;
+        }
+        System.arraycopy(source, offset, target, targetOffset + padding, length);
+    }
+
+    /**
+     * Parses a UTCTime or GeneralizedTime to epoch milliseconds. The common
+     * "...Z" forms are decoded directly; anything else goes through BouncyCastle.
+     */
+    private static long parseTime(byte[] der, int offset) throws IOException {
+        int tag = tag(der, offset);
+        int start = contentOffset(der, offset);
+        int length = contentLength(der, offset);
+
+        if (tag == TAG_UTC_TIME && length == 13 && der[start + 12] == 'Z') {
+            int year = digits(der, start, 2);
+            return epochMillis(year < 50 ? 2000 + year : 1900 + year, der, start + 2);
+        }
+        if (tag == TAG_GENERALIZED_TIME && length == 15 && der[start + 14] == 'Z') {
+            return epochMillis(digits(der, start, 4), der, start + 4);
+        }
+
+        try {
+            byte[] encoded = Arrays.copyOfRange(der, offset, end(der, offset));
+            if (tag == TAG_UTC_TIME) {
+                return ASN1UTCTime.getInstance(encoded).getAdjustedDate().getTime();
+            }
+            if (tag == TAG_GENERALIZED_TIME) {
+                return ASN1GeneralizedTime.getInstance(encoded).getDate().getTime();
+            }
+        } catch (Exception e) {
+            throw new IOException("Malformed CRL time at offset " + offset, e);
+        }
+        throw new IOException("Malformed CRL: expected a time at offset " + offset);
+    }
+
+    /**
+     * Epoch milliseconds of year plus "MMDDHHMMSS" at the offset (UTC).
+     */
+    private static long epochMillis(int year, byte[] der, int offset) throws IOException {
+        int month = digits(der, offset, 2);
+        int day = digits(der, offset + 2, 2);
+        int hour = digits(der, offset + 4, 2);
+        int minute = digits(der, offset + 6, 2);
+        int second = digits(der, offset + 8, 2);
+
+        // Days from civil (proleptic Gregorian)
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097L + dayOfEra - 719468;
+
+        return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+    }
+
+    private static int digits(byte[] der, int offset, int count) throws IOException {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = der[offset + i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Malformed CRL time at offset " + offset);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.documentsigner.revocation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.encoders.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable OCSP responder for tests and benchmarks.
+ *
+ * Answers OCSP requests (POST, or GET with the base64 request in the path)
+ * over HTTP on the loopback interface for certificates issued by one CA,
+ * signing the responses with that CA's key. Every serial is GOOD unless marked
+ * revoked with revoke(); certificates of other CAs are UNKNOWN. Point
+ * OcspClient at getUrl() to run revocation checks offline. An optional
+ * response delay simulates a remote responder.
+ */
+public class LocalOcspResponder implements Closeable {
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final X509CertificateHolder issuer;
+    private final ContentSigner signer;
+    private final DigestCalculatorProvider digestCalculators;
+    private final Map<BigInteger, RevokedStatus> revoked = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long responseDelayMillis;
+    private volatile long validityMillis = 60 * 60 * 1000L;
+
+    /**
+     * Starts a responder for the CA on the given loopback port (0 picks a free port).
+     *
+     * @param issuerCertificate Certificate of the CA whose certificates are answered for
+     * @param issuerKey The CA's private key, used to sign responses
+     */
+    public LocalOcspResponder(X509Certificate issuerCertificate, PrivateKey issuerKey, int port) throws Exception {
+        this.issuer = new JcaX509CertificateHolder(issuerCertificate);
+        this.signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerKey);
+        this.digestCalculators = new JcaDigestCalculatorProviderBuilder().setProvider("BC").build();
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-ocsp");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", new OcspHandler());
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * URL to configure as the OCSP responder.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Marks a serial as revoked from the given time on, for key compromise.
+     */
+    public void revoke(BigInteger serialNumber, Date revocationTime) {
+        revoke(serialNumber, revocationTime, RevocationStatus.KEY_COMPROMISE);
+    }
+
+    /**
+     * Marks a serial as revoked from the given time on, with a CRLReason code.
+     */
+    public void revoke(BigInteger serialNumber, Date revocationTime, int reason) {
+        revoked.put(serialNumber, new RevokedStatus(revocationTime, reason));
+    }
+
+    /**
+     * How far after thisUpdate responses put their nextUpdate.
+     */
+    public void setValidityMillis(long validityMillis) {
+        this.validityMillis = validityMillis;
+    }
+
+    /**
+     * Delay added before each response, to simulate a remote responder.
+     */
+    public void setResponseDelayMillis(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Number of OCSP requests answered.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private byte[] respond(byte[] requestBytes) throws Exception {
+        OCSPReq request = new OCSPReq(requestBytes);
+        Date now = new Date();
+        Date nextUpdate = new Date(now.getTime() + validityMillis);
+
+        BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(
+            new RespID(issuer.getSubjectPublicKeyInfo(), digestCalculators.get(RespID.HASH_SHA1)));
+        for (Req single : request.getRequestList()) {
+            CertificateID id = single.getCertID();
+
+            CertificateStatus status;
+            if (!id.matchesIssuer(issuer, digestCalculators)) {
+                status = new UnknownStatus();
+            } else {
+                RevokedStatus revokedStatus = revoked.get(id.getSerialNumber());
+                status = revokedStatus != null ? revokedStatus : CertificateStatus.GOOD;
+            }
+            builder.addResponse(id, status, now, nextUpdate, null);
+        }
+
+        // The signer is not safe for concurrent use
+        synchronized (signer) {
+            return new OCSPRespBuilder()
+                .build(OCSPRespBuilder.SUCCESSFUL,
+                    builder.build(signer, new X509CertificateHolder[]{issuer}, now))
+                .getEncoded();
+        }
+    }
+
+    private class OcspHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                byte[] requestBytes;
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    requestBytes = readAll(exchange.getRequestBody());
+                } else if ("GET".equals(exchange.getRequestMethod())) {
+                    String path = exchange.getRequestURI().getRawPath();
+                    requestBytes = Base64.decode(URLDecoder.decode(path.substring(path.lastIndexOf('/') + 1), "UTF-8"));
+                } else {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                byte[] response;
+                try {
+                    response = respond(requestBytes);
+                } catch (Exception e) {
+                    response = new OCSPRespBuilder().build(OCSPRespBuilder.MALFORMED_REQUEST, null).getEncoded();
+                }
+                requestCount.incrementAndGet();
+
+                long delay = responseDelayMillis;
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/ocsp-response");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, bytesRead);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
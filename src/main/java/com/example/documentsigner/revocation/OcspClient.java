@@ -0,0 +1,458 @@
+package com.example.documentsigner.revocation;
+
+import org.bouncycastle.asn1.ASN1IA5String;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OCSP (RFC 6960) client for checking certificate status online.
+ *
+ * - Responses are cached by (issuer, serial) until their nextUpdate, capped at
+ *   maxAgeMillis; a response without nextUpdate is kept for maxAgeMillis.
+ * - Concurrent checks of the same certificate share one request: the first
+ *   caller queries the responder and the others wait for its result.
+ * - At most maxConcurrentRequests requests are outstanding at once; further
+ *   callers wait up to the request timeout for a slot.
+ * - Responses must be signed by the issuing CA or by a responder certificate
+ *   the CA issued for OCSP signing (id-kp-OCSPSigning).
+ *
+ * Requests go to the configured responder URL or, without one, to the OCSP
+ * URL in the certificate's Authority Information Access extension. A
+ * responder that cannot be reached, or whose response does not verify, yields
+ * UNKNOWN; such failures are not cached.
+ *
+ * Instances are thread-safe and meant to be shared.
+ */
+public class OcspClient {
+
+    private static final String OCSP_REQUEST = "application/ocsp-request";
+    private static final String OCSP_RESPONSE = "application/ocsp-response";
+
+    /** Tolerated clock difference with the responder */
+    private static final long CLOCK_SKEW_MS = 5 * 60 * 1000L;
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final boolean enabled;
+    private final String responderUrl;
+    private final int timeoutMs;
+    private final long maxAgeMillis;
+    private final Semaphore permits;
+    private final Map<String, CachedStatus> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<RevocationStatus>> inFlight =
+        new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * @param responderUrl Responder every request goes to; null or empty to use
+     *                     the URL in each certificate
+     * @param timeoutMs Connect/read timeout, also the wait for a request slot
+     * @param maxConcurrentRequests Maximum outstanding OCSP requests
+     * @param cacheMaxEntries Maximum cached certificate statuses
+     * @param maxAgeMillis Longest a response is reused, whatever its nextUpdate
+     */
+    public OcspClient(String responderUrl, int timeoutMs, int maxConcurrentRequests,
+                      final int cacheMaxEntries, long maxAgeMillis) {
+        this(true, responderUrl, timeoutMs, maxConcurrentRequests, cacheMaxEntries, maxAgeMillis);
+    }
+
+    private OcspClient(boolean enabled, String responderUrl, int timeoutMs, int maxConcurrentRequests,
+                       final int cacheMaxEntries, long maxAgeMillis) {
+        this.enabled = enabled;
+        this.responderUrl = responderUrl != null && !responderUrl.trim().isEmpty() ? responderUrl.trim() : null;
+        this.timeoutMs = timeoutMs;
+        this.maxAgeMillis = maxAgeMillis;
+        this.permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+        this.cache = new LinkedHashMap<String, CachedStatus>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatus> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * A client that never queries a responder; every status is UNKNOWN.
+     */
+    public static OcspClient disabled() {
+        return new OcspClient(false, null, 10000, 1, 1, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Current OCSP status of the certificate. For the status at an earlier
+     * time, apply {@link RevocationStatus#asOf(Date)} to it.
+     *
+     * @param certificate Certificate to check
+     * @param issuer Certificate of the CA that issued it
+     */
+    public RevocationStatus check(X509Certificate certificate, X509Certificate issuer) {
+        if (!enabled) {
+            return RevocationStatus.unknown("OCSP is disabled");
+        }
+        String url = responderUrl != null ? responderUrl : firstOrNull(getResponderUrls(certificate));
+        if (url == null) {
+            return RevocationStatus.unknown("Certificate names no OCSP responder");
+        }
+
+        CertificateID certificateId;
+        try {
+            certificateId = new CertificateID(digestCalculators().get(CertificateID.HASH_SHA1),
+                new JcaX509CertificateHolder(issuer), certificate.getSerialNumber());
+        } catch (OperatorCreationException | OCSPException | CertificateEncodingException e) {
+            return RevocationStatus.unknown("Cannot build OCSP request: " + e.getMessage());
+        }
+        String key = Hex.toHexString(certificateId.getIssuerNameHash())
+            + Hex.toHexString(certificateId.getIssuerKeyHash())
+            + ":" + certificate.getSerialNumber().toString(16);
+
+        RevocationStatus cached = getCached(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<RevocationStatus> pending = new CompletableFuture<>();
+        CompletableFuture<RevocationStatus> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            // A request that completed between the cache lookup and putIfAbsent
+            cached = getCached(key);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                pending.complete(cached);
+                return cached;
+            }
+
+            RevocationStatus status = query(url, certificateId, issuer, key);
+            pending.complete(status);
+            return status;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * HTTP(S) OCSP responder URLs from the certificate's Authority Information
+     * Access extension.
+     */
+    public static List<String> getResponderUrls(X509Certificate certificate) {
+        List<String> urls = new ArrayList<>();
+        byte[] extension = certificate.getExtensionValue(Extension.authorityInfoAccess.getId());
+        if (extension == null) {
+            return urls;
+        }
+        try {
+            AuthorityInformationAccess access = AuthorityInformationAccess.getInstance(
+                ASN1Primitive.fromByteArray(ASN1OctetString.getInstance(extension).getOctets()));
+            for (AccessDescription description : access.getAccessDescriptions()) {
+                GeneralName location = description.getAccessLocation();
+                if (AccessDescription.id_ad_ocsp.equals(description.getAccessMethod())
+                        && location.getTagNo() == GeneralName.uniformResourceIdentifier) {
+                    String url = ASN1IA5String.getInstance(location.getName()).getString();
+                    if (url.startsWith("http://") || url.startsWith("https://")) {
+                        urls.add(url);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // A malformed extension names no usable responder
+        }
+        return urls;
+    }
+
+    /**
+     * Number of requests sent to responders.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Number of checks answered from the cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    private RevocationStatus query(String url, CertificateID certificateId, X509Certificate issuer, String key) {
+        byte[] encodedRequest;
+        try {
+            OCSPReq request = new OCSPReqBuilder().addRequest(certificateId).build();
+            encodedRequest = request.getEncoded();
+        } catch (OCSPException | IOException e) {
+            return RevocationStatus.unknown("Cannot build OCSP request: " + e.getMessage());
+        }
+
+        if (!acquirePermit()) {
+            return RevocationStatus.unknown("Too many outstanding OCSP requests");
+        }
+        byte[] encodedResponse;
+        try {
+            requests.incrementAndGet();
+            encodedResponse = post(url, encodedRequest);
+        } catch (IOException e) {
+            return RevocationStatus.unknown("OCSP responder " + url + " failed: " + e.getMessage());
+        } finally {
+            permits.release();
+        }
+
+        try {
+            OCSPResp response = new OCSPResp(encodedResponse);
+            if (response.getStatus() != OCSPResp.SUCCESSFUL) {
+                return RevocationStatus.unknown("OCSP responder " + url + " returned status "
+                    + response.getStatus());
+            }
+            BasicOCSPResp basic = (BasicOCSPResp) response.getResponseObject();
+            verifyResponder(basic, issuer);
+
+            for (SingleResp single : basic.getResponses()) {
+                if (!certificateId.equals(single.getCertID())) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                if (single.getThisUpdate().getTime() > now + CLOCK_SKEW_MS) {
+                    return RevocationStatus.unknown("OCSP response is not yet valid");
+                }
+                Date nextUpdate = single.getNextUpdate();
+                if (nextUpdate != null && nextUpdate.getTime() + CLOCK_SKEW_MS < now) {
+                    return RevocationStatus.unknown("OCSP response is out of date");
+                }
+
+                RevocationStatus status = toStatus(single.getCertStatus());
+                long expiresAt = now + maxAgeMillis;
+                if (nextUpdate != null) {
+                    expiresAt = Math.min(expiresAt, nextUpdate.getTime());
+                }
+                putCached(key, status, expiresAt);
+                return status;
+            }
+            return RevocationStatus.unknown("OCSP response does not cover the certificate");
+
+        } catch (IOException | OCSPException | GeneralSecurityException | OperatorCreationException
+                 | ClassCastException e) {
+            return RevocationStatus.unknown("Invalid OCSP response from " + url + ": " + e.getMessage());
+        }
+    }
+
+    private static RevocationStatus toStatus(CertificateStatus certStatus) {
+        if (certStatus == CertificateStatus.GOOD) {
+            return RevocationStatus.good("OCSP: not revoked");
+        }
+        if (certStatus instanceof RevokedStatus) {
+            RevokedStatus revoked = (RevokedStatus) certStatus;
+            Date revocationTime = revoked.getRevocationTime();
+            return RevocationStatus.revoked(revocationTime,
+                revoked.hasRevocationReason() ? revoked.getRevocationReason() : null,
+                "Certificate revoked on " + revocationTime);
+        }
+        return RevocationStatus.unknown("OCSP responder does not know the certificate");
+    }
+
+    /**
+     * Checks the response is signed by the issuer or by a delegated responder
+     * the issuer certified for OCSP signing.
+     */
+    private static void verifyResponder(BasicOCSPResp response, X509Certificate issuer)
+            throws GeneralSecurityException, OCSPException, OperatorCreationException {
+        JcaContentVerifierProviderBuilder verifiers = new JcaContentVerifierProviderBuilder().setProvider("BC");
+        if (response.isSignatureValid(verifiers.build(issuer.getPublicKey()))) {
+            return;
+        }
+
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+        for (X509CertificateHolder holder : response.getCerts()) {
+            X509Certificate responder = converter.getCertificate(holder);
+            if (!responder.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())
+                    || !isOcspSigner(responder)) {
+                continue;
+            }
+            try {
+                responder.verify(issuer.getPublicKey());
+                responder.checkValidity();
+            } catch (GeneralSecurityException e) {
+                continue;
+            }
+            if (response.isSignatureValid(verifiers.build(responder.getPublicKey()))) {
+                return;
+            }
+        }
+        throw new OCSPException("response is not signed by the issuer or an authorized responder");
+    }
+
+    private static boolean isOcspSigner(X509Certificate certificate) {
+        try {
+            List<String> usages = certificate.getExtendedKeyUsage();
+            return usages != null && usages.contains(KeyPurposeId.id_kp_OCSPSigning.getId());
+        } catch (CertificateParsingException e) {
+            return false;
+        }
+    }
+
+    private RevocationStatus await(CompletableFuture<RevocationStatus> pending) {
+        try {
+            return pending.get(timeoutMs * 2L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RevocationStatus.unknown("Interrupted while waiting for an OCSP response");
+        } catch (ExecutionException | TimeoutException e) {
+            return RevocationStatus.unknown("OCSP request failed: " + e.getMessage());
+        }
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private RevocationStatus getCached(String key) {
+        synchronized (cache) {
+            CachedStatus cached = cache.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired()) {
+                cache.remove(key);
+                return null;
+            }
+            return cached.status;
+        }
+    }
+
+    private void putCached(String key, RevocationStatus status, long expiresAt) {
+        synchronized (cache) {
+            cache.put(key, new CachedStatus(status, expiresAt));
+        }
+    }
+
+    private byte[] post(String url, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setRequestProperty("Content-Type", OCSP_REQUEST);
+        connection.setFixedLengthStreamingMode(body.length);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    readAll(in);
+                }
+            }
+            throw new IOException("HTTP " + status);
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            byte[] response = readAll(in);
+            String contentType = connection.getContentType();
+            if (contentType == null || !contentType.startsWith(OCSP_RESPONSE)) {
+                throw new IOException("unexpected content type " + contentType);
+            }
+            return response;
+        }
+    }
+
+    private static DigestCalculatorProvider digestCalculators() throws OperatorCreationException {
+        return new JcaDigestCalculatorProviderBuilder().setProvider("BC").build();
+    }
+
+    private static String firstOrNull(List<String> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+            buffer.write(data, 0, bytesRead);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class CachedStatus {
+        private final RevocationStatus status;
+        private final long expiresAt;
+
+        private CachedStatus(RevocationStatus status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
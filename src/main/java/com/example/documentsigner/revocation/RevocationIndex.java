@@ -0,0 +1,244 @@
+package com.example.documentsigner.revocation;
+
+import com.example.documentsigner.trust.TrustStore;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Offline revocation checking against CRLs kept in a local directory.
+ *
+ * Every *.crl file (DER) is verified against its issuer in the TrustStore and
+ * loaded into a CrlIndex. Lookups go through an immutable issuer-to-CRL
+ * snapshot. A refresh re-reads only the files that changed, builds a new
+ * snapshot and swaps it in atomically, so checks never block on a reload and
+ * never see a half-loaded CRL. When several CRLs cover the same issuer, the one
+ * with the latest thisUpdate wins.
+ *
+ * Used both before signing (a revoked signer is rejected) and when verifying.
+ */
+public class RevocationIndex implements Closeable {
+
+    private final Path directory;
+    private final TrustStore trustStore;
+    private final AtomicReference<Map<X500Principal, List<CrlIndex>>> snapshot =
+        new AtomicReference<Map<X500Principal, List<CrlIndex>>>(Collections.<X500Principal, List<CrlIndex>>emptyMap());
+    private final Map<Path, LoadedCrl> loaded = new HashMap<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param directory Directory holding the CRL files (may not exist)
+     * @param trustStore Issuer certificates the CRL signatures are verified with
+     */
+    public RevocationIndex(Path directory, TrustStore trustStore) {
+        this.directory = directory;
+        this.trustStore = trustStore;
+    }
+
+    /**
+     * Index with no CRLs; every certificate is UNKNOWN.
+     */
+    public static RevocationIndex empty() {
+        return new RevocationIndex(null, TrustStore.empty());
+    }
+
+    /**
+     * Re-reads changed CRL files and swaps in the new snapshot.
+     *
+     * @return number of CRLs in the new snapshot
+     */
+    public synchronized int refresh() {
+        Map<Path, LoadedCrl> current = new HashMap<>();
+        errors.clear();
+
+        if (directory != null && Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.crl")) {
+                for (Path file : files) {
+                    try {
+                        FileTime modified = Files.getLastModifiedTime(file);
+                        LoadedCrl previous = loaded.get(file);
+                        if (previous != null && previous.modified.equals(modified)) {
+                            current.put(file, previous);
+                        } else {
+                            current.put(file, new LoadedCrl(modified, load(Files.readAllBytes(file))));
+                        }
+                    } catch (IOException e) {
+                        errors.put(file.getFileName().toString(), e.getMessage());
+                        // Keep serving the last good version of a file that fails to reload
+                        LoadedCrl previous = loaded.get(file);
+                        if (previous != null) {
+                            current.put(file, previous);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                errors.put(directory.toString(), e.getMessage());
+                return snapshot.get().size();
+            }
+        }
+
+        Map<X500Principal, List<CrlIndex>> byIssuer = new HashMap<>();
+        for (LoadedCrl crl : current.values()) {
+            List<CrlIndex> crls = byIssuer.computeIfAbsent(crl.index.getIssuer(), key -> new ArrayList<>());
+            replaceOlder(crls, crl.index);
+        }
+
+        // Unchanged files reuse their LoadedCrl, so equal maps mean nothing was reloaded
+        boolean changed = !current.equals(loaded);
+        loaded.clear();
+        loaded.putAll(current);
+        snapshot.set(Collections.unmodifiableMap(byIssuer));
+        if (changed) {
+            epoch.incrementAndGet();
+        }
+
+        int count = 0;
+        for (List<CrlIndex> crls : byIssuer.values()) {
+            count += crls.size();
+        }
+        return count;
+    }
+
+    /**
+     * Refreshes the index now and then every interval, on a daemon thread.
+     */
+    public synchronized void startRefresh(long intervalMillis) {
+        refresh();
+        if (refresher == null && intervalMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crl-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Revocation status of the certificate at the given time.
+     *
+     * REVOKED if a CRL of its issuer lists it as revoked at or before the time,
+     * or at any time for a key compromise; GOOD if a CRL lists it as revoked
+     * later for another reason, or a current CRL of its issuer does not list
+     * it; UNKNOWN if no CRL of the issuer is loaded or the only ones are past
+     * their nextUpdate.
+     */
+    public RevocationStatus check(X509Certificate certificate, Date time) {
+        List<CrlIndex> crls = snapshot.get().get(certificate.getIssuerX500Principal());
+        if (crls == null) {
+            return RevocationStatus.unknown("No CRL loaded for " + certificate.getIssuerX500Principal().getName());
+        }
+
+        String authorityKeyId = TrustStore.authorityKeyIdentifier(certificate);
+        boolean current = false;
+        for (CrlIndex crl : crls) {
+            if (authorityKeyId != null && crl.getAuthorityKeyId() != null
+                    && !authorityKeyId.equals(crl.getAuthorityKeyId())) {
+                continue;
+            }
+            Long revocationTime = crl.getRevocationTime(certificate.getSerialNumber());
+            if (revocationTime != null) {
+                Date revocationDate = new Date(revocationTime);
+                return RevocationStatus.revoked(revocationDate, crl.getRevocationReason(certificate.getSerialNumber()),
+                    "Certificate revoked on " + revocationDate).asOf(time);
+            }
+            if (!crl.isStale(new Date())) {
+                current = true;
+            }
+        }
+
+        return current
+            ? RevocationStatus.good("Not revoked")
+            : RevocationStatus.unknown("CRL for " + certificate.getIssuerX500Principal().getName() + " is out of date");
+    }
+
+    /**
+     * Counter bumped by every refresh that loaded, changed or dropped a CRL.
+     * Results derived from the index are stale once it moves.
+     */
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Number of issuers with a loaded CRL.
+     */
+    public int getIssuerCount() {
+        return snapshot.get().size();
+    }
+
+    /**
+     * Files that failed to load in the last refresh, with the reason.
+     */
+    public synchronized Map<String, String> getErrors() {
+        return new LinkedHashMap<>(errors);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private CrlIndex load(byte[] der) throws IOException {
+        IOException failure = null;
+        for (X509Certificate issuer : trustStore.findBySubject(CrlIndex.readIssuer(der))) {
+            try {
+                return CrlIndex.parse(der, issuer);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new IOException("CRL issuer is not in the trust store");
+    }
+
+    private static void replaceOlder(List<CrlIndex> crls, CrlIndex crl) {
+        for (int i = 0; i < crls.size(); i++) {
+            CrlIndex existing = crls.get(i);
+            if (sameScope(existing, crl)) {
+                if (crl.getThisUpdate().after(existing.getThisUpdate())) {
+                    crls.set(i, crl);
+                }
+                return;
+            }
+        }
+        crls.add(crl);
+    }
+
+    private static boolean sameScope(CrlIndex a, CrlIndex b) {
+        return a.getAuthorityKeyId() == null || b.getAuthorityKeyId() == null
+            || a.getAuthorityKeyId().equals(b.getAuthorityKeyId());
+    }
+
+    private static final class LoadedCrl {
+        private final FileTime modified;
+        private final CrlIndex index;
+
+        private LoadedCrl(FileTime modified, CrlIndex index) {
+            this.modified = modified;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.documentsigner.revocation;
+
+import java.util.Date;
+
+/**
+ * Revocation status of a certificate at a point in time.
+ */
+public class RevocationStatus {
+
+    /** CRLReason keyCompromise */
+    public static final int KEY_COMPROMISE = 1;
+    /** CRLReason cACompromise */
+    public static final int CA_COMPROMISE = 2;
+
+    public enum Status {
+        GOOD,
+        REVOKED,
+        UNKNOWN
+    }
+
+    private final Status status;
+    private final Date revocationDate;
+    private final Integer reason;
+    private final String message;
+
+    private RevocationStatus(Status status, Date revocationDate, Integer reason, String message) {
+        this.status = status;
+        this.revocationDate = revocationDate;
+        this.reason = reason;
+        this.message = message;
+    }
+
+    public static RevocationStatus good(String message) {
+        return new RevocationStatus(Status.GOOD, null, null, message);
+    }
+
+    public static RevocationStatus revoked(Date revocationDate, String message) {
+        return revoked(revocationDate, null, message);
+    }
+
+    /**
+     * @param reason CRLReason code, or null if the CRL or responder gave none
+     */
+    public static RevocationStatus revoked(Date revocationDate, Integer reason, String message) {
+        return new RevocationStatus(Status.REVOKED, revocationDate, reason, message);
+    }
+
+    public static RevocationStatus unknown(String message) {
+        return new RevocationStatus(Status.UNKNOWN, null, null, message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isRevoked() {
+        return status == Status.REVOKED;
+    }
+
+    /**
+     * When the certificate was revoked; null unless REVOKED.
+     */
+    public Date getRevocationDate() {
+        return revocationDate;
+    }
+
+    /**
+     * CRLReason code of the revocation; null unless REVOKED with a reason.
+     */
+    public Integer getReason() {
+        return reason;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * This status as it applies to something done at the given time, such as
+     * a signature. A revocation after that time does not count, unless its
+     * reason is a key compromise, which casts doubt on everything the key
+     * signed: the certificate is GOOD for that time.
+     */
+    public RevocationStatus asOf(Date time) {
+        if (status != Status.REVOKED || revocationDate == null || !revocationDate.after(time)
+                || (reason != null && (reason == KEY_COMPROMISE || reason == CA_COMPROMISE))) {
+            return this;
+        }
+        return good("Revoked on " + revocationDate + ", after " + time);
+    }
+}
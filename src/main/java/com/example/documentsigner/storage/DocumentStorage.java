@@ -0,0 +1,25 @@
+package com.example.documentsigner.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A place documents are read from and signed documents written to, addressed
+ * by key (a relative path or object key).
+ */
+public interface DocumentStorage {
+
+    /**
+     * @return The document's content, to be closed by the caller, or null if there is none at key
+     * @throws IllegalArgumentException if key is not valid for this storage
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Writes length bytes from content to key, replacing any document there.
+     * Readers never see a partially written document.
+     *
+     * @throws IllegalArgumentException if key is not valid for this storage
+     */
+    void write(String key, InputStream content, long length, String contentType) throws IOException;
+}
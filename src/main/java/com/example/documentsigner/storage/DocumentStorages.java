@@ -0,0 +1,84 @@
+package com.example.documentsigner.storage;
+
+import com.example.documentsigner.exception.InvalidDocumentException;
+import com.example.documentsigner.exception.StorageException;
+import com.example.documentsigner.ingest.DocumentReferences;
+import com.example.documentsigner.ingest.IngestLimitExceededException;
+import com.example.documentsigner.ingest.MultipartIngestor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The configured storages by scheme (fs, s3). Documents are read from them as
+ * references, e.g. documentRef=fs:contratos/a.pdf, and signed documents are
+ * written to them as destinations, e.g. destination=s3:assinados/a.pdf.
+ */
+public class DocumentStorages {
+
+    private final Map<String, DocumentStorage> storages = new LinkedHashMap<>();
+
+    public void register(String scheme, DocumentStorage storage) {
+        storages.put(scheme, storage);
+    }
+
+    public Set<String> getSchemes() {
+        return Collections.unmodifiableSet(storages.keySet());
+    }
+
+    /**
+     * Registers every storage as a reference scheme. Documents are read
+     * through the ingestor, which hashes them and keeps large ones in spill
+     * files, as for uploads.
+     */
+    public void registerReferences(DocumentReferences references, MultipartIngestor ingestor) {
+        for (Map.Entry<String, DocumentStorage> entry : storages.entrySet()) {
+            DocumentStorage storage = entry.getValue();
+            references.register(entry.getKey(), (name, key) -> {
+                String reference = entry.getKey() + ":" + key;
+                try (InputStream content = storage.open(key)) {
+                    return content != null ? ingestor.ingestFile(content, name, filename(key), null) : null;
+                } catch (IngestLimitExceededException e) {
+                    throw e;
+                } catch (IOException e) {
+                    throw new StorageException("Failed to read " + reference + ": " + e.getMessage(), e);
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidDocumentException(e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a document to a destination "scheme:key".
+     *
+     * @throws IllegalArgumentException if the destination names no configured storage or an invalid key
+     * @throws StorageException if the storage fails
+     */
+    public void write(String destination, InputStream content, long length, String contentType) {
+        int colon = destination != null ? destination.indexOf(':') : -1;
+        DocumentStorage storage = colon > 0 ? storages.get(destination.substring(0, colon)) : null;
+        if (storage == null) {
+            throw new IllegalArgumentException("Unsupported destination: " + destination
+                + " (expected one of " + storages.keySet() + " followed by ':' and a path)");
+        }
+        try {
+            storage.write(destination.substring(colon + 1), content, length, contentType);
+        } catch (IOException e) {
+            throw new StorageException("Failed to write " + destination + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Last segment of a key, used as the document's filename.
+     */
+    static String filename(String key) {
+        String trimmed = key.trim();
+        int slash = trimmed.lastIndexOf('/');
+        return slash >= 0 ? trimmed.substring(slash + 1) : trimmed;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.documentsigner.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Documents under a directory (e.g. a shared NFS volume). Keys are paths
+ * relative to the root; keys leading outside it, directly or through a
+ * symbolic link, are refused.
+ */
+public class FileSystemStorage implements DocumentStorage {
+
+    private final Path root;
+
+    public FileSystemStorage(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        Path file = resolve(key);
+        try {
+            return Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length, String contentType) throws IOException {
+        Path file = resolve(key);
+        Path existing = file.getParent();
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (!existing.toRealPath().startsWith(root.toRealPath())) {
+            throw new IllegalArgumentException("Path outside the storage root: " + key);
+        }
+        Files.createDirectories(file.getParent());
+
+        // Written beside the target and renamed, so readers see the old or the new document
+        Path incoming = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".incoming");
+        try {
+            long copied = Files.copy(content, incoming, StandardCopyOption.REPLACE_EXISTING);
+            if (copied != length) {
+                throw new IOException("Expected " + length + " bytes for " + key + ", got " + copied);
+            }
+            Files.move(incoming, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(incoming);
+        }
+    }
+
+    private Path resolve(String key) throws IOException {
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty storage path");
+        }
+        Path file = root.resolve(key.trim()).normalize();
+        if (!file.startsWith(root) || file.equals(root)
+                || (Files.exists(file) && !file.toRealPath().startsWith(root.toRealPath()))) {
+            throw new IllegalArgumentException("Path outside the storage root: " + key);
+        }
+        return file;
+    }
+}
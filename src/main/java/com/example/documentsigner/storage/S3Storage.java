@@ -0,0 +1,234 @@
+package com.example.documentsigner.storage;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Objects in a bucket of an S3-compatible store (AWS S3, MinIO, Ceph...),
+ * addressed path-style (endpoint/bucket/key) and authenticated with AWS
+ * Signature Version 4.
+ *
+ * Bodies are streamed both ways: GET returns the connection's stream and PUT
+ * writes in fixed-length streaming mode, with an unsigned payload, so no
+ * document is buffered here. Keys are object keys within the bucket; "." and
+ * ".." segments are refused, since HTTP clients and proxies may collapse them
+ * into a different object than the one signed for.
+ */
+public class S3Storage implements DocumentStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3Storage.class);
+
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 60000;
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+
+    /**
+     * @param endpoint Base URL of the store, e.g. http://minio:9000
+     * @param region Signing region (MinIO accepts us-east-1)
+     * @param bucket Bucket holding the documents
+     * @param accessKey Access key id
+     * @param secretKey Secret access key
+     */
+    public S3Storage(URI endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        HttpURLConnection connection = connect("GET", key);
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            connection.disconnect();
+            return null;
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw failure("GET", key, connection);
+        }
+        return connection.getInputStream();
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length, String contentType) throws IOException {
+        HttpURLConnection connection = connect("PUT", key);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = content.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+        }
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw failure("PUT", key, connection);
+        }
+        drain(connection);
+    }
+
+    private HttpURLConnection connect(String method, String key) throws IOException {
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty object key");
+        }
+        String path = stripTrailingSlash(endpoint.getRawPath()) + "/" + encode(bucket) + "/" + encode(key.trim());
+        URL url = new URL(endpoint.getScheme(), endpoint.getHost(), endpoint.getPort(), path);
+
+        String amzDate = ZonedDateTime.now(ZoneOffset.UTC).format(AMZ_DATE);
+        String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("x-amz-date", amzDate);
+        connection.setRequestProperty("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        connection.setRequestProperty("Authorization", authorization(method, path, host, amzDate));
+        return connection;
+    }
+
+    /**
+     * The SigV4 Authorization header for a request without query parameters,
+     * signing the host, x-amz-content-sha256 and x-amz-date headers.
+     */
+    private String authorization(String method, String path, String host, String amzDate) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+            + path + "\n"
+            + "\n"
+            + "host:" + host + "\n"
+            + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+            + "x-amz-date:" + amzDate + "\n"
+            + "\n"
+            + signedHeaders + "\n"
+            + UNSIGNED_PAYLOAD;
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+            + Hex.toHexString(sha256(canonicalRequest));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = Hex.toHexString(hmac(key, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+            + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature;
+    }
+
+    /**
+     * URI-encodes an object key as SigV4 expects for S3: every byte except
+     * unreserved characters and '/'.
+     *
+     * @throws IllegalArgumentException if a segment of the key is "." or ".."
+     */
+    private static String encode(String key) {
+        for (String segment : key.split("/", -1)) {
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new IllegalArgumentException("Object key must not contain '.' or '..' segments: " + key);
+            }
+        }
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || c == '/') {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String stripTrailingSlash(String path) {
+        if (path == null) {
+            return "";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * The error for a failed request. The store's error body is logged, not
+     * returned, since it can name internal buckets, hosts or request ids that
+     * the client should not see.
+     */
+    private static IOException failure(String method, String key, HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream error = connection.getErrorStream();
+        if (error != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while (out.size() < 2048 && (read = error.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            error.close();
+            log.warn("S3 {} {} failed with HTTP {}: {}", method, key, status,
+                new String(out.toByteArray(), StandardCharsets.UTF_8).trim());
+        } else {
+            log.warn("S3 {} {} failed with HTTP {}", method, key, status);
+        }
+        connection.disconnect();
+        return new IOException("S3 " + method + " " + key + " failed with HTTP " + status);
+    }
+
+    private static void drain(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            byte[] chunk = new byte[4096];
+            while (in.read(chunk) != -1) {
+                // Drained so the connection can be reused
+            }
+        }
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
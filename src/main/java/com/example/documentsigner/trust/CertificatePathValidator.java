@@ -0,0 +1,276 @@
+package com.example.documentsigner.trust;
+
+import com.example.documentsigner.trust.TrustStore.CertificateIndex;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PKIX validation of end-entity certificates against a TrustStore.
+ *
+ * The path is built from the certificate up to a trust anchor using the trust
+ * store's key identifier index and any certificates supplied with the
+ * signature. It is then checked with the JDK PKIX CertPathValidator at the
+ * requested validation time.
+ *
+ * Once the path above an issuing CA has validated, it is cached under that
+ * CA's certificate fingerprint. Later certificates from the same CA are then
+ * validated against the CA as a trust anchor, a single signature and validity
+ * check, instead of building and validating the whole path again. A cached
+ * path is reused only while the validation time lies inside the validity of
+ * every certificate on it, and for at most cacheTtlMillis.
+ *
+ * Revocation is not checked here. Instances are thread-safe.
+ */
+public class CertificatePathValidator {
+
+    private static final int MAX_PATH_LENGTH = 8;
+
+    private final TrustStore trustStore;
+    private final long cacheTtlMillis;
+    private final Map<String, CachedPath> validatedPaths;
+    private final AtomicLong pathBuilds = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * @param trustStore Trust anchors and known intermediates
+     * @param cacheMaxEntries Maximum issuing CAs whose paths are cached
+     * @param cacheTtlMillis Longest a validated path is reused
+     */
+    public CertificatePathValidator(TrustStore trustStore, final int cacheMaxEntries, long cacheTtlMillis) {
+        this.trustStore = trustStore;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.validatedPaths = new LinkedHashMap<String, CachedPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPath> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    public TrustStore getTrustStore() {
+        return trustStore;
+    }
+
+    /**
+     * Validates the certificate's path to a trust anchor.
+     *
+     * @param certificate End-entity certificate
+     * @param suppliedCertificates Untrusted certificates that may complete the
+     *                             path, e.g. those carried in the CMS
+     * @param validationTime Time at which the path must be valid
+     */
+    public PathValidationResult validate(X509Certificate certificate,
+                                         Collection<X509Certificate> suppliedCertificates,
+                                         Date validationTime) {
+        if (trustStore.getAnchors().isEmpty()) {
+            return PathValidationResult.invalid("No trust anchors configured");
+        }
+
+        if (trustStore.isAnchor(certificate)) {
+            try {
+                certificate.checkValidity(validationTime);
+                return PathValidationResult.valid(Collections.singletonList(certificate));
+            } catch (GeneralSecurityException e) {
+                return PathValidationResult.invalid("Trusted certificate is not valid: " + e.getMessage());
+            }
+        }
+
+        CertificateIndex supplied = new CertificateIndex(suppliedCertificates);
+
+        // The issuing CA's path is already validated: only the certificate itself is checked
+        for (X509Certificate issuer : findIssuers(certificate, supplied)) {
+            CachedPath cached = getCachedPath(issuer, validationTime);
+            if (cached == null) {
+                continue;
+            }
+            try {
+                validatePkix(certificate, Collections.<X509Certificate>emptyList(),
+                    new TrustAnchor(issuer, null), validationTime);
+                cacheHits.incrementAndGet();
+                return PathValidationResult.valid(withCertificate(certificate, cached.path));
+            } catch (GeneralSecurityException e) {
+                // Fall through to a full build, which reports the failure
+            }
+        }
+
+        List<X509Certificate> chain = build(certificate, supplied, new HashSet<X509Certificate>(), 0);
+        if (chain == null) {
+            return PathValidationResult.invalid("No certificate path to a trusted root for "
+                + certificate.getSubjectX500Principal().getName());
+        }
+        pathBuilds.incrementAndGet();
+
+        X509Certificate anchor = chain.get(chain.size() - 1);
+        try {
+            validatePkix(certificate, chain.subList(0, chain.size() - 1), new TrustAnchor(anchor, null),
+                validationTime);
+        } catch (GeneralSecurityException e) {
+            return PathValidationResult.invalid("Certificate path validation failed: " + e.getMessage());
+        }
+
+        cachePath(chain);
+        return PathValidationResult.valid(withCertificate(certificate, chain));
+    }
+
+    /**
+     * Number of full path builds performed (cache misses).
+     */
+    public long getPathBuilds() {
+        return pathBuilds.get();
+    }
+
+    /**
+     * Number of validations served from a cached issuer path.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Builds the path above the certificate: its issuer first, the trust anchor last.
+     */
+    private List<X509Certificate> build(X509Certificate certificate, CertificateIndex supplied,
+                                        Set<X509Certificate> visited, int depth) {
+        for (X509Certificate issuer : findIssuers(certificate, supplied)) {
+            if (visited.contains(issuer) || !isSignedBy(certificate, issuer)) {
+                continue;
+            }
+            if (trustStore.isAnchor(issuer)) {
+                List<X509Certificate> chain = new ArrayList<>();
+                chain.add(issuer);
+                return chain;
+            }
+            if (depth < MAX_PATH_LENGTH) {
+                visited.add(issuer);
+                List<X509Certificate> above = build(issuer, supplied, visited, depth + 1);
+                if (above != null) {
+                    above.add(0, issuer);
+                    return above;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<X509Certificate> findIssuers(X509Certificate certificate, CertificateIndex supplied) {
+        List<X509Certificate> issuers = new ArrayList<>(trustStore.findIssuers(certificate));
+        for (X509Certificate issuer : supplied.findIssuers(certificate)) {
+            if (!issuers.contains(issuer)) {
+                issuers.add(issuer);
+            }
+        }
+        return issuers;
+    }
+
+    private static boolean isSignedBy(X509Certificate certificate, X509Certificate issuer) {
+        try {
+            certificate.verify(issuer.getPublicKey());
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static void validatePkix(X509Certificate certificate, List<X509Certificate> intermediates,
+                                     TrustAnchor anchor, Date validationTime) throws GeneralSecurityException {
+        List<X509Certificate> certificates = new ArrayList<>();
+        certificates.add(certificate);
+        certificates.addAll(intermediates);
+        CertPath path = CertificateFactory.getInstance("X.509").generateCertPath(certificates);
+
+        PKIXParameters parameters = new PKIXParameters(Collections.singleton(anchor));
+        parameters.setRevocationEnabled(false);
+        parameters.setDate(validationTime);
+        CertPathValidator.getInstance("PKIX").validate(path, parameters);
+    }
+
+    private CachedPath getCachedPath(X509Certificate issuer, Date validationTime) {
+        String key = fingerprint(issuer);
+        synchronized (validatedPaths) {
+            CachedPath cached = validatedPaths.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired()) {
+                validatedPaths.remove(key);
+                return null;
+            }
+            return cached.covers(validationTime) ? cached : null;
+        }
+    }
+
+    private void cachePath(List<X509Certificate> chain) {
+        CachedPath cached = new CachedPath(chain, System.currentTimeMillis() + cacheTtlMillis);
+        synchronized (validatedPaths) {
+            validatedPaths.put(fingerprint(chain.get(0)), cached);
+        }
+    }
+
+    private static List<X509Certificate> withCertificate(X509Certificate certificate, List<X509Certificate> chain) {
+        List<X509Certificate> path = new ArrayList<>(chain.size() + 1);
+        path.add(certificate);
+        path.addAll(chain);
+        return path;
+    }
+
+    private static String fingerprint(X509Certificate certificate) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+        } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint certificate", e);
+        }
+    }
+
+    /**
+     * A validated path above an issuing CA, usable while every certificate on it
+     * is within its validity period.
+     */
+    private static final class CachedPath {
+        private final List<X509Certificate> path;
+        private final long notBefore;
+        private final long notAfter;
+        private final long expiresAt;
+
+        private CachedPath(List<X509Certificate> path, long expiresAt) {
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            for (X509Certificate certificate : path) {
+                from = Math.max(from, certificate.getNotBefore().getTime());
+                to = Math.min(to, certificate.getNotAfter().getTime());
+            }
+            this.path = Collections.unmodifiableList(new ArrayList<>(path));
+            this.notBefore = from;
+            this.notAfter = to;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private boolean covers(Date validationTime) {
+            long time = validationTime.getTime();
+            return time >= notBefore && time <= notAfter;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.documentsigner.trust;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of validating a certificate's path to a trust anchor.
+ */
+public class PathValidationResult {
+
+    private final boolean valid;
+    private final List<X509Certificate> path;
+    private final String message;
+
+    private PathValidationResult(boolean valid, List<X509Certificate> path, String message) {
+        this.valid = valid;
+        this.path = path;
+        this.message = message;
+    }
+
+    static PathValidationResult valid(List<X509Certificate> path) {
+        return new PathValidationResult(true, Collections.unmodifiableList(path), "Certificate chain is trusted");
+    }
+
+    static PathValidationResult invalid(String message) {
+        return new PathValidationResult(false, Collections.<X509Certificate>emptyList(), message);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * The validated path, from the end-entity certificate to the trust anchor;
+     * empty when validation failed.
+     */
+    public List<X509Certificate> getPath() {
+        return path;
+    }
+
+    /**
+     * The trust anchor the path ends at, or null when validation failed.
+     */
+    public X509Certificate getTrustAnchor() {
+        return path.isEmpty() ? null : path.get(path.size() - 1);
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
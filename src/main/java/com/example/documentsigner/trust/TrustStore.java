@@ -0,0 +1,234 @@
+package com.example.documentsigner.trust;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.util.encoders.Hex;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trusted root certificates and known intermediate CA certificates (e.g. the
+ * ICP-Brasil hierarchy), loaded once from a local directory.
+ *
+ * Certificates are indexed by subject key identifier and by subject name, so
+ * the issuer of a certificate is found with one lookup on its authority key
+ * identifier instead of a scan. Self-signed certificates are trust anchors;
+ * every other certificate is an intermediate that paths may be built through.
+ */
+public class TrustStore {
+
+    private static final String[] CERTIFICATE_FILES = {"*.cer", "*.crt", "*.der", "*.pem"};
+
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    private final Set<X509Certificate> anchors;
+    private final CertificateIndex index;
+    private final long epoch = EPOCHS.incrementAndGet();
+
+    public TrustStore(Collection<X509Certificate> certificates) {
+        Set<X509Certificate> roots = new LinkedHashSet<>();
+        for (X509Certificate certificate : certificates) {
+            if (isSelfSigned(certificate)) {
+                roots.add(certificate);
+            }
+        }
+        this.anchors = Collections.unmodifiableSet(roots);
+        this.index = new CertificateIndex(certificates);
+    }
+
+    /**
+     * Trust store with no anchors; no certificate validates against it.
+     */
+    public static TrustStore empty() {
+        return new TrustStore(Collections.<X509Certificate>emptyList());
+    }
+
+    /**
+     * Loads every certificate file (*.cer, *.crt, *.der, *.pem; DER or PEM, one
+     * or more certificates each) in the directory.
+     *
+     * @param directory Directory holding the certificates (may not exist)
+     * @return the trust store, empty if the directory does not exist
+     * @throws IOException if a certificate file cannot be read or parsed
+     */
+    public static TrustStore loadFromDirectory(Path directory) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return empty();
+        }
+
+        List<X509Certificate> certificates = new ArrayList<>();
+        CertificateFactory factory;
+        try {
+            factory = CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new IOException("X.509 certificate factory not available", e);
+        }
+
+        for (String pattern : CERTIFICATE_FILES) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, pattern)) {
+                for (Path file : files) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        for (Certificate certificate : factory.generateCertificates(in)) {
+                            certificates.add((X509Certificate) certificate);
+                        }
+                    } catch (CertificateException e) {
+                        throw new IOException("Invalid certificate file " + file.getFileName() + ": "
+                            + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return new TrustStore(certificates);
+    }
+
+    public Set<X509Certificate> getAnchors() {
+        return anchors;
+    }
+
+    public boolean isAnchor(X509Certificate certificate) {
+        return anchors.contains(certificate);
+    }
+
+    /**
+     * Identifies this set of anchors; a reloaded trust store gets a new epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Known certificates that may have issued the given certificate: those whose
+     * subject key identifier matches its authority key identifier, or, when it
+     * carries none, those whose subject is its issuer.
+     */
+    public List<X509Certificate> findIssuers(X509Certificate certificate) {
+        return index.findIssuers(certificate);
+    }
+
+    /**
+     * Known certificates with the given subject name, e.g. the CA that signed a CRL.
+     */
+    public List<X509Certificate> findBySubject(X500Principal subject) {
+        return index.findBySubject(subject);
+    }
+
+    static boolean isSelfSigned(X509Certificate certificate) {
+        if (!certificate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal())) {
+            return false;
+        }
+        try {
+            certificate.verify(certificate.getPublicKey());
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hex subject key identifier, or null if the certificate has none.
+     */
+    static String subjectKeyIdentifier(X509Certificate certificate) {
+        byte[] extension = certificate.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (extension == null) {
+            return null;
+        }
+        try {
+            return Hex.toHexString(SubjectKeyIdentifier.getInstance(
+                ASN1OctetString.getInstance(extension).getOctets()).getKeyIdentifier());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hex authority key identifier, or null if the certificate has none.
+     */
+    public static String authorityKeyIdentifier(X509Certificate certificate) {
+        byte[] extension = certificate.getExtensionValue(Extension.authorityKeyIdentifier.getId());
+        if (extension == null) {
+            return null;
+        }
+        try {
+            byte[] keyIdentifier = AuthorityKeyIdentifier.getInstance(
+                ASN1OctetString.getInstance(extension).getOctets()).getKeyIdentifier();
+            return keyIdentifier != null ? Hex.toHexString(keyIdentifier) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Certificates indexed by subject key identifier and subject name.
+     */
+    static final class CertificateIndex {
+        private final Map<String, List<X509Certificate>> bySubjectKeyId = new HashMap<>();
+        private final Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<>();
+        private int size;
+
+        CertificateIndex(Collection<X509Certificate> certificates) {
+            for (X509Certificate certificate : certificates) {
+                add(certificate);
+            }
+        }
+
+        void add(X509Certificate certificate) {
+            List<X509Certificate> sameSubject = bySubject.get(certificate.getSubjectX500Principal());
+            if (sameSubject != null && sameSubject.contains(certificate)) {
+                return;
+            }
+            String keyId = subjectKeyIdentifier(certificate);
+            if (keyId != null) {
+                bySubjectKeyId.computeIfAbsent(keyId, key -> new ArrayList<>()).add(certificate);
+            }
+            bySubject.computeIfAbsent(certificate.getSubjectX500Principal(), key -> new ArrayList<>())
+                .add(certificate);
+            size++;
+        }
+
+        List<X509Certificate> findIssuers(X509Certificate certificate) {
+            String keyId = authorityKeyIdentifier(certificate);
+            List<X509Certificate> candidates = null;
+            if (keyId != null) {
+                candidates = bySubjectKeyId.get(keyId);
+            }
+            if (candidates == null) {
+                candidates = bySubject.get(certificate.getIssuerX500Principal());
+            }
+            return candidates != null ? candidates : Collections.<X509Certificate>emptyList();
+        }
+
+        List<X509Certificate> findBySubject(X500Principal subject) {
+            List<X509Certificate> candidates = bySubject.get(subject);
+            return candidates != null ? candidates : Collections.<X509Certificate>emptyList();
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
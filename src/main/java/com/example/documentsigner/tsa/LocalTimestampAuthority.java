@@ -0,0 +1,211 @@
+package com.example.documentsigner.tsa;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampResponseGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable RFC 3161 timestamp authority for tests and benchmarks.
+ *
+ * Serves timestamp requests over HTTP on the loopback interface, signing with a
+ * self-signed certificate generated at start-up. Tokens are not trusted by any
+ * verifier outside this process; point TsaClient at getUrl() to run the
+ * timestamping flow offline. An optional response delay simulates a remote TSA.
+ */
+public class LocalTimestampAuthority implements Closeable {
+
+    /** TSA policy used when the request names none (2.999 is the example arc) */
+    public static final String DEFAULT_POLICY_OID = "2.999.3161";
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final X509Certificate certificate;
+    private final TimeStampTokenGenerator tokenGenerator;
+    private final AtomicLong serialNumber = new AtomicLong();
+    private volatile long responseDelayMillis;
+
+    /**
+     * Starts a TSA on the given loopback port (0 picks a free port).
+     */
+    public LocalTimestampAuthority(int port) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        this.certificate = createCertificate(keyPair);
+
+        ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256withRSA")
+            .setProvider("BC")
+            .build(keyPair.getPrivate());
+        DigestCalculator certIdDigest = new JcaDigestCalculatorProviderBuilder()
+            .setProvider("BC")
+            .build()
+            .get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256));
+
+        this.tokenGenerator = new TimeStampTokenGenerator(
+            new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().setProvider("BC").build())
+                .build(contentSigner, certificate),
+            certIdDigest,
+            new ASN1ObjectIdentifier(DEFAULT_POLICY_OID));
+        this.tokenGenerator.addCertificates(new JcaCertStore(Collections.singletonList(certificate)));
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-tsa");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", new TimestampHandler());
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * URL to configure as a TSA endpoint.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * The self-signed TSA certificate tokens are signed with.
+     */
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * Delay added before each response, to simulate a remote TSA.
+     */
+    public void setResponseDelayMillis(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private X509Certificate createCertificate(KeyPair keyPair) throws Exception {
+        X500Name subject = new X500Name("CN=Local Timestamp Authority, O=document-signer");
+        Date notBefore = new Date(System.currentTimeMillis() - 60000L);
+        Date notAfter = new Date(System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000);
+
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+            subject, BigInteger.valueOf(System.currentTimeMillis()), notBefore, notAfter,
+            subject, keyPair.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+        builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+
+        X509CertificateHolder holder = builder.build(
+            new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(keyPair.getPrivate()));
+        return new JcaX509CertificateConverter().setProvider("BC").getCertificate(holder);
+    }
+
+    private byte[] respond(byte[] requestBytes) throws Exception {
+        TimeStampRequest request = new TimeStampRequest(requestBytes);
+        TimeStampResponseGenerator responseGenerator =
+            new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+
+        TimeStampResponse response;
+        // The token generator's signer is not safe for concurrent use
+        synchronized (tokenGenerator) {
+            response = responseGenerator.generate(
+                request, BigInteger.valueOf(serialNumber.incrementAndGet()), new Date());
+        }
+        return response.getEncoded();
+    }
+
+    private class TimestampHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                byte[] response;
+                try {
+                    response = respond(readAll(exchange.getRequestBody()));
+                } catch (Exception e) {
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+
+                long delay = responseDelayMillis;
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/timestamp-reply");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, bytesRead);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
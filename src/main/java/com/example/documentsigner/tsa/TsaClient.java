@@ -0,0 +1,323 @@
+package com.example.documentsigner.tsa;
+
+import com.example.documentsigner.exception.TimestampException;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RFC 3161 timestamp client.
+ *
+ * - Several TSA URLs can be configured. Each request goes to the available
+ *   endpoint with the lowest observed latency (exponentially weighted average)
+ *   and fails over to the next one on error. A failing endpoint is skipped for
+ *   a back-off period that doubles on consecutive failures (up to one minute).
+ * - Connections are kept alive: responses are always read to the end and the
+ *   streams closed without disconnecting, so HttpURLConnection hands the socket
+ *   back to the JDK keep-alive cache for the next request to the same TSA.
+ * - At most maxConcurrentRequests requests are outstanding at once; further
+ *   callers wait up to the request timeout for a slot.
+ *
+ * Instances are thread-safe and meant to be shared.
+ */
+public class TsaClient {
+
+    private static final String TIMESTAMP_QUERY = "application/timestamp-query";
+    private static final String TIMESTAMP_REPLY = "application/timestamp-reply";
+
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private final List<Endpoint> endpoints;
+    private final int timeoutMs;
+    private final Semaphore permits;
+    private final ASN1ObjectIdentifier policyOid;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param urls TSA URLs, in preference order until latencies are known
+     * @param timeoutMs Connect/read timeout per TSA, also the wait for a request slot
+     * @param maxConcurrentRequests Maximum outstanding timestamp requests
+     */
+    public TsaClient(List<String> urls, int timeoutMs, int maxConcurrentRequests) {
+        this(urls, timeoutMs, maxConcurrentRequests, null);
+    }
+
+    /**
+     * @param urls TSA URLs, in preference order until latencies are known
+     * @param timeoutMs Connect/read timeout per TSA, also the wait for a request slot
+     * @param maxConcurrentRequests Maximum outstanding timestamp requests
+     * @param policyOid TSA policy to request, or null for the TSA's default
+     */
+    public TsaClient(List<String> urls, int timeoutMs, int maxConcurrentRequests, String policyOid) {
+        List<Endpoint> list = new ArrayList<>();
+        for (String url : urls) {
+            if (url != null && !url.trim().isEmpty()) {
+                list.add(new Endpoint(url.trim()));
+            }
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.timeoutMs = timeoutMs;
+        this.permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+        this.policyOid = policyOid != null && !policyOid.isEmpty() ? new ASN1ObjectIdentifier(policyOid) : null;
+    }
+
+    /**
+     * A client with no TSA configured; any timestamp request fails.
+     */
+    public static TsaClient disabled() {
+        return new TsaClient(Collections.<String>emptyList(), 10000, 1);
+    }
+
+    public boolean isEnabled() {
+        return !endpoints.isEmpty();
+    }
+
+    /**
+     * Adds a signature-timestamp unsigned attribute (id-aa-signatureTimeStampToken)
+     * to every signer that does not have one yet. The timestamp covers the
+     * signer's signature value, as required for CAdES-T / PAdES-B-T.
+     *
+     * @param signedData The CMS signature
+     * @return The CMS signature with timestamped signers
+     * @throws TimestampException if no TSA returns a token
+     */
+    public CMSSignedData addSignatureTimestamps(CMSSignedData signedData) {
+        List<SignerInformation> signers = new ArrayList<>();
+        for (SignerInformation signer : signedData.getSignerInfos().getSigners()) {
+            AttributeTable unsigned = signer.getUnsignedAttributes();
+            if (unsigned != null && unsigned.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken) != null) {
+                signers.add(signer);
+                continue;
+            }
+
+            TimeStampToken token = timestamp(signer.getSignature());
+            ASN1EncodableVector attributes = unsigned != null
+                ? unsigned.toASN1EncodableVector() : new ASN1EncodableVector();
+            attributes.add(new Attribute(
+                PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                new DERSet(token.toCMSSignedData().toASN1Structure())));
+
+            signers.add(SignerInformation.replaceUnsignedAttributes(signer, new AttributeTable(attributes)));
+        }
+        return CMSSignedData.replaceSigners(signedData, new SignerInformationStore(signers));
+    }
+
+    /**
+     * Gets a timestamp token over the SHA-256 digest of the data.
+     */
+    public TimeStampToken timestamp(byte[] data) {
+        try {
+            return timestampDigest(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Gets a timestamp token over an already computed SHA-256 digest.
+     *
+     * @throws TimestampException if no TSA is configured, no request slot frees up
+     *                            in time, or every TSA fails
+     */
+    public TimeStampToken timestampDigest(byte[] sha256Digest) {
+        if (!isEnabled()) {
+            throw new TimestampException("No timestamp authority configured");
+        }
+
+        TimeStampRequestGenerator generator = new TimeStampRequestGenerator();
+        generator.setCertReq(true);
+        if (policyOid != null) {
+            generator.setReqPolicy(policyOid);
+        }
+        TimeStampRequest request = generator.generate(
+            TSPAlgorithms.SHA256, sha256Digest, new BigInteger(64, random));
+
+        byte[] encodedRequest;
+        try {
+            encodedRequest = request.getEncoded();
+        } catch (IOException e) {
+            throw new TimestampException("Failed to encode timestamp request", e);
+        }
+
+        acquirePermit();
+        try {
+            Exception lastFailure = null;
+            for (Endpoint endpoint : orderedEndpoints()) {
+                long start = System.nanoTime();
+                try {
+                    TimeStampResponse response = new TimeStampResponse(endpoint.post(encodedRequest, timeoutMs));
+                    response.validate(request);
+                    TimeStampToken token = response.getTimeStampToken();
+                    if (token == null) {
+                        throw new TSPException("TSA " + endpoint.url + " rejected the request: "
+                            + response.getStatusString());
+                    }
+                    endpoint.recordSuccess(System.nanoTime() - start);
+                    return token;
+                } catch (IOException | TSPException e) {
+                    endpoint.recordFailure();
+                    lastFailure = e;
+                }
+            }
+            throw new TimestampException("All timestamp authorities failed: "
+                + (lastFailure != null ? lastFailure.getMessage() : "no endpoint"), lastFailure);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Observed average latency per TSA URL in milliseconds (0 until the first
+     * successful request), in the order the next request would try them.
+     */
+    public Map<String, Double> getEndpointLatencies() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        for (Endpoint endpoint : orderedEndpoints()) {
+            latencies.put(endpoint.url.toString(), endpoint.latencyMs);
+        }
+        return latencies;
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TimestampException("Too many outstanding timestamp requests");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimestampException("Interrupted while waiting for a timestamp request slot", e);
+        }
+    }
+
+    /**
+     * Available endpoints by latency (unmeasured ones first, so they get probed),
+     * then endpoints in back-off by the time they become available again.
+     */
+    private List<Endpoint> orderedEndpoints() {
+        final long now = System.currentTimeMillis();
+        List<Endpoint> ordered = new ArrayList<>(endpoints);
+        Collections.sort(ordered, new Comparator<Endpoint>() {
+            @Override
+            public int compare(Endpoint a, Endpoint b) {
+                boolean aDown = a.downUntil > now;
+                boolean bDown = b.downUntil > now;
+                if (aDown != bDown) {
+                    return aDown ? 1 : -1;
+                }
+                if (aDown) {
+                    return Long.compare(a.downUntil, b.downUntil);
+                }
+                return Double.compare(a.latencyMs, b.latencyMs);
+            }
+        });
+        return ordered;
+    }
+
+    private static final class Endpoint {
+        private final URL url;
+        private volatile double latencyMs;
+        private volatile long downUntil;
+        private int consecutiveFailures;
+
+        Endpoint(String url) {
+            try {
+                this.url = new URL(url);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid TSA URL: " + url, e);
+            }
+        }
+
+        synchronized void recordSuccess(long elapsedNanos) {
+            double elapsedMs = elapsedNanos / 1_000_000.0;
+            latencyMs = latencyMs == 0 ? elapsedMs : latencyMs + LATENCY_WEIGHT * (elapsedMs - latencyMs);
+            consecutiveFailures = 0;
+            downUntil = 0;
+        }
+
+        synchronized void recordFailure() {
+            long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(consecutiveFailures, 6));
+            consecutiveFailures++;
+            downUntil = System.currentTimeMillis() + backoff;
+        }
+
+        byte[] post(byte[] body, int timeoutMs) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            connection.setRequestProperty("Content-Type", TIMESTAMP_QUERY);
+            connection.setFixedLengthStreamingMode(body.length);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                drain(connection.getErrorStream());
+                throw new IOException("TSA " + url + " returned HTTP " + status);
+            }
+
+            try (InputStream in = connection.getInputStream()) {
+                byte[] response = readAll(in);
+                String contentType = connection.getContentType();
+                if (contentType == null || !contentType.startsWith(TIMESTAMP_REPLY)) {
+                    throw new IOException("TSA " + url + " returned unexpected content type " + contentType);
+                }
+                return response;
+            }
+        }
+
+        private static void drain(InputStream in) throws IOException {
+            if (in != null) {
+                try (InputStream stream = in) {
+                    readAll(stream);
+                }
+            }
+        }
+
+        private static byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, bytesRead);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
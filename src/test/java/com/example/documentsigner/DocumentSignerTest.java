@@ -0,0 +1,86 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.exception.InvalidDocumentException;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentSignerTest {
+
+    private static final String PASSWORD = "123456";
+    private static final byte[] DOCUMENT = "contrato de prestacao de servicos".getBytes(StandardCharsets.UTF_8);
+
+    private static Issued first;
+    private static Issued second;
+    private static byte[] firstPfx;
+    private static byte[] secondPfx;
+
+    private final DocumentSigner signer = new DocumentSigner();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        first = TestCertificates.issue(root, "FULANO DE TAL", false);
+        second = TestCertificates.issue(root, "BELTRANO DE TAL", false);
+        firstPfx = TestCertificates.pkcs12(first, PASSWORD, root.certificate);
+        secondPfx = TestCertificates.pkcs12(second, PASSWORD, root.certificate);
+    }
+
+    @Test
+    void coSignatureIsAParallelSignerOverTheSameContent() throws Exception {
+        byte[] signed = signer.signDocumentWithCertBytes(DOCUMENT, firstPfx, PASSWORD);
+
+        byte[] coSigned = signer.coSign(signed, null, secondPfx, PASSWORD);
+
+        assertEquals(2, new CMSSignedData(coSigned).getSignerInfos().size());
+        assertTrue(signer.verifySignature(coSigned, DOCUMENT));
+    }
+
+    @Test
+    void detachedDocumentMustMatchTheExistingSigners() throws Exception {
+        // SHA-512: no SHA-256 digest to reuse, so the supplied document is hashed
+        byte[] signed = detachedSha512(first, DOCUMENT);
+        byte[] other = "outro contrato".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(InvalidDocumentException.class, () -> signer.coSign(signed, other, secondPfx, PASSWORD));
+
+        byte[] coSigned = signer.coSign(signed, DOCUMENT, secondPfx, PASSWORD);
+        assertTrue(signer.verifySignature(coSigned, DOCUMENT));
+    }
+
+    @Test
+    void counterSignatureSignsTheSignerSignatureValue() throws Exception {
+        byte[] signed = signer.signDocumentWithCertBytes(DOCUMENT, firstPfx, PASSWORD);
+
+        byte[] counterSigned = signer.counterSign(signed, -1, secondPfx, PASSWORD);
+
+        SignerInformation target = new CMSSignedData(counterSigned).getSignerInfos().getSigners().iterator().next();
+        assertEquals(1, target.getCounterSignatures().size());
+        assertTrue(signer.verifySignature(counterSigned, DOCUMENT));
+    }
+
+    private static byte[] detachedSha512(Issued issued, byte[] content) throws Exception {
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(
+                new JcaDigestCalculatorProviderBuilder().setProvider("BC").build())
+            .build(new JcaContentSignerBuilder("SHA512withRSA").setProvider("BC").build(issued.key),
+                issued.certificate));
+        generator.addCertificates(new JcaCertStore(Collections.singletonList(issued.certificate)));
+        return generator.generate(new CMSProcessableByteArray(content), false).getEncoded();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItiResultCacheTest {
+
+    private static final byte[] REPORT = "{\"aprovado\": true}".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsSurviveARestartOnDisk() throws Exception {
+        String key = ItiResultCache.key("production/detached", REPORT);
+        new ItiResultCache(10, 60000, directory, 1 << 20).get(key, ItiResultCacheTest::report);
+
+        AtomicInteger loads = new AtomicInteger();
+        ItiResultCache restarted = new ItiResultCache(10, 60000, directory, 1 << 20);
+        restarted.get(key, () -> {
+            loads.incrementAndGet();
+            return report();
+        });
+
+        assertEquals(0, loads.get());
+        assertEquals(1L, restarted.getStats().get("diskHits"));
+    }
+
+    @Test
+    void entryWhoseLengthDoesNotFitTheFileIsAMiss() throws Exception {
+        String key = ItiResultCache.key("production/detached", REPORT);
+        Path file = directory.resolve(key);
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(1);
+            out.writeLong(System.currentTimeMillis() + 60000);
+            out.writeInt(200);
+            // Claims two gigabytes, holds a few bytes
+            out.writeInt(Integer.MAX_VALUE);
+            out.write(REPORT);
+        }
+        ItiResultCache cache = new ItiResultCache(10, 60000, directory, 1 << 20);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(key, () -> {
+            loads.incrementAndGet();
+            return report();
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(0L, cache.getStats().get("diskHits"));
+    }
+
+    @Test
+    void diskTierIsKeptUnderItsSize() throws Exception {
+        long entrySize = 20 + REPORT.length;
+        ItiResultCache cache = new ItiResultCache(10, 60000, directory, 2 * entrySize);
+
+        String first = ItiResultCache.key("production/detached", new byte[]{1});
+        String second = ItiResultCache.key("production/detached", new byte[]{2});
+        String third = ItiResultCache.key("production/detached", new byte[]{3});
+        cache.get(first, ItiResultCacheTest::report);
+        cache.get(second, ItiResultCacheTest::report);
+        cache.get(third, ItiResultCacheTest::report);
+
+        assertFalse(Files.exists(directory.resolve(first)));
+        assertTrue(Files.exists(directory.resolve(second)));
+        assertTrue(Files.exists(directory.resolve(third)));
+        assertEquals(1L, cache.getStats().get("diskEvictions"));
+        assertEquals(2 * entrySize, (long) cache.getStats().get("diskBytes"));
+    }
+
+    private static ItiVerificationResult report() throws IOException {
+        return ItiVerificationResult.parse(200, REPORT);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.Content;
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItiVerificadorTest {
+
+    private static final String REPORT = "{\"assinaturas\":[{\"status\":\"Aprovado\","
+        + "\"integridade\":{\"valido\":true}}]}";
+
+    @TempDir
+    Path directory;
+
+    private TestHttpServer server;
+    private String contentType;
+    private long contentLength;
+    private byte[] body;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TestHttpServer();
+        server.handle("/report", exchange -> {
+            contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            contentLength = Long.parseLong(exchange.getRequestHeaders().getFirst("Content-Length"));
+            body = readAll(exchange.getRequestBody());
+            byte[] report = REPORT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, report.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(report);
+            }
+        });
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void sendsTheDetachedSignatureAndDocumentAsMultipart() throws Exception {
+        Path document = Files.write(directory.resolve("contrato.pdf"), bytes("%PDF-1.7 conteúdo"));
+        ItiVerificador verificador = new ItiVerificador(server.url("/report"), 5000);
+
+        ItiVerificationResult result = verificador.verifyDetachedSignature(Content.of(bytes("assinatura")),
+            Content.of(document), "contrato.pdf.p7s", "contrato\".pdf");
+
+        assertTrue(result.isSignatureValid(), result.toString());
+        assertTrue(contentType.startsWith("multipart/form-data; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        assertEquals(body.length, contentLength);
+        String expected = "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"report_type\"\r\n\r\njson\r\n"
+            + "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"signature_files[]\"; filename=\"contrato.pdf.p7s\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\nassinatura\r\n"
+            + "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"detached_files[]\"; filename=\"contrato%22.pdf\"\r\n"
+            + "Content-Type: application/pdf\r\n\r\n%PDF-1.7 conteúdo\r\n"
+            + "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"verify_incremental_updates\"\r\n\r\ntrue\r\n"
+            + "--" + boundary + "--\r\n";
+        assertEquals(expected, new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void validRequiresAVerdictAndNoNegativeOne() {
+        ItiVerificationResult approved = new ItiVerificationResult(200, REPORT);
+        assertTrue(approved.isSignatureValid());
+        assertEquals(2, approved.getVerdictCount());
+
+        ItiVerificationResult mixed = new ItiVerificationResult(200,
+            "{\"status\":\"Aprovado\",\"cadeiaCertificados\":{\"valido\":false}}");
+        assertFalse(mixed.isSignatureValid());
+        assertEquals(1, mixed.getNegativeVerdictCount());
+
+        assertFalse(new ItiVerificationResult(200, "{\"status\":\"Reprovado\"}").isSignatureValid());
+        // "valid" inside a message is not a verdict
+        assertFalse(new ItiVerificationResult(200, "{\"mensagem\":\"documento valid\"}").isSignatureValid());
+        assertFalse(new ItiVerificationResult(200, "{\"valido\":\"true\"}").isSignatureValid());
+    }
+
+    @Test
+    void errorsAndNonJsonBodiesAreNeverValid() {
+        ItiVerificationResult html = new ItiVerificationResult(200, "<html>\"aprovado\": true</html>");
+        assertFalse(html.isJson());
+        assertFalse(html.isSignatureValid());
+
+        ItiVerificationResult truncated = new ItiVerificationResult(200, "{\"valido\":true,");
+        assertFalse(truncated.isJson());
+        assertFalse(truncated.isSignatureValid());
+
+        ItiVerificationResult failed = new ItiVerificationResult(502, REPORT);
+        assertTrue(failed.isJson());
+        assertFalse(failed.isSignatureValid());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data = new byte[1024];
+        int bytesRead;
+        while ((bytesRead = in.read(data)) != -1) {
+            buffer.write(data, 0, bytesRead);
+        }
+        return buffer.toByteArray();
+    }
+}
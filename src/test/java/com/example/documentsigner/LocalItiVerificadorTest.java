@@ -0,0 +1,115 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.ItiVerificador.ItiVerificationResult;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.pades.PadesSignerService;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalItiVerificadorTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static byte[] signedPdf;
+
+    private LocalItiVerificador local;
+    private ItiVerificador verificador;
+
+    @BeforeAll
+    static void signDocument() throws Exception {
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        Issued signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        byte[] pdf;
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            pdf = out.toByteArray();
+        }
+        signedPdf = new PadesSignerService().signPdf(pdf,
+            TestCertificates.pkcs12(signer, PASSWORD, root.certificate), PASSWORD, null);
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        local = new LocalItiVerificador(0);
+        verificador = new ItiVerificador(local.getUrl(), 5000);
+    }
+
+    @AfterEach
+    void stop() {
+        local.close();
+    }
+
+    @Test
+    void approvesASignedDocumentNamingItsSigner() throws Exception {
+        ItiVerificationResult result = verificador.verifyEmbeddedSignature(signedPdf, "contrato.pdf");
+
+        assertEquals(200, result.getHttpStatus());
+        assertTrue(result.isSignatureValid(), result.toString());
+        assertTrue(result.getJsonResponse().contains("FULANO DE TAL"), result.getJsonResponse());
+        assertEquals(1L, (long) local.getStats().get("approved"));
+    }
+
+    @Test
+    void rejectionsAndErrorsAreNotValid() throws Exception {
+        local.setRejectionRate(1);
+        ItiVerificationResult rejected = verificador.verifyEmbeddedSignature(signedPdf, "contrato.pdf");
+        assertTrue(rejected.isJson());
+        assertTrue(rejected.getJsonResponse().contains("Reprovado"), rejected.getJsonResponse());
+        assertFalse(rejected.isSignatureValid());
+
+        local.setErrorRate(1);
+        ItiVerificationResult failed = verificador.verifyEmbeddedSignature(signedPdf, "contrato.pdf");
+        assertTrue(failed.getHttpStatus() >= 500, String.valueOf(failed.getHttpStatus()));
+        assertFalse(failed.isJson());
+        assertFalse(failed.isSignatureValid());
+        assertEquals(1L, (long) local.getStats().get("rejected"));
+        assertEquals(1L, (long) local.getStats().get("errors"));
+    }
+
+    @Test
+    void throttlesBeyondTheRequestRate() throws Exception {
+        local.setMaxRequestsPerSecond(1);
+        int tooMany = 0;
+        for (int i = 0; i < 3; i++) {
+            if (verificador.verifyEmbeddedSignature(signedPdf, "contrato.pdf").getHttpStatus() == 429) {
+                tooMany++;
+            }
+        }
+
+        assertTrue(tooMany >= 1);
+        assertEquals(tooMany, (long) local.getStats().get("throttled"));
+    }
+
+    @Test
+    void delaysResponsesByTheConfiguredLatency() throws Exception {
+        local.setLatencyMillis(200, 200);
+        long start = System.nanoTime();
+
+        ItiVerificationResult result = verificador.verifyEmbeddedSignature(signedPdf, "contrato.pdf");
+
+        assertTrue(result.isSignatureValid(), result.toString());
+        assertTrue(System.nanoTime() - start >= 190_000_000L);
+    }
+
+    @Test
+    void rejectsSubmissionsWithoutASignatureFile() throws Exception {
+        ItiVerificationResult result = verificador.verifyEmbeddedSignature(new byte[0], "vazio.pdf");
+
+        assertEquals(400, result.getHttpStatus());
+        assertFalse(result.isSignatureValid());
+        assertEquals(1L, (long) local.getStats().get("badRequests"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.documentsigner;
+
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.exception.InvalidDocumentException;
+import com.example.documentsigner.merkle.MerkleBatchSignature;
+import com.example.documentsigner.merkle.MerkleVerificationResult;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfSignerTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static Issued signer;
+    private static byte[] pfx;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        pfx = TestCertificates.pkcs12(signer, PASSWORD, root.certificate);
+    }
+
+    @Test
+    void signsAFileIntoAnEncapsulatedSignature() throws Exception {
+        Path pdf = directory.resolve("document.pdf");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.save(pdf.toFile());
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new PdfSigner().signPdfFile(pdf, pfx, PASSWORD, null, false, output);
+
+        CMSSignedData signed = new CMSSignedData(output.toByteArray());
+        SignerInformation signerInfo = signed.getSignerInfos().getSigners().iterator().next();
+        X509CertificateHolder certificate = (X509CertificateHolder) signed.getCertificates()
+            .getMatches(signerInfo.getSID()).iterator().next();
+        assertTrue(signerInfo.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC").build(certificate)));
+
+        byte[] content = (byte[]) signed.getSignedContent().getContent();
+        try (PDDocument document = PDDocument.load(content)) {
+            assertEquals(1, document.getNumberOfPages());
+        }
+        // The temporary re-saved copy is gone
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void signsBytesOverTheNormalizedDocument() throws Exception {
+        byte[] pdf;
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.save(output);
+            pdf = output.toByteArray();
+        }
+        PdfSigner pdfSigner = new PdfSigner();
+
+        byte[] signature = pdfSigner.signPdfBytes(pdf, pfx, PASSWORD);
+
+        assertTrue(pdfSigner.verifySignature(signature, pdf));
+        assertThrows(InvalidDocumentException.class, () -> pdfSigner.signPdfBytes(bytes("não é PDF"), pfx, PASSWORD));
+    }
+
+    @Test
+    void merkleReceiptVerifiesAgainstTheSignedRoot() throws Exception {
+        List<byte[]> documents = Arrays.asList(bytes("primeiro"), bytes("segundo"), bytes("terceiro"));
+        PdfSigner pdfSigner = new PdfSigner();
+
+        MerkleBatchSignature batch = pdfSigner.signBatchMerkle(digests(documents), pfx, PASSWORD);
+
+        for (int i = 0; i < documents.size(); i++) {
+            MerkleVerificationResult result = pdfSigner.verifyMerkleReceipt(documents.get(i),
+                batch.getRootSignature(), batch.getProofs().get(i));
+            assertTrue(result.isInclusionValid() && result.isRootSignatureValid(), result.getDetails());
+        }
+        MerkleVerificationResult wrongDocument = pdfSigner.verifyMerkleReceipt(documents.get(0),
+            batch.getRootSignature(), batch.getProofs().get(1));
+        assertFalse(wrongDocument.isInclusionValid());
+    }
+
+    @Test
+    void ordinarySignatureOverA32ByteDocumentIsNotAMerkleRoot() throws Exception {
+        // A leaf hash is a valid one-document root; sign it as a plain document
+        byte[] document = bytes("documento");
+        PdfSigner pdfSigner = new PdfSigner();
+        MerkleBatchSignature batch = pdfSigner.signBatchMerkle(digests(Arrays.asList(document)), pfx, PASSWORD);
+        byte[] plainSignature = new DocumentSigner().signDocumentWithCertBytes(batch.getRoot(), pfx, PASSWORD);
+
+        assertThrows(InvalidDocumentException.class,
+            () -> pdfSigner.verifyMerkleReceipt(document, plainSignature, batch.getProofs().get(0)));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> digests(List<byte[]> documents) throws Exception {
+        List<byte[]> digests = new ArrayList<>();
+        for (byte[] document : documents) {
+            digests.add(MessageDigest.getInstance("SHA-256").digest(document));
+        }
+        return digests;
+    }
+}
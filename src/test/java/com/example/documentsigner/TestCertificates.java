@@ -0,0 +1,179 @@
+package com.example.documentsigner;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throwaway certificate authorities, certificates, CRLs and PFX files for tests.
+ */
+public final class TestCertificates {
+
+    public static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final AtomicLong SERIALS = new AtomicLong(System.currentTimeMillis());
+
+    static {
+        if (Security.getProvider("BC") == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private TestCertificates() {
+    }
+
+    /**
+     * A certificate and its private key.
+     */
+    public static final class Issued {
+        public final X509Certificate certificate;
+        public final PrivateKey key;
+
+        Issued(X509Certificate certificate, PrivateKey key) {
+            this.certificate = certificate;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A self-signed CA valid from yesterday for ten years.
+     */
+    public static Issued root(String commonName) throws Exception {
+        return issue(null, commonName, new Date(System.currentTimeMillis() - DAY),
+            new Date(System.currentTimeMillis() + 3650 * DAY), true);
+    }
+
+    /**
+     * A certificate from issuer valid from yesterday for a year.
+     */
+    public static Issued issue(Issued issuer, String commonName, boolean ca) throws Exception {
+        return issue(issuer, commonName, new Date(System.currentTimeMillis() - DAY),
+            new Date(System.currentTimeMillis() + 365 * DAY), ca);
+    }
+
+    /**
+     * @param issuer The issuing CA, or null for a self-signed certificate
+     */
+    public static Issued issue(Issued issuer, String commonName, Date notBefore, Date notAfter, boolean ca)
+            throws Exception {
+        return issue(issuer, commonName, notBefore, notAfter, ca, null, null);
+    }
+
+    /**
+     * A certificate from issuer valid from yesterday for a year, naming crlUrl
+     * as its CRL distribution point.
+     */
+    public static Issued issue(Issued issuer, String commonName, boolean ca, String crlUrl) throws Exception {
+        return issue(issuer, commonName, new Date(System.currentTimeMillis() - DAY),
+            new Date(System.currentTimeMillis() + 365 * DAY), ca, null, crlUrl);
+    }
+
+    /**
+     * A timestamp authority certificate from issuer (self-signed when null),
+     * with the critical id-kp-timeStamping extended key usage RFC 3161 requires.
+     */
+    public static Issued timestampAuthority(Issued issuer, String commonName, Date notBefore, Date notAfter)
+            throws Exception {
+        return issue(issuer, commonName, notBefore, notAfter, false, KeyPurposeId.id_kp_timeStamping, null);
+    }
+
+    private static Issued issue(Issued issuer, String commonName, Date notBefore, Date notAfter, boolean ca,
+                                KeyPurposeId purpose, String crlUrl) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=" + commonName + ",O=Testes,C=BR");
+        X500Name issuerName = issuer != null
+            ? X500Name.getInstance(issuer.certificate.getSubjectX500Principal().getEncoded()) : subject;
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(issuerName,
+            BigInteger.valueOf(SERIALS.incrementAndGet()), notBefore, notAfter, subject, keyPair.getPublic());
+        JcaX509ExtensionUtils extensions = new JcaX509ExtensionUtils();
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+        builder.addExtension(Extension.keyUsage, true, ca
+            ? new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign)
+            : new KeyUsage(KeyUsage.digitalSignature | KeyUsage.nonRepudiation));
+        builder.addExtension(Extension.subjectKeyIdentifier, false,
+            extensions.createSubjectKeyIdentifier(keyPair.getPublic()));
+        builder.addExtension(Extension.authorityKeyIdentifier, false, issuer != null
+            ? extensions.createAuthorityKeyIdentifier(issuer.certificate)
+            : extensions.createAuthorityKeyIdentifier(keyPair.getPublic()));
+        if (purpose != null) {
+            builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(purpose));
+        }
+        if (crlUrl != null) {
+            GeneralNames name = new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, crlUrl));
+            builder.addExtension(Extension.cRLDistributionPoints, false, new CRLDistPoint(new DistributionPoint[] {
+                new DistributionPoint(new DistributionPointName(name), null, null)}));
+        }
+
+        X509Certificate certificate = new JcaX509CertificateConverter().setProvider("BC").getCertificate(
+            builder.build(signer(issuer != null ? issuer.key : keyPair.getPrivate())));
+        return new Issued(certificate, keyPair.getPrivate());
+    }
+
+    /**
+     * A PKCS#12 file holding the key and chain, as clients upload it.
+     */
+    public static byte[] pkcs12(Issued signer, String password, X509Certificate... issuers) throws Exception {
+        Certificate[] chain = new Certificate[issuers.length + 1];
+        chain[0] = signer.certificate;
+        System.arraycopy(issuers, 0, chain, 1, issuers.length);
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("signer", signer.key, password.toCharArray(), chain);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        keyStore.store(output, password.toCharArray());
+        return output.toByteArray();
+    }
+
+    /**
+     * A CRL from issuer listing each serial with its revocation time and
+     * reason code (CRLReason), as serial, time, reason triples.
+     */
+    public static X509CRL crl(Issued issuer, Date thisUpdate, Date nextUpdate, Object... revoked) throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(
+            X500Name.getInstance(issuer.certificate.getSubjectX500Principal().getEncoded()), thisUpdate);
+        builder.setNextUpdate(nextUpdate);
+        for (int i = 0; i + 2 < revoked.length; i += 3) {
+            builder.addCRLEntry((BigInteger) revoked[i], (Date) revoked[i + 1], (Integer) revoked[i + 2]);
+        }
+        builder.addExtension(Extension.authorityKeyIdentifier, false,
+            new JcaX509ExtensionUtils().createAuthorityKeyIdentifier(issuer.certificate));
+        return new JcaX509CRLConverter().setProvider("BC").getCRL(builder.build(signer(issuer.key)));
+    }
+
+    private static ContentSigner signer(PrivateKey key) throws Exception {
+        return new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(key);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.documentsigner.api;
+
+import com.example.documentsigner.api.BulkVerificationService.Item;
+import com.example.documentsigner.api.BulkVerificationService.ItemType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkVerificationServiceTest {
+
+    @TempDir
+    Path temp;
+
+    private Path root;
+    private Path outside;
+    private BulkVerificationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = Files.createDirectory(temp.resolve("root"));
+        outside = Files.write(temp.resolve("segredo.pdf"), new byte[]{1});
+        service = new BulkVerificationService(null, null, 1, root.toString());
+    }
+
+    @Test
+    void resolvesFilesAndDirectories() throws Exception {
+        Path lote = Files.createDirectory(root.resolve("lote"));
+        Files.write(lote.resolve("a.pdf"), new byte[]{1});
+        Files.write(lote.resolve("contrato.txt"), new byte[]{2});
+        Files.write(lote.resolve("contrato.txt.p7s"), new byte[]{3});
+        Files.write(root.resolve("b.pdf"), new byte[]{4});
+
+        List<Item> items = service.resolveFiles(Arrays.asList("lote", "b.pdf"));
+
+        assertEquals(3, items.size());
+        assertEquals(ItemType.PDF, items.get(0).getType());
+        assertEquals(ItemType.DETACHED, items.get(1).getType());
+        assertEquals("b.pdf", items.get(2).getName());
+    }
+
+    @Test
+    void rejectsPathsLeavingTheRoot() {
+        assertThrows(IllegalArgumentException.class,
+            () -> service.resolveFiles(Collections.singletonList("../segredo.pdf")));
+    }
+
+    @Test
+    void rejectsALinkInsideADirectoryThatLeavesTheRoot() throws Exception {
+        Path lote = Files.createDirectory(root.resolve("lote"));
+        Files.write(lote.resolve("a.pdf"), new byte[]{1});
+        Files.createSymbolicLink(lote.resolve("b.pdf"), outside);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> service.resolveFiles(Collections.singletonList("lote")));
+    }
+
+    @Test
+    void rejectsAnOriginalThatLinksOutOfTheRoot() throws Exception {
+        Files.write(root.resolve("contrato.pdf.p7s"), new byte[]{3});
+        Files.createSymbolicLink(root.resolve("contrato.pdf"), outside);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> service.resolveFiles(Collections.singletonList("contrato.pdf.p7s")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.documentsigner.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentStoreTest {
+
+    private static final int SIZE = 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictsTheLeastRecentlyUsed() throws Exception {
+        DocumentStore store = new DocumentStore(directory, 2 * SIZE);
+        String first = store.put(part(1)).getSha256Hex();
+        String second = store.put(part(2)).getSha256Hex();
+        assertNotNull(store.get(first));
+        store.put(part(3));
+
+        assertNotNull(store.peek(first));
+        assertNull(store.peek(second));
+        assertFalse(Files.exists(directory.resolve(second)));
+        assertEquals(1L, store.getStats().get("evictions"));
+    }
+
+    @Test
+    void referencedDocumentOutlivesItsEvictionUntilReleased() throws Exception {
+        DocumentStore store = new DocumentStore(directory, 2 * SIZE);
+        IngestedPart stored = part(1);
+        String sha256Hex = store.put(stored).getSha256Hex();
+        IngestedPart referenced = store.resolve("document", sha256Hex);
+        assertTrue(store.isPinned(sha256Hex));
+
+        store.put(part(2));
+        store.put(part(3));
+
+        assertNull(store.peek(sha256Hex));
+        assertEquals(2L * SIZE, (long) store.getStats().get("bytes"));
+        assertArrayEquals(content(1), referenced.getBytes());
+
+        referenced.delete();
+        assertFalse(store.isPinned(sha256Hex));
+        assertFalse(Files.exists(directory.resolve(sha256Hex)));
+        // Released once only
+        referenced.delete();
+    }
+
+    @Test
+    void removalWaitsForEveryReference() throws Exception {
+        DocumentStore store = new DocumentStore(directory, 10 * SIZE);
+        String sha256Hex = store.put(part(1)).getSha256Hex();
+        IngestedPart first = store.resolve("document", sha256Hex);
+        IngestedPart second = store.resolve("signature", sha256Hex);
+
+        assertTrue(store.remove(sha256Hex));
+        assertNull(store.resolve("document", sha256Hex));
+        first.delete();
+        assertTrue(Files.exists(directory.resolve(sha256Hex)));
+        second.delete();
+        assertFalse(Files.exists(directory.resolve(sha256Hex)));
+    }
+
+    @Test
+    void storingAgainWhilePinnedKeepsTheFileOnRelease() throws Exception {
+        DocumentStore store = new DocumentStore(directory, 10 * SIZE);
+        String sha256Hex = store.put(part(1)).getSha256Hex();
+        IngestedPart referenced = store.resolve("document", sha256Hex);
+        store.remove(sha256Hex);
+
+        store.put(part(1));
+        referenced.delete();
+
+        assertNotNull(store.get(sha256Hex));
+        assertArrayEquals(content(1), Files.readAllBytes(directory.resolve(sha256Hex)));
+    }
+
+    private static IngestedPart part(int seed) throws Exception {
+        byte[] content = content(seed);
+        return new IngestedPart("document", seed + ".pdf", null, content.length,
+            MessageDigest.getInstance("SHA-256").digest(content), content, null);
+    }
+
+    private static byte[] content(int seed) {
+        byte[] bytes = new byte[SIZE];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
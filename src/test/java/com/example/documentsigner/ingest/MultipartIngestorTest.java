@@ -0,0 +1,157 @@
+package com.example.documentsigner.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultipartIngestorTest {
+
+    private static final String BOUNDARY = "----limite7MA4YWxkTrZu0gW";
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void keepsSmallFilesInMemoryAndSpillsLargeOnes() throws Exception {
+        byte[] small = random(100);
+        // Several times the stream's buffer, with the boundary's prefix inside the content
+        byte[] large = concat(random(200 * 1024), "\r\n--".getBytes(StandardCharsets.US_ASCII), random(100));
+        MultipartIngestor ingestor = new MultipartIngestor(1024, -1, -1, spillDirectory);
+
+        try (IngestedMultipart multipart = ingestor.ingest(body(
+                field("password", "123456"), file("certificate", "cert.pfx", small), file("document", "a.pdf", large)),
+                CONTENT_TYPE)) {
+            assertEquals("123456", multipart.getFields().get("password").get(0));
+
+            IngestedPart certificate = multipart.getFiles().get(0);
+            assertTrue(certificate.isInMemory());
+            assertNull(certificate.getFile());
+            assertArrayEquals(small, certificate.getBytes());
+            assertArrayEquals(sha256(small), certificate.getSha256());
+
+            IngestedPart document = multipart.getFiles().get(1);
+            assertFalse(document.isInMemory());
+            assertNotNull(document.getFile());
+            assertEquals(large.length, document.getSize());
+            assertArrayEquals(large, Files.readAllBytes(document.getFile()));
+            assertArrayEquals(sha256(large), document.getSha256());
+        }
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void inMemoryContentIsCopied() throws Exception {
+        MultipartIngestor ingestor = new MultipartIngestor(1024, -1, -1, spillDirectory);
+        try (IngestedMultipart multipart = ingestor.ingest(body(file("document", "a.pdf", new byte[]{1, 2, 3})),
+                CONTENT_TYPE)) {
+            IngestedPart part = multipart.getFiles().get(0);
+            byte[] first = part.getBytes();
+            first[0] = 9;
+
+            assertNotSame(first, part.getBytes());
+            assertEquals(1, part.getBytes()[0]);
+        }
+    }
+
+    @Test
+    void fileOverTheLimitStopsTheReadAndRemovesSpillFiles() throws Exception {
+        MultipartIngestor ingestor = new MultipartIngestor(1024, 64 * 1024, -1, spillDirectory);
+
+        IngestLimitExceededException e = assertThrows(IngestLimitExceededException.class, () -> ingestor.ingest(
+            body(file("first", "a.pdf", random(10 * 1024)), file("second", "b.pdf", random(100 * 1024))),
+            CONTENT_TYPE));
+
+        assertEquals(64 * 1024, e.getLimit());
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void requestOverTheLimitStopsTheRead() throws Exception {
+        MultipartIngestor ingestor = new MultipartIngestor(1024, -1, 50 * 1024, spillDirectory);
+
+        assertThrows(IngestLimitExceededException.class, () -> ingestor.ingest(
+            body(file("first", "a.pdf", random(30 * 1024)), file("second", "b.pdf", random(30 * 1024))),
+            CONTENT_TYPE));
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void rejectsABodyWithoutTheClosingDelimiter() throws Exception {
+        MultipartIngestor ingestor = new MultipartIngestor(1024, -1, -1, spillDirectory);
+        byte[] body = bytes(file("document", "a.pdf", random(4096)));
+        byte[] truncated = new byte[body.length - BOUNDARY.length() - 8];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+
+        assertThrows(IOException.class, () -> ingestor.ingest(new ByteArrayInputStream(truncated), CONTENT_TYPE));
+        assertEquals(0, spillFiles());
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static InputStream body(byte[]... parts) throws IOException {
+        return new ByteArrayInputStream(bytes(parts));
+    }
+
+    private static byte[] bytes(byte[]... parts) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            body.write(("--" + BOUNDARY + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            body.write(part);
+            body.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private static byte[] field(String name, String value) {
+        return ("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] file(String name, String filename, byte[] content) {
+        return concat(("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8), content);
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] sha256(byte[] data) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+}
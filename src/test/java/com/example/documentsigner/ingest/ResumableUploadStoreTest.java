@@ -0,0 +1,211 @@
+package com.example.documentsigner.ingest;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResumableUploadStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private ResumableUploadStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void chunksOutOfOrderAreMergedAndHashed() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] content = random(300 * 1024);
+        ResumableUpload upload = store.create("a.pdf", content.length);
+
+        store.write(upload.getId(), 200 * 1024, chunk(content, 200 * 1024, content.length));
+        store.write(upload.getId(), 0, chunk(content, 0, 100 * 1024));
+        assertEquals(100 * 1024, upload.getNextOffset());
+        assertEquals(2, upload.getRanges().size());
+        assertEquals(200 * 1024, upload.getReceived());
+
+        // Overlaps both ranges and fills the gap between them
+        store.write(upload.getId(), 50 * 1024, chunk(content, 50 * 1024, 250 * 1024));
+        assertEquals(1, upload.getRanges().size());
+        assertEquals(content.length, upload.getNextOffset());
+        assertEquals(content.length, upload.getReceived());
+
+        store.complete(upload.getId(), sha256Hex(content));
+        assertTrue(upload.isComplete());
+
+        IngestedPart part = store.resolve("document", upload.getId());
+        assertEquals(content.length, part.getSize());
+        assertArrayEquals(content, Files.readAllBytes(part.getFile()));
+    }
+
+    @Test
+    void bytesBeforeADroppedConnectionAreKeptForResuming() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] content = random(200 * 1024);
+        ResumableUpload upload = store.create("a.pdf", content.length);
+
+        InputStream dropped = new ByteArrayInputStream(content, 0, 70 * 1024) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int read = super.read(b, off, len);
+                if (read == -1) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return read;
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> store.write(upload.getId(), 0, dropped));
+        assertEquals(70 * 1024, upload.getNextOffset());
+
+        assertThrows(IllegalStateException.class, () -> store.complete(upload.getId(), sha256Hex(content)));
+        store.write(upload.getId(), upload.getNextOffset(),
+            chunk(content, (int) upload.getNextOffset(), content.length));
+        store.complete(upload.getId(), sha256Hex(content));
+        assertTrue(upload.isComplete());
+    }
+
+    @Test
+    void digestMismatchLeavesTheUploadOpenForResending() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] content = random(100 * 1024);
+        byte[] corrupted = content.clone();
+        corrupted[5000] ^= 1;
+        ResumableUpload upload = store.create("a.pdf", content.length);
+
+        store.write(upload.getId(), 0, chunk(corrupted, 0, corrupted.length));
+        assertThrows(IllegalArgumentException.class, () -> store.complete(upload.getId(), sha256Hex(content)));
+        assertFalse(upload.isComplete());
+        assertNull(store.resolve("document", upload.getId()));
+
+        store.write(upload.getId(), 4096, chunk(content, 4096, 8192));
+        store.complete(upload.getId(), sha256Hex(content));
+        assertEquals(sha256Hex(content), upload.getSha256Hex());
+    }
+
+    @Test
+    void rewritingHashedBytesIsCaughtByTheDigest() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] original = "AAAAAAAAAA".getBytes(StandardCharsets.US_ASCII);
+        byte[] replaced = "BBBBBBBBBB".getBytes(StandardCharsets.US_ASCII);
+        ResumableUpload upload = store.create("a.pdf", original.length);
+
+        store.write(upload.getId(), 0, chunk(original, 0, original.length));
+        store.write(upload.getId(), 0, chunk(replaced, 0, replaced.length));
+
+        // The digest of bytes no longer in the file is refused; the digest of the file's bytes is taken
+        assertThrows(IllegalArgumentException.class, () -> store.complete(upload.getId(), sha256Hex(original)));
+        store.complete(upload.getId(), sha256Hex(replaced));
+        assertArrayEquals(replaced, Files.readAllBytes(store.resolve("document", upload.getId()).getFile()));
+    }
+
+    @Test
+    void referencedUploadKeepsItsFileUntilReleased() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] content = random(1024);
+        ResumableUpload upload = store.create("a.pdf", content.length);
+        store.write(upload.getId(), 0, chunk(content, 0, content.length));
+        store.complete(upload.getId(), sha256Hex(content));
+        IngestedPart first = store.resolve("document", upload.getId());
+        IngestedPart second = store.resolve("signature", upload.getId());
+
+        assertTrue(store.delete(upload.getId()));
+        assertNull(store.resolve("document", upload.getId()));
+        first.delete();
+        assertArrayEquals(content, second.getBytes());
+        second.delete();
+        assertFalse(store.isPinned(upload.getId()));
+        assertFalse(Files.exists(first.getFile()));
+    }
+
+    @Test
+    void limitsTheUploadsOpenAtATime() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 2);
+        byte[] content = random(16);
+        ResumableUpload first = store.create("a.pdf", content.length);
+        ResumableUpload second = store.create("b.pdf", content.length);
+
+        assertThrows(TooManyUploadsException.class, () -> store.create("c.pdf", content.length));
+
+        // Completed and deleted uploads hold no file open
+        store.write(first.getId(), 0, chunk(content, 0, content.length));
+        store.complete(first.getId(), sha256Hex(content));
+        store.create("c.pdf", content.length);
+        assertThrows(TooManyUploadsException.class, () -> store.create("d.pdf", content.length));
+        store.delete(second.getId());
+        store.create("d.pdf", content.length);
+    }
+
+    @Test
+    void rejectsChunksOutsideTheUploadAndUploadsOverTheLimit() throws Exception {
+        store = new ResumableUploadStore(directory, 1024, 60000, 10);
+        ResumableUpload upload = store.create("a.pdf", 1000);
+
+        assertThrows(IllegalArgumentException.class, () -> store.write(upload.getId(), 1001, chunk(new byte[1], 0, 1)));
+        assertThrows(IllegalArgumentException.class,
+            () -> store.write(upload.getId(), 900, chunk(new byte[200], 0, 200)));
+        assertThrows(IngestLimitExceededException.class, () -> store.create("b.pdf", 2048));
+    }
+
+    @Test
+    void referencesAreLimitedToTheDocumentParametersAndSize() throws Exception {
+        store = new ResumableUploadStore(directory, -1, 60000, 10);
+        byte[] content = random(2048);
+        ResumableUpload upload = store.create("a.pdf", content.length);
+        store.write(upload.getId(), 0, chunk(content, 0, content.length));
+        store.complete(upload.getId(), sha256Hex(content));
+
+        assertEquals("document", DocumentReferences.fileParameter("documentRef"));
+        assertEquals("signature", DocumentReferences.fileParameter("signatureRef"));
+        assertNull(DocumentReferences.fileParameter("certificateRef"));
+        assertNull(DocumentReferences.fileParameter("callbackRef"));
+        assertNull(DocumentReferences.fileParameter("Ref"));
+
+        DocumentReferences references = new DocumentReferences(1024);
+        references.register(ResumableUploadStore.REFERENCE_SCHEME, store::resolve);
+        assertThrows(IngestLimitExceededException.class,
+            () -> references.resolve("document", "upload:" + upload.getId()));
+        // The upload is only borrowed, so the rejection leaves it in place
+        assertTrue(Files.exists(store.resolve("document", upload.getId()).getFile()));
+
+        DocumentReferences larger = new DocumentReferences(4096);
+        larger.register(ResumableUploadStore.REFERENCE_SCHEME, store::resolve);
+        assertEquals(content.length, larger.resolve("document", "upload:" + upload.getId()).getSize());
+    }
+
+    private static InputStream chunk(byte[] content, int from, int to) {
+        return new ByteArrayInputStream(content, from, to - from);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256Hex(byte[] data) throws Exception {
+        return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
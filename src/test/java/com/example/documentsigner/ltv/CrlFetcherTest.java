@@ -0,0 +1,96 @@
+package com.example.documentsigner.ltv;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.TestHttpServer;
+import com.example.documentsigner.exception.RevocationException;
+import com.example.documentsigner.net.GuardedHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrlFetcherTest {
+
+    private static Issued ca;
+    private static byte[] crl;
+
+    private TestHttpServer server;
+
+    @BeforeAll
+    static void setUpCertificates() throws Exception {
+        ca = TestCertificates.root("AC de Teste");
+        crl = TestCertificates.crl(ca, new Date(), new Date(System.currentTimeMillis() + DAY)).getEncoded();
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new TestHttpServer();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void crlSignedByTheIssuerIsDownloadedOnce() {
+        server.respond("/ac.crl", 200, crl);
+        CrlFetcher fetcher = fetcher(false, 10);
+
+        ValidationDataCache.Entry first = fetcher.fetch(server.url("/ac.crl"), ca.certificate);
+        ValidationDataCache.Entry second = fetcher.fetch(server.url("/ac.crl"), ca.certificate);
+
+        assertArrayEquals(crl, first.getDer());
+        assertEquals(first, second);
+        assertEquals(1, server.getRequestCount("/ac.crl"));
+    }
+
+    @Test
+    void crlFromAnotherKeyIsRefused() throws Exception {
+        // Same name as the issuer, different key
+        Issued impostor = TestCertificates.root("AC de Teste");
+        server.respond("/ac.crl", 200,
+            TestCertificates.crl(impostor, new Date(), new Date(System.currentTimeMillis() + DAY)).getEncoded());
+        CrlFetcher fetcher = fetcher(false, 10);
+
+        RevocationException e = assertThrows(RevocationException.class,
+            () -> fetcher.fetch(server.url("/ac.crl"), ca.certificate));
+        assertTrue(e.getMessage().contains("is not signed by"), e.getMessage());
+    }
+
+    @Test
+    void nonPublicDistributionPointIsNotContacted() {
+        server.respond("/ac.crl", 200, crl);
+        CrlFetcher fetcher = fetcher(true, 10);
+
+        assertThrows(RevocationException.class, () -> fetcher.fetch(server.url("/ac.crl"), ca.certificate));
+        assertEquals(0, server.getRequestCount("/ac.crl"));
+    }
+
+    @Test
+    void keepsAtMostMaxEntries() {
+        server.respond("/a.crl", 200, crl);
+        server.respond("/b.crl", 200, crl);
+        CrlFetcher fetcher = fetcher(false, 1);
+
+        fetcher.fetch(server.url("/a.crl"), ca.certificate);
+        fetcher.fetch(server.url("/b.crl"), ca.certificate);
+        fetcher.fetch(server.url("/a.crl"), ca.certificate);
+
+        assertEquals(2, server.getRequestCount("/a.crl"));
+    }
+
+    private static CrlFetcher fetcher(boolean publicOnly, int maxEntries) {
+        return new CrlFetcher(new ValidationDataCache(100), new GuardedHttpClient(5000, 1 << 20, publicOnly),
+            DAY, maxEntries);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.documentsigner.ltv;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.TestHttpServer;
+import com.example.documentsigner.exception.RevocationException;
+import com.example.documentsigner.net.GuardedHttpClient;
+import com.example.documentsigner.pades.PadesSignerService;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Date;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LtvEnricherTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static Issued root;
+    private static byte[] pdf;
+
+    private TestHttpServer server;
+    private LtvEnricher enricher;
+
+    @BeforeAll
+    static void setUpDocument() throws Exception {
+        root = TestCertificates.root("AC Raiz de Teste");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.save(output);
+            pdf = output.toByteArray();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestHttpServer();
+        ValidationDataCache cache = new ValidationDataCache(100);
+        CertificatePathValidator validator = new CertificatePathValidator(
+            new TrustStore(Collections.singletonList(root.certificate)), 16, 0);
+        enricher = new LtvEnricher(cache,
+            new CrlFetcher(cache, new GuardedHttpClient(5000, 1 << 20, false), DAY, 10), validator);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void crlsAreFetchedAlongTheValidatedPath() throws Exception {
+        Issued ca = TestCertificates.issue(root, "AC Intermediaria", true, server.url("/raiz.crl"));
+        Issued signer = TestCertificates.issue(ca, "FULANO DE TAL", false, server.url("/ac.crl"));
+        server.respond("/raiz.crl", 200, crl(root));
+        server.respond("/ac.crl", 200, crl(ca));
+
+        byte[] enriched = enricher.addValidationData(sign(signer, ca));
+
+        assertEquals(1, server.getRequestCount("/raiz.crl"));
+        assertEquals(1, server.getRequestCount("/ac.crl"));
+        COSDictionary dss = dss(enriched);
+        assertEquals(2, dss.getCOSArray(COSName.getPDFName("CRLs")).size());
+        // The root comes from the trust store, not the signature
+        assertEquals(3, dss.getCOSArray(COSName.getPDFName("Certs")).size());
+    }
+
+    @Test
+    void untrustedChainsGetNoCrlDownloads() throws Exception {
+        Issued otherRoot = TestCertificates.root("AC Desconhecida");
+        Issued signer = TestCertificates.issue(otherRoot, "FULANO DE TAL", false, server.url("/interno"));
+        server.respond("/interno", 200, crl(otherRoot));
+
+        byte[] enriched = enricher.addValidationData(sign(signer, otherRoot));
+
+        assertEquals(0, server.getRequestCount("/interno"));
+        COSDictionary dss = dss(enriched);
+        assertNull(dss.getCOSArray(COSName.getPDFName("CRLs")));
+        assertEquals(2, dss.getCOSArray(COSName.getPDFName("Certs")).size());
+    }
+
+    @Test
+    void unavailableCrlLeavesTheOutputUntouched() throws Exception {
+        Issued signer = TestCertificates.issue(root, "FULANO DE TAL", false, server.url("/raiz.crl"));
+        server.respond("/raiz.crl", 404, new byte[0]);
+        byte[] signed = sign(signer, root);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertThrows(RevocationException.class, () -> enricher.addValidationData(signed, output));
+
+        assertEquals(0, output.size());
+    }
+
+    private static byte[] sign(Issued signer, Issued issuer) throws Exception {
+        return new PadesSignerService().signPdf(pdf,
+            TestCertificates.pkcs12(signer, PASSWORD, issuer.certificate), PASSWORD, null);
+    }
+
+    private static byte[] crl(Issued issuer) throws Exception {
+        return TestCertificates.crl(issuer, new Date(), new Date(System.currentTimeMillis() + DAY)).getEncoded();
+    }
+
+    private static COSDictionary dss(byte[] pdf) throws Exception {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            return (COSDictionary) document.getDocumentCatalog().getCOSObject()
+                .getDictionaryObject(COSName.getPDFName("DSS"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.documentsigner.merkle;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTest {
+
+    @Test
+    void everyProofLeadsToTheRoot() throws Exception {
+        for (int size = 1; size <= 9; size++) {
+            List<byte[]> digests = digests(size);
+            MerkleTree tree = MerkleTree.build(digests);
+
+            for (int i = 0; i < size; i++) {
+                MerkleProof proof = tree.getProof(i, digests.get(i));
+                assertArrayEquals(tree.getRoot(), MerkleTree.computeRoot(digests.get(i), proof.getPath()),
+                    "leaf " + i + " of " + size);
+                assertEquals(size, proof.getLeafCount());
+            }
+        }
+    }
+
+    @Test
+    void leavesAndNodesAreDomainSeparated() throws Exception {
+        List<byte[]> digests = digests(2);
+        MerkleTree tree = MerkleTree.build(digests);
+
+        byte[] left = sha256(new byte[] {0x00}, digests.get(0));
+        byte[] right = sha256(new byte[] {0x00}, digests.get(1));
+        assertArrayEquals(sha256(new byte[] {0x01}, left, right), tree.getRoot());
+        // A single document's root is its leaf hash, not its digest
+        assertArrayEquals(left, MerkleTree.build(digests.subList(0, 1)).getRoot());
+    }
+
+    @Test
+    void oddNodeIsPromotedUnchanged() throws Exception {
+        List<byte[]> digests = digests(3);
+        MerkleTree tree = MerkleTree.build(digests);
+
+        byte[] leaf0 = sha256(new byte[] {0x00}, digests.get(0));
+        byte[] leaf1 = sha256(new byte[] {0x00}, digests.get(1));
+        byte[] leaf2 = sha256(new byte[] {0x00}, digests.get(2));
+        // Not paired with a copy of itself
+        assertArrayEquals(sha256(new byte[] {0x01}, sha256(new byte[] {0x01}, leaf0, leaf1), leaf2), tree.getRoot());
+
+        // The promoted leaf skips the level it had no sibling on
+        MerkleProof proof = tree.getProof(2, digests.get(2));
+        assertEquals(1, proof.getPath().size());
+        assertTrue(proof.getPath().get(0).isLeft());
+        assertEquals(2, tree.getProof(0, digests.get(0)).getPath().size());
+    }
+
+    @Test
+    void tamperedProofDoesNotLeadToTheRoot() throws Exception {
+        List<byte[]> digests = digests(4);
+        MerkleTree tree = MerkleTree.build(digests);
+        MerkleProof proof = tree.getProof(1, digests.get(1));
+
+        // Swapping a sibling's side changes the root
+        proof.getPath().get(0).setLeft(!proof.getPath().get(0).isLeft());
+        assertFalse(MessageDigest.isEqual(tree.getRoot(), MerkleTree.computeRoot(digests.get(1), proof.getPath())));
+
+        // Another document's digest with this proof
+        MerkleProof original = tree.getProof(1, digests.get(1));
+        assertFalse(MessageDigest.isEqual(tree.getRoot(),
+            MerkleTree.computeRoot(digests.get(2), original.getPath())));
+    }
+
+    @Test
+    void emptyBatchAndOutOfRangeLeavesAreRefused() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> MerkleTree.build(new ArrayList<>()));
+        MerkleTree tree = MerkleTree.build(digests(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getProof(2, new byte[32]));
+    }
+
+    private static List<byte[]> digests(int count) throws Exception {
+        List<byte[]> digests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            digests.add(sha256(("documento " + i).getBytes("UTF-8")));
+        }
+        return digests;
+    }
+
+    private static byte[] sha256(byte[]... parts) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (byte[] part : parts) {
+            digest.update(part);
+        }
+        return digest.digest();
+    }
+}
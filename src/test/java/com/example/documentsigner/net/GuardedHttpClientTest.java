@@ -0,0 +1,136 @@
+package com.example.documentsigner.net;
+
+import com.example.documentsigner.TestHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuardedHttpClientTest {
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TestHttpServer();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void refusesNonPublicAddressesWithoutConnecting() {
+        server.respond("/crl", 200, new byte[] {1});
+        GuardedHttpClient client = new GuardedHttpClient(5000, 1024, true);
+
+        IOException e = assertThrows(IOException.class, () -> client.get(URI.create(server.url("/crl"))));
+
+        assertTrue(e.getMessage().contains("non-public address"), e.getMessage());
+        assertNotNull(client.refuse(URI.create(server.url("/crl"))));
+        assertEquals(0, server.getRequestCount("/crl"));
+    }
+
+    @Test
+    void recognizesNonPublicAddresses() throws Exception {
+        for (String address : Arrays.asList("127.0.0.1", "169.254.169.254", "10.0.0.1", "172.16.5.4",
+                "192.168.1.1", "100.64.0.1", "0.0.0.0", "::1", "fe80::1", "fd00::1")) {
+            assertFalse(GuardedHttpClient.isPublic(InetAddress.getByName(address)), address);
+        }
+        assertTrue(GuardedHttpClient.isPublic(InetAddress.getByName("203.0.113.7")));
+        assertTrue(GuardedHttpClient.isPublic(InetAddress.getByName("2001:db8::1")));
+    }
+
+    @Test
+    void doesNotFollowRedirects() throws Exception {
+        server.respond("/moved", 302, new byte[0], "Location", server.url("/target"));
+        server.respond("/target", 200, new byte[] {1});
+        GuardedHttpClient client = new GuardedHttpClient(5000, 1024, false);
+
+        GuardedHttpClient.Response response = client.get(URI.create(server.url("/moved")));
+
+        assertEquals(302, response.getStatus());
+        assertEquals(0, server.getRequestCount("/target"));
+    }
+
+    @Test
+    void readsFixedLengthAndChunkedBodies() throws Exception {
+        byte[] body = "lista de certificados revogados".getBytes(StandardCharsets.US_ASCII);
+        server.respond("/fixed", 200, body);
+        server.handle("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, 0, 10);
+                out.flush();
+                out.write(body, 10, body.length - 10);
+            }
+        });
+        GuardedHttpClient client = new GuardedHttpClient(5000, 1024, false);
+
+        assertArrayEquals(body, client.get(URI.create(server.url("/fixed"))).getBody());
+        assertArrayEquals(body, client.get(URI.create(server.url("/chunked"))).getBody());
+    }
+
+    @Test
+    void refusesBodiesAboveTheLimit() {
+        server.respond("/fixed", 200, new byte[2048]);
+        server.handle("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 4; i++) {
+                    out.write(new byte[512]);
+                    out.flush();
+                }
+            }
+        });
+        GuardedHttpClient client = new GuardedHttpClient(5000, 1024, false);
+
+        assertThrows(IOException.class, () -> client.get(URI.create(server.url("/fixed"))));
+        assertThrows(IOException.class, () -> client.get(URI.create(server.url("/chunked"))));
+    }
+
+    @Test
+    void postsTheBodyWithItsHostHeader() throws Exception {
+        String[] received = new String[2];
+        server.handle("/callback", exchange -> {
+            received[0] = exchange.getRequestHeaders().getFirst("Host");
+            received[1] = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(204, -1);
+        });
+        GuardedHttpClient client = new GuardedHttpClient(5000, 1024, false);
+        URI uri = URI.create(server.url("/callback"));
+
+        GuardedHttpClient.Response response =
+            client.post(uri, "application/json", "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(204, response.getStatus());
+        assertEquals(uri.getHost() + ":" + uri.getPort(), received[0]);
+        assertEquals("{}", received[1]);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data = new byte[1024];
+        int bytesRead;
+        while ((bytesRead = in.read(data)) != -1) {
+            buffer.write(data, 0, bytesRead);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.pades.dto.CertificationLevel;
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.SignatureMetadata;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DocMDP compliance of the revisions appended after a certification signature.
+ */
+class DocMdpTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static Issued signer;
+    private static byte[] pfx;
+    private static PadesSignerService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        pfx = TestCertificates.pkcs12(signer, PASSWORD, root.certificate);
+        service = new PadesSignerService();
+        service.setCertificatePathValidator(new CertificatePathValidator(
+            new TrustStore(Collections.singletonList(root.certificate)), 16, 0));
+    }
+
+    @Test
+    void noChangesLevelIsCompliantWithoutLaterRevisions() throws Exception {
+        PdfVerificationResult result = verify(certify(TestPdfs.original(), CertificationLevel.NO_CHANGES));
+
+        assertEquals(CertificationLevel.NO_CHANGES, result.getCertificationLevel());
+        assertTrue(result.isDocMdpCompliant());
+        assertTrue(result.isValid(), result.getDetails());
+    }
+
+    @Test
+    void noChangesLevelRejectsFormFilling() throws Exception {
+        byte[] certified = certify(TestPdfs.withTextField(), CertificationLevel.NO_CHANGES);
+
+        PdfVerificationResult result = verify(TestPdfs.fillField(certified, "nome", "Maria"));
+
+        assertFalse(result.isDocMdpCompliant());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    void formFillingLevelAllowsFillingFieldsAndSigning() throws Exception {
+        byte[] certified = certify(TestPdfs.withTextField(), CertificationLevel.FORM_FILLING);
+        byte[] filled = TestPdfs.fillField(certified, "nome", "Maria");
+        byte[] signed = service.signPdf(filled, pfx, PASSWORD, null);
+
+        PdfVerificationResult result = verify(signed);
+
+        assertTrue(result.isDocMdpCompliant());
+        assertTrue(result.isValid(), result.getDetails());
+    }
+
+    @Test
+    void formFillingLevelRejectsAnnotations() throws Exception {
+        byte[] certified = certify(TestPdfs.original(), CertificationLevel.FORM_FILLING);
+
+        PdfVerificationResult result = verify(TestPdfs.addAnnotation(certified));
+
+        assertFalse(result.isDocMdpCompliant());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    void formFillingLevelRejectsContentChangedInASignatureRevision() throws Exception {
+        byte[] certified = certify(TestPdfs.original(), CertificationLevel.FORM_FILLING);
+
+        PdfVerificationResult result = verify(signChangingContent(certified));
+
+        assertFalse(result.isDocMdpCompliant());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    void annotationsLevelAllowsAnnotations() throws Exception {
+        byte[] certified = certify(TestPdfs.original(), CertificationLevel.FORM_FILLING_AND_ANNOTATIONS);
+
+        PdfVerificationResult result = verify(TestPdfs.addAnnotation(certified));
+
+        assertEquals(CertificationLevel.FORM_FILLING_AND_ANNOTATIONS, result.getCertificationLevel());
+        assertTrue(result.isDocMdpCompliant());
+        assertTrue(result.isValid(), result.getDetails());
+    }
+
+    @Test
+    void annotationsLevelRejectsContentChanges() throws Exception {
+        byte[] certified = certify(TestPdfs.original(), CertificationLevel.FORM_FILLING_AND_ANNOTATIONS);
+
+        PdfVerificationResult result = verify(
+            TestPdfs.rewriteContent(certified, TestPdfs.TEXT.replace("1000", "9000")));
+
+        assertFalse(result.isDocMdpCompliant());
+        assertFalse(result.isValid());
+    }
+
+    private static byte[] certify(byte[] pdf, CertificationLevel level) {
+        return service.signPdf(pdf, pfx, PASSWORD, SignatureMetadata.builder().certificationLevel(level).build());
+    }
+
+    private static PdfVerificationResult verify(byte[] pdf) {
+        return service.verifyPdfSignature(pdf);
+    }
+
+    /**
+     * An approval signature whose revision also rewrites the page content.
+     */
+    private static byte[] signChangingContent(byte[] pdf) throws Exception {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDPage page = document.getPage(0);
+            COSStream content = (COSStream) page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+            try (OutputStream out = content.createOutputStream()) {
+                out.write(TestPdfs.TEXT.replace("1000", "9000").getBytes(StandardCharsets.US_ASCII));
+            }
+            content.setNeedToBeUpdated(true);
+            page.getCOSObject().setNeedToBeUpdated(true);
+            document.getPages().getCOSObject().setNeedToBeUpdated(true);
+            return TestPdfs.sign(document, signer, null, true);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.exception.InvalidPasswordException;
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.SignatureMetadata;
+import com.example.documentsigner.pades.dto.SignaturePosition;
+import com.example.documentsigner.pades.dto.SignatureVerificationResult;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.VisualSignatureConfig;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiSignerTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static Issued root;
+    private static PadesSignerService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        root = TestCertificates.root("AC Raiz de Teste");
+        service = new PadesSignerService();
+        service.setCertificatePathValidator(new CertificatePathValidator(
+            new TrustStore(Collections.singletonList(root.certificate)), 16, 0));
+    }
+
+    @Test
+    void visibleSignaturesGetTheirOwnFields() throws Exception {
+        List<SignerCredential> signers = new ArrayList<>();
+        for (String name : Arrays.asList("CONTRATANTE", "CONTRATADA", "TESTEMUNHA")) {
+            signers.add(signer(name, PASSWORD));
+        }
+
+        byte[] signed = service.signPdfMultiple(TestPdfs.original(), signers);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+        assertTrue(result.isValid(), result.getDetails());
+        assertEquals(3, result.getSignatures().size());
+        Set<String> fieldNames = new HashSet<>();
+        for (SignatureVerificationResult signature : result.getSignatures()) {
+            fieldNames.add(signature.getFieldName());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Signature1", "Signature2", "Signature3")), fieldNames);
+    }
+
+    @Test
+    void wrongPasswordOfALaterSignerSignsNothing() throws Exception {
+        List<SignerCredential> signers = Arrays.asList(
+            signer("CONTRATANTE", PASSWORD), signer("TESTEMUNHA", PASSWORD));
+        List<SignerCredential> wrong = Arrays.asList(signers.get(0), SignerCredential.builder()
+            .certBytes(signers.get(1).getCertBytes()).password("errada").build());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertThrows(InvalidPasswordException.class,
+            () -> service.signPdfMultiple(TestPdfs.original(), wrong, output));
+
+        assertEquals(0, output.size());
+    }
+
+    private static SignerCredential signer(String name, String password) throws Exception {
+        Issued issued = TestCertificates.issue(root, name, false);
+        return SignerCredential.builder()
+            .certBytes(TestCertificates.pkcs12(issued, PASSWORD, root.certificate))
+            .password(password)
+            .metadata(SignatureMetadata.builder().reason("Assinatura do contrato").build())
+            .visualConfig(VisualSignatureConfig.builder()
+                .enabled(true)
+                .page(1)
+                .position(SignaturePosition.BOTTOM_LEFT)
+                .width(200)
+                .height(80)
+                .build())
+            .build();
+    }
+}
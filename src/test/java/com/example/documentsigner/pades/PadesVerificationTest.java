@@ -0,0 +1,249 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.pades.dto.ChangeType;
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.SignatureMetadata;
+import com.example.documentsigner.pades.dto.SignerCredential;
+import com.example.documentsigner.pades.dto.VerificationLevel;
+import com.example.documentsigner.policy.SignaturePolicy;
+import com.example.documentsigner.policy.SignaturePolicyRegistry;
+import com.example.documentsigner.trust.CertificatePathValidator;
+import com.example.documentsigner.trust.TrustStore;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PadesVerificationTest {
+
+    private static final String PASSWORD = "123456";
+    private static final String POLICY_OID = "2.16.76.1.7.1.11.1.1";
+
+    private static Issued root;
+    private static byte[] pfx;
+    private static PadesSignerService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        root = TestCertificates.root("AC Raiz de Teste");
+        Issued signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        pfx = TestCertificates.pkcs12(signer, PASSWORD, root.certificate);
+        service = new PadesSignerService();
+        service.setCertificatePathValidator(new CertificatePathValidator(
+            new TrustStore(Collections.singletonList(root.certificate)), 16, 0));
+    }
+
+    @Test
+    void signedDocumentIsValid() throws Exception {
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD, null);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertTrue(result.isValid(), result.getDetails());
+        assertTrue(result.isIntegrityValid());
+    }
+
+    @Test
+    void severalSignersAreWrittenToTheOutput() throws Exception {
+        Issued witness = TestCertificates.issue(root, "TESTEMUNHA", false);
+        List<SignerCredential> signers = Arrays.asList(
+            SignerCredential.builder().certBytes(pfx).password(PASSWORD).build(),
+            SignerCredential.builder().certBytes(TestCertificates.pkcs12(witness, PASSWORD, root.certificate))
+                .password(PASSWORD).build());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        service.signPdfMultiple(TestPdfs.original(), signers, output);
+
+        PdfVerificationResult result = service.verifyPdfSignature(output.toByteArray());
+        assertTrue(result.isValid(), result.getDetails());
+        assertEquals(2, result.getSignatures().size());
+    }
+
+    @Test
+    void certificateIsValidatedAtATrustedTimestamp() throws Exception {
+        // Expired ten days ago, timestamped twenty days ago by a TSA under the trusted root
+        Issued tsa = TestCertificates.timestampAuthority(root, "TSA DE TESTE",
+            new Date(System.currentTimeMillis() - 30 * DAY), new Date(System.currentTimeMillis() + 365 * DAY));
+        byte[] signed = TestPdfs.sign(TestPdfs.original(), expired(), new Date(System.currentTimeMillis() - 20 * DAY),
+            true, tsa);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertTrue(result.isValid(), result.getDetails());
+        assertTrue(result.getCertificateValid());
+    }
+
+    @Test
+    void selfIssuedTimestampDoesNotMoveTheValidationTime() throws Exception {
+        Issued tsa = TestCertificates.timestampAuthority(null, "TSA PROPRIA",
+            new Date(System.currentTimeMillis() - 30 * DAY), new Date(System.currentTimeMillis() + 365 * DAY));
+        byte[] signed = TestPdfs.sign(TestPdfs.original(), expired(), new Date(System.currentTimeMillis() - 20 * DAY),
+            true, tsa);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertFalse(result.isValid());
+        assertFalse(result.getCertificateValid());
+        assertTrue(result.isIntegrityValid());
+    }
+
+    @Test
+    void claimedSigningTimeDoesNotMoveTheValidationTime() throws Exception {
+        byte[] signed = TestPdfs.sign(TestPdfs.original(), expired(), new Date(System.currentTimeMillis() - 20 * DAY),
+            true);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertFalse(result.isValid());
+        assertFalse(result.getCertificateValid());
+        assertTrue(result.isIntegrityValid());
+    }
+
+    @Test
+    void certificateExpiredAtTheSigningTimeIsNotTrusted() throws Exception {
+        byte[] signed = TestPdfs.sign(TestPdfs.original(), expired(), new Date(), true);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertFalse(result.isValid());
+        assertFalse(result.getCertificateValid());
+        assertTrue(result.isIntegrityValid());
+    }
+
+    @Test
+    void certificatesAreNotReportedAtTheIntegrityLevel() throws Exception {
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD, null);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed, VerificationLevel.INTEGRITY);
+
+        assertTrue(result.isValid(), result.getDetails());
+        assertNull(result.getCertificateValid());
+        assertNull(result.getSignatures().get(0).getCertificateValid());
+        assertTrue(service.verifyPdfSignature(signed, VerificationLevel.FULL).getCertificateValid());
+    }
+
+    @Test
+    void byteRangeGapMustHoldExactlyTheContents() throws Exception {
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD, null);
+        // Whitespace is legal in a PDF hex string, so the dictionary still parses,
+        // but the gap no longer holds only the signature
+        String text = new String(signed, StandardCharsets.ISO_8859_1);
+        int padding = text.lastIndexOf("0000>");
+        byte[] tampered = signed.clone();
+        tampered[padding] = ' ';
+        tampered[padding + 1] = ' ';
+
+        PdfVerificationResult result = service.verifyPdfSignature(tampered);
+
+        assertFalse(result.isValid());
+        assertEquals("Signature ByteRange gap does not hold the signature /Contents", result.getDetails());
+    }
+
+    @Test
+    void contentRewrittenAfterSigningInvalidatesTheSignature() throws Exception {
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD, null);
+        byte[] changed = TestPdfs.rewriteContent(signed, TestPdfs.TEXT.replace("1000", "9000"));
+
+        PdfVerificationResult result = service.verifyPdfSignature(changed);
+
+        assertFalse(result.isValid());
+        // The signed bytes themselves are untouched
+        assertTrue(result.isIntegrityValid());
+        assertTrue(result.getSignatures().get(0).getChangesAfterSigning().contains(ChangeType.CONTENT));
+    }
+
+    @Test
+    void annotationAfterApprovalSignatureKeepsItValid() throws Exception {
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD, SignatureMetadata.builder().build());
+        byte[] annotated = TestPdfs.addAnnotation(signed);
+
+        PdfVerificationResult result = service.verifyPdfSignature(annotated);
+
+        assertTrue(result.isValid(), result.getDetails());
+        assertTrue(result.getSignatures().get(0).getChangesAfterSigning().contains(ChangeType.ANNOTATION));
+    }
+
+    @Test
+    void documentSignedFromAFileIsValid(@TempDir Path directory) throws Exception {
+        Path pdf = directory.resolve("document.pdf");
+        Files.write(pdf, TestPdfs.original());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        service.signPdfVisible(pdf, pfx, PASSWORD, null, null, output);
+
+        PdfVerificationResult result = service.verifyPdfSignature(output.toByteArray());
+        assertTrue(result.isValid(), result.getDetails());
+        assertTrue(result.isCoversWholeDocument());
+    }
+
+    @Test
+    void signatureWithoutItsCertificateIsInvalid() throws Exception {
+        Issued signer = TestCertificates.issue(root, "SEM CERTIFICADO", false);
+        byte[] signed = TestPdfs.sign(TestPdfs.original(), signer, null, false);
+
+        PdfVerificationResult result = service.verifyPdfSignature(signed);
+
+        assertFalse(result.isValid());
+        assertFalse(result.isIntegrityValid());
+        assertFalse(result.getCertificateValid());
+    }
+
+    @Test
+    void signaturePolicyIsCheckedAgainstTheRegistry() throws Exception {
+        SignaturePolicy policy = policy(1);
+        byte[] signed = service.signPdf(TestPdfs.original(), pfx, PASSWORD,
+            SignatureMetadata.builder().signaturePolicy(policy).build());
+
+        assertTrue(verifier(policy).verifyPdfSignature(signed).isValid());
+
+        PdfVerificationResult otherHash = verifier(policy(2)).verifyPdfSignature(signed);
+        assertFalse(otherHash.isValid());
+        assertTrue(otherHash.isIntegrityValid());
+        assertTrue(otherHash.getDetails().startsWith("Signature policy hash does not match"), otherHash.getDetails());
+
+        PdfVerificationResult unknown = service.verifyPdfSignature(signed);
+        assertFalse(unknown.isValid());
+        assertEquals("Unknown signature policy " + POLICY_OID, unknown.getDetails());
+    }
+
+    /**
+     * A certificate from the root valid from thirty to ten days ago.
+     */
+    private static Issued expired() throws Exception {
+        return TestCertificates.issue(root, "EXPIRADO", new Date(System.currentTimeMillis() - 30 * DAY),
+            new Date(System.currentTimeMillis() - 10 * DAY), false);
+    }
+
+    private static SignaturePolicy policy(int hashByte) {
+        byte[] digest = new byte[32];
+        digest[0] = (byte) hashByte;
+        return new SignaturePolicy("PA_AD_RB_v1_1", POLICY_OID, "http://politicas/PA_AD_RB_v1_1.der",
+            new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256), digest);
+    }
+
+    private static PadesSignerService verifier(SignaturePolicy policy) {
+        PadesSignerService verifier = new PadesSignerService();
+        verifier.setCertificatePathValidator(new CertificatePathValidator(
+            new TrustStore(Collections.singletonList(root.certificate)), 16, 0));
+        verifier.setPolicyRegistry(new SignaturePolicyRegistry(Collections.singletonList(policy)));
+        return verifier;
+    }
+}
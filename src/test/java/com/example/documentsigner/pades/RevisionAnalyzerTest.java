@@ -0,0 +1,154 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.pades.dto.ChangeType;
+import com.example.documentsigner.pades.dto.DocumentRevision;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevisionAnalyzerTest {
+
+    @Test
+    void originalDocumentIsOneRevision() throws IOException {
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(TestPdfs.original());
+
+        assertEquals(1, revisions.size());
+        assertEquals(0, revisions.get(0).getStartOffset());
+    }
+
+    @Test
+    void rewrittenContentStreamWithSameDictionaryIsContent() throws IOException {
+        // Same length, no filter: only the data differs
+        byte[] updated = TestPdfs.rewriteContent(TestPdfs.original(), TestPdfs.TEXT.replace("1000", "9000"));
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+        assertEquals(2, revisions.size());
+        assertEquals(EnumSet.of(ChangeType.CONTENT, ChangeType.OTHER), changes(revisions.get(1)));
+    }
+
+    @Test
+    void rewrittenContentStreamWithSameDataIsNotContent() throws IOException {
+        byte[] updated = TestPdfs.rewriteContent(TestPdfs.original(), TestPdfs.TEXT);
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+        assertEquals(2, revisions.size());
+        assertEquals(EnumSet.of(ChangeType.OTHER), changes(revisions.get(1)));
+    }
+
+    @Test
+    void rewrittenContentKeepsItsRoleWhateverTypeItClaims() throws IOException {
+        String changed = TestPdfs.TEXT.replace("1000", "9000");
+        for (String type : new String[]{"Sig", "Annot", "DocTimeStamp", "XObject"}) {
+            byte[] updated = TestPdfs.rewriteContent(TestPdfs.original(), changed, type);
+
+            List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+            assertTrue(changes(revisions.get(1)).contains(ChangeType.CONTENT), type);
+            assertFalse(changes(revisions.get(1)).contains(ChangeType.SIGNATURE), type);
+        }
+    }
+
+    @Test
+    void rewrittenContentClaimedAsAnAppearanceIsContent() throws IOException {
+        byte[] updated = TestPdfs.rewriteContentAsAppearance(TestPdfs.original(),
+            TestPdfs.TEXT.replace("1000", "9000"));
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+        assertTrue(changes(revisions.get(1)).contains(ChangeType.CONTENT));
+    }
+
+    @Test
+    void decompressionBombIsAChangeNotAnOutOfMemoryError() throws IOException {
+        byte[] updated = TestPdfs.rewriteContentEncoded(TestPdfs.original(), zeros(2048));
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+        assertEquals(2, revisions.size());
+        assertTrue(changes(revisions.get(1)).contains(ChangeType.CONTENT));
+    }
+
+    @Test
+    void addedAnnotationIsAnnotation() throws IOException {
+        byte[] updated = TestPdfs.addAnnotation(TestPdfs.original());
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(updated);
+
+        assertEquals(2, revisions.size());
+        assertTrue(changes(revisions.get(1)).contains(ChangeType.ANNOTATION));
+        assertTrue(!changes(revisions.get(1)).contains(ChangeType.CONTENT));
+    }
+
+    @Test
+    void bytesAppendedWithoutCrossReferenceAreUnknown() throws IOException {
+        byte[] original = TestPdfs.original();
+        byte[] appended = new byte[original.length + 4];
+        System.arraycopy(original, 0, appended, 0, original.length);
+        System.arraycopy("junk".getBytes(StandardCharsets.US_ASCII), 0, appended, original.length, 4);
+
+        List<DocumentRevision> revisions = RevisionAnalyzer.analyze(appended);
+
+        assertEquals(2, revisions.size());
+        assertEquals(EnumSet.of(ChangeType.UNKNOWN), changes(revisions.get(1)));
+    }
+
+    /**
+     * A zlib stream of the given number of megabytes of zeros, about a
+     * thousand times smaller. Every megabyte after the first compresses to
+     * the same sync-flushed bytes, so they are compressed once and repeated.
+     */
+    private static byte[] zeros(int megabytes) {
+        byte[] chunk = new byte[1024 * 1024];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] first = deflate(deflater, chunk);
+        byte[] repeated = deflate(deflater, chunk);
+        deflater.end();
+        out.write(first, 0, first.length);
+        Adler32 adler = new Adler32();
+        adler.update(chunk);
+        for (int i = 1; i < megabytes; i++) {
+            out.write(repeated, 0, repeated.length);
+            adler.update(chunk);
+        }
+        // An empty final block, then the checksum
+        out.write(0x03);
+        out.write(0x00);
+        long checksum = adler.getValue();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write((int) (checksum >>> shift));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.setInput(input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        do {
+            count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, count);
+        } while (count == buffer.length);
+        return out.toByteArray();
+    }
+
+    private static Set<ChangeType> changes(DocumentRevision revision) {
+        Set<ChangeType> changes = EnumSet.noneOf(ChangeType.class);
+        changes.addAll(revision.getChanges().keySet());
+        return changes;
+    }
+}
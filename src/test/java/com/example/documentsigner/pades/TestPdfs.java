@@ -0,0 +1,310 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.TestCertificates.Issued;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.asn1.cms.Time;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+import org.bouncycastle.util.io.Streams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Small PDFs and incremental updates for tests.
+ */
+final class TestPdfs {
+
+    static final String TEXT = "BT /F1 12 Tf 72 720 Td (Valor: 1000) Tj ET";
+
+    private TestPdfs() {
+    }
+
+    /**
+     * A one-page document showing TEXT from an uncompressed content stream.
+     */
+    static byte[] original() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            PDResources resources = new PDResources();
+            resources.put(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+            page.setResources(resources);
+            try (PDPageContentStream content = new PDPageContentStream(document, page,
+                    PDPageContentStream.AppendMode.OVERWRITE, false)) {
+                content.appendRawCommands(TEXT);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * As original(), with an empty text field "nome" on the page.
+     */
+    static byte[] withTextField() throws IOException {
+        try (PDDocument document = PDDocument.load(original())) {
+            PDAcroForm acroForm = new PDAcroForm(document);
+            document.getDocumentCatalog().setAcroForm(acroForm);
+            PDResources resources = new PDResources();
+            resources.put(COSName.getPDFName("Helv"), PDType1Font.HELVETICA);
+            acroForm.setDefaultResources(resources);
+            acroForm.setDefaultAppearance("/Helv 10 Tf 0 g");
+
+            PDTextField field = new PDTextField(acroForm);
+            field.setPartialName("nome");
+            PDAnnotationWidget widget = field.getWidgets().get(0);
+            widget.setRectangle(new PDRectangle(72, 600, 200, 20));
+            widget.setPage(document.getPage(0));
+            document.getPage(0).getAnnotations().add(widget);
+            acroForm.getFields().add(field);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * An incremental update that fills in a text field.
+     */
+    static byte[] fillField(byte[] pdf, String name, String value) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+            PDField field = acroForm.getField(name);
+            field.setValue(value);
+            field.getCOSObject().setNeedToBeUpdated(true);
+            acroForm.getCOSObject().setNeedToBeUpdated(true);
+            document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+            return saveIncremental(document);
+        }
+    }
+
+    /**
+     * An incremental update that rewrites the page's existing content stream
+     * object, uncompressed, with the given data.
+     */
+    static byte[] rewriteContent(byte[] pdf, String data) throws IOException {
+        return rewriteContent(pdf, data, null);
+    }
+
+    /**
+     * As rewriteContent(pdf, data), also giving the stream the /Type it would
+     * have as another kind of object (e.g. Sig, Annot), or none when null.
+     */
+    static byte[] rewriteContent(byte[] pdf, String data, String type) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            COSStream stream = contentStream(document);
+            try (OutputStream out = stream.createOutputStream()) {
+                out.write(data.getBytes(StandardCharsets.US_ASCII));
+            }
+            if (type != null) {
+                stream.setName(COSName.TYPE, type);
+            }
+            return saveContentUpdate(document, stream);
+        }
+    }
+
+    /**
+     * An incremental update that rewrites the page's content stream with
+     * already Flate-encoded data.
+     */
+    static byte[] rewriteContentEncoded(byte[] pdf, byte[] flateData) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            COSStream stream = contentStream(document);
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(flateData);
+            }
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            return saveContentUpdate(document, stream);
+        }
+    }
+
+    /**
+     * An incremental update that rewrites the page's content stream and adds
+     * a text note whose normal appearance is that same stream.
+     */
+    static byte[] rewriteContentAsAppearance(byte[] pdf, String data) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            COSStream stream = contentStream(document);
+            try (OutputStream out = stream.createOutputStream()) {
+                out.write(data.getBytes(StandardCharsets.US_ASCII));
+            }
+            PDAnnotationText note = new PDAnnotationText();
+            note.setRectangle(new PDRectangle(100, 100, 20, 20));
+            COSDictionary appearance = new COSDictionary();
+            appearance.setItem(COSName.N, stream);
+            note.getCOSObject().setItem(COSName.AP, appearance);
+            document.getPage(0).getAnnotations().add(note);
+            return saveContentUpdate(document, stream);
+        }
+    }
+
+    private static COSStream contentStream(PDDocument document) {
+        return (COSStream) document.getPage(0).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+    }
+
+    private static byte[] saveContentUpdate(PDDocument document, COSStream stream) throws IOException {
+        stream.setNeedToBeUpdated(true);
+        document.getPage(0).getCOSObject().setNeedToBeUpdated(true);
+        document.getPages().getCOSObject().setNeedToBeUpdated(true);
+        document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+        return saveIncremental(document);
+    }
+
+    /**
+     * An incremental update that adds a text note to the first page.
+     */
+    static byte[] addAnnotation(byte[] pdf) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDPage page = document.getPage(0);
+            PDAnnotationText note = new PDAnnotationText();
+            note.setRectangle(new PDRectangle(100, 100, 20, 20));
+            note.setContents("Conferido");
+            page.getAnnotations().add(note);
+            page.getCOSObject().setNeedToBeUpdated(true);
+            document.getPages().getCOSObject().setNeedToBeUpdated(true);
+            document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+            return saveIncremental(document);
+        }
+    }
+
+    /**
+     * An incremental update signed with a detached CMS built here rather than by
+     * the service, so tests can choose what goes in it: a signing-time attribute
+     * set to signingTime (now when null), and the signer's certificate only when
+     * includeCertificate is set. Any pending changes to the document go into the
+     * same revision.
+     */
+    static byte[] sign(PDDocument document, Issued signer, Date signingTime, boolean includeCertificate)
+            throws IOException {
+        return sign(document, signer, signingTime, includeCertificate, null);
+    }
+
+    /**
+     * As sign, adding a signature timestamp from tsa (when not null) whose
+     * genTime is the signing time.
+     */
+    static byte[] sign(PDDocument document, Issued signer, Date signingTime, boolean includeCertificate,
+                       Issued tsa) throws IOException {
+        Date time = signingTime != null ? signingTime : new Date();
+        PDSignature signature = new PDSignature();
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+        signature.setSubFilter(PDSignature.SUBFILTER_ETSI_CADES_DETACHED);
+        Calendar signDate = Calendar.getInstance();
+        signDate.setTime(time);
+        signature.setSignDate(signDate);
+        document.addSignature(signature, content -> {
+            try {
+                AttributeTable attributes = new AttributeTable(
+                    new Attribute(CMSAttributes.signingTime, new DERSet(new Time(time))));
+                CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+                generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(
+                        new JcaDigestCalculatorProviderBuilder().setProvider("BC").build())
+                    .setSignedAttributeGenerator(new DefaultSignedAttributeTableGenerator(attributes))
+                    .build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(signer.key),
+                        signer.certificate));
+                if (includeCertificate) {
+                    generator.addCertificates(new JcaCertStore(Collections.singletonList(signer.certificate)));
+                }
+                CMSSignedData signed = generator.generate(new CMSProcessableByteArray(Streams.readAll(content)), false);
+                return (tsa != null ? timestamp(signed, tsa, time) : signed).getEncoded();
+            } catch (GeneralSecurityException | OperatorCreationException | CMSException | TSPException e) {
+                throw new IOException(e);
+            }
+        });
+        return saveIncremental(document);
+    }
+
+    static byte[] sign(byte[] pdf, Issued signer, Date signingTime, boolean includeCertificate)
+            throws IOException {
+        return sign(pdf, signer, signingTime, includeCertificate, null);
+    }
+
+    static byte[] sign(byte[] pdf, Issued signer, Date signingTime, boolean includeCertificate, Issued tsa)
+            throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            return sign(document, signer, signingTime, includeCertificate, tsa);
+        }
+    }
+
+    /**
+     * The signature with a timestamp token from tsa over its signature value
+     * in the unsigned attributes.
+     */
+    private static CMSSignedData timestamp(CMSSignedData signed, Issued tsa, Date genTime)
+            throws GeneralSecurityException, OperatorCreationException, CMSException, TSPException, IOException {
+        SignerInformation signer = signed.getSignerInfos().getSigners().iterator().next();
+        DigestCalculatorProvider digests = new JcaDigestCalculatorProviderBuilder().setProvider("BC").build();
+        TimeStampTokenGenerator tokens = new TimeStampTokenGenerator(
+            new JcaSignerInfoGeneratorBuilder(digests)
+                .build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(tsa.key),
+                    tsa.certificate),
+            digests.get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)),
+            new ASN1ObjectIdentifier("2.999.3161"));
+        tokens.addCertificates(new JcaCertStore(Collections.singletonList(tsa.certificate)));
+        TimeStampRequestGenerator request = new TimeStampRequestGenerator();
+        request.setCertReq(true);
+        byte[] imprint = MessageDigest.getInstance("SHA-256").digest(signer.getSignature());
+        TimeStampToken token = tokens.generate(request.generate(TSPAlgorithms.SHA256, imprint), BigInteger.ONE,
+            genTime);
+        Attribute attribute = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+            new DERSet(token.toCMSSignedData().toASN1Structure()));
+        SignerInformation stamped = SignerInformation.replaceUnsignedAttributes(signer,
+            new AttributeTable(attribute));
+        return CMSSignedData.replaceSigners(signed, new SignerInformationStore(stamped));
+    }
+
+    static byte[] saveIncremental(PDDocument document) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.saveIncremental(output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.TestHttpServer;
+import com.example.documentsigner.exception.TimestampException;
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob;
+import com.example.documentsigner.pades.dto.TimestampUpgradeJob.Status;
+import com.example.documentsigner.pades.dto.VerificationLevel;
+import com.example.documentsigner.tsa.LocalTimestampAuthority;
+import com.example.documentsigner.tsa.TsaClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimestampUpgradeWorkerTest {
+
+    private static final String PASSWORD = "123456";
+
+    private static LocalTimestampAuthority tsa;
+    private static byte[] signedPdf;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        tsa = new LocalTimestampAuthority(0);
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        Issued signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        signedPdf = new PadesSignerService().signPdf(TestPdfs.original(),
+            TestCertificates.pkcs12(signer, PASSWORD, root.certificate), PASSWORD, null);
+    }
+
+    @AfterAll
+    static void stopTsa() {
+        tsa.close();
+    }
+
+    @Test
+    void appendsADocumentTimestampInTheBackground() throws Exception {
+        PadesSignerService service = service(tsa.getUrl());
+        try (TimestampUpgradeWorker worker = new TimestampUpgradeWorker(service, 8, 2, 10, DAY)) {
+            TimestampUpgradeJob job = worker.submit(signedPdf, "contrato.pdf");
+
+            awaitFinished(job);
+
+            assertEquals(Status.COMPLETED, job.getStatus(), job.getError());
+            assertEquals(1, job.getAttempts());
+            PdfVerificationResult result =
+                service.verifyPdfSignature(job.getUpgradedPdf(), VerificationLevel.INTEGRITY);
+            assertTrue(result.isValid(), result.getDetails());
+            assertEquals(2, result.getSignatures().size());
+            assertFalse(result.getSignatures().get(0).isDocumentTimestamp());
+            assertTrue(result.getSignatures().get(1).isDocumentTimestamp());
+            assertEquals(1, (int) worker.getStatusCounts().get(Status.COMPLETED));
+            assertEquals(job, worker.getJob(job.getId()));
+        }
+    }
+
+    @Test
+    void rejectsSubmissionsBeyondThePendingLimit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (TestHttpServer server = new TestHttpServer();
+             TimestampUpgradeWorker worker = new TimestampUpgradeWorker(
+                 service(server.url("/")), 8, 2, 1, DAY)) {
+            server.handle("/", exchange -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(503, -1);
+            });
+
+            // Unfinished while its TSA request hangs, then waiting for a retry
+            TimestampUpgradeJob pending = worker.submit(signedPdf, "a.pdf");
+
+            assertThrows(TimestampException.class, () -> worker.submit(signedPdf, "b.pdf"));
+            assertFalse(pending.isFinished());
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failedJobsFreeTheirPendingSlot() throws Exception {
+        try (TimestampUpgradeWorker worker = new TimestampUpgradeWorker(service(tsa.getUrl()), 8, 2, 1, DAY)) {
+            TimestampUpgradeJob invalid = worker.submit("não é PDF".getBytes(StandardCharsets.UTF_8), "a.pdf");
+
+            awaitFinished(invalid);
+
+            assertEquals(Status.FAILED, invalid.getStatus());
+            assertNotNull(invalid.getError());
+            TimestampUpgradeJob next = worker.submit(signedPdf, "b.pdf");
+            awaitFinished(next);
+            assertEquals(Status.COMPLETED, next.getStatus(), next.getError());
+        }
+    }
+
+    private static PadesSignerService service(String tsaUrl) {
+        PadesSignerService service = new PadesSignerService();
+        service.setTsaClient(new TsaClient(Collections.singletonList(tsaUrl), 5000, 4));
+        return service;
+    }
+
+    private static void awaitFinished(TimestampUpgradeJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(job.isFinished(), "Upgrade did not finish: " + job.getStatus());
+    }
+}
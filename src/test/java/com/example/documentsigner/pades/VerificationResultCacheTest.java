@@ -0,0 +1,67 @@
+package com.example.documentsigner.pades;
+
+import com.example.documentsigner.pades.dto.PdfVerificationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class VerificationResultCacheTest {
+
+    @Test
+    void countsHitsAndMisses() {
+        VerificationResultCache cache = new VerificationResultCache(10, DAY);
+        PdfVerificationResult result = new PdfVerificationResult();
+
+        assertNull(cache.get("abc@1.1/FULL"));
+        cache.put("abc@1.1/FULL", result);
+
+        assertSame(result, cache.get("abc@1.1/FULL"));
+        // A new trust store or CRL epoch is a different key
+        assertNull(cache.get("abc@1.2/FULL"));
+        Map<String, Long> stats = cache.getStats();
+        assertEquals(1L, (long) stats.get("hits"));
+        assertEquals(2L, (long) stats.get("misses"));
+        assertEquals(1L, (long) stats.get("size"));
+        assertEquals(10L, (long) stats.get("maxEntries"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedResult() {
+        VerificationResultCache cache = new VerificationResultCache(2, DAY);
+        PdfVerificationResult first = new PdfVerificationResult();
+        PdfVerificationResult second = new PdfVerificationResult();
+        cache.put("a", first);
+        cache.put("b", second);
+        cache.get("a");
+
+        cache.put("c", new PdfVerificationResult());
+
+        assertSame(first, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1L, (long) cache.getStats().get("evictions"));
+        assertEquals(2L, (long) cache.getStats().get("size"));
+    }
+
+    @Test
+    void expiredAndClearedResultsAreNotReturned() {
+        VerificationResultCache expiring = new VerificationResultCache(10, 0);
+        expiring.put("a", new PdfVerificationResult());
+        assertNull(expiring.get("a"));
+        assertEquals(0L, (long) expiring.getStats().get("size"));
+
+        VerificationResultCache cache = new VerificationResultCache(10, DAY);
+        cache.put("a", new PdfVerificationResult());
+        cache.clear();
+        assertNull(cache.get("a"));
+
+        VerificationResultCache disabled = VerificationResultCache.disabled();
+        disabled.put("a", new PdfVerificationResult());
+        assertNull(disabled.get("a"));
+        assertEquals(0L, (long) disabled.getStats().get("size"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.documentsigner.policy;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERGeneralizedTime;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERUTF8String;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SignaturePolicyRegistryTest {
+
+    private static final String OID = "2.16.76.1.7.1.11.1.1";
+    private static final AlgorithmIdentifier SHA256 = new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256);
+
+    @Test
+    void usesTheHashCarriedByThePolicy() throws Exception {
+        byte[] hash = new byte[32];
+        hash[0] = 1;
+
+        SignaturePolicy policy = SignaturePolicyRegistry.parsePolicy("PA_AD_RB_v1_1", "http://politicas/PA_AD_RB_v1_1.der",
+            policy(new DEROctetString(hash)));
+
+        assertEquals(OID, policy.getOid());
+        assertArrayEquals(hash, policy.getDigest());
+    }
+
+    @Test
+    void hashesThePolicyInfoValueWithoutTagAndLength() throws Exception {
+        DERSequence policyInfo = policyInfo();
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        for (int i = 0; i < policyInfo.size(); i++) {
+            value.write(policyInfo.getObjectAt(i).toASN1Primitive().getEncoded(ASN1Encoding.DER));
+        }
+
+        SignaturePolicy policy = SignaturePolicyRegistry.parsePolicy("PA_AD_RB_v1_1", "http://politicas/PA_AD_RB_v1_1.der",
+            policy(null));
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(value.toByteArray()), policy.getDigest());
+    }
+
+    private static byte[] policy(DEROctetString hash) throws Exception {
+        ASN1EncodableVector policy = new ASN1EncodableVector();
+        policy.add(SHA256);
+        policy.add(policyInfo());
+        if (hash != null) {
+            policy.add(hash);
+        }
+        return new DERSequence(policy).getEncoded(ASN1Encoding.DER);
+    }
+
+    private static DERSequence policyInfo() {
+        ASN1EncodableVector info = new ASN1EncodableVector();
+        info.add(new ASN1ObjectIdentifier(OID));
+        info.add(new DERGeneralizedTime(new Date(0)));
+        info.add(new DERUTF8String("Politica de teste"));
+        return new DERSequence(info);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.documentsigner.revocation;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CrlIndexTest {
+
+    private static final long REVOKED_AT = 1600000000000L;
+
+    private static Issued ca;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        ca = TestCertificates.root("AC de Teste");
+    }
+
+    @Test
+    void findsRevokedSerialsWithTimeAndReason() throws Exception {
+        BigInteger wide = new BigInteger("00f0e1d2c3b4a5968778695a4b3c2d1e0f", 16);
+        byte[] der = crl(
+            BigInteger.valueOf(5), new Date(REVOKED_AT), CRLReason.keyCompromise,
+            wide, new Date(REVOKED_AT + 1000), CRLReason.superseded,
+            BigInteger.valueOf(300), new Date(REVOKED_AT + 2000), CRLReason.unspecified);
+
+        CrlIndex index = CrlIndex.parse(der, ca.certificate);
+
+        assertEquals(3, index.size());
+        assertEquals(ca.certificate.getSubjectX500Principal(), index.getIssuer());
+        assertEquals(Long.valueOf(REVOKED_AT), index.getRevocationTime(BigInteger.valueOf(5)));
+        assertEquals(Integer.valueOf(CRLReason.keyCompromise), index.getRevocationReason(BigInteger.valueOf(5)));
+        assertEquals(Long.valueOf(REVOKED_AT + 1000), index.getRevocationTime(wide));
+        assertEquals(Integer.valueOf(CRLReason.superseded), index.getRevocationReason(wide));
+        // An unspecified reason is written without the extension
+        assertEquals(Long.valueOf(REVOKED_AT + 2000), index.getRevocationTime(BigInteger.valueOf(300)));
+        assertNull(index.getRevocationReason(BigInteger.valueOf(300)));
+    }
+
+    @Test
+    void serialsNotOnTheListAreNotRevoked() throws Exception {
+        CrlIndex index = CrlIndex.parse(crl(BigInteger.valueOf(5), new Date(REVOKED_AT), CRLReason.keyCompromise),
+            ca.certificate);
+
+        assertNull(index.getRevocationTime(BigInteger.valueOf(6)));
+        assertNull(index.getRevocationTime(BigInteger.valueOf(-5)));
+        assertNull(index.getRevocationTime(new BigInteger("123456789abcdef0123456789", 16)));
+    }
+
+    @Test
+    void emptyCrlRevokesNothing() throws Exception {
+        CrlIndex index = CrlIndex.parse(crl(), ca.certificate);
+
+        assertEquals(0, index.size());
+        assertNull(index.getRevocationTime(BigInteger.ONE));
+    }
+
+    @Test
+    void rejectsACrlSignedByAnotherKey() throws Exception {
+        Issued other = TestCertificates.root("AC de Teste");
+
+        assertThrows(IOException.class, () -> CrlIndex.parse(crl(), other.certificate));
+    }
+
+    @Test
+    void reportsStalenessAgainstNextUpdate() throws Exception {
+        CrlIndex index = CrlIndex.parse(crl(), ca.certificate);
+
+        assertEquals(false, index.isStale(new Date()));
+        assertEquals(true, index.isStale(new Date(System.currentTimeMillis() + 8 * DAY)));
+    }
+
+    private static byte[] crl(Object... revoked) throws Exception {
+        return TestCertificates.crl(ca, new Date(System.currentTimeMillis() - DAY),
+            new Date(System.currentTimeMillis() + 7 * DAY), revoked).getEncoded();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.documentsigner.revocation;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcspClientTest {
+
+    private static Issued ca;
+    private static Issued certificate;
+
+    private LocalOcspResponder responder;
+    private OcspClient client;
+
+    @BeforeAll
+    static void setUpCertificates() throws Exception {
+        ca = TestCertificates.root("AC de Teste");
+        certificate = TestCertificates.issue(ca, "FULANO DE TAL", false);
+    }
+
+    @BeforeEach
+    void startResponder() throws Exception {
+        responder = new LocalOcspResponder(ca.certificate, ca.key, 0);
+        client = new OcspClient(responder.getUrl(), 5000, 4, 100, 60000);
+    }
+
+    @AfterEach
+    void stopResponder() {
+        responder.close();
+    }
+
+    @Test
+    void goodStatusIsCached() {
+        assertEquals(RevocationStatus.Status.GOOD, client.check(certificate.certificate, ca.certificate).getStatus());
+        assertEquals(RevocationStatus.Status.GOOD, client.check(certificate.certificate, ca.certificate).getStatus());
+
+        assertEquals(1, responder.getRequestCount());
+        assertEquals(1, client.getCacheHits());
+    }
+
+    @Test
+    void revokedStatusCarriesTimeAndReason() {
+        Date revokedAt = new Date((System.currentTimeMillis() - DAY) / 1000 * 1000);
+        responder.revoke(certificate.certificate.getSerialNumber(), revokedAt, CRLReason.superseded);
+
+        RevocationStatus status = client.check(certificate.certificate, ca.certificate);
+
+        assertTrue(status.isRevoked());
+        assertEquals(revokedAt, status.getRevocationDate());
+        assertEquals(Integer.valueOf(CRLReason.superseded), status.getReason());
+        // Signed before the revocation
+        assertEquals(RevocationStatus.Status.GOOD, status.asOf(new Date(revokedAt.getTime() - DAY)).getStatus());
+        assertTrue(status.asOf(new Date()).isRevoked());
+    }
+
+    @Test
+    void keyCompromiseReachesBackBeforeTheRevocation() {
+        Date revokedAt = new Date(System.currentTimeMillis() - DAY);
+        responder.revoke(certificate.certificate.getSerialNumber(), revokedAt, CRLReason.keyCompromise);
+
+        RevocationStatus status = client.check(certificate.certificate, ca.certificate);
+
+        assertTrue(status.asOf(new Date(revokedAt.getTime() - DAY)).isRevoked());
+    }
+
+    @Test
+    void responseSignedByAnotherKeyIsUnknown() throws Exception {
+        Issued impostor = TestCertificates.root("AC de Teste");
+        try (LocalOcspResponder other = new LocalOcspResponder(impostor.certificate, impostor.key, 0)) {
+            OcspClient otherClient = new OcspClient(other.getUrl(), 5000, 4, 100, 60000);
+
+            RevocationStatus status = otherClient.check(certificate.certificate, ca.certificate);
+
+            assertEquals(RevocationStatus.Status.UNKNOWN, status.getStatus());
+        }
+    }
+
+    @Test
+    void outOfDateResponseIsUnknownAndNotCached() {
+        responder.setValidityMillis(-DAY);
+
+        assertEquals(RevocationStatus.Status.UNKNOWN, client.check(certificate.certificate, ca.certificate).getStatus());
+        assertEquals(RevocationStatus.Status.UNKNOWN, client.check(certificate.certificate, ca.certificate).getStatus());
+        assertEquals(2, responder.getRequestCount());
+    }
+
+    @Test
+    void unreachableResponderIsUnknown() {
+        String url = responder.getUrl();
+        responder.close();
+
+        RevocationStatus status = new OcspClient(url, 2000, 4, 100, 60000)
+            .check(certificate.certificate, ca.certificate);
+
+        assertEquals(RevocationStatus.Status.UNKNOWN, status.getStatus());
+    }
+
+    @Test
+    void disabledClientIsUnknown() {
+        assertEquals(RevocationStatus.Status.UNKNOWN,
+            OcspClient.disabled().check(certificate.certificate, ca.certificate).getStatus());
+    }
+}
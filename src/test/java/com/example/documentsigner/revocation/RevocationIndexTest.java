@@ -0,0 +1,107 @@
+package com.example.documentsigner.revocation;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.trust.TrustStore;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevocationIndexTest {
+
+    private static Issued ca;
+    private static Issued superseded;
+    private static Issued compromised;
+    private static Issued good;
+    private static Date revokedAt;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        ca = TestCertificates.root("AC de Teste");
+        superseded = TestCertificates.issue(ca, "SUBSTITUIDO", false);
+        compromised = TestCertificates.issue(ca, "COMPROMETIDO", false);
+        good = TestCertificates.issue(ca, "EM DIA", false);
+        revokedAt = new Date(System.currentTimeMillis() - DAY / 2);
+    }
+
+    @Test
+    void revocationCountsFromItsTime() throws Exception {
+        RevocationIndex index = index(current());
+
+        assertTrue(index.check(superseded.certificate, new Date()).isRevoked());
+        RevocationStatus before = index.check(superseded.certificate, new Date(revokedAt.getTime() - 1000));
+        assertEquals(RevocationStatus.Status.GOOD, before.getStatus());
+    }
+
+    @Test
+    void keyCompromiseCountsAtAnyTime() throws Exception {
+        RevocationIndex index = index(current());
+
+        RevocationStatus status = index.check(compromised.certificate, new Date(revokedAt.getTime() - 1000));
+
+        assertTrue(status.isRevoked());
+        assertEquals(Integer.valueOf(CRLReason.keyCompromise), status.getReason());
+        assertEquals(revokedAt.getTime() / 1000, status.getRevocationDate().getTime() / 1000);
+    }
+
+    @Test
+    void unlistedCertificateIsGoodWhileTheCrlIsCurrent() throws Exception {
+        assertEquals(RevocationStatus.Status.GOOD, index(current()).check(good.certificate, new Date()).getStatus());
+
+        byte[] expired = TestCertificates.crl(ca, new Date(System.currentTimeMillis() - 3 * DAY),
+            new Date(System.currentTimeMillis() - DAY)).getEncoded();
+        assertEquals(RevocationStatus.Status.UNKNOWN, index(expired).check(good.certificate, new Date()).getStatus());
+    }
+
+    @Test
+    void issuerWithoutCrlIsUnknown() throws Exception {
+        Issued other = TestCertificates.root("Outra AC");
+        Issued certificate = TestCertificates.issue(other, "FULANO", false);
+
+        RevocationStatus status = index(current()).check(certificate.certificate, new Date());
+
+        assertEquals(RevocationStatus.Status.UNKNOWN, status.getStatus());
+        assertFalse(status.isRevoked());
+    }
+
+    @Test
+    void crlNotSignedByATrustedIssuerIsNotLoaded() throws Exception {
+        Issued impostor = TestCertificates.root("AC de Teste");
+        Files.write(directory.resolve("falsa.crl"), TestCertificates.crl(impostor,
+            new Date(System.currentTimeMillis() - DAY), new Date(System.currentTimeMillis() + DAY),
+            good.certificate.getSerialNumber(), revokedAt, CRLReason.keyCompromise).getEncoded());
+        RevocationIndex index = new RevocationIndex(directory, new TrustStore(Collections.singletonList(ca.certificate)));
+
+        assertEquals(0, index.refresh());
+        assertEquals(1, index.getErrors().size());
+        assertFalse(index.check(good.certificate, new Date()).isRevoked());
+    }
+
+    private static byte[] current() throws Exception {
+        return TestCertificates.crl(ca, new Date(System.currentTimeMillis() - DAY),
+            new Date(System.currentTimeMillis() + DAY),
+            superseded.certificate.getSerialNumber(), revokedAt, CRLReason.superseded,
+            compromised.certificate.getSerialNumber(), revokedAt, CRLReason.keyCompromise).getEncoded();
+    }
+
+    private RevocationIndex index(byte[] crl) throws Exception {
+        Files.write(directory.resolve("ac.crl"), crl);
+        RevocationIndex index = new RevocationIndex(directory, new TrustStore(Collections.singletonList(ca.certificate)));
+        assertEquals(1, index.refresh());
+        return index;
+    }
+}
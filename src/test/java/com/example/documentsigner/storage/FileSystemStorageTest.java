@@ -0,0 +1,80 @@
+package com.example.documentsigner.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileSystemStorageTest {
+
+    private static final byte[] CONTENT = "%PDF-1.7".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsAndWritesUnderTheRoot() throws Exception {
+        FileSystemStorage storage = new FileSystemStorage(directory.resolve("root"));
+
+        storage.write("assinados/2024/a.pdf", new ByteArrayInputStream(CONTENT), CONTENT.length, null);
+        try (InputStream in = storage.open("assinados/./2024/a.pdf")) {
+            assertArrayEquals(CONTENT, readAll(in));
+        }
+        assertNull(storage.open("assinados/b.pdf"));
+    }
+
+    @Test
+    void refusesKeysLeadingOutsideTheRoot() throws Exception {
+        Path root = directory.resolve("root");
+        FileSystemStorage storage = new FileSystemStorage(root);
+        Files.write(directory.resolve("secret.pdf"), CONTENT);
+
+        for (String key : Arrays.asList("../secret.pdf", "a/../../secret.pdf", directory.resolve("secret.pdf")
+                .toString(), "", " ", ".", "a/..")) {
+            assertThrows(IllegalArgumentException.class, () -> storage.open(key), key);
+            assertThrows(IllegalArgumentException.class,
+                () -> storage.write(key, new ByteArrayInputStream(CONTENT), CONTENT.length, null), key);
+        }
+        assertArrayEquals(CONTENT, Files.readAllBytes(directory.resolve("secret.pdf")));
+    }
+
+    @Test
+    void refusesSymbolicLinksLeadingOutsideTheRoot() throws Exception {
+        Path root = directory.resolve("root");
+        FileSystemStorage storage = new FileSystemStorage(root);
+        Path outside = Files.createDirectories(directory.resolve("outside"));
+        Files.write(outside.resolve("secret.pdf"), CONTENT);
+        Files.createSymbolicLink(root.resolve("link.pdf"), outside.resolve("secret.pdf"));
+        Files.createSymbolicLink(root.resolve("linked"), outside);
+
+        assertThrows(IllegalArgumentException.class, () -> storage.open("link.pdf"));
+        assertThrows(IllegalArgumentException.class, () -> storage.open("linked/secret.pdf"));
+        assertThrows(IllegalArgumentException.class,
+            () -> storage.write("linked/new.pdf", new ByteArrayInputStream(CONTENT), CONTENT.length, null));
+        assertThrows(IllegalArgumentException.class,
+            () -> storage.write("linked/sub/new.pdf", new ByteArrayInputStream(CONTENT), CONTENT.length, null));
+        assertFalse(Files.exists(outside.resolve("new.pdf")));
+        assertFalse(Files.exists(outside.resolve("sub")));
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.documentsigner.storage;
+
+import com.example.documentsigner.TestHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3StorageTest {
+
+    private static final String REGION = "us-east-1";
+    private static final String ACCESS_KEY = "minioadmin";
+    private static final String SECRET_KEY = "minio-secret";
+    private static final byte[] CONTENT = "%PDF-1.7 assinado".getBytes(StandardCharsets.US_ASCII);
+
+    private TestHttpServer server;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TestHttpServer();
+        server.handle("/documentos/", this::serve);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void writesAndReadsSignedObjects() throws Exception {
+        S3Storage storage = storage(SECRET_KEY);
+
+        storage.write("assinados/contrato ção.pdf", new ByteArrayInputStream(CONTENT), CONTENT.length,
+            "application/pdf");
+
+        assertArrayEquals(CONTENT, objects.get("/documentos/assinados/contrato%20%C3%A7%C3%A3o.pdf"));
+        try (InputStream in = storage.open("assinados/contrato ção.pdf")) {
+            assertArrayEquals(CONTENT, readAll(in));
+        }
+        assertNull(storage.open("assinados/outro.pdf"));
+    }
+
+    @Test
+    void reportsFailuresWithoutTheStoreResponse() {
+        S3Storage storage = storage("wrong-secret");
+
+        IOException e = assertThrows(IOException.class, () -> storage.open("assinados/a.pdf"));
+
+        assertTrue(e.getMessage().contains("HTTP 403"), e.getMessage());
+        assertFalse(e.getMessage().contains("SignatureDoesNotMatch"), e.getMessage());
+    }
+
+    @Test
+    void refusesDotSegmentsInKeys() {
+        S3Storage storage = storage(SECRET_KEY);
+
+        for (String key : Arrays.asList("../outro-bucket/a.pdf", "a/../b.pdf", "./a.pdf", "a/.", "..")) {
+            assertThrows(IllegalArgumentException.class, () -> storage.open(key), key);
+            assertThrows(IllegalArgumentException.class,
+                () -> storage.write(key, new ByteArrayInputStream(CONTENT), CONTENT.length, null), key);
+        }
+        assertEquals(0, server.getRequestCount("/documentos/"));
+    }
+
+    private S3Storage storage(String secretKey) {
+        return new S3Storage(URI.create(server.url("")), REGION, "documentos", ACCESS_KEY, secretKey);
+    }
+
+    /**
+     * A bucket that checks SigV4 the way S3 does, from the request it received.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        byte[] body = readAll(exchange.getRequestBody());
+        if (!signatureMatches(exchange, path)) {
+            byte[] error = "<Error><Code>SignatureDoesNotMatch</Code></Error>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(403, error.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(error);
+            }
+        } else if (exchange.getRequestMethod().equals("PUT")) {
+            objects.put(path, body);
+            exchange.sendResponseHeaders(200, -1);
+        } else if (objects.containsKey(path)) {
+            byte[] object = objects.get(path);
+            exchange.sendResponseHeaders(200, object.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(object);
+            }
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    private static boolean signatureMatches(HttpExchange exchange, String path) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+        String payload = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (authorization == null || amzDate == null || payload == null) {
+            return false;
+        }
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + REGION + "/s3/aws4_request";
+        String canonicalRequest = String.join("\n", exchange.getRequestMethod(), path, "",
+            "host:" + host, "x-amz-content-sha256:" + payload, "x-amz-date:" + amzDate, "",
+            "host;x-amz-content-sha256;x-amz-date", payload);
+        String stringToSign = String.join("\n", "AWS4-HMAC-SHA256", amzDate, scope,
+            Hex.toHexString(sha256(canonicalRequest)));
+        byte[] key = hmac(("AWS4" + SECRET_KEY).getBytes(StandardCharsets.UTF_8), date);
+        for (String part : Arrays.asList(REGION, "s3", "aws4_request")) {
+            key = hmac(key, part);
+        }
+        String expected = "AWS4-HMAC-SHA256 Credential=" + ACCESS_KEY + "/" + scope
+            + ", SignedHeaders=host;x-amz-content-sha256;x-amz-date, Signature="
+            + Hex.toHexString(hmac(key, stringToSign));
+        return expected.equals(authorization);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
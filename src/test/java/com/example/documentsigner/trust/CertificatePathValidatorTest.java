@@ -0,0 +1,84 @@
+package com.example.documentsigner.trust;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static com.example.documentsigner.TestCertificates.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CertificatePathValidatorTest {
+
+    private static Issued root;
+    private static Issued intermediate;
+    private static Issued signer;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        root = TestCertificates.root("AC Raiz de Teste");
+        intermediate = TestCertificates.issue(root, "AC Intermediaria", new Date(System.currentTimeMillis() - 60 * DAY),
+            new Date(System.currentTimeMillis() + 365 * DAY), true);
+        signer = TestCertificates.issue(intermediate, "FULANO DE TAL", false);
+    }
+
+    @Test
+    void buildsThePathThroughSuppliedIntermediates() {
+        CertificatePathValidator validator = validator();
+
+        PathValidationResult result = validator.validate(signer.certificate,
+            Collections.singletonList(intermediate.certificate), new Date());
+
+        assertTrue(result.isValid(), result.getMessage());
+        assertEquals(3, result.getPath().size());
+        assertEquals(root.certificate, result.getTrustAnchor());
+    }
+
+    @Test
+    void rejectsAPathWithoutTheIntermediate() {
+        PathValidationResult result = validator().validate(signer.certificate,
+            Collections.<X509Certificate>emptyList(), new Date());
+
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    void validatesAtTheGivenTime() throws Exception {
+        Issued expired = TestCertificates.issue(intermediate, "EXPIRADO",
+            new Date(System.currentTimeMillis() - 30 * DAY), new Date(System.currentTimeMillis() - 10 * DAY), false);
+        List<X509Certificate> supplied = Collections.singletonList(intermediate.certificate);
+        CertificatePathValidator validator = validator();
+
+        assertFalse(validator.validate(expired.certificate, supplied, new Date()).isValid());
+        assertTrue(validator.validate(expired.certificate, supplied,
+            new Date(System.currentTimeMillis() - 20 * DAY)).isValid());
+    }
+
+    @Test
+    void reusesTheIssuerPathOnlyWithinItsValidity() throws Exception {
+        Issued other = TestCertificates.issue(intermediate, "BELTRANO", false);
+        List<X509Certificate> supplied = Collections.singletonList(intermediate.certificate);
+        CertificatePathValidator validator = validator();
+
+        assertTrue(validator.validate(signer.certificate, supplied, new Date()).isValid());
+        assertTrue(validator.validate(other.certificate, supplied, new Date()).isValid());
+        assertEquals(1, validator.getPathBuilds());
+        assertEquals(1, validator.getCacheHits());
+
+        // Before the intermediate was issued the cached path does not apply, and the full check fails
+        assertFalse(validator.validate(other.certificate, supplied,
+            new Date(System.currentTimeMillis() - 90 * DAY)).isValid());
+        assertEquals(1, validator.getCacheHits());
+    }
+
+    private static CertificatePathValidator validator() {
+        return new CertificatePathValidator(new TrustStore(Collections.singletonList(root.certificate)), 16, 60000);
+    }
+}
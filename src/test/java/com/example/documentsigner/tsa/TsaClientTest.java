@@ -0,0 +1,177 @@
+package com.example.documentsigner.tsa;
+
+import com.example.documentsigner.TestCertificates;
+import com.example.documentsigner.TestCertificates.Issued;
+import com.example.documentsigner.TestHttpServer;
+import com.example.documentsigner.exception.TimestampException;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TsaClientTest {
+
+    private static LocalTimestampAuthority tsa;
+
+    private TestHttpServer server;
+
+    @BeforeAll
+    static void startTsa() throws Exception {
+        tsa = new LocalTimestampAuthority(0);
+    }
+
+    @AfterAll
+    static void stopTsa() {
+        tsa.close();
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TestHttpServer();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void timestampsADigestWithTheLocalTsa() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes("documento"));
+        TsaClient client = new TsaClient(Collections.singletonList(tsa.getUrl()), 5000, 4);
+
+        TimeStampToken token = client.timestampDigest(digest);
+
+        assertArrayEquals(digest, token.getTimeStampInfo().getMessageImprintDigest());
+        assertEquals(LocalTimestampAuthority.DEFAULT_POLICY_OID, token.getTimeStampInfo().getPolicy().getId());
+        assertTrue(token.isSignatureValid(new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC")
+            .build(tsa.getCertificate())));
+    }
+
+    @Test
+    void failsOverToTheNextTsaAndBacksOffTheFailingOne() {
+        server.respond("/", 503, bytes("indisponível"));
+        String failing = server.url("/");
+        TsaClient client = new TsaClient(Arrays.asList(failing, tsa.getUrl()), 5000, 4);
+
+        assertNotNull(client.timestamp(bytes("documento")));
+        assertNotNull(client.timestamp(bytes("outro documento")));
+
+        // The failing TSA is in back-off, so the second request went straight to the local one
+        assertEquals(1, server.getRequestCount("/"));
+        List<String> order = Arrays.asList(client.getEndpointLatencies().keySet().toArray(new String[0]));
+        assertEquals(Arrays.asList(tsa.getUrl(), failing), order);
+    }
+
+    @Test
+    void failsWhenEveryTsaFails() {
+        server.respond("/", 500, bytes("erro"));
+        TsaClient client = new TsaClient(Collections.singletonList(server.url("/")), 5000, 4);
+
+        TimestampException e = assertThrows(TimestampException.class, () -> client.timestamp(bytes("documento")));
+
+        assertTrue(e.getMessage().contains("HTTP 500"), e.getMessage());
+        assertThrows(TimestampException.class, () -> TsaClient.disabled().timestamp(bytes("documento")));
+    }
+
+    @Test
+    void boundsOutstandingRequests() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.handle("/", exchange -> {
+            received.countDown();
+            // Trickle the body so the first request outlives its read timeout until released
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                while (!release.await(50, TimeUnit.MILLISECONDS)) {
+                    out.write(' ');
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        TsaClient client = new TsaClient(Collections.singletonList(server.url("/")), 300, 1);
+        Thread first = new Thread(() -> {
+            try {
+                client.timestamp(bytes("primeiro"));
+            } catch (TimestampException expected) {
+                // Not a timestamp reply
+            }
+        });
+        first.start();
+        try {
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            TimestampException e = assertThrows(TimestampException.class, () -> client.timestamp(bytes("segundo")));
+
+            assertTrue(e.getMessage().contains("Too many outstanding"), e.getMessage());
+            assertEquals(1, server.getRequestCount("/"));
+        } finally {
+            release.countDown();
+            first.join();
+        }
+    }
+
+    @Test
+    void timestampsEverySignatureValue() throws Exception {
+        Issued root = TestCertificates.root("AC Raiz de Teste");
+        Issued signer = TestCertificates.issue(root, "FULANO DE TAL", false);
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(
+                new JcaDigestCalculatorProviderBuilder().setProvider("BC").build())
+            .build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(signer.key),
+                signer.certificate));
+        CMSSignedData signed = generator.generate(new CMSProcessableByteArray(bytes("documento")), false);
+        TsaClient client = new TsaClient(Collections.singletonList(tsa.getUrl()), 5000, 4);
+
+        CMSSignedData timestamped = client.addSignatureTimestamps(signed);
+
+        SignerInformation signerInfo = timestamped.getSignerInfos().getSigners().iterator().next();
+        AttributeTable unsigned = signerInfo.getUnsignedAttributes();
+        assertNotNull(unsigned);
+        TimeStampToken token = new TimeStampToken(ContentInfo.getInstance(unsigned
+            .get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken).getAttrValues().getObjectAt(0)));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(signerInfo.getSignature()),
+            token.getTimeStampInfo().getMessageImprintDigest());
+
+        // Signers that already carry a timestamp are left as they are
+        CMSSignedData again = client.addSignatureTimestamps(timestamped);
+        assertArrayEquals(timestamped.getEncoded(), again.getEncoded());
+        assertFalse(Arrays.equals(signed.getEncoded(), timestamped.getEncoded()));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}